@@ -1,16 +1,30 @@
 package requeterRezo;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
 
 /**
  * Index des fichiers présents dans le cache. Composé de trois éléments : une
@@ -19,19 +33,88 @@ import java.util.Queue;
  * au prochain terme à ajouter et un nombre de jour à partir duquel un fichier
  * dans le cache est considéré comme obsolète.
  *
+ * Les entrées sont également rangées par nombre d'occurrences et par date de
+ * péremption (voir {@link RoueTemporelle}), afin de trouver le prochain terme
+ * à supprimer sans parcourir tout l'index, ainsi que par nombre d'occurrences
+ * rapporté à la
+ * taille de l'entrée, pour libérer de la place lorsque la capacité est
+ * exprimée en octets (voir {@link Configuration#tailleOctets(long)}). Ces
+ * ensembles contiennent directement les {@link CacheInfo} et sont tenus à jour
+ * par {@link Cache#put(String, CacheInfo)}, {@link Cache#remove(Object)} et
+ * {@link Cache#incrementer(String)} : les informations d'une entrée ne doivent
+ * pas être modifiées autrement. Le dernier n'est construit qu'à sa première
+ * utilisation. C'est pourquoi la table n'est pas exposée : les vues rendues
+ * par {@link Cache#keySet()}, {@link Cache#values()} et
+ * {@link Cache#entrySet()} sont en lecture seule.
+ *
+ * Les IDs pris sont marqués dans un {@link BitSet} (un bit par ID possible) :
+ * le prochain ID attribué est le plus petit ID libre. Ajouts et suppressions
+ * passent par {@link Cache#ajouter(String, int, int, int, long)},
+ * {@link Cache#detacher(String)} et les méthodes qui en dépendent, qui
+ * tiennent ces IDs à jour ; put, remove et clear, qui ne le font pas, ne
+ * servent qu'au chargement, au rejeu du journal et à la reconstruction, suivis
+ * de {@link Cache#reconstruireID()}.
+ *
+ * La table peut être lue et parcourue pendant que d'autres threads la
+ * modifient ; les modifications (et l'utilisation des ensembles ordonnés)
+ * doivent en revanche être faites sous un même verrou (voir
+ * {@link RequeterRezo}).
+ *
  * @author Jimmy Benoits
  */
-@SuppressWarnings("serial")
-public class Cache extends HashMap<String, CacheInfo> {
+public class Cache {
+
+    /**
+     * Table des entrées, modifiée uniquement par les méthodes de la classe.
+     */
+    private final ConcurrentHashMap<String, CacheInfo> table;
+
+    /**
+     * Vue en lecture seule de la table.
+     */
+    private final Map<String, CacheInfo> lecture;
+
+    /**
+     * Nombre magique ("RZIC") en tête des fichiers d'index binaires.
+     */
+    protected static final int MAGIE = 0x525A4943;
+
+    /**
+     * Version du format binaire des fichiers d'index.
+     */
+    protected static final byte VERSION = 1;
+
+    /**
+     * Taille de l'en-tête des fichiers d'index binaires (magie, version, nombre
+     * d'entrées).
+     */
+    protected static final int TAILLE_EN_TETE = 9;
 
     /**
-     * Liste des IDs disponibles.
+     * Taille des morceaux écrits lors de la sauvegarde d'un index binaire.
      */
-    protected Queue<Integer> diponiblesID;
+    static final int TAILLE_MORCEAU = 1 << 16;
+
+    /**
+     * IDs déjà utilisés par le cache.
+     */
+    protected final BitSet prisID;
+
+    /**
+     * IDs des entrées supprimées de l'index mais pas encore du stockage (voir
+     * {@link Cache#detacher(String)}).
+     */
+    private final BitSet reserves;
+
+    /**
+     * Nombre maximum d'entrées (les IDs sont compris entre 0 et tailleMax - 1).
+     */
+    protected final int tailleMax;
+
     /**
-     * Liste des IDs déjà utilisé par le cache.
+     * Aucun ID inférieur n'est libre.
      */
-    protected Queue<Integer> prisID;
+    private int premierLibre;
 
     /**
      * Nombre d'heures à partir duquel un fichier dans le cache est considéré
@@ -39,6 +122,77 @@ public class Cache extends HashMap<String, CacheInfo> {
      */
     protected final int peremption;
 
+    /**
+     * Délais de péremption (en heures) des entrées portant sur un type de
+     * relation, par identifiant du type (voir {@link Forme#typeRelation(String)}).
+     */
+    private Map<Integer, Integer> peremptionsTypes = Collections.emptyMap();
+
+    /**
+     * Journal des modifications (null si les modifications ne sont pas
+     * journalisées).
+     */
+    protected Journal journal;
+
+    /**
+     * Politique d'admission et d'éviction informée des entrées et sorties du
+     * cache (null si aucune).
+     */
+    protected PolitiqueCache politique;
+
+    /**
+     * Entrées rangées par nombre d'occurrences croissant, puis par date
+     * d'entrée dans le cache (la première est la moins courante).
+     */
+    private final TreeSet<CacheInfo> parOccurrences = new TreeSet<>(PAR_OCCURRENCES);
+
+    /**
+     * Entrées rangées par date de péremption.
+     */
+    private RoueTemporelle roue = new RoueTemporelle(Horloge.maintenant());
+
+    /**
+     * Horloge des dates de l'index (voir
+     * {@link Configuration#horloge(LongSupplier)}).
+     */
+    private LongSupplier horloge = Horloge::maintenant;
+
+    /**
+     * Entrées rangées par nombre d'occurrences par octet croissant (la
+     * première est celle dont la suppression libère le plus de place pour le
+     * moins de requêtes). Null tant que {@link Cache#moinsRentable()} n'a pas
+     * été appelée.
+     */
+    private TreeSet<CacheInfo> parRentabilite;
+
+    /**
+     * Taille totale des entrées dans le stockage, en octets.
+     */
+    private long octets;
+
+    private static final Comparator<CacheInfo> PAR_OCCURRENCES = new Comparator<CacheInfo>() {
+        @Override
+        public int compare(CacheInfo a, CacheInfo b) {
+            int res = Integer.compare(a.occurrences, b.occurrences);
+            if (res == 0) {
+                res = Long.compare(a.dateCache, b.dateCache);
+            }
+            return res != 0 ? res : a.mot.compareTo(b.mot);
+        }
+    };
+
+    private static final Comparator<CacheInfo> PAR_RENTABILITE = new Comparator<CacheInfo>() {
+        @Override
+        public int compare(CacheInfo a, CacheInfo b) {
+            //a.occurrences / a.taille comparé à b.occurrences / b.taille
+            int res = Long.compare((long) a.occurrences * Math.max(1, b.taille), (long) b.occurrences * Math.max(1, a.taille));
+            if (res == 0) {
+                res = Long.compare(a.dateCache, b.dateCache);
+            }
+            return res != 0 ? res : a.mot.compareTo(b.mot);
+        }
+    };
+
     /**
      * Constructeur unique, il est nécessaire de préciser le délais de
      * péremption (en heures).
@@ -47,20 +201,39 @@ public class Cache extends HashMap<String, CacheInfo> {
      * @param tailleMax Nombre maximum d'entrées
      */
     protected Cache(int peremption, int tailleMax) {
-        super(tailleMax * (4 / 3));
+        this.table = new ConcurrentHashMap<>(tailleMax, 0.75f);
+        this.lecture = Collections.unmodifiableMap(table);
         this.peremption = peremption;
-        this.diponiblesID = new LinkedList<>();
+        this.tailleMax = tailleMax;
         //Par défaut, tout est disponible
-        for (int i = 0; i < tailleMax; ++i) {
-            this.diponiblesID.add(i);
-        }
-        this.prisID = new LinkedList<>();
+        this.prisID = new BitSet(tailleMax);
+        this.reserves = new BitSet();
+    }
+
+    /**
+     * Construit un cache vide dont la table est dimensionnée pour un nombre
+     * d'entrées connu à l'avance (chargement d'un index sauvegardé). Les IDs
+     * sont calculés ensuite par {@link Cache#reconstruireID()}.
+     *
+     * @param peremption Délais de péremption, en jour
+     * @param tailleMax Nombre maximum d'entrées
+     * @param entrees Nombre d'entrées attendues
+     */
+    private Cache(int peremption, int tailleMax, long entrees) {
+        this.table = new ConcurrentHashMap<>((int) entrees, 0.75f);
+        this.lecture = Collections.unmodifiableMap(table);
+        this.peremption = peremption;
+        this.tailleMax = tailleMax;
+        this.prisID = new BitSet(tailleMax);
+        this.reserves = new BitSet();
     }
 
     /**
      * Chargement d'un Cache à partir d'un fichier existant créé lors d'une
      * précédente session. Attention, lors de la réduction de la taille du
-     * cache, seuls les X premiers éléments
+     * cache, seuls les X premiers éléments sont conservés. Le fichier peut être
+     * au format binaire (voir {@link Cache#sauvegarderCache(Cache, String)}) ou
+     * dans l'ancien format texte, remplacé lors de la prochaine sauvegarde.
      *
      * @param fichier Chemin vers le fichier "indexCache" de la session
      * précédente.
@@ -74,13 +247,52 @@ public class Cache extends HashMap<String, CacheInfo> {
      * @throws ParseException
      */
     protected static Cache chargerCache(String fichier, int peremption, int tailleMax, String chemin_cache) throws IOException, ParseException {
+        ByteBuffer contenu = lireFichier(fichier);
+        if (contenu.remaining() < TAILLE_EN_TETE || contenu.getInt(0) != MAGIE) {
+            return chargerCacheTexte(fichier, peremption, tailleMax, chemin_cache);
+        }
+        try {
+            contenu.getInt();
+            byte version = contenu.get();
+            if (version != VERSION) {
+                throw new IOException("Version de l'index du cache inconnue : " + version);
+            }
+            int n = contenu.getInt();
+            Cache cache = new Cache(peremption, tailleMax, (long) Math.min(n, tailleMax));
+            for (int i = 0; i < n; ++i) {
+                String mot = FormatBinaire.lireChaine(contenu);
+                int id = FormatBinaire.lireVarint(contenu);
+                long dateCache = contenu.getLong();
+                int occurrences = FormatBinaire.lireVarint(contenu);
+                long dateOccurrences = contenu.getLong();
+                int taille = FormatBinaire.lireVarint(contenu);
+                int peremptionEntree = FormatBinaire.lireVarint(contenu) - 1;
+                long empreinte = contenu.getLong();
+                if (id < tailleMax) {
+                    cache.put(mot, new CacheInfo(id, dateCache, occurrences, dateOccurrences, taille, peremptionEntree, empreinte));
+                } else {
+                    //La taille du cache a été réduite : il faut supprimer l'entrée
+                    supprimerFichier(chemin_cache, id);
+                }
+            }
+            cache.reconstruireID();
+            return cache;
+        } catch (BufferUnderflowException | IllegalArgumentException ex) {
+            throw new IOException("Index du cache tronque ou corrompu : " + fichier, ex);
+        }
+    }
+
+    /**
+     * Chargement d'un Cache à partir d'un fichier dans l'ancien format texte
+     * (une ligne par entrée, dates au format "dd-MM-yyyy hh:mm:ss aaa").
+     */
+    private static Cache chargerCacheTexte(String fichier, int peremption, int tailleMax, String chemin_cache) throws IOException, ParseException {
         Cache cache = new Cache(peremption, tailleMax);
         try (BufferedReader reader = new BufferedReader(new FileReader(fichier))) {
             String line;
             String[] tokens;
             SimpleDateFormat df = new SimpleDateFormat("dd-MM-yyyy hh:mm:ss aaa");
             int id;
-            File fichier_a_supprimer;
             //première ligne : les IDs déjà pris (dans la nouvelle limite)
             if ((line = reader.readLine()) != null) {
                 if (!line.equals("")) {
@@ -89,16 +301,8 @@ public class Cache extends HashMap<String, CacheInfo> {
                         if (id < tailleMax) {
                             cache.rendreIndisponible(id);
                         } else {
-                            //La taille du cache a été réduite : il faut supprimer l'entrée                        
-                            fichier_a_supprimer = new File(chemin_cache + File.separator + CacheInfo.construireChemin(id));
-                            if (fichier_a_supprimer.exists()) {
-                                fichier_a_supprimer.delete();
-                                //Suppression du dossier s'il est vide
-                                fichier_a_supprimer = fichier_a_supprimer.getParentFile();
-                                if (fichier_a_supprimer.list().length == 0) {
-                                    fichier_a_supprimer.delete();
-                                }
-                            }
+                            //La taille du cache a été réduite : il faut supprimer l'entrée
+                            supprimerFichier(chemin_cache, id);
                         }
                     }
                 }
@@ -111,9 +315,9 @@ public class Cache extends HashMap<String, CacheInfo> {
                         cache.put(
                                 tokens[0],
                                 new CacheInfo(id,
-                                        df.parse(tokens[2]),
+                                        df.parse(tokens[2]).getTime(),
                                         Integer.parseInt(tokens[3]),
-                                        df.parse(tokens[4]))
+                                        df.parse(tokens[4]).getTime())
                         );
                     }
                 }
@@ -123,34 +327,113 @@ public class Cache extends HashMap<String, CacheInfo> {
     }
 
     /**
-     * Sauvegarde dans un fichier l'index du cache.
+     * Sauvegarde dans un fichier l'index du cache, au format binaire : nombre
+     * magique ("RZIC"), version, nombre d'entrées (afin de dimensionner la
+     * table au chargement) puis, pour chaque entrée, le mot (taille puis
+     * UTF-8), l'ID, la date d'entrée dans le cache, le nombre d'occurrences,
+     * la date de dernière occurrence (dates en millisecondes sur 8 octets), la
+     * taille de l'entrée dans le stockage, son délais de péremption propre
+     * (plus un, 0 pour celui du cache) et l'empreinte de son contenu (8
+     * octets). Appelée sous le verrou des index (ou avant la première
+     * requête) : le nombre d'entrées écrit en tête est celui des entrées
+     * parcourues ensuite.
      *
      * @param cache Index de cache.
      * @param fichier Chemin du fichier à écrire.
      * @throws IOException
      */
     protected static void sauvegarderCache(Cache cache, String fichier) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fichier + "_tmp"))) {
-            //première ligne : les IDs déjà pris
-            for (Integer i : cache.prisID) {
-                writer.write("" + i + ";");
-            }
-            writer.newLine();
+        try (OutputStream sortie = new FileOutputStream(fichier + "_tmp")) {
+            FormatBinaire.Tampon tampon = new FormatBinaire.Tampon(TAILLE_MORCEAU + 64);
+            tampon.ecrireInt(MAGIE);
+            tampon.ecrireOctet(VERSION);
+            tampon.ecrireInt(cache.size());
             for (Entry<String, CacheInfo> entry : cache.entrySet()) {
-                writer.write(entry.getKey() + ";" + entry.getValue().toString());
-                writer.newLine();
-            }
-            File file = new File(fichier);
-            if (file.exists()) {
-                file.delete();
+                CacheInfo info = entry.getValue();
+                tampon.ecrireChaine(entry.getKey());
+                tampon.ecrireVarint(info.getID());
+                tampon.ecrireLong(info.getDateCache());
+                tampon.ecrireVarint(info.getOccurrences());
+                tampon.ecrireLong(info.getDateOccurrences());
+                tampon.ecrireVarint(info.getTaille());
+                tampon.ecrireVarint(info.getPeremption() + 1);
+                tampon.ecrireLong(info.getEmpreinte());
+                if (tampon.taille() >= TAILLE_MORCEAU) {
+                    tampon.transferer(sortie);
+                }
             }
+            tampon.transferer(sortie);
         }
+        remplacer(fichier);
+    }
+
+    /**
+     * Remplace un fichier d'index par sa nouvelle version (suffixe "_tmp").
+     *
+     * @param fichier Chemin du fichier d'index.
+     */
+    static void remplacer(String fichier) {
         File _old = new File(fichier + "_tmp");
         File _new = new File(fichier);
-        _old.renameTo(_new);
+        try {
+            //Remplacement atomique : un autre processus partageant le dossier
+            //lit l'ancien ou le nouvel index, jamais un index absent
+            Files.move(_old.toPath(), _new.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            if (_new.exists()) {
+                _new.delete();
+            }
+            _old.renameTo(_new);
+        }
         _new.setReadOnly();
     }
 
+    /**
+     * Lit complètement un fichier d'index, en une lecture séquentielle.
+     *
+     * @param fichier Chemin du fichier.
+     * @return Le contenu du fichier.
+     * @throws IOException
+     */
+    static ByteBuffer lireFichier(String fichier) throws IOException {
+        try (FileChannel canal = FileChannel.open(new File(fichier).toPath(), StandardOpenOption.READ)) {
+            ByteBuffer contenu = ByteBuffer.allocate((int) canal.size());
+            while (contenu.hasRemaining() && canal.read(contenu) >= 0) {
+            }
+            contenu.flip();
+            return contenu;
+        }
+    }
+
+    /**
+     * Capacité d'une table devant contenir un nombre d'entrées donné sans être
+     * redimensionnée.
+     *
+     * @param entrees Nombre d'entrées attendues.
+     * @return La capacité initiale de la table.
+     */
+    static int capacite(long entrees) {
+        return (int) Math.min(Integer.MAX_VALUE >> 1, entrees * 4 / 3 + 1);
+    }
+
+    /**
+     * Supprime le fichier d'une entrée dont l'ID dépasse la nouvelle taille du
+     * cache.
+     */
+    private static void supprimerFichier(String chemin_cache, int id) {
+        File fichier_a_supprimer = new File(chemin_cache + File.separator + CacheInfo.construireChemin(id));
+        if (fichier_a_supprimer.exists()) {
+            fichier_a_supprimer.delete();
+            //Suppression du dossier s'il est vide (au chargement : aucune
+            //entrée n'y est en cours d'écriture dans ce processus)
+            fichier_a_supprimer = fichier_a_supprimer.getParentFile();
+            String[] contenu = fichier_a_supprimer.list();
+            if (contenu != null && contenu.length == 0) {
+                fichier_a_supprimer.delete();
+            }
+        }
+    }
+
     /**
      * Indique si un mot a passé, ou non, sa date de péremption.
      *
@@ -159,7 +442,70 @@ public class Cache extends HashMap<String, CacheInfo> {
      * le délais de péremption. False sinon.
      */
     protected boolean estPerime(String mot) {
-        return RequeterRezo.perime(this.get(mot).getDateCache(), peremption);
+        CacheInfo info = this.get(mot);
+        return info != null && info.expiration <= horloge.getAsLong();
+    }
+
+    /**
+     * Retourne le délais de péremption d'un mot dont l'entrée n'a pas de
+     * délais propre : celui de son type de relation s'il en a un, le délais
+     * du cache sinon.
+     *
+     * @param mot Clé de l'entrée (voir {@link Forme#cle(String)}).
+     * @return Le délais de péremption, en heures.
+     */
+    protected int peremption(String mot) {
+        if (peremptionsTypes.isEmpty()) {
+            return peremption;
+        }
+        Integer res = peremptionsTypes.get(Forme.typeRelation(mot));
+        return res != null ? res : peremption;
+    }
+
+    /**
+     * Retourne la date courante selon l'horloge de l'index.
+     *
+     * @return La date courante, en millisecondes.
+     */
+    protected long maintenant() {
+        return horloge.getAsLong();
+    }
+
+    /**
+     * Fixe l'horloge des dates de l'index et range à nouveau les entrées dans
+     * une roue des péremptions partant de sa date courante. Appelée sous le
+     * verrou des index.
+     *
+     * @param horloge Horloge des dates, en millisecondes.
+     */
+    protected void horloge(LongSupplier horloge) {
+        this.horloge = horloge;
+        this.roue = new RoueTemporelle(horloge.getAsLong());
+        for (CacheInfo info : table.values()) {
+            roue.ajouter(info);
+        }
+    }
+
+    /**
+     * Fixe les délais de péremption propres à certains types de relations et
+     * range à nouveau les entrées concernées. Appelée sous le verrou des
+     * index.
+     *
+     * @param peremptions Délais de péremption (en heures) par identifiant de
+     * type de relation.
+     */
+    protected void peremptionsTypes(Map<Integer, Integer> peremptions) {
+        this.peremptionsTypes = peremptions;
+        if (peremptions.isEmpty()) {
+            return;
+        }
+        for (Entry<String, CacheInfo> entree : entrySet()) {
+            CacheInfo info = entree.getValue();
+            if (info.peremption < 0 && Forme.typeRelation(entree.getKey()) != Forme.TOUTES) {
+                retirer(entree.getKey(), info);
+                indexer(info);
+            }
+        }
     }
 
     /**
@@ -170,9 +516,152 @@ public class Cache extends HashMap<String, CacheInfo> {
      * sa mise en cache (dans une fenêtre définié par le délais de péremption).
      */
     protected void ajouter(String mot, int occurrences) {
-        int prochainID = this.diponiblesID.remove();
-        this.put(mot, new CacheInfo(prochainID, occurrences));
-        this.prisID.add(prochainID);
+        ajouter(mot, occurrences, 0);
+    }
+
+    /**
+     * Ajoute un mot à l'index.
+     *
+     * @param mot Mot à ajouter.
+     * @param occurrences Nombre d'occurrences (de requêtes) du mot dans avant
+     * sa mise en cache.
+     * @param taille Taille de l'entrée dans le stockage, en octets.
+     */
+    protected void ajouter(String mot, int occurrences, int taille) {
+        ajouter(mot, occurrences, taille, -1, 0);
+    }
+
+    /**
+     * Ajoute un mot à l'index, avec un délais de péremption propre.
+     *
+     * @param mot Mot à ajouter.
+     * @param occurrences Nombre d'occurrences (de requêtes) du mot dans avant
+     * sa mise en cache.
+     * @param taille Taille de l'entrée dans le stockage, en octets.
+     * @param peremption Délais de péremption de l'entrée, en heures (-1 pour
+     * celui du cache).
+     * @param empreinte Empreinte du contenu de l'entrée.
+     */
+    protected void ajouter(String mot, int occurrences, int taille, int peremption, long empreinte) {
+        int prochainID = this.prisID.nextClearBit(premierLibre);
+        if (prochainID >= tailleMax) {
+            throw new NoSuchElementException("Aucun ID disponible");
+        }
+        premierLibre = prochainID + 1;
+        long maintenant = horloge.getAsLong();
+        CacheInfo info = new CacheInfo(prochainID, maintenant, occurrences, maintenant, taille, peremption, empreinte);
+        this.put(mot, info);
+        this.prisID.set(prochainID);
+        //Un journal partagé n'annonce l'entrée qu'une fois écrite (voir
+        //Cache#publier(String))
+        if (journal != null && !journal.estPartage()) {
+            journal.cache(mot, info);
+        }
+    }
+
+    /**
+     * Enregistre dans un journal partagé l'entrée d'un mot ajouté par
+     * {@link Cache#ajouter(String, int, int)}, une fois l'entrée écrite dans le
+     * stockage : les autres processus peuvent alors la lire.
+     *
+     * @param mot Mot ajouté.
+     */
+    protected void publier(String mot) {
+        CacheInfo info = this.get(mot);
+        if (info != null && journal != null && journal.estPartage()) {
+            journal.cache(mot, info);
+        }
+    }
+
+    /**
+     * Applique l'état d'un mot enregistré par un autre processus dans le
+     * journal partagé (entrée ajoutée ou mise à jour). Si l'ID de l'entrée
+     * était réservé par ce processus (entrée supprimée de l'index mais pas
+     * encore du stockage), il n'est plus libéré par
+     * {@link Cache#libererID(int)}.
+     *
+     * @param mot Mot concerné.
+     * @param info Etat du mot.
+     */
+    protected void appliquer(String mot, CacheInfo info) {
+        CacheInfo ancien = this.get(mot);
+        if (ancien != null && ancien.ID == info.ID) {
+            retirer(mot, ancien);
+            ancien.dateCache = info.dateCache;
+            ancien.occurrences = info.occurrences;
+            ancien.dateOccurrences = info.dateOccurrences;
+            ancien.taille = info.taille;
+            ancien.peremption = info.peremption;
+            ancien.empreinte = info.empreinte;
+            indexer(ancien);
+            return;
+        }
+        if (ancien != null && !reserves.get(ancien.ID)) {
+            this.prisID.clear(ancien.ID);
+            premierLibre = Math.min(premierLibre, ancien.ID);
+        }
+        reserves.clear(info.ID);
+        this.prisID.set(info.ID);
+        this.put(mot, info);
+    }
+
+    /**
+     * Applique la suppression d'une entrée enregistrée par un autre processus
+     * dans le journal partagé. L'entrée est effacée du stockage par ce
+     * processus : son ID est libéré immédiatement.
+     *
+     * @param mot Mot concerné.
+     * @param id ID de l'entrée supprimée (-1 pour supprimer le mot quel que
+     * soit son ID).
+     * @return True si le mot a été supprimé de l'index.
+     */
+    protected boolean appliquerSuppression(String mot, int id) {
+        CacheInfo info = this.get(mot);
+        if (info == null || (id >= 0 && info.ID != id)) {
+            return false;
+        }
+        this.remove(mot);
+        if (!reserves.get(info.ID)) {
+            this.prisID.clear(info.ID);
+            premierLibre = Math.min(premierLibre, info.ID);
+        }
+        return true;
+    }
+
+    /**
+     * Remplace le contenu de l'index par celui d'un index chargé depuis le
+     * dernier point de reprise (journal partagé dont des enregistrements ont
+     * été manqués).
+     *
+     * @param source Index chargé.
+     */
+    protected void recharger(Cache source) {
+        this.clear();
+        for (Entry<String, CacheInfo> entree : source.entrySet()) {
+            this.put(entree.getKey(), entree.getValue());
+        }
+        reconstruireID();
+    }
+
+    /**
+     * Incrémente le nombre d'occurrences d'un mot présent dans l'index.
+     *
+     * @param mot Mot rencontré.
+     */
+    protected void incrementer(String mot) {
+        CacheInfo info = this.get(mot);
+        parOccurrences.remove(info);
+        if (parRentabilite != null) {
+            parRentabilite.remove(info);
+        }
+        info.incrementeOccurrences(horloge.getAsLong());
+        parOccurrences.add(info);
+        if (parRentabilite != null) {
+            parRentabilite.add(info);
+        }
+        if (journal != null) {
+            journal.cache(mot, info);
+        }
     }
 
     /**
@@ -181,12 +670,235 @@ public class Cache extends HashMap<String, CacheInfo> {
      * @param mot Mot à supprimer.
      */
     protected void supprimer(String mot) {
-        if (this.containsKey(mot)) {
-            int id = this.get(mot).ID;
-            this.diponiblesID.add(id);
-            this.prisID.remove(id);
-            this.remove(mot);
+        CacheInfo info = detacher(mot);
+        if (info != null) {
+            libererID(info.ID);
+        }
+    }
+
+    /**
+     * Supprime un mot de l'index sans rendre disponible son ID : l'ID reste
+     * réservé jusqu'à l'appel de {@link Cache#libererID(int)}, une fois
+     * l'entrée effacée du stockage (afin qu'une nouvelle entrée ne puisse pas
+     * recevoir cet ID avant).
+     *
+     * @param mot Mot à supprimer.
+     * @return Les informations du mot supprimé, ou null s'il n'était pas dans
+     * l'index.
+     */
+    protected CacheInfo detacher(String mot) {
+        CacheInfo info = this.remove(mot);
+        if (info != null) {
+            reserves.set(info.ID);
+            if (journal != null) {
+                journal.cacheSuppression(mot, info.ID);
+            }
+        }
+        return info;
+    }
+
+    /**
+     * Indique si un ID est disponible pour une nouvelle entrée.
+     *
+     * @return True si {@link Cache#ajouter(String, int, int)} peut attribuer
+     * un ID.
+     */
+    protected boolean idDisponible() {
+        return this.prisID.nextClearBit(premierLibre) < tailleMax;
+    }
+
+    /**
+     * Informations d'un mot présent dans l'index.
+     *
+     * @param mot Mot recherché.
+     * @return Les informations du mot, ou null s'il n'est pas dans l'index.
+     */
+    public CacheInfo get(Object mot) {
+        return table.get(mot);
+    }
+
+    /**
+     * Indique si un mot est présent dans l'index.
+     *
+     * @param mot Mot recherché.
+     * @return True si le mot est dans l'index.
+     */
+    public boolean containsKey(Object mot) {
+        return table.containsKey(mot);
+    }
+
+    /**
+     * @return Le nombre d'entrées de l'index.
+     */
+    public int size() {
+        return table.size();
+    }
+
+    /**
+     * @return True si l'index ne contient aucune entrée.
+     */
+    public boolean isEmpty() {
+        return table.isEmpty();
+    }
+
+    /**
+     * @return Les mots de l'index (vue en lecture seule).
+     */
+    public Set<String> keySet() {
+        return lecture.keySet();
+    }
+
+    /**
+     * @return Les informations des entrées de l'index (vue en lecture seule).
+     */
+    public Collection<CacheInfo> values() {
+        return lecture.values();
+    }
+
+    /**
+     * @return Les entrées de l'index (vue en lecture seule).
+     */
+    public Set<Entry<String, CacheInfo>> entrySet() {
+        return lecture.entrySet();
+    }
+
+    /**
+     * Ajoute (ou remplace) une entrée et tient à jour les ensembles ordonnés,
+     * mais pas les IDs pris (voir {@link Cache#reconstruireID()}).
+     *
+     * @param mot Mot de l'entrée.
+     * @param info Informations de l'entrée.
+     * @return Les informations remplacées, ou null si le mot n'était pas dans
+     * l'index.
+     */
+    protected CacheInfo put(String mot, CacheInfo info) {
+        CacheInfo ancien = table.put(mot, info);
+        if (ancien != null) {
+            retirer(mot, ancien);
+        } else if (politique != null) {
+            politique.ajout(mot);
+        }
+        info.mot = mot;
+        indexer(info);
+        return ancien;
+    }
+
+    /**
+     * Retire une entrée et tient à jour les ensembles ordonnés, mais pas les
+     * IDs pris (voir {@link Cache#reconstruireID()}).
+     *
+     * @param mot Mot à retirer.
+     * @return Les informations retirées, ou null si le mot n'était pas dans
+     * l'index.
+     */
+    protected CacheInfo remove(Object mot) {
+        CacheInfo ancien = table.remove(mot);
+        if (ancien != null) {
+            retirer((String) mot, ancien);
+            if (politique != null) {
+                politique.retrait((String) mot);
+            }
+        }
+        return ancien;
+    }
+
+    /**
+     * Vide l'index et les ensembles ordonnés.
+     */
+    protected void clear() {
+        if (politique != null) {
+            for (String mot : keySet()) {
+                politique.retrait(mot);
+            }
+        }
+        table.clear();
+        parOccurrences.clear();
+        roue.vider();
+        parRentabilite = null;
+        octets = 0;
+    }
+
+    private void indexer(CacheInfo info) {
+        parOccurrences.add(info);
+        info.expiration = RequeterRezo.expiration(info.dateCache,
+                info.peremption >= 0 ? info.peremption : peremption(info.mot));
+        roue.ajouter(info);
+        if (parRentabilite != null) {
+            parRentabilite.add(info);
+        }
+        octets += info.getTaille();
+    }
+
+    private void retirer(String mot, CacheInfo info) {
+        parOccurrences.remove(info);
+        roue.retirer(info);
+        if (parRentabilite != null) {
+            parRentabilite.remove(info);
+        }
+        octets -= info.getTaille();
+    }
+
+    /**
+     * Retourne le mot périmé depuis le plus longtemps, après avoir avancé la
+     * roue des péremptions jusqu'à la date courante (à la minute près).
+     *
+     * @return Le mot périmé, ou null si aucun mot n'est périmé.
+     */
+    protected String premierPerime() {
+        roue.avancer(horloge.getAsLong());
+        CacheInfo info = roue.premierePerimee();
+        return info == null ? null : info.mot;
+    }
+
+    /**
+     * Retourne le mot le moins courant du cache (le plus ancien en cas
+     * d'égalité).
+     *
+     * @return Le mot le moins courant, ou null si le cache est vide.
+     */
+    protected String moinsCourant() {
+        return parOccurrences.isEmpty() ? null : parOccurrences.first().mot;
+    }
+
+    /**
+     * Met à jour la taille de l'entrée d'un mot présent dans l'index (entrée
+     * réécrite dans le stockage).
+     *
+     * @param mot Mot concerné.
+     * @param taille Nouvelle taille de l'entrée, en octets.
+     */
+    protected void redimensionner(String mot, int taille) {
+        CacheInfo info = this.get(mot);
+        retirer(mot, info);
+        info.taille = taille;
+        indexer(info);
+        if (journal != null) {
+            journal.cache(mot, info);
+        }
+    }
+
+    /**
+     * Retourne le mot dont la suppression libère le plus de place au regard
+     * de son nombre d'occurrences.
+     *
+     * @return Le mot le moins rentable, ou null si le cache est vide.
+     */
+    protected String moinsRentable() {
+        if (parRentabilite == null) {
+            parRentabilite = new TreeSet<>(PAR_RENTABILITE);
+            parRentabilite.addAll(parOccurrences);
         }
+        return parRentabilite.isEmpty() ? null : parRentabilite.first().mot;
+    }
+
+    /**
+     * Retourne la taille totale des entrées dans le stockage.
+     *
+     * @return La taille totale des entrées, en octets (les entrées de taille
+     * inconnue ne sont pas comptées).
+     */
+    protected long octets() {
+        return octets;
     }
 
     /**
@@ -196,7 +908,34 @@ public class Cache extends HashMap<String, CacheInfo> {
      * @param id
      */
     private void rendreIndisponible(int id) {
-        this.diponiblesID.remove(id);
-        this.prisID.add(id);
+        this.prisID.set(id);
+    }
+
+    /**
+     * Rend disponible l'ID d'une entrée supprimée par
+     * {@link Cache#detacher(String)} (sauf si un autre processus l'a attribué
+     * entre-temps, voir {@link Cache#appliquer(String, CacheInfo)}).
+     *
+     * @param id
+     */
+    protected void libererID(int id) {
+        if (reserves.get(id)) {
+            reserves.clear(id);
+            this.prisID.clear(id);
+            premierLibre = Math.min(premierLibre, id);
+        }
+    }
+
+    /**
+     * Recalcule les IDs disponibles et pris à partir des entrées. Utilisé
+     * après avoir rejoué le journal (voir {@link Journal}).
+     */
+    protected void reconstruireID() {
+        this.prisID.clear();
+        this.reserves.clear();
+        for (CacheInfo info : this.values()) {
+            this.prisID.set(info.getID());
+        }
+        premierLibre = 0;
     }
 }
@@ -0,0 +1,347 @@
+package requeterRezo;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Cache des entrées sérialisées (voir {@link FormatBinaire}) hors du tas Java,
+ * entre le cache des mots décodés ({@link CacheMemoire}) et le cache sur
+ * disque. Les entrées sont copiées dans des blocs alloués par
+ * {@link ByteBuffer#allocateDirect(int)} : le ramasse-miettes ne parcourt
+ * qu'un petit objet par entrée au lieu du graphe complet d'un {@link Mot}. Les
+ * entrées sont décodées à chaque lecture : l'entrée est copiée sous le verrou,
+ * puis décodée hors du verrou, afin que les lectures concurrentes ne
+ * s'attendent pas.
+ *
+ * L'allocation se fait par classes de taille (puissances de deux de 256 octets
+ * à 1 Mo), comme dans memcached : chaque bloc de 1 Mo est découpé en cases
+ * d'une même classe, et une entrée occupe une case de la plus petite classe
+ * suffisante. Lorsque la taille maximale est atteinte et qu'aucune case de la
+ * classe n'est libre, une entrée de la même classe est retirée selon
+ * l'algorithme CLOCK (voir {@link CacheMemoire}). Une classe n'ayant encore
+ * aucun bloc reprend le bloc le moins utilisé d'une autre classe, dont les
+ * entrées sont retirées.
+ */
+public class CacheHorsTas {
+
+    /**
+     * Taille d'un bloc, en octets (1 Mo).
+     */
+    protected static final int TAILLE_BLOC = 1 << 20;
+
+    /**
+     * Taille des cases de la plus petite classe, en octets.
+     */
+    protected static final int TAILLE_CASE_MIN = 256;
+
+    /**
+     * Emplacement d'une entrée.
+     */
+    private static final class Emplacement {
+
+        private final String nom;
+        private final Classe classe;
+        private final int numero;
+        private final int taille;
+        private boolean reference;
+
+        private Emplacement(String nom, Classe classe, int numero, int taille) {
+            this.nom = nom;
+            this.classe = classe;
+            this.numero = numero;
+            this.taille = taille;
+        }
+    }
+
+    /**
+     * Classe de taille : blocs découpés en cases de même taille.
+     */
+    private static final class Classe {
+
+        private final int tailleCase;
+        private final int casesParBloc;
+
+        /**
+         * Blocs de la classe (null pour un bloc repris par une autre classe,
+         * dont les cases ne sont plus utilisables).
+         */
+        private final ArrayList<ByteBuffer> blocs = new ArrayList<>();
+        private int blocsActifs;
+
+        /**
+         * Occupant de chaque case (null si la case est libre).
+         */
+        private final ArrayList<Emplacement> occupants = new ArrayList<>();
+
+        private final ArrayList<Integer> libres = new ArrayList<>();
+        private int aiguille;
+
+        private Classe(int tailleCase) {
+            this.tailleCase = tailleCase;
+            this.casesParBloc = TAILLE_BLOC / tailleCase;
+        }
+
+        /**
+         * Vue sur une case, limitée à une taille donnée.
+         */
+        private ByteBuffer vue(int numero, int taille) {
+            ByteBuffer vue = blocs.get(numero / casesParBloc).duplicate();
+            int debut = (numero % casesParBloc) * tailleCase;
+            vue.limit(debut + taille);
+            vue.position(debut);
+            return vue;
+        }
+    }
+
+    private final HashMap<String, Emplacement> table = new HashMap<>();
+    private final Classe[] classes;
+    private final long octetsMax;
+    private long octetsAlloues;
+
+    /**
+     * Construit un cache vide. Les blocs sont alloués au fur et à mesure.
+     *
+     * @param octetsMax Taille maximale des blocs alloués, en octets (0 pour
+     * désactiver le cache). Une taille inférieure à un bloc est arrondie à un
+     * bloc.
+     */
+    protected CacheHorsTas(long octetsMax) {
+        this.octetsMax = octetsMax > 0 ? Math.max(octetsMax, TAILLE_BLOC) : 0;
+        int n = Integer.numberOfTrailingZeros(TAILLE_BLOC / TAILLE_CASE_MIN) + 1;
+        this.classes = new Classe[n];
+        for (int i = 0; i < n; ++i) {
+            classes[i] = new Classe(TAILLE_CASE_MIN << i);
+        }
+    }
+
+    /**
+     * Retourne un mot présent dans le cache, décodé depuis son bloc.
+     *
+     * @param nom Mot recherché.
+     * @return Le mot décodé, ou null s'il n'est pas dans le cache.
+     */
+    protected Mot lire(String nom) {
+        byte[] copie;
+        synchronized (this) {
+            Emplacement emplacement = table.get(nom);
+            if (emplacement == null) {
+                return null;
+            }
+            emplacement.reference = true;
+            copie = new byte[emplacement.taille];
+            emplacement.classe.vue(emplacement.numero, emplacement.taille).get(copie);
+        }
+        return FormatBinaire.decoder(ByteBuffer.wrap(copie));
+    }
+
+    /**
+     * Retourne la taille sérialisée d'une entrée.
+     *
+     * @param nom Mot recherché.
+     * @return La taille de l'entrée, en octets (0 si elle n'est pas dans le
+     * cache).
+     */
+    protected synchronized int tailleEntree(String nom) {
+        Emplacement emplacement = table.get(nom);
+        return emplacement == null ? 0 : emplacement.taille;
+    }
+
+    /**
+     * Ajoute (ou remplace) une entrée sérialisée dans le cache.
+     *
+     * @param nom Mot concerné.
+     * @param donnees Entrée sérialisée non compressée, de sa position à sa
+     * limite (la position n'est pas modifiée).
+     */
+    protected synchronized void ajouter(String nom, ByteBuffer donnees) {
+        if (octetsMax <= 0) {
+            return;
+        }
+        retirer(nom);
+        int taille = donnees.remaining();
+        Classe classe = classe(taille);
+        if (classe == null) {
+            return;
+        }
+        int numero = allouer(classe);
+        if (numero < 0) {
+            return;
+        }
+        classe.vue(numero, taille).put(donnees.duplicate());
+        Emplacement emplacement = new Emplacement(nom, classe, numero, taille);
+        classe.occupants.set(numero, emplacement);
+        table.put(nom, emplacement);
+    }
+
+    /**
+     * Retire une entrée du cache.
+     *
+     * @param nom Mot à retirer.
+     */
+    protected synchronized void retirer(String nom) {
+        Emplacement emplacement = table.remove(nom);
+        if (emplacement != null) {
+            liberer(emplacement);
+        }
+    }
+
+    /**
+     * Retire toutes les entrées (les blocs restent alloués).
+     */
+    protected synchronized void vider() {
+        for (Emplacement emplacement : new ArrayList<>(table.values())) {
+            retirer(emplacement.nom);
+        }
+    }
+
+    /**
+     * Retourne le nombre d'entrées dans le cache.
+     *
+     * @return Le nombre d'entrées.
+     */
+    protected synchronized int taille() {
+        return table.size();
+    }
+
+    /**
+     * Retourne la taille des blocs alloués.
+     *
+     * @return La taille des blocs alloués, en octets.
+     */
+    protected synchronized long octets() {
+        return octetsAlloues;
+    }
+
+    private Classe classe(int taille) {
+        for (Classe classe : classes) {
+            if (taille <= classe.tailleCase) {
+                return classe;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Trouve une case libre dans une classe : case libérée, nouveau bloc si la
+     * taille maximale le permet, bloc repris à une autre classe si la classe
+     * n'a aucun bloc, sinon case d'une entrée retirée.
+     *
+     * @return Le numéro de la case, ou -1 si aucun bloc n'est disponible.
+     */
+    private int allouer(Classe classe) {
+        if (!classe.libres.isEmpty()) {
+            return classe.libres.remove(classe.libres.size() - 1);
+        }
+        if (octetsAlloues + TAILLE_BLOC <= octetsMax) {
+            octetsAlloues += TAILLE_BLOC;
+            return ajouterBloc(classe, ByteBuffer.allocateDirect(TAILLE_BLOC));
+        }
+        if (classe.blocsActifs == 0) {
+            ByteBuffer bloc = reprendreBloc(classe);
+            return bloc == null ? -1 : ajouterBloc(classe, bloc);
+        }
+        //CLOCK : la première entrée non référencée est retirée
+        while (true) {
+            Emplacement emplacement = classe.occupants.get(classe.aiguille);
+            classe.aiguille = (classe.aiguille + 1) % classe.occupants.size();
+            if (emplacement != null) {
+                if (emplacement.reference) {
+                    emplacement.reference = false;
+                } else {
+                    table.remove(emplacement.nom);
+                    classe.occupants.set(emplacement.numero, null);
+                    return emplacement.numero;
+                }
+            }
+        }
+    }
+
+    /**
+     * Ajoute un bloc à une classe (à la place d'un bloc repris s'il y en a
+     * un) et rend ses cases libres, sauf la première.
+     *
+     * @return Le numéro de la première case du bloc.
+     */
+    private int ajouterBloc(Classe classe, ByteBuffer bloc) {
+        int indice = classe.blocs.indexOf(null);
+        if (indice < 0) {
+            indice = classe.blocs.size();
+            classe.blocs.add(bloc);
+            for (int i = 0; i < classe.casesParBloc; ++i) {
+                classe.occupants.add(null);
+            }
+        } else {
+            classe.blocs.set(indice, bloc);
+        }
+        ++classe.blocsActifs;
+        int premier = indice * classe.casesParBloc;
+        for (int i = classe.casesParBloc - 1; i > 0; --i) {
+            classe.libres.add(premier + i);
+        }
+        return premier;
+    }
+
+    /**
+     * Reprend à une autre classe son bloc le moins utilisé : celui dont le
+     * moins d'entrées ont été lues depuis le dernier passage de l'aiguille,
+     * puis celui qui a le moins d'entrées. Les entrées du bloc sont retirées.
+     *
+     * @param demandeuse Classe à laquelle le bloc est destiné.
+     * @return Le bloc repris, ou null si aucune autre classe n'a de bloc.
+     */
+    private ByteBuffer reprendreBloc(Classe demandeuse) {
+        Classe victime = null;
+        int indiceVictime = -1;
+        long meilleur = Long.MAX_VALUE;
+        for (Classe classe : classes) {
+            if (classe == demandeuse) {
+                continue;
+            }
+            for (int b = 0; b < classe.blocs.size(); ++b) {
+                if (classe.blocs.get(b) == null) {
+                    continue;
+                }
+                int references = 0;
+                int occupes = 0;
+                for (int i = b * classe.casesParBloc; i < (b + 1) * classe.casesParBloc; ++i) {
+                    Emplacement emplacement = classe.occupants.get(i);
+                    if (emplacement != null) {
+                        ++occupes;
+                        if (emplacement.reference) {
+                            ++references;
+                        }
+                    }
+                }
+                long usage = ((long) references << 32) | occupes;
+                if (usage < meilleur) {
+                    meilleur = usage;
+                    victime = classe;
+                    indiceVictime = b;
+                }
+            }
+        }
+        if (victime == null) {
+            return null;
+        }
+        final int parBloc = victime.casesParBloc;
+        final int b = indiceVictime;
+        for (int i = b * parBloc; i < (b + 1) * parBloc; ++i) {
+            Emplacement emplacement = victime.occupants.get(i);
+            if (emplacement != null) {
+                table.remove(emplacement.nom);
+                victime.occupants.set(i, null);
+            }
+        }
+        victime.libres.removeIf(numero -> numero / parBloc == b);
+        ByteBuffer bloc = victime.blocs.set(b, null);
+        --victime.blocsActifs;
+        bloc.clear();
+        return bloc;
+    }
+
+    private void liberer(Emplacement emplacement) {
+        emplacement.classe.occupants.set(emplacement.numero, null);
+        emplacement.classe.libres.add(emplacement.numero);
+    }
+}
@@ -21,9 +21,10 @@ public class CacheInfo {
     protected final int ID;
 
     /**
-     * Date de l'entrée dans le cache.
+     * Date de l'entrée dans le cache (en millisecondes depuis le 1er janvier
+     * 1970).
      */
-    protected Date dateCache;
+    protected long dateCache;
 
     /**
      * Nombre de fois où le terme à été rencontré.
@@ -31,9 +32,50 @@ public class CacheInfo {
     protected int occurrences;
 
     /**
-     * Date de la dernière rencontre du terme.
+     * Date de la dernière rencontre du terme (en millisecondes depuis le 1er
+     * janvier 1970).
      */
-    protected Date dateOccurrences;
+    protected long dateOccurrences;
+
+    /**
+     * Taille de l'entrée dans le stockage, en octets (0 si elle est inconnue,
+     * pour les entrées antérieures au suivi des tailles).
+     */
+    protected int taille;
+
+    /**
+     * Mot associé à l'entrée (renseigné par {@link Cache#put(String, CacheInfo)},
+     * afin de ranger les entrées sans copie).
+     */
+    protected String mot;
+
+    /**
+     * Date de péremption de l'entrée (en millisecondes depuis le 1er janvier
+     * 1970), calculée par {@link Cache} lorsqu'il range l'entrée.
+     */
+    protected long expiration;
+
+    /**
+     * Délais de péremption propre à l'entrée, en heures (-1 pour le délais de
+     * péremption du cache, voir {@link Cache#peremption(String)}). Adapté à
+     * chaque remise en cache selon que le contenu a changé ou non (voir
+     * {@link Configuration#peremptionAdaptative(String, String)}).
+     */
+    protected int peremption = -1;
+
+    /**
+     * Empreinte du contenu de l'entrée (0 si elle est inconnue), comparée à
+     * celle du nouveau contenu lors de la remise en cache.
+     */
+    protected long empreinte;
+
+    /**
+     * Case de la roue des péremptions contenant l'entrée (-1 si aucune) et
+     * entrées voisines dans cette case (voir {@link RoueTemporelle}).
+     */
+    int fenteRoue = -1;
+    CacheInfo precedentRoue;
+    CacheInfo suivantRoue;
 
     /**
      * Construit le chemin à partir de l'id. Exemple : id = 378 alors chemin
@@ -54,10 +96,12 @@ public class CacheInfo {
     /**
      * Incrémente le nombre d'occurrence et met à jour la date de la dernière
      * occurrence.
+     *
+     * @param maintenant Date courante, en millisecondes.
      */
-    protected void incrementeOccurrences() {
+    protected void incrementeOccurrences(long maintenant) {
         ++occurrences;
-        dateOccurrences = new Date();
+        dateOccurrences = maintenant;
     }
 
     /**
@@ -67,7 +111,7 @@ public class CacheInfo {
      * @param ID Identifiant du mot.
      */
     protected CacheInfo(int ID) {
-        this(ID, new Date(), 1, new Date());
+        this(ID, 1, Horloge.maintenant());
     }
 
     /**
@@ -77,7 +121,7 @@ public class CacheInfo {
      * @param occurrences Nombre d'occurences.
      */
     protected CacheInfo(int ID, int occurrences) {
-        this(ID, new Date(), occurrences, new Date());
+        this(ID, occurrences, Horloge.maintenant());
     }
 
     /**
@@ -88,8 +132,8 @@ public class CacheInfo {
      * @param occurrences Nombre d'occurrences.
      * @param dateOccurrences Date de la dernière occurrence.
      */
-    protected CacheInfo(int ID, int occurrences, Date dateOccurrences) {
-        this(ID, new Date(), occurrences, dateOccurrences);
+    protected CacheInfo(int ID, int occurrences, long dateOccurrences) {
+        this(ID, Horloge.maintenant(), occurrences, dateOccurrences);
     }
 
     /**
@@ -101,11 +145,46 @@ public class CacheInfo {
      * @param occurrences Nombre d'occurrences.
      * @param dateOccurrences Date de la dernière occurrence.
      */
-    protected CacheInfo(int ID, Date dateCache, int occurrences, Date dateOccurrences) {
+    protected CacheInfo(int ID, long dateCache, int occurrences, long dateOccurrences) {
+        this(ID, dateCache, occurrences, dateOccurrences, 0);
+    }
+
+    /**
+     * Constructeur à partir de l'ID, des dates, du nombre d'occurrences et de
+     * la taille de l'entrée (délais de péremption du cache).
+     *
+     * @param ID Identifiant du mot.
+     * @param dateCache Date d'entrée dans le cache.
+     * @param occurrences Nombre d'occurrences.
+     * @param dateOccurrences Date de la dernière occurrence.
+     * @param taille Taille de l'entrée dans le stockage, en octets.
+     */
+    protected CacheInfo(int ID, long dateCache, int occurrences, long dateOccurrences, int taille) {
+        this(ID, dateCache, occurrences, dateOccurrences, taille, -1, 0);
+    }
+
+    /**
+     * Constructeur complet.
+     *
+     * @param ID Identifiant du mot.
+     * @param dateCache Date d'entrée dans le cache.
+     * @param occurrences Nombre d'occurrences.
+     * @param dateOccurrences Date de la dernière occurrence.
+     * @param taille Taille de l'entrée dans le stockage, en octets.
+     * @param peremption Délais de péremption de l'entrée, en heures (-1 pour
+     * celui du cache).
+     * @param empreinte Empreinte du contenu de l'entrée (0 si elle est
+     * inconnue).
+     */
+    protected CacheInfo(int ID, long dateCache, int occurrences, long dateOccurrences, int taille,
+            int peremption, long empreinte) {
         this.ID = ID;
         this.dateCache = dateCache;
         this.occurrences = occurrences;
         this.dateOccurrences = dateOccurrences;
+        this.taille = taille;
+        this.peremption = peremption;
+        this.empreinte = empreinte;
     }
 
     /**
@@ -122,7 +201,7 @@ public class CacheInfo {
      *
      * @return Retourne la date d'entrée dans le cache.
      */
-    protected Date getDateCache() {
+    protected long getDateCache() {
         return dateCache;
     }
 
@@ -140,10 +219,37 @@ public class CacheInfo {
      *
      * @return Retourne la date de la dernière occurrence.
      */
-    protected Date getDateOccurrences() {
+    protected long getDateOccurrences() {
         return dateOccurrences;
     }
 
+    /**
+     * Retourne la taille de l'entrée dans le stockage.
+     *
+     * @return La taille de l'entrée, en octets (0 si elle est inconnue).
+     */
+    protected int getTaille() {
+        return taille;
+    }
+
+    /**
+     * Retourne le délais de péremption propre à l'entrée.
+     *
+     * @return Le délais de péremption, en heures (-1 pour celui du cache).
+     */
+    protected int getPeremption() {
+        return peremption;
+    }
+
+    /**
+     * Retourne l'empreinte du contenu de l'entrée.
+     *
+     * @return L'empreinte (0 si elle est inconnue).
+     */
+    protected long getEmpreinte() {
+        return empreinte;
+    }
+
     /**
      * Retourne une chaîne de caractères sous le format "id;date d'entrée dans
      * le cache;nombre d'occurences;date de dernière consultation dans le cache"
@@ -153,7 +259,7 @@ public class CacheInfo {
     @Override
     public String toString() {
         SimpleDateFormat df = new SimpleDateFormat("dd-MM-yyyy hh:mm:ss aaa");
-        return ID + ";" + df.format(dateCache) + ";" + occurrences + ";" + df.format(dateOccurrences);
+        return ID + ";" + df.format(new Date(dateCache)) + ";" + occurrences + ";" + df.format(new Date(dateOccurrences));
     }
 
 }
@@ -0,0 +1,184 @@
+package requeterRezo;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache en mémoire des mots décodés, placé devant le cache sur disque : les
+ * mots les plus demandés sont servis sans lecture ni décodage. Le cache est
+ * borné en nombre d'entrées et en taille estimée (en octets).
+ *
+ * L'éviction suit l'algorithme CLOCK : chaque entrée occupe une case d'un
+ * anneau et porte un bit de référence, positionné à chaque lecture. Pour faire
+ * de la place, l'aiguille parcourt l'anneau, efface les bits positionnés et
+ * retire la première entrée dont le bit est effacé. Les lectures ne prennent
+ * aucun verrou (seul le bit de référence est écrit) ; les ajouts et retraits
+ * sont synchronisés.
+ *
+ * Les mots gardés en mémoire ne sont jamais exposés : un mot est copié à
+ * l'ajout et chaque lecture en rend une copie (voir {@link Mot#copier()}),
+ * que l'appelant peut modifier sans altérer le cache.
+ */
+public class CacheMemoire {
+
+    /**
+     * Rapport estimé entre la taille d'un mot décodé en mémoire et la taille
+     * de son entrée encodée (voir {@link FormatBinaire}).
+     */
+    protected static final int FACTEUR_TAILLE = 4;
+
+    private static final class Element {
+
+        private final String nom;
+        private final Mot mot;
+        private final long taille;
+        private final int position;
+        private volatile boolean reference;
+
+        private Element(String nom, Mot mot, long taille, int position) {
+            this.nom = nom;
+            this.mot = mot;
+            this.taille = taille;
+            this.position = position;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Element> table;
+    private final Element[] anneau;
+    private final ArrayDeque<Integer> libres;
+    private final long octetsMax;
+    private long octets;
+    private int aiguille;
+
+    /**
+     * Construit un cache vide.
+     *
+     * @param entreesMax Nombre maximum d'entrées (0 pour désactiver le
+     * cache).
+     * @param octetsMax Taille maximale estimée des entrées, en octets.
+     */
+    protected CacheMemoire(int entreesMax, long octetsMax) {
+        entreesMax = Math.max(0, entreesMax);
+        this.table = new ConcurrentHashMap<>(Cache.capacite(entreesMax));
+        this.anneau = new Element[entreesMax];
+        this.libres = new ArrayDeque<>(entreesMax);
+        for (int i = 0; i < entreesMax; ++i) {
+            libres.add(i);
+        }
+        this.octetsMax = octetsMax;
+    }
+
+    /**
+     * Retourne un mot présent en mémoire.
+     *
+     * @param nom Mot recherché.
+     * @return Une copie du mot, ou null s'il n'est pas en mémoire.
+     */
+    protected Mot lire(String nom) {
+        Element element = table.get(nom);
+        if (element == null) {
+            return null;
+        }
+        if (!element.reference) {
+            element.reference = true;
+        }
+        return element.mot.copier();
+    }
+
+    /**
+     * Ajoute (ou remplace) un mot en mémoire, en retirant si nécessaire les
+     * entrées les moins récemment lues.
+     *
+     * @param nom Mot à ajouter.
+     * @param mot Mot décodé (copié : l'appelant reste libre de le modifier).
+     * @param tailleEncodee Taille de l'entrée encodée, en octets.
+     */
+    protected void ajouter(String nom, Mot mot, int tailleEncodee) {
+        if (anneau.length == 0 || mot == null) {
+            return;
+        }
+        long taille = (long) tailleEncodee * FACTEUR_TAILLE;
+        if (taille > octetsMax) {
+            retirer(nom);
+            return;
+        }
+        inserer(nom, mot.copier(), taille);
+    }
+
+    private synchronized void inserer(String nom, Mot mot, long taille) {
+        retirer(nom);
+        while (octets + taille > octetsMax || libres.isEmpty()) {
+            evincer();
+        }
+        Element element = new Element(nom, mot, taille, libres.poll());
+        anneau[element.position] = element;
+        table.put(nom, element);
+        octets += taille;
+    }
+
+    /**
+     * Retire un mot de la mémoire (lorsque son entrée sur disque est
+     * remplacée ou supprimée).
+     *
+     * @param nom Mot à retirer.
+     */
+    protected synchronized void retirer(String nom) {
+        Element element = table.remove(nom);
+        if (element != null) {
+            liberer(element);
+        }
+    }
+
+    /**
+     * Retire tous les mots de la mémoire.
+     */
+    protected synchronized void vider() {
+        for (Element element : table.values()) {
+            liberer(element);
+        }
+        table.clear();
+    }
+
+    /**
+     * Retourne le nombre de mots en mémoire.
+     *
+     * @return Le nombre de mots en mémoire.
+     */
+    protected int taille() {
+        return table.size();
+    }
+
+    /**
+     * Retourne la taille estimée des mots en mémoire.
+     *
+     * @return La taille estimée, en octets.
+     */
+    protected synchronized long octets() {
+        return octets;
+    }
+
+    private void liberer(Element element) {
+        anneau[element.position] = null;
+        libres.add(element.position);
+        octets -= element.taille;
+    }
+
+    /**
+     * Avance l'aiguille jusqu'à une entrée non référencée et la retire.
+     */
+    private void evincer() {
+        while (true) {
+            Element element = anneau[aiguille];
+            aiguille = (aiguille + 1) % anneau.length;
+            if (element != null) {
+                if (element.reference) {
+                    element.reference = false;
+                } else {
+                    table.remove(element.nom);
+                    liberer(element);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package requeterRezo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.function.LongSupplier;
+
+/**
+ * Mots absents de rezoJDM (page annonçant un terme inexistant), gardés dans
+ * des filtres de Bloom (voir {@link FiltreBloom}) afin de ne pas redemander au
+ * réseau un mot inexistant (faute de frappe, mot hors du vocabulaire). Un mot existant
+ * peut être pris pour un mot absent avec la probabilité de faux positifs
+ * choisie (voir {@link Configuration#motsAbsents(String, int, double)}).
+ *
+ * Les filtres ne permettant pas de retirer un mot, la péremption se fait par
+ * générations : le temps est découpé en périodes d'une demi-péremption, chaque
+ * période a son filtre et seuls ceux de la période courante et de la
+ * précédente sont consultés. Un mot reste donc connu comme absent entre une
+ * demi-péremption et une péremption après son ajout. Les périodes sont
+ * calées sur l'horloge : plusieurs processus partageant le dossier du cache
+ * ont les mêmes générations, fusionnées lors de la sauvegarde.
+ */
+public class CacheNegatif {
+
+    /**
+     * Nombre magique ("RZNA") en tête des fichiers de mots absents.
+     */
+    protected static final int MAGIE = 0x525A4E41;
+
+    /**
+     * Version du format des fichiers de mots absents.
+     */
+    protected static final byte VERSION = 1;
+
+    /**
+     * Filtre des mots absents ajoutés pendant une période.
+     */
+    private static final class Generation {
+
+        private final long numero;
+        private final FiltreBloom filtre;
+
+        private Generation(long numero, FiltreBloom filtre) {
+            this.numero = numero;
+            this.filtre = filtre;
+        }
+    }
+
+    /**
+     * Durée d'une génération, en millisecondes.
+     */
+    private final long periode;
+
+    /**
+     * Nombre de mots prévus par génération.
+     */
+    private final int capacite;
+
+    private final double tauxFauxPositifs;
+
+    private final LongSupplier horloge;
+
+    private volatile Generation courante;
+
+    /**
+     * Génération précédant la courante (null si elle est vide ou périmée).
+     */
+    private volatile Generation precedente;
+
+    /**
+     * Construit un ensemble vide de mots absents.
+     *
+     * @param peremption Délais de péremption, en heures.
+     * @param capacite Nombre de mots absents prévus par demi-péremption.
+     * @param tauxFauxPositifs Probabilité qu'un mot soit pris à tort pour un
+     * mot absent, une fois la capacité atteinte.
+     */
+    protected CacheNegatif(int peremption, int capacite, double tauxFauxPositifs) {
+        this(peremption, capacite, tauxFauxPositifs, Horloge::maintenant);
+    }
+
+    /**
+     * Construit un ensemble vide de mots absents dont les générations suivent
+     * une horloge donnée (voir {@link Configuration#horloge(LongSupplier)}).
+     *
+     * @param peremption Délais de péremption, en heures.
+     * @param capacite Nombre de mots absents prévus par demi-péremption.
+     * @param tauxFauxPositifs Probabilité qu'un mot soit pris à tort pour un
+     * mot absent, une fois la capacité atteinte.
+     * @param horloge Date courante, en millisecondes.
+     */
+    protected CacheNegatif(int peremption, int capacite, double tauxFauxPositifs, LongSupplier horloge) {
+        this.horloge = horloge;
+        this.periode = Math.max(1, peremption * 3_600_000L / 2);
+        this.capacite = capacite;
+        this.tauxFauxPositifs = tauxFauxPositifs;
+        this.courante = new Generation(numero(), new FiltreBloom(capacite, tauxFauxPositifs));
+    }
+
+    /**
+     * Indique si un mot est connu comme absent de rezoJDM.
+     *
+     * @param mot Mot de la requête.
+     * @return True si le mot a été trouvé absent depuis moins de la
+     * péremption (ou en cas de faux positif).
+     */
+    protected boolean contient(String mot) {
+        long numero = numero();
+        Generation generation = courante;
+        if (generation.numero >= numero - 1 && generation.filtre.contient(mot)) {
+            return true;
+        }
+        generation = precedente;
+        return generation != null && generation.numero >= numero - 1 && generation.filtre.contient(mot);
+    }
+
+    /**
+     * Enregistre un mot absent de rezoJDM.
+     *
+     * @param mot Mot absent.
+     */
+    protected void ajouter(String mot) {
+        courante().filtre.ajouter(mot);
+    }
+
+    /**
+     * Oublie tous les mots absents.
+     */
+    protected synchronized void vider() {
+        precedente = null;
+        courante = new Generation(numero(), new FiltreBloom(capacite, tauxFauxPositifs));
+    }
+
+    /**
+     * Ajoute les mots absents d'un fichier écrit par
+     * {@link #sauvegarder(String)} (par cette instance, une session précédente
+     * ou un autre processus). Les générations périmées et celles dont les
+     * dimensions ne correspondent pas à la configuration sont ignorées.
+     *
+     * @param chemin Chemin du fichier (ignoré s'il n'existe pas).
+     * @throws IOException
+     */
+    protected synchronized void charger(String chemin) throws IOException {
+        if (!new File(chemin).exists()) {
+            return;
+        }
+        ByteBuffer contenu = Cache.lireFichier(chemin);
+        try {
+            if (contenu.getInt() != MAGIE) {
+                throw new IOException("Fichier des mots absents invalide : " + chemin);
+            }
+            byte version = contenu.get();
+            if (version != VERSION) {
+                throw new IOException("Version du fichier des mots absents inconnue : " + version);
+            }
+            int n = FormatBinaire.lireVarint(contenu);
+            for (int i = 0; i < n; ++i) {
+                long numero = FormatBinaire.lireVarlong(contenu);
+                FiltreBloom filtre = FiltreBloom.lire(contenu);
+                Generation generation = courante();
+                if (numero == generation.numero - 1 && precedente == null) {
+                    precedente = new Generation(numero, new FiltreBloom(capacite, tauxFauxPositifs));
+                }
+                if (numero != generation.numero) {
+                    generation = precedente;
+                }
+                if (generation != null && generation.numero == numero && generation.filtre.compatible(filtre)) {
+                    generation.filtre.fusionner(filtre);
+                }
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException ex) {
+            throw new IOException("Fichier des mots absents tronque ou corrompu : " + chemin, ex);
+        }
+    }
+
+    /**
+     * Sauvegarde les générations en cours : nombre magique ("RZNA"), version,
+     * nombre de générations puis, pour chacune, son numéro et son filtre (voir
+     * {@link FiltreBloom#ecrire(OutputStream)}). Les mots absents déjà
+     * présents dans le fichier (ajoutés par un autre processus partageant le
+     * dossier) sont conservés ; lorsque le dossier est partagé, la sauvegarde
+     * doit être faite sous le verrou du journal.
+     *
+     * @param chemin Chemin du fichier à écrire.
+     * @throws IOException
+     */
+    protected synchronized void sauvegarder(String chemin) throws IOException {
+        try {
+            charger(chemin);
+        } catch (IOException ex) {
+            //Fichier illisible : il est remplacé
+        }
+        Generation generation = courante();
+        Generation anterieure = precedente;
+        boolean deux = anterieure != null && anterieure.numero == generation.numero - 1;
+        try (OutputStream sortie = new FileOutputStream(chemin + "_tmp")) {
+            FormatBinaire.Tampon tampon = new FormatBinaire.Tampon(16);
+            tampon.ecrireInt(MAGIE);
+            tampon.ecrireOctet(VERSION);
+            tampon.ecrireVarint(deux ? 2 : 1);
+            if (deux) {
+                tampon.ecrireVarlong(anterieure.numero);
+                tampon.transferer(sortie);
+                anterieure.filtre.ecrire(sortie);
+            }
+            tampon.ecrireVarlong(generation.numero);
+            tampon.transferer(sortie);
+            generation.filtre.ecrire(sortie);
+        }
+        Cache.remplacer(chemin);
+    }
+
+    /**
+     * Retourne la génération courante, après en avoir commencé une nouvelle si
+     * la période est écoulée.
+     */
+    private Generation courante() {
+        long numero = numero();
+        Generation generation = courante;
+        if (generation.numero < numero) {
+            synchronized (this) {
+                generation = courante;
+                if (generation.numero < numero) {
+                    precedente = generation.numero == numero - 1 ? generation : null;
+                    generation = new Generation(numero, new FiltreBloom(capacite, tauxFauxPositifs));
+                    courante = generation;
+                }
+            }
+        }
+        return generation;
+    }
+
+    private long numero() {
+        return horloge.getAsLong() / periode;
+    }
+}
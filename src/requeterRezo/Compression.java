@@ -0,0 +1,377 @@
+package requeterRezo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression des entrées du cache par Deflate avec un dictionnaire partagé.
+ * Les entrées d'un même cache se ressemblent beaucoup (noms des relations,
+ * voisins fréquents, format des annotations) : un dictionnaire appris sur un
+ * échantillon du cache permet de compresser efficacement même les petites
+ * entrées.
+ *
+ * Une entrée compressée garde l'en-tête du {@link FormatBinaire} (nombre
+ * magique, version, drapeaux avec {@link FormatBinaire#DRAPEAU_COMPRESSE}, nom
+ * du mot) suivi de l'identifiant du dictionnaire (4 octets, 0 si aucun), de la
+ * taille du corps décompressé (varint) et du corps compressé (Deflate brut).
+ *
+ * Les dictionnaires sont conservés dans le dossier "dictionnaires" du cache,
+ * un fichier par identifiant, afin que les entrées restent lisibles après un
+ * changement de dictionnaire. Un dictionnaire inconnu (appris par un autre
+ * processus partageant le dossier du cache) est chargé à sa première
+ * utilisation.
+ */
+public class Compression {
+
+    /**
+     * Taille maximale d'un dictionnaire (fenêtre de Deflate).
+     */
+    protected static final int TAILLE_DICTIONNAIRE = 32 * 1024;
+
+    /**
+     * Taille des fragments d'échantillon candidats au dictionnaire.
+     */
+    private static final int TAILLE_FRAGMENT = 64;
+
+    /**
+     * Taille des n-grammes utilisés pour évaluer les fragments.
+     */
+    private static final int TAILLE_NGRAMME = 8;
+
+    private static final String EXTENSION = ".dict";
+
+    /**
+     * Dossier contenant les dictionnaires.
+     */
+    private final File dossier;
+
+    /**
+     * True si les nouvelles entrées doivent être compressées.
+     */
+    private final boolean active;
+
+    /**
+     * Dictionnaires connus, par identifiant (un dictionnaire est publié avant
+     * de devenir le dictionnaire courant).
+     */
+    private final ConcurrentHashMap<Integer, byte[]> dictionnaires = new ConcurrentHashMap<>();
+
+    /**
+     * Identifiant du dictionnaire utilisé pour les nouvelles entrées (0 si
+     * aucun).
+     */
+    private volatile int courant;
+
+    private final Statistiques statistiques;
+
+    private static final ThreadLocal<Deflater> DEFLATER = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+    };
+
+    private static final ThreadLocal<Inflater> INFLATER = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+    };
+
+    /**
+     * Charge les dictionnaires présents dans le dossier. Le plus récent est
+     * utilisé pour les nouvelles entrées.
+     *
+     * @param dossier Dossier contenant les dictionnaires.
+     * @param active True si les nouvelles entrées doivent être compressées.
+     * @param statistiques Statistiques où reporter le coût de la compression.
+     * @throws IOException
+     */
+    protected Compression(String dossier, boolean active, Statistiques statistiques) throws IOException {
+        this.dossier = new File(dossier);
+        this.active = active;
+        this.statistiques = statistiques;
+        File[] fichiers = this.dossier.listFiles();
+        long plusRecent = Long.MIN_VALUE;
+        if (fichiers != null) {
+            for (File fichier : fichiers) {
+                String nom = fichier.getName();
+                if (nom.endsWith(EXTENSION)) {
+                    int id = (int) Long.parseLong(nom.substring(0, nom.length() - EXTENSION.length()), 16);
+                    dictionnaires.put(id, Files.readAllBytes(fichier.toPath()));
+                    if (fichier.lastModified() > plusRecent) {
+                        plusRecent = fichier.lastModified();
+                        courant = id;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Indique si les nouvelles entrées sont compressées.
+     *
+     * @return True si les nouvelles entrées sont compressées.
+     */
+    protected boolean estActive() {
+        return active;
+    }
+
+    /**
+     * Indique si un dictionnaire est disponible pour les nouvelles entrées.
+     *
+     * @return True si un dictionnaire a été appris.
+     */
+    protected boolean aUnDictionnaire() {
+        return courant != 0;
+    }
+
+    /**
+     * Compresse une entrée si la compression est active (sinon l'entrée est
+     * retournée telle quelle).
+     *
+     * @param entree Entrée produite par {@link FormatBinaire#encoder(Mot)}.
+     * @return L'entrée compressée.
+     */
+    protected byte[] compresser(byte[] entree) {
+        if (!active) {
+            return entree;
+        }
+        long debut = System.nanoTime();
+        int debutCorps = FormatBinaire.debutCorps(ByteBuffer.wrap(entree));
+        int tailleCorps = entree.length - debutCorps;
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        int id = courant;
+        if (id != 0) {
+            deflater.setDictionary(dictionnaires.get(id));
+        }
+        deflater.setInput(entree, debutCorps, tailleCorps);
+        deflater.finish();
+        FormatBinaire.Tampon tampon = new FormatBinaire.Tampon(debutCorps + 9 + tailleCorps / 2);
+        tampon.ecrireOctets(entree, 0, debutCorps);
+        tampon.ecrireInt(id);
+        tampon.ecrireVarint(tailleCorps);
+        byte[] morceau = new byte[4096];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(morceau);
+            tampon.ecrireOctets(morceau, 0, n);
+        }
+        byte[] res = tampon.toByteArray();
+        res[FormatBinaire.TAILLE_EN_TETE - 1] |= FormatBinaire.DRAPEAU_COMPRESSE;
+        statistiques.compression(entree.length, res.length, System.nanoTime() - debut);
+        return res;
+    }
+
+    /**
+     * Décompresse une entrée (les entrées non compressées sont retournées
+     * telles quelles).
+     *
+     * @param entree Entrée lue dans le stockage.
+     * @return L'entrée prête à être décodée par
+     * {@link FormatBinaire#decoder(java.nio.ByteBuffer)}.
+     * @throws IOException Si le dictionnaire de l'entrée est inconnu ou si
+     * l'entrée est corrompue.
+     */
+    protected ByteBuffer decompresser(ByteBuffer entree) throws IOException {
+        if ((FormatBinaire.drapeaux(entree) & FormatBinaire.DRAPEAU_COMPRESSE) == 0) {
+            return entree;
+        }
+        long debut = System.nanoTime();
+        ByteBuffer lecture = entree.duplicate();
+        int debutCorps = FormatBinaire.debutCorps(lecture) - entree.position();
+        lecture.position(entree.position() + debutCorps);
+        int id = lecture.getInt();
+        int tailleCorps = FormatBinaire.lireVarint(lecture);
+        byte[] dictionnaire = id == 0 ? null : dictionnaire(id);
+        //Octet supplémentaire nécessaire à Inflater en mode brut
+        byte[] compresse = new byte[lecture.remaining() + 1];
+        lecture.get(compresse, 0, compresse.length - 1);
+        byte[] res = new byte[debutCorps + tailleCorps];
+        ByteBuffer enTete = entree.duplicate();
+        enTete.get(res, 0, debutCorps);
+        res[FormatBinaire.TAILLE_EN_TETE - 1] &= ~FormatBinaire.DRAPEAU_COMPRESSE;
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        if (dictionnaire != null) {
+            inflater.setDictionary(dictionnaire);
+        }
+        inflater.setInput(compresse);
+        try {
+            int position = debutCorps;
+            while (position < res.length) {
+                int n = inflater.inflate(res, position, res.length - position);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("Entree compressee tronquee.");
+                }
+                position += n;
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("Entree compressee corrompue.", ex);
+        }
+        statistiques.decompression(System.nanoTime() - debut);
+        return ByteBuffer.wrap(res);
+    }
+
+    /**
+     * Apprend un dictionnaire à partir d'un échantillon d'entrées, l'enregistre
+     * dans le dossier des dictionnaires et l'utilise pour les entrées
+     * suivantes.
+     *
+     * @param echantillon Entrées non compressées.
+     * @return L'identifiant du nouveau dictionnaire (0 si l'échantillon est
+     * vide).
+     * @throws IOException
+     */
+    protected synchronized int apprendre(List<byte[]> echantillon) throws IOException {
+        ArrayList<byte[]> corps = new ArrayList<>();
+        for (byte[] entree : echantillon) {
+            int debutCorps = FormatBinaire.debutCorps(ByteBuffer.wrap(entree));
+            corps.add(Arrays.copyOfRange(entree, debutCorps, entree.length));
+        }
+        byte[] dictionnaire = construireDictionnaire(corps, TAILLE_DICTIONNAIRE);
+        if (dictionnaire.length == 0) {
+            return 0;
+        }
+        Adler32 adler = new Adler32();
+        adler.update(dictionnaire);
+        int id = (int) adler.getValue();
+        if (id == 0) {
+            id = 1;
+        }
+        dossier.mkdirs();
+        //Ecriture atomique : un autre processus peut lire le dictionnaire dès
+        //qu'une entrée compressée avec lui est publiée
+        Path fichier = fichier(id).toPath();
+        Path temporaire = Files.createTempFile(dossier.toPath(), fichier.getFileName().toString(), ".tmp");
+        Files.write(temporaire, dictionnaire);
+        try {
+            Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING);
+        }
+        dictionnaires.put(id, dictionnaire);
+        courant = id;
+        return id;
+    }
+
+    /**
+     * Retourne un dictionnaire, chargé depuis le dossier s'il n'est pas encore
+     * connu.
+     *
+     * @param id Identifiant du dictionnaire.
+     * @return Le dictionnaire.
+     * @throws IOException Si le dictionnaire est introuvable.
+     */
+    private byte[] dictionnaire(int id) throws IOException {
+        byte[] res = dictionnaires.get(id);
+        if (res == null) {
+            try {
+                res = Files.readAllBytes(fichier(id).toPath());
+            } catch (NoSuchFileException ex) {
+                throw new IOException("Dictionnaire de compression inconnu : " + Integer.toHexString(id), ex);
+            }
+            dictionnaires.putIfAbsent(id, res);
+        }
+        return res;
+    }
+
+    private File fichier(int id) {
+        return new File(dossier, String.format("%08x", id) + EXTENSION);
+    }
+
+    /**
+     * Construit un dictionnaire à partir d'échantillons : chaque échantillon
+     * est découpé en fragments, chaque fragment est noté par la somme des
+     * fréquences (nombre d'échantillons où ils apparaissent) de ses n-grammes,
+     * et les meilleurs fragments sont retenus. Les plus utiles sont placés en
+     * fin de dictionnaire, là où Deflate les référence au moindre coût.
+     *
+     * @param echantillons Contenus représentatifs.
+     * @param tailleMax Taille maximale du dictionnaire.
+     * @return Le dictionnaire.
+     */
+    protected static byte[] construireDictionnaire(List<byte[]> echantillons, int tailleMax) {
+        HashMap<Long, Integer> frequences = new HashMap<>();
+        HashSet<Long> vus = new HashSet<>();
+        for (byte[] echantillon : echantillons) {
+            vus.clear();
+            for (int i = 0; i + TAILLE_NGRAMME <= echantillon.length; ++i) {
+                long ngramme = ngramme(echantillon, i);
+                if (vus.add(ngramme)) {
+                    Integer f = frequences.get(ngramme);
+                    frequences.put(ngramme, f == null ? 1 : f + 1);
+                }
+            }
+        }
+        //Notation des fragments
+        ArrayList<long[]> fragments = new ArrayList<>();
+        for (int e = 0; e < echantillons.size(); ++e) {
+            byte[] echantillon = echantillons.get(e);
+            for (int debut = 0; debut < echantillon.length; debut += TAILLE_FRAGMENT) {
+                int fin = Math.min(echantillon.length, debut + TAILLE_FRAGMENT);
+                long score = 0;
+                for (int i = debut; i + TAILLE_NGRAMME <= fin; ++i) {
+                    Integer f = frequences.get(ngramme(echantillon, i));
+                    //Un n-gramme présent dans un seul échantillon n'apporte rien
+                    if (f > 1) {
+                        score += f;
+                    }
+                }
+                if (score > 0) {
+                    fragments.add(new long[]{score, e, debut, fin});
+                }
+            }
+        }
+        Collections.sort(fragments, (a, b) -> Long.compare(b[0], a[0]));
+        //Sélection des meilleurs fragments, sans doublon
+        ArrayList<long[]> retenus = new ArrayList<>();
+        HashSet<Long> contenus = new HashSet<>();
+        int taille = 0;
+        for (long[] fragment : fragments) {
+            int longueur = (int) (fragment[3] - fragment[2]);
+            if (taille + longueur > tailleMax) {
+                continue;
+            }
+            byte[] echantillon = echantillons.get((int) fragment[1]);
+            long empreinte = Arrays.hashCode(Arrays.copyOfRange(echantillon, (int) fragment[2], (int) fragment[3]));
+            if (contenus.add(empreinte)) {
+                retenus.add(fragment);
+                taille += longueur;
+            }
+        }
+        byte[] dictionnaire = new byte[taille];
+        int position = taille;
+        for (long[] fragment : retenus) {
+            int longueur = (int) (fragment[3] - fragment[2]);
+            position -= longueur;
+            System.arraycopy(echantillons.get((int) fragment[1]), (int) fragment[2], dictionnaire, position, longueur);
+        }
+        return dictionnaire;
+    }
+
+    private static long ngramme(byte[] octets, int debut) {
+        long res = 0;
+        for (int i = 0; i < TAILLE_NGRAMME; ++i) {
+            res = (res << 8) | (octets[debut + i] & 0xFF);
+        }
+        return res;
+    }
+}
@@ -0,0 +1,377 @@
+package requeterRezo;
+
+import java.util.HashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Paramètres d'une instance de {@link RequeterRezo}. Toutes les valeurs ont un
+ * défaut, les méthodes peuvent être chaînées :
+ * <pre>
+ * new RequeterRezo(new Configuration().peremption("2j").tailleMax(5000));
+ * </pre>
+ */
+public class Configuration {
+
+    /**
+     * Délais de péremption (voir {@link RequeterRezo#RequeterRezo(String)}).
+     */
+    protected String peremption = RequeterRezo.PEREMPTION_DEFAUT;
+
+    /**
+     * Nombre maximum d'entrées dans le cache.
+     */
+    protected int tailleMax = RequeterRezo.TAILLE_MAX_DEFAUT;
+
+    /**
+     * Taille maximale des entrées du cache dans le stockage, en octets (0 pour
+     * ne pas limiter la taille).
+     */
+    protected long tailleOctets = 0;
+
+    /**
+     * Dossier contenant le cache.
+     */
+    protected String dossierCache = RequeterRezo.CHEMIN_CACHE;
+
+    /**
+     * True pour stocker les entrées dans des segments journalisés (voir
+     * {@link StockageSegments}), false pour un fichier par mot.
+     */
+    protected boolean stockageSegments = false;
+
+    /**
+     * True pour compresser les entrées du cache (voir {@link Compression}).
+     */
+    protected boolean compression = false;
+
+    /**
+     * True pour écrire les entrées en tâche de fond (voir
+     * {@link EcrivainDiffere}).
+     */
+    protected boolean ecritureDifferee = false;
+
+    /**
+     * Politique de synchronisation sur disque des écritures différées.
+     */
+    protected Synchronisation synchronisation = Synchronisation.ParLot;
+
+    /**
+     * Politique d'admission et d'éviction du cache.
+     */
+    protected Politique politique = Politique.Historique;
+
+    /**
+     * True pour remplacer l'index des mots en attente par une esquisse de
+     * taille fixe (voir {@link IndexProbabiliste}).
+     */
+    protected boolean indexProbabiliste = false;
+
+    /**
+     * Nombre maximum de mots décodés gardés en mémoire (0 pour ne pas garder
+     * de mots en mémoire, voir {@link CacheMemoire}).
+     */
+    protected int memoireEntrees = 0;
+
+    /**
+     * Taille maximale estimée des mots gardés en mémoire, en octets.
+     */
+    protected long memoireOctets = 64L << 20;
+
+    /**
+     * Taille maximale des entrées sérialisées gardées hors du tas, en octets
+     * (0 pour ne pas garder d'entrées hors du tas, voir {@link CacheHorsTas}).
+     */
+    protected long horsTasOctets = 0;
+
+    /**
+     * True lorsque le dossier du cache est partagé entre plusieurs processus
+     * (voir {@link Configuration#partage(boolean)}).
+     */
+    protected boolean partage = false;
+
+    /**
+     * Délais de péremption des mots absents de rezoJDM (null pour ne pas
+     * garder les mots absents, voir {@link CacheNegatif}).
+     */
+    protected String absentsPeremption = null;
+
+    /**
+     * Nombre de mots absents prévus par demi-péremption.
+     */
+    protected int absentsCapacite = 100_000;
+
+    /**
+     * Probabilité qu'un mot existant soit pris pour un mot absent.
+     */
+    protected double absentsFauxPositifs = 0.001;
+
+    /**
+     * Délais de péremption minimum et maximum d'une entrée dont la péremption
+     * s'adapte à la fréquence de ses changements (null pour une péremption
+     * fixe, voir {@link Configuration#peremptionAdaptative(String, String)}).
+     */
+    protected String peremptionMin = null;
+    protected String peremptionMax = null;
+
+    /**
+     * Délais de péremption propres à certains types de relations, par
+     * identifiant du type.
+     */
+    protected HashMap<Integer, String> peremptionsTypes = new HashMap<>();
+
+    /**
+     * Horloge des dates du cache (voir {@link Horloge}).
+     */
+    protected LongSupplier horloge = Horloge::maintenant;
+
+    /**
+     * Fixe le délais de péremption. Le format utilisé est le suivant : une
+     * valeur numérique suivi de la lettre 'j' pour indiquer un temps en jours ou
+     * 'h' pour un temps en heures.
+     *
+     * @param peremption Délais de péremption.
+     * @return Cette configuration.
+     */
+    public Configuration peremption(String peremption) {
+        this.peremption = peremption;
+        return this;
+    }
+
+    /**
+     * Fixe la taille maximale du cache (en nombre d'entrées).
+     *
+     * @param tailleMax Nombre maximum d'entrées.
+     * @return Cette configuration.
+     */
+    public Configuration tailleMax(int tailleMax) {
+        this.tailleMax = tailleMax;
+        return this;
+    }
+
+    /**
+     * Fixe la taille maximale des entrées du cache dans le stockage (en
+     * octets, après compression), en plus du nombre maximum d'entrées. Lorsque
+     * la taille est dépassée, les entrées supprimées sont celles qui ont le
+     * moins d'occurrences par octet occupé. La taille des mots gardés en
+     * mémoire est fixée par {@link Configuration#memoire(int, long)}.
+     *
+     * @param tailleOctets Taille maximale en octets (0 pour ne pas limiter la
+     * taille).
+     * @return Cette configuration.
+     */
+    public Configuration tailleOctets(long tailleOctets) {
+        this.tailleOctets = tailleOctets;
+        return this;
+    }
+
+    /**
+     * Fixe le dossier contenant le cache ("cache" par défaut, relatif au
+     * répertoire courant).
+     *
+     * @param dossierCache Chemin du dossier du cache.
+     * @return Cette configuration.
+     */
+    public Configuration dossierCache(String dossierCache) {
+        this.dossierCache = dossierCache;
+        return this;
+    }
+
+    /**
+     * Choisit le stockage des entrées : segments journalisés (un petit nombre
+     * de gros fichiers, compactés en tâche de fond) ou un fichier par mot.
+     *
+     * @param stockageSegments True pour utiliser les segments.
+     * @return Cette configuration.
+     */
+    public Configuration stockageSegments(boolean stockageSegments) {
+        this.stockageSegments = stockageSegments;
+        return this;
+    }
+
+    /**
+     * Active la compression des entrées du cache. Un dictionnaire partagé est
+     * appris sur les entrées les plus demandées dès que le cache en contient
+     * assez, ce qui rend la compression efficace même sur les petites
+     * entrées, au prix d'un peu de temps processeur à chaque écriture et
+     * lecture.
+     *
+     * @param compression True pour compresser les entrées.
+     * @return Cette configuration.
+     */
+    public Configuration compression(boolean compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    /**
+     * Active l'écriture différée : un mot entrant dans le cache est rendu
+     * immédiatement, son entrée étant écrite par lots en tâche de fond. Les
+     * entrées en attente sont écrites lors de {@link RequeterRezo#sauvegarder()}.
+     *
+     * @param ecritureDifferee True pour écrire en tâche de fond.
+     * @return Cette configuration.
+     */
+    public Configuration ecritureDifferee(boolean ecritureDifferee) {
+        this.ecritureDifferee = ecritureDifferee;
+        return this;
+    }
+
+    /**
+     * Fixe la politique de synchronisation sur disque des écritures différées
+     * ({@link Synchronisation#ParLot} par défaut).
+     *
+     * @param synchronisation Politique de synchronisation.
+     * @return Cette configuration.
+     */
+    public Configuration synchronisation(Synchronisation synchronisation) {
+        this.synchronisation = synchronisation;
+        return this;
+    }
+
+    /**
+     * Fixe la politique d'admission et d'éviction du cache
+     * ({@link Politique#Historique} par défaut).
+     *
+     * @param politique Politique du cache.
+     * @return Cette configuration.
+     */
+    public Configuration politique(Politique politique) {
+        this.politique = politique;
+        return this;
+    }
+
+    /**
+     * Remplace l'index des mots rencontrés mais pas mis en cache par une
+     * esquisse Count-Min de taille fixe (voir {@link IndexProbabiliste}). Un
+     * index exact existant est converti au démarrage ; la conversion inverse
+     * n'est pas possible (l'index repart vide).
+     *
+     * @param indexProbabiliste True pour l'index probabiliste.
+     * @return Cette configuration.
+     */
+    public Configuration indexProbabiliste(boolean indexProbabiliste) {
+        this.indexProbabiliste = indexProbabiliste;
+        return this;
+    }
+
+    /**
+     * Garde en mémoire les mots décodés les plus demandés (voir
+     * {@link CacheMemoire}). Les mots retournés sont alors partagés entre les
+     * requêtes et ne doivent pas être modifiés. Désactivé par défaut.
+     *
+     * @param entrees Nombre maximum de mots en mémoire (0 pour désactiver).
+     * @param octets Taille maximale estimée des mots en mémoire, en octets.
+     * @return Cette configuration.
+     */
+    public Configuration memoire(int entrees, long octets) {
+        this.memoireEntrees = entrees;
+        this.memoireOctets = octets;
+        return this;
+    }
+
+    /**
+     * Garde les entrées sérialisées des mots demandés hors du tas Java (voir
+     * {@link CacheHorsTas}), entre les mots gardés en mémoire et le disque.
+     * Les entrées sont décodées à chaque lecture. Désactivé par défaut.
+     *
+     * @param octets Taille maximale des blocs alloués hors du tas, en octets
+     * (0 pour désactiver, au moins un bloc de 1 Mo sinon).
+     * @return Cette configuration.
+     */
+    public Configuration horsTas(long octets) {
+        this.horsTasOctets = octets;
+        return this;
+    }
+
+    /**
+     * Partage le dossier du cache entre plusieurs processus d'une même
+     * machine : les modifications des index sont ajoutées au journal commun
+     * sous un verrou de fichier, et chaque processus prend en compte celles
+     * des autres à chaque requête (voir {@link Journal}). Un mot mis en cache
+     * par un processus est alors servi aux autres sans nouvelle requête sur le
+     * réseau. Tous les processus doivent utiliser la même configuration ; le
+     * stockage est un fichier par mot, sans écriture différée (les segments et
+     * l'écriture différée sont ignorés). Désactivé par défaut.
+     *
+     * @param partage True pour partager le dossier du cache.
+     * @return Cette configuration.
+     */
+    public Configuration partage(boolean partage) {
+        this.partage = partage;
+        return this;
+    }
+
+    /**
+     * Garde les mots absents de rezoJDM (page complète annonçant un terme
+     * inexistant) afin de ne pas les redemander au réseau avant leur
+     * péremption : les requêtes sur ces mots retournent null immédiatement.
+     * Une réponse coupée ou une page d'erreur ne rend pas un mot absent. Les mots absents sont gardés dans
+     * des filtres de Bloom (voir {@link CacheNegatif}), de taille fixe, au prix
+     * de faux positifs : un mot existant peut être pris pour un mot absent avec
+     * la probabilité choisie. Désactivé par défaut.
+     *
+     * @param peremption Délais de péremption des mots absents, au même format
+     * que {@link Configuration#peremption(String)} (null pour désactiver).
+     * @param capacite Nombre de mots absents prévus par demi-péremption.
+     * @param tauxFauxPositifs Probabilité de faux positif une fois la capacité
+     * atteinte (par exemple 0.001).
+     * @return Cette configuration.
+     */
+    public Configuration motsAbsents(String peremption, int capacite, double tauxFauxPositifs) {
+        this.absentsPeremption = peremption;
+        this.absentsCapacite = capacite;
+        this.absentsFauxPositifs = tauxFauxPositifs;
+        return this;
+    }
+
+    /**
+     * Adapte le délais de péremption de chaque entrée à la fréquence de ses
+     * changements : lorsqu'une entrée périmée est redemandée au réseau, son
+     * délais est doublé si son contenu n'a pas changé et divisé par deux sinon,
+     * sans sortir des bornes données. Une entrée commence avec le délais de
+     * péremption de la configuration (ou celui de son type de relation). Les
+     * mots qui changent rarement sont ainsi moins souvent redemandés, ceux qui
+     * changent souvent ne sont pas servis périmés trop longtemps. Désactivé
+     * par défaut.
+     *
+     * @param min Délais de péremption minimum, au même format que
+     * {@link Configuration#peremption(String)} (null pour désactiver).
+     * @param max Délais de péremption maximum, au même format.
+     * @return Cette configuration.
+     */
+    public Configuration peremptionAdaptative(String min, String max) {
+        this.peremptionMin = min;
+        this.peremptionMax = max;
+        return this;
+    }
+
+    /**
+     * Fixe le délais de péremption des requêtes portant sur un type de
+     * relation (voir {@link RequeterRezo#requete(String, int)}), à la place
+     * du délais de péremption général.
+     *
+     * @param typeRelation Identifiant du type de relation.
+     * @param peremption Délais de péremption, au même format que
+     * {@link Configuration#peremption(String)}.
+     * @return Cette configuration.
+     */
+    public Configuration peremption(int typeRelation, String peremption) {
+        this.peremptionsTypes.put(typeRelation, peremption);
+        return this;
+    }
+
+    /**
+     * Fixe l'horloge des dates du cache : mise en cache, occurrences,
+     * péremptions. Par défaut, l'horloge système avancée par l'horloge
+     * monotone (voir {@link Horloge}) ; une autre horloge permet notamment de
+     * simuler l'écoulement du temps (voir {@link Performances}).
+     *
+     * @param horloge Date courante, en millisecondes depuis le 1er janvier
+     * 1970.
+     * @return Cette configuration.
+     */
+    public Configuration horloge(LongSupplier horloge) {
+        this.horloge = horloge;
+        return this;
+    }
+}
@@ -0,0 +1,290 @@
+package requeterRezo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Ecriture différée des entrées du cache : les écritures et suppressions sont
+ * placées dans une file et appliquées par lots au {@link Stockage} sous-jacent
+ * par une tâche de fond. L'appelant n'attend donc plus le disque lorsqu'un mot
+ * entre dans le cache.
+ *
+ * Tant qu'une opération n'est pas appliquée, les lectures sont servies depuis
+ * la file. {@link EcrivainDiffere#synchroniser()} (appelée par
+ * {@link RequeterRezo#sauvegarder()}) attend que la file soit vide.
+ */
+public class EcrivainDiffere implements Stockage {
+
+    /**
+     * Nombre maximum d'opérations en attente. Au-delà, les écritures attendent
+     * que la tâche de fond ait rattrapé son retard.
+     */
+    protected static final int CAPACITE = 10_000;
+
+    /**
+     * Délais (en millisecondes) laissé aux opérations pour s'accumuler avant
+     * l'écriture d'un lot.
+     */
+    protected static final long DELAIS_LOT = 50;
+
+    /**
+     * Opération en attente. Une suppression n'a pas de données.
+     */
+    private static class Operation {
+
+        private final String mot;
+        private final int id;
+        private final byte[] donnees;
+
+        private Operation(String mot, int id, byte[] donnees) {
+            this.mot = mot;
+            this.id = id;
+            this.donnees = donnees;
+        }
+    }
+
+    /**
+     * Stockage sur lequel les opérations sont appliquées.
+     */
+    protected final Stockage stockage;
+
+    /**
+     * Politique de synchronisation sur disque.
+     */
+    protected final Synchronisation synchronisation;
+
+    /**
+     * Opérations en attente, dans l'ordre où elles ont été demandées.
+     */
+    private ArrayList<Operation> file = new ArrayList<>();
+
+    /**
+     * Dernière opération non encore appliquée (en attente ou en cours
+     * d'écriture) pour chaque mot.
+     */
+    private final HashMap<String, Operation> dernieres = new HashMap<>();
+
+    /**
+     * True pendant l'application d'un lot.
+     */
+    private boolean lotEnCours;
+
+    /**
+     * True lorsque la tâche de fond doit s'arrêter.
+     */
+    private boolean arret;
+
+    /**
+     * Nombre d'appelants attendant que la file soit vide.
+     */
+    private int vidages;
+
+    private final Thread ecrivain;
+
+    /**
+     * @param stockage Stockage sur lequel les opérations sont appliquées.
+     * @param synchronisation Politique de synchronisation sur disque.
+     */
+    protected EcrivainDiffere(Stockage stockage, Synchronisation synchronisation) {
+        this.stockage = stockage;
+        this.synchronisation = synchronisation;
+        this.ecrivain = new Thread(this::ecrire, "RequeterRezo-ecriture");
+        this.ecrivain.setDaemon(true);
+        this.ecrivain.start();
+    }
+
+    @Override
+    public void ecrire(String mot, int id, byte[] donnees) throws IOException {
+        ajouter(new Operation(mot, id, donnees));
+    }
+
+    @Override
+    public ByteBuffer lire(String mot, int id) throws IOException {
+        synchronized (this) {
+            Operation operation = dernieres.get(mot);
+            if (operation != null) {
+                return operation.donnees == null ? null : ByteBuffer.wrap(operation.donnees);
+            }
+        }
+        return stockage.lire(mot, id);
+    }
+
+    @Override
+    public boolean contient(String mot, int id) {
+        synchronized (this) {
+            Operation operation = dernieres.get(mot);
+            if (operation != null) {
+                return operation.donnees != null;
+            }
+        }
+        return stockage.contient(mot, id);
+    }
+
+    @Override
+    public void supprimer(String mot, int id) throws IOException {
+        ajouter(new Operation(mot, id, null));
+    }
+
+    @Override
+    public void nettoyer(Set<String> motsConnus) throws IOException {
+        vider();
+        stockage.nettoyer(motsConnus);
+    }
+
+    /**
+     * Attend que toutes les opérations en attente soient appliquées, puis
+     * force leur écriture sur disque (sauf avec
+     * {@link Synchronisation#Jamais}).
+     */
+    @Override
+    public void synchroniser() throws IOException {
+        vider();
+        if (synchronisation != Synchronisation.Jamais) {
+            stockage.synchroniser();
+        }
+    }
+
+    @Override
+    public void fermer() throws IOException {
+        vider();
+        synchronized (this) {
+            arret = true;
+            notifyAll();
+        }
+        try {
+            ecrivain.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        stockage.fermer();
+    }
+
+    /**
+     * Retourne le nombre d'opérations en attente.
+     *
+     * @return Le nombre d'opérations pas encore appliquées.
+     */
+    protected synchronized int enAttente() {
+        return file.size();
+    }
+
+    /**
+     * Place une opération dans la file (en attendant si la file est pleine).
+     */
+    private synchronized void ajouter(Operation operation) throws IOException {
+        while (file.size() >= CAPACITE && !arret) {
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Ecriture interrompue.", ex);
+            }
+        }
+        if (arret) {
+            throw new IOException("Stockage ferme.");
+        }
+        file.add(operation);
+        Operation precedente = dernieres.get(operation.mot);
+        //La suppression d'une ancienne version (autre ID) ne masque pas
+        //l'écriture en attente de la nouvelle
+        if (operation.donnees != null || precedente == null || operation.id < 0 || precedente.id == operation.id) {
+            dernieres.put(operation.mot, operation);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Attend que la file soit vide et qu'aucun lot ne soit en cours.
+     */
+    private synchronized void vider() throws IOException {
+        ++vidages;
+        try {
+            while ((!file.isEmpty() || lotEnCours) && ecrivain.isAlive()) {
+                notifyAll();
+                wait();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Attente des ecritures interrompue.", ex);
+        } finally {
+            --vidages;
+        }
+    }
+
+    /**
+     * Boucle de la tâche de fond : récupère les opérations en attente par lots
+     * et les applique au stockage.
+     */
+    private void ecrire() {
+        while (true) {
+            ArrayList<Operation> lot;
+            synchronized (this) {
+                while (file.isEmpty() && !arret) {
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                }
+                if (file.isEmpty()) {
+                    return;
+                }
+                //Laisse les opérations s'accumuler, sauf si quelqu'un attend
+                long fin = System.nanoTime() + DELAIS_LOT * 1_000_000;
+                long reste = DELAIS_LOT;
+                while (!arret && vidages == 0 && file.size() < CAPACITE / 2 && reste > 0) {
+                    try {
+                        wait(reste);
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    reste = (fin - System.nanoTime()) / 1_000_000;
+                }
+                lot = file;
+                file = new ArrayList<>();
+                lotEnCours = true;
+                notifyAll();
+            }
+            appliquer(lot);
+            synchronized (this) {
+                for (Operation operation : lot) {
+                    dernieres.remove(operation.mot, operation);
+                }
+                lotEnCours = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Applique un lot d'opérations au stockage, dans l'ordre.
+     */
+    private void appliquer(ArrayList<Operation> lot) {
+        for (Operation operation : lot) {
+            try {
+                if (operation.donnees == null) {
+                    stockage.supprimer(operation.mot, operation.id);
+                } else {
+                    stockage.ecrire(operation.mot, operation.id, operation.donnees);
+                    if (synchronisation == Synchronisation.ChaqueEcriture) {
+                        stockage.synchroniser();
+                    }
+                }
+            } catch (IOException ex) {
+                Logger.getLogger(EcrivainDiffere.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+        if (synchronisation == Synchronisation.ParLot) {
+            try {
+                stockage.synchroniser();
+            } catch (IOException ex) {
+                Logger.getLogger(EcrivainDiffere.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package requeterRezo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Esquisse Count-Min : estimation de la fréquence des mots en mémoire
+ * constante. Chaque mot incrémente un compteur par ligne (à une position
+ * tirée de son empreinte sur 64 bits, voir {@link #hacher(String)},
+ * mélangée différemment pour chaque ligne : deux mots dont le
+ * {@link String#hashCode()} est le même ne partagent pas pour autant leurs
+ * compteurs) ; la fréquence estimée
+ * est le minimum de ces compteurs. Elle ne peut que surestimer la fréquence
+ * réelle, lorsque plusieurs mots partagent les mêmes compteurs.
+ *
+ * Les compteurs sont plafonnés et, après un nombre donné d'incréments, tous
+ * divisés par deux (vieillissement), afin de suivre l'évolution des requêtes.
+ */
+public class EsquisseCountMin {
+
+    private static final int[] GRAINES = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F, 0x165667B1, 0xD3A2646C, 0xFD7046C5, 0xB55A4F09};
+
+    /**
+     * Nombre minimal de compteurs par ligne.
+     */
+    private static final int LARGEUR_MINIMALE = 32;
+
+    private final int[][] compteurs;
+    private final int masque;
+    private final int maximum;
+
+    /**
+     * Nombre d'incréments entre deux vieillissements (0 pour ne jamais
+     * vieillir).
+     */
+    private final long periode;
+
+    private long increments;
+
+    /**
+     * Construit une esquisse vide.
+     *
+     * @param largeur Nombre de compteurs par ligne (arrondi à la puissance de
+     * deux supérieure, au moins {@value #LARGEUR_MINIMALE}).
+     * @param profondeur Nombre de lignes (au plus 8).
+     * @param maximum Valeur maximale d'un compteur.
+     * @param periode Nombre d'incréments entre deux vieillissements (0 pour ne
+     * jamais vieillir).
+     */
+    protected EsquisseCountMin(int largeur, int profondeur, int maximum, long periode) {
+        int taille = Integer.highestOneBit(Math.max(LARGEUR_MINIMALE - 1, largeur - 1) << 1);
+        this.compteurs = new int[Math.min(Math.max(1, profondeur), GRAINES.length)][taille];
+        this.masque = taille - 1;
+        this.maximum = maximum;
+        this.periode = periode;
+    }
+
+    /**
+     * Compte une occurrence d'un mot.
+     *
+     * @param mot Mot rencontré.
+     */
+    protected void incrementer(String mot) {
+        long h = hacher(mot);
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < compteurs.length; ++i) {
+            min = Math.min(min, compteurs[i][position(h, i)]);
+        }
+        //Incrément conservatif : seuls les compteurs égaux au minimum augmentent
+        if (min < maximum) {
+            for (int i = 0; i < compteurs.length; ++i) {
+                int j = position(h, i);
+                if (compteurs[i][j] == min) {
+                    ++compteurs[i][j];
+                }
+            }
+        }
+        if (periode > 0 && ++increments >= periode) {
+            vieillir();
+        }
+    }
+
+    /**
+     * Relève la fréquence d'un mot à une valeur minimale (par exemple lorsque
+     * le nombre d'occurrences d'un mot est connu par ailleurs).
+     *
+     * @param mot Mot concerné.
+     * @param valeur Fréquence minimale du mot.
+     */
+    protected void relever(String mot, int valeur) {
+        valeur = Math.min(valeur, maximum);
+        long h = hacher(mot);
+        for (int i = 0; i < compteurs.length; ++i) {
+            int j = position(h, i);
+            if (compteurs[i][j] < valeur) {
+                compteurs[i][j] = valeur;
+            }
+        }
+    }
+
+    /**
+     * Estime la fréquence d'un mot.
+     *
+     * @param mot Mot recherché.
+     * @return La fréquence estimée (jamais inférieure à la fréquence réelle
+     * depuis le dernier vieillissement, sauf plafond).
+     */
+    protected int estimer(String mot) {
+        long h = hacher(mot);
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < compteurs.length; ++i) {
+            min = Math.min(min, compteurs[i][position(h, i)]);
+        }
+        return min;
+    }
+
+    /**
+     * Divise tous les compteurs par deux.
+     */
+    protected void vieillir() {
+        increments = 0;
+        for (int[] ligne : compteurs) {
+            for (int j = 0; j < ligne.length; ++j) {
+                ligne[j] >>>= 1;
+            }
+        }
+    }
+
+    /**
+     * Remet tous les compteurs à zéro.
+     */
+    protected void vider() {
+        increments = 0;
+        for (int[] ligne : compteurs) {
+            Arrays.fill(ligne, 0);
+        }
+    }
+
+    /**
+     * Ecrit l'esquisse : dimensions, maximum, période, nombre d'incréments
+     * depuis le dernier vieillissement puis les compteurs (voir
+     * {@link FormatBinaire}, la plupart des compteurs tiennent sur un octet).
+     *
+     * @param sortie Flux de sortie.
+     * @throws IOException
+     */
+    protected void ecrire(OutputStream sortie) throws IOException {
+        FormatBinaire.Tampon tampon = new FormatBinaire.Tampon(Cache.TAILLE_MORCEAU + 64);
+        tampon.ecrireVarint(compteurs.length);
+        tampon.ecrireVarint(masque + 1);
+        tampon.ecrireVarint(maximum);
+        tampon.ecrireVarlong(periode);
+        tampon.ecrireVarlong(increments);
+        for (int[] ligne : compteurs) {
+            for (int compteur : ligne) {
+                tampon.ecrireVarint(compteur);
+                if (tampon.taille() >= Cache.TAILLE_MORCEAU) {
+                    tampon.transferer(sortie);
+                }
+            }
+        }
+        tampon.transferer(sortie);
+    }
+
+    /**
+     * Lit une esquisse écrite par {@link #ecrire(OutputStream)}.
+     *
+     * @param contenu Contenu à lire, à partir de sa position.
+     * @return L'esquisse lue.
+     */
+    protected static EsquisseCountMin lire(ByteBuffer contenu) {
+        int profondeur = FormatBinaire.lireVarint(contenu);
+        int largeur = FormatBinaire.lireVarint(contenu);
+        //La largeur écrite est celle retenue par le constructeur (puissance de
+        //deux, au moins 32) : toute autre valeur ne serait pas relue à l'identique.
+        //Chaque compteur occupe au moins un octet.
+        if (profondeur < 1 || profondeur > GRAINES.length || Integer.bitCount(largeur) != 1
+                || largeur < LARGEUR_MINIMALE || largeur > contenu.remaining() / profondeur) {
+            throw new IllegalArgumentException("Dimensions de l'esquisse invalides");
+        }
+        int maximum = FormatBinaire.lireVarint(contenu);
+        EsquisseCountMin esquisse = new EsquisseCountMin(largeur, profondeur, maximum, FormatBinaire.lireVarlong(contenu));
+        esquisse.increments = FormatBinaire.lireVarlong(contenu);
+        for (int[] ligne : esquisse.compteurs) {
+            for (int j = 0; j < ligne.length; ++j) {
+                ligne[j] = FormatBinaire.lireVarint(contenu);
+            }
+        }
+        return esquisse;
+    }
+
+    /**
+     * Hachage 64 bits d'un mot (FNV-1a suivi d'un mélange des bits). Utilisé
+     * aussi par {@link FiltreBloom}.
+     */
+    static long hacher(String mot) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < mot.length(); ++i) {
+            h ^= mot.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private int position(long h, int ligne) {
+        //Mélange bijectif propre à la ligne : des empreintes distinctes donnent
+        //des positions indépendantes d'une ligne à l'autre
+        long x = (h ^ GRAINES[ligne]) * 0x9E3779B97F4A7C15L;
+        x ^= x >>> 32;
+        x *= 0xD6E8FEB86659FD93L;
+        x ^= x >>> 32;
+        return (int) x & masque;
+    }
+}
@@ -0,0 +1,179 @@
+package requeterRezo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtre de Bloom : ensemble de mots en mémoire constante. Chaque mot ajouté
+ * met à 1 un nombre fixe de bits, à des positions données par double hachage ;
+ * un mot est considéré comme présent si tous ses bits sont à 1. Un mot ajouté
+ * est toujours retrouvé, mais un mot jamais ajouté peut l'être aussi (faux
+ * positif), avec une probabilité fixée à la construction pour un nombre de
+ * mots donné.
+ *
+ * Les ajouts et les tests peuvent être faits par plusieurs threads sans
+ * verrou.
+ */
+public class FiltreBloom {
+
+    /**
+     * Nombre maximum de fonctions de hachage.
+     */
+    private static final int FONCTIONS_MAX = 16;
+
+    private final AtomicLongArray bits;
+
+    /**
+     * Nombre de bits du filtre (multiple de 64).
+     */
+    private final long taille;
+
+    /**
+     * Nombre de bits mis à 1 par mot.
+     */
+    private final int fonctions;
+
+    /**
+     * Construit un filtre vide dimensionné pour un nombre de mots et un taux
+     * de faux positifs donnés.
+     *
+     * @param capacite Nombre de mots prévus.
+     * @param tauxFauxPositifs Probabilité de faux positif une fois la capacité
+     * atteinte (entre 0 et 1 exclus).
+     */
+    protected FiltreBloom(int capacite, double tauxFauxPositifs) {
+        this(taille(capacite, tauxFauxPositifs), fonctions(capacite, taille(capacite, tauxFauxPositifs)));
+    }
+
+    private FiltreBloom(long taille, int fonctions) {
+        this.bits = new AtomicLongArray((int) (taille >>> 6));
+        this.taille = taille;
+        this.fonctions = fonctions;
+    }
+
+    /**
+     * Taille optimale (en bits, multiple de 64) : -n ln(p) / ln(2)².
+     */
+    private static long taille(int capacite, double tauxFauxPositifs) {
+        double p = Math.min(Math.max(tauxFauxPositifs, 1e-12), 0.5);
+        long m = (long) Math.ceil(-Math.max(1, capacite) * Math.log(p) / (Math.log(2) * Math.log(2)));
+        return Math.min(Math.max(64, (m + 63) & ~63L), (long) Integer.MAX_VALUE << 6);
+    }
+
+    /**
+     * Nombre optimal de fonctions de hachage : m / n ln(2).
+     */
+    private static int fonctions(int capacite, long taille) {
+        return (int) Math.min(FONCTIONS_MAX, Math.max(1, Math.round((double) taille / Math.max(1, capacite) * Math.log(2))));
+    }
+
+    /**
+     * Ajoute un mot au filtre.
+     *
+     * @param mot Mot à ajouter.
+     */
+    protected void ajouter(String mot) {
+        long h = EsquisseCountMin.hacher(mot);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32) | 1;
+        for (int i = 0; i < fonctions; ++i) {
+            long position = ((h1 + (long) i * h2) & Long.MAX_VALUE) % taille;
+            int indice = (int) (position >>> 6);
+            long masque = 1L << position;
+            long valeur;
+            while (((valeur = bits.get(indice)) & masque) == 0
+                    && !bits.compareAndSet(indice, valeur, valeur | masque)) {
+            }
+        }
+    }
+
+    /**
+     * Indique si un mot a (probablement) été ajouté au filtre.
+     *
+     * @param mot Mot recherché.
+     * @return False si le mot n'a jamais été ajouté, true s'il l'a été ou en
+     * cas de faux positif.
+     */
+    protected boolean contient(String mot) {
+        long h = EsquisseCountMin.hacher(mot);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32) | 1;
+        for (int i = 0; i < fonctions; ++i) {
+            long position = ((h1 + (long) i * h2) & Long.MAX_VALUE) % taille;
+            if ((bits.get((int) (position >>> 6)) & (1L << position)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Indique si un filtre a les mêmes dimensions que celui-ci (et peut donc
+     * lui être fusionné).
+     *
+     * @param autre Filtre à comparer.
+     * @return True si les deux filtres ont la même taille et le même nombre de
+     * fonctions de hachage.
+     */
+    protected boolean compatible(FiltreBloom autre) {
+        return autre.taille == taille && autre.fonctions == fonctions;
+    }
+
+    /**
+     * Ajoute à ce filtre tous les mots d'un filtre de mêmes dimensions (voir
+     * {@link #compatible(FiltreBloom)}).
+     *
+     * @param autre Filtre à fusionner.
+     */
+    protected void fusionner(FiltreBloom autre) {
+        for (int i = 0; i < bits.length(); ++i) {
+            long ajout = autre.bits.get(i);
+            long valeur;
+            while (((valeur = bits.get(i)) | ajout) != valeur
+                    && !bits.compareAndSet(i, valeur, valeur | ajout)) {
+            }
+        }
+    }
+
+    /**
+     * Ecrit le filtre : taille (en bits), nombre de fonctions de hachage puis
+     * les bits par mots de 8 octets.
+     *
+     * @param sortie Flux de sortie.
+     * @throws IOException
+     */
+    protected void ecrire(OutputStream sortie) throws IOException {
+        FormatBinaire.Tampon tampon = new FormatBinaire.Tampon(Cache.TAILLE_MORCEAU + 64);
+        tampon.ecrireVarlong(taille);
+        tampon.ecrireVarint(fonctions);
+        for (int i = 0; i < bits.length(); ++i) {
+            tampon.ecrireLong(bits.get(i));
+            if (tampon.taille() >= Cache.TAILLE_MORCEAU) {
+                tampon.transferer(sortie);
+            }
+        }
+        tampon.transferer(sortie);
+    }
+
+    /**
+     * Lit un filtre écrit par {@link #ecrire(OutputStream)}.
+     *
+     * @param contenu Contenu à lire, à partir de sa position.
+     * @return Le filtre lu.
+     */
+    protected static FiltreBloom lire(ByteBuffer contenu) {
+        long taille = FormatBinaire.lireVarlong(contenu);
+        int fonctions = FormatBinaire.lireVarint(contenu);
+        if (taille < 64 || (taille & 63) != 0 || taille > (long) Integer.MAX_VALUE << 6
+                || fonctions < 1 || fonctions > FONCTIONS_MAX) {
+            throw new IllegalArgumentException("Dimensions du filtre de Bloom invalides");
+        }
+        FiltreBloom filtre = new FiltreBloom(taille, fonctions);
+        for (int i = 0; i < filtre.bits.length(); ++i) {
+            filtre.bits.set(i, contenu.getLong());
+        }
+        return filtre;
+    }
+}
@@ -0,0 +1,555 @@
+package requeterRezo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map.Entry;
+
+/**
+ * Format binaire des fichiers du cache. Une entrée est composée d'un en-tête
+ * (nombre magique "RZMB", version, drapeaux, nom du mot) suivi d'un corps dont
+ * toutes les parties sont préfixées par leur taille : table des chaînes (noms
+ * des relations, des termes et des annotations), table des noeuds voisins,
+ * champs du mot, relations sortantes, relations entrantes et annotations. Les
+ * entiers sont encodés en varint (zigzag pour les valeurs signées).
+ *
+ * L'encodage est sans perte : tout ce que construit {@link RequeterRezo}
+ * (identifiant, type, mot formaté et poids des voisins, poids exacts, valeurs
+ * nulles) est restitué à l'identique. Les poids entiers, de loin les plus
+ * fréquents, sont encodés en varint et les autres en double.
+ *
+ * Le nom du mot est placé dans l'en-tête afin de pouvoir être lu sans décoder
+ * le reste de l'entrée. Pour une entrée restreinte à une forme de requête,
+ * c'est la clé de l'entrée dans le cache (voir {@link Forme#cle(String)}) ;
+ * le mot décodé porte alors le nom du mot seul.
+ */
+public class FormatBinaire {
+
+    /**
+     * Nombre magique ("RZMB") en tête de chaque entrée.
+     */
+    protected static final int MAGIE = 0x525A4D42;
+
+    /**
+     * Version courante du format.
+     */
+    protected static final byte VERSION = 1;
+
+    /**
+     * Taille de l'en-tête fixe (magie, version, drapeaux), avant le nom.
+     */
+    protected static final int TAILLE_EN_TETE = 6;
+
+    /**
+     * Drapeau indiquant que le corps de l'entrée est compressé (voir
+     * {@link Compression}).
+     */
+    protected static final byte DRAPEAU_COMPRESSE = 1;
+
+    /**
+     * Indique si un contenu commence par le nombre magique du format binaire.
+     *
+     * @param donnees Contenu à tester (la position n'est pas modifiée).
+     * @return True si le contenu est une entrée binaire.
+     */
+    protected static boolean estBinaire(ByteBuffer donnees) {
+        return donnees.remaining() >= TAILLE_EN_TETE && donnees.getInt(donnees.position()) == MAGIE;
+    }
+
+    /**
+     * Encode un mot dans le format binaire.
+     *
+     * @param mot Mot à encoder.
+     * @return L'entrée binaire.
+     */
+    protected static byte[] encoder(Mot mot) {
+        return encoder(mot, mot.getNom());
+    }
+
+    /**
+     * Calcule l'empreinte d'une entrée binaire non compressée (FNV-1a sur 64
+     * bits) : deux encodages d'un même mot sous une même clé ont la même
+     * empreinte, un changement du contenu la change presque sûrement.
+     *
+     * @param entree Entrée encodée par {@link #encoder(Mot, String)}.
+     * @return L'empreinte, jamais nulle (0 désigne une empreinte inconnue).
+     */
+    protected static long empreinte(byte[] entree) {
+        long h = 0xCBF29CE484222325L;
+        for (byte octet : entree) {
+            h ^= octet & 0xFF;
+            h *= 0x100000001B3L;
+        }
+        return h != 0 ? h : 1;
+    }
+
+    /**
+     * Encode un mot dans le format binaire sous une clé donnée.
+     *
+     * @param mot Mot à encoder.
+     * @param cle Clé de l'entrée dans le cache, placée dans l'en-tête.
+     * @return L'entrée binaire.
+     */
+    protected static byte[] encoder(Mot mot, String cle) {
+        //Construction de la table des chaînes et de celle des voisins
+        HashMap<String, Integer> indices = new HashMap<>();
+        ArrayList<String> chaines = new ArrayList<>();
+        IdentityHashMap<Mot, Integer> indicesVoisins = new IdentityHashMap<>();
+        ArrayList<Mot> voisins = new ArrayList<>();
+        indexer(mot.getMotFormate(), indices, chaines);
+        indexerRelations(mot.getRelations_sortantes(), indices, chaines, indicesVoisins, voisins);
+        indexerRelations(mot.getRelations_entrantes(), indices, chaines, indicesVoisins, voisins);
+        for (Annotation annotation : mot.getAnnotations()) {
+            indexer(annotation.getId_annotation(), indices, chaines);
+            indexer(annotation.getMot_entrant(), indices, chaines);
+            indexer(annotation.getType_relation(), indices, chaines);
+            indexer(annotation.getMot_sortant(), indices, chaines);
+        }
+
+        Tampon tampon = new Tampon(256);
+        tampon.ecrireInt(MAGIE);
+        tampon.ecrireOctet(VERSION);
+        tampon.ecrireOctet(0);
+        tampon.ecrireChaine(cle);
+        tampon.ecrireVarint(chaines.size());
+        for (String chaine : chaines) {
+            tampon.ecrireChaine(chaine);
+        }
+        tampon.ecrireVarint(voisins.size());
+        for (Mot voisin : voisins) {
+            tampon.ecrireVarint(indice(voisin.getNom(), indices));
+            tampon.ecrireVarlong(zigzag(voisin.getID()));
+            tampon.ecrireVarint(zigzag(voisin.getType()));
+            tampon.ecrireVarint(indice(voisin.getMotFormate(), indices));
+            tampon.ecrirePoids(voisin.getPoids_general());
+            tampon.ecrireVarint(indice(voisin.getDefinition(), indices));
+        }
+        tampon.ecrireVarint(indice(mot.getMotFormate(), indices));
+        tampon.ecrireVarlong(zigzag(mot.getID()));
+        tampon.ecrireVarint(zigzag(mot.getType()));
+        tampon.ecrirePoids(mot.getPoids_general());
+        tampon.ecrireChaineNullable(mot.getDefinition());
+        ecrireRelations(mot.getRelations_sortantes(), indices, indicesVoisins, tampon);
+        ecrireRelations(mot.getRelations_entrantes(), indices, indicesVoisins, tampon);
+        tampon.ecrireVarint(mot.getAnnotations().size());
+        for (Annotation annotation : mot.getAnnotations()) {
+            tampon.ecrireVarint(indice(annotation.getId_annotation(), indices));
+            tampon.ecrireVarint(indice(annotation.getMot_entrant(), indices));
+            tampon.ecrireVarint(indice(annotation.getType_relation(), indices));
+            tampon.ecrireVarint(indice(annotation.getMot_sortant(), indices));
+            tampon.ecrirePoids(annotation.getPoids());
+        }
+        return tampon.toByteArray();
+    }
+
+    /**
+     * Décode une entrée binaire. La position du tampon est avancée jusqu'à la
+     * fin de l'entrée.
+     *
+     * @param donnees Entrée binaire.
+     * @return Le mot décodé.
+     * @throws IllegalArgumentException Si l'entrée est corrompue ou d'une
+     * version inconnue.
+     */
+    protected static Mot decoder(ByteBuffer donnees) {
+        try {
+            if (donnees.getInt() != MAGIE) {
+                throw new IllegalArgumentException("Entree de cache invalide (nombre magique absent).");
+            }
+            byte version = donnees.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Version du format de cache inconnue : " + version);
+            }
+            if ((donnees.get() & DRAPEAU_COMPRESSE) != 0) {
+                throw new IllegalArgumentException("Entree de cache compressee.");
+            }
+            String nom = Forme.mot(lireChaine(donnees));
+            String[] chaines = new String[lireNombre(donnees, 1) + 1];
+            for (int i = 1; i < chaines.length; ++i) {
+                chaines[i] = lireChaine(donnees);
+            }
+            //L'indice 0 des voisins est réservé aux termes sans mot ; un voisin
+            //occupe au moins six octets
+            Mot[] voisins = new Mot[lireNombre(donnees, 6) + 1];
+            for (int i = 1; i < voisins.length; ++i) {
+                String nomVoisin = chaines[lireVarint(donnees)];
+                long idVoisin = dezigzag(lireVarlong(donnees));
+                int typeVoisin = dezigzag(lireVarint(donnees));
+                String formateVoisin = chaines[lireVarint(donnees)];
+                double poidsVoisin = lirePoids(donnees);
+                String definitionVoisin = chaines[lireVarint(donnees)];
+                voisins[i] = Mot.creerVoisin(nomVoisin, idVoisin, typeVoisin, formateVoisin, poidsVoisin, definitionVoisin);
+            }
+            String mot_formate = chaines[lireVarint(donnees)];
+            long id = dezigzag(lireVarlong(donnees));
+            int type = dezigzag(lireVarint(donnees));
+            double poids_general = lirePoids(donnees);
+            String definition = lireChaineNullable(donnees);
+            HashMap<String, ArrayList<Terme>> relations_sortantes = lireRelations(donnees, chaines, voisins);
+            HashMap<String, ArrayList<Terme>> relations_entrantes = lireRelations(donnees, chaines, voisins);
+            int nbAnnotations = lireNombre(donnees, 5);
+            ArrayList<Annotation> annotations = new ArrayList<>(nbAnnotations);
+            for (int i = 0; i < nbAnnotations; ++i) {
+                annotations.add(new Annotation(chaines[lireVarint(donnees)], chaines[lireVarint(donnees)],
+                        chaines[lireVarint(donnees)], chaines[lireVarint(donnees)], lirePoids(donnees)));
+            }
+            return new Mot(nom, id, type, mot_formate, poids_general, definition, relations_entrantes, relations_sortantes, annotations);
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException ex) {
+            throw new IllegalArgumentException("Entree de cache tronquee ou corrompue.", ex);
+        }
+    }
+
+    /**
+     * Lit uniquement le nom du mot dans l'en-tête d'une entrée.
+     *
+     * @param donnees Entrée binaire (la position n'est pas modifiée).
+     * @return Le nom du mot.
+     */
+    protected static String lireNom(ByteBuffer donnees) {
+        ByteBuffer lecture = donnees.duplicate();
+        lecture.position(lecture.position() + TAILLE_EN_TETE);
+        return lireChaine(lecture);
+    }
+
+    /**
+     * Lit les drapeaux de l'en-tête d'une entrée.
+     *
+     * @param donnees Entrée binaire (la position n'est pas modifiée).
+     * @return Les drapeaux.
+     */
+    protected static byte drapeaux(ByteBuffer donnees) {
+        return donnees.get(donnees.position() + TAILLE_EN_TETE - 1);
+    }
+
+    /**
+     * Retourne la position du début du corps d'une entrée, juste après le nom
+     * du mot.
+     *
+     * @param donnees Entrée binaire (la position n'est pas modifiée).
+     * @return La position absolue du début du corps.
+     */
+    protected static int debutCorps(ByteBuffer donnees) {
+        ByteBuffer lecture = donnees.duplicate();
+        lecture.position(lecture.position() + TAILLE_EN_TETE);
+        int taille = lireVarint(lecture);
+        return lecture.position() + taille;
+    }
+
+    private static void indexerRelations(HashMap<String, ArrayList<Terme>> relations, HashMap<String, Integer> indices, ArrayList<String> chaines,
+            IdentityHashMap<Mot, Integer> indicesVoisins, ArrayList<Mot> voisins) {
+        for (Entry<String, ArrayList<Terme>> entree : relations.entrySet()) {
+            indexer(entree.getKey(), indices, chaines);
+            for (Terme terme : entree.getValue()) {
+                Mot voisin = terme.getMot();
+                if (voisin != null && !indicesVoisins.containsKey(voisin)) {
+                    voisins.add(voisin);
+                    indicesVoisins.put(voisin, voisins.size());
+                    indexer(voisin.getNom(), indices, chaines);
+                    indexer(voisin.getMotFormate(), indices, chaines);
+                    indexer(voisin.getDefinition(), indices, chaines);
+                }
+            }
+        }
+    }
+
+    private static void ecrireRelations(HashMap<String, ArrayList<Terme>> relations, HashMap<String, Integer> indices,
+            IdentityHashMap<Mot, Integer> indicesVoisins, Tampon tampon) {
+        tampon.ecrireVarint(relations.size());
+        for (Entry<String, ArrayList<Terme>> entree : relations.entrySet()) {
+            tampon.ecrireVarint(indice(entree.getKey(), indices));
+            tampon.ecrireVarint(entree.getValue().size());
+            for (Terme terme : entree.getValue()) {
+                tampon.ecrireVarint(terme.getMot() == null ? 0 : indicesVoisins.get(terme.getMot()));
+                tampon.ecrirePoids(terme.getPoids());
+            }
+        }
+    }
+
+    private static HashMap<String, ArrayList<Terme>> lireRelations(ByteBuffer donnees, String[] chaines, Mot[] voisins) {
+        int nbRelations = lireNombre(donnees, 2);
+        HashMap<String, ArrayList<Terme>> relations = new HashMap<>(nbRelations * 4 / 3 + 1);
+        for (int i = 0; i < nbRelations; ++i) {
+            String relation = chaines[lireVarint(donnees)];
+            int nbTermes = lireNombre(donnees, 2);
+            ArrayList<Terme> termes = new ArrayList<>(nbTermes);
+            for (int j = 0; j < nbTermes; ++j) {
+                Mot voisin = voisins[lireVarint(donnees)];
+                termes.add(new Terme(voisin, lirePoids(donnees)));
+            }
+            relations.put(relation, termes);
+        }
+        return relations;
+    }
+
+    /**
+     * Ajoute une chaîne à la table si elle n'y est pas encore. L'indice 0 est
+     * réservé à null.
+     */
+    private static void indexer(String chaine, HashMap<String, Integer> indices, ArrayList<String> chaines) {
+        if (chaine != null && !indices.containsKey(chaine)) {
+            chaines.add(chaine);
+            indices.put(chaine, chaines.size());
+        }
+    }
+
+    private static int indice(String chaine, HashMap<String, Integer> indices) {
+        return chaine == null ? 0 : indices.get(chaine);
+    }
+
+    protected static int zigzag(int valeur) {
+        return (valeur << 1) ^ (valeur >> 31);
+    }
+
+    protected static long zigzag(long valeur) {
+        return (valeur << 1) ^ (valeur >> 63);
+    }
+
+    protected static int dezigzag(int valeur) {
+        return (valeur >>> 1) ^ -(valeur & 1);
+    }
+
+    protected static long dezigzag(long valeur) {
+        return (valeur >>> 1) ^ -(valeur & 1);
+    }
+
+    protected static int lireVarint(ByteBuffer donnees) {
+        int resultat = 0;
+        for (int decalage = 0; decalage < 35; decalage += 7) {
+            byte octet = donnees.get();
+            resultat |= (octet & 0x7F) << decalage;
+            if (octet >= 0) {
+                return resultat;
+            }
+        }
+        throw new IllegalArgumentException("Varint invalide.");
+    }
+
+    /**
+     * Lit un nombre d'éléments et le confronte à ce qu'il reste à lire : un
+     * nombre négatif ou plus grand que le reste du tampon ne peut venir que
+     * d'une entrée corrompue et ne doit pas servir à dimensionner un tableau.
+     *
+     * @param donnees Tampon positionné sur le nombre.
+     * @param tailleMinimale Nombre minimal d'octets occupés par un élément.
+     * @return Le nombre d'éléments.
+     * @throws IllegalArgumentException Si le nombre est incohérent.
+     */
+    protected static int lireNombre(ByteBuffer donnees, int tailleMinimale) {
+        int nombre = lireVarint(donnees);
+        if (nombre < 0 || nombre > donnees.remaining() / tailleMinimale) {
+            throw new IllegalArgumentException("Entree de cache corrompue (nombre d'elements invalide : " + nombre + ").");
+        }
+        return nombre;
+    }
+
+    protected static long lireVarlong(ByteBuffer donnees) {
+        long resultat = 0;
+        for (int decalage = 0; decalage < 70; decalage += 7) {
+            byte octet = donnees.get();
+            resultat |= (long) (octet & 0x7F) << decalage;
+            if (octet >= 0) {
+                return resultat;
+            }
+        }
+        throw new IllegalArgumentException("Varint invalide.");
+    }
+
+    /**
+     * Lit un poids écrit par {@link Tampon#ecrirePoids(double)}.
+     *
+     * @param donnees Tampon positionné sur le poids.
+     * @return Le poids exact.
+     */
+    protected static double lirePoids(ByteBuffer donnees) {
+        long valeur = lireVarlong(donnees);
+        if ((valeur & 1) == 0) {
+            return dezigzag(valeur >>> 1);
+        }
+        return Double.longBitsToDouble(donnees.getLong());
+    }
+
+    /**
+     * Lit une chaîne écrite par {@link Tampon#ecrireChaineNullable(String)}.
+     *
+     * @param donnees Tampon positionné sur la chaîne.
+     * @return La chaîne lue, éventuellement null.
+     */
+    protected static String lireChaineNullable(ByteBuffer donnees) {
+        if (donnees.get() == 0) {
+            return null;
+        }
+        return lireChaine(donnees);
+    }
+
+    /**
+     * Lit une chaîne UTF-8 préfixée par sa taille.
+     *
+     * @param donnees Tampon positionné sur la taille de la chaîne.
+     * @return La chaîne lue.
+     */
+    protected static String lireChaine(ByteBuffer donnees) {
+        int taille = lireVarint(donnees);
+        if (taille < 0) {
+            throw new IllegalArgumentException("Taille de chaine invalide : " + taille);
+        }
+        if (taille > donnees.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String chaine;
+        if (donnees.hasArray()) {
+            chaine = new String(donnees.array(), donnees.arrayOffset() + donnees.position(), taille, StandardCharsets.UTF_8);
+            donnees.position(donnees.position() + taille);
+        } else {
+            //Tampon direct ou projeté en mémoire : copie dans un tableau réutilisé
+            byte[] octets = TAMPON_LECTURE.get();
+            if (octets.length < taille) {
+                octets = new byte[Math.max(taille, octets.length * 2)];
+                TAMPON_LECTURE.set(octets);
+            }
+            donnees.get(octets, 0, taille);
+            chaine = new String(octets, 0, taille, StandardCharsets.UTF_8);
+        }
+        return chaine;
+    }
+
+    /**
+     * Tableau réutilisé pour décoder les chaînes depuis un tampon sans tableau
+     * accessible (fichier projeté en mémoire).
+     */
+    private static final ThreadLocal<byte[]> TAMPON_LECTURE = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[256];
+        }
+    };
+
+    /**
+     * Tableau d'octets extensible utilisé pour l'encodage.
+     */
+    protected static class Tampon {
+
+        private byte[] octets;
+        private int taille;
+
+        protected Tampon(int capacite) {
+            this.octets = new byte[capacite];
+        }
+
+        private void reserver(int n) {
+            if (taille + n > octets.length) {
+                octets = Arrays.copyOf(octets, Math.max(octets.length * 2, taille + n));
+            }
+        }
+
+        protected void ecrireOctet(int octet) {
+            reserver(1);
+            octets[taille++] = (byte) octet;
+        }
+
+        protected void ecrireOctets(byte[] source, int debut, int longueur) {
+            reserver(longueur);
+            System.arraycopy(source, debut, octets, taille, longueur);
+            taille += longueur;
+        }
+
+        protected void ecrireInt(int valeur) {
+            reserver(4);
+            octets[taille++] = (byte) (valeur >>> 24);
+            octets[taille++] = (byte) (valeur >>> 16);
+            octets[taille++] = (byte) (valeur >>> 8);
+            octets[taille++] = (byte) valeur;
+        }
+
+        protected void ecrireLong(long valeur) {
+            reserver(8);
+            for (int decalage = 56; decalage >= 0; decalage -= 8) {
+                octets[taille++] = (byte) (valeur >>> decalage);
+            }
+        }
+
+        protected void ecrireVarint(int valeur) {
+            reserver(5);
+            while ((valeur & ~0x7F) != 0) {
+                octets[taille++] = (byte) ((valeur & 0x7F) | 0x80);
+                valeur >>>= 7;
+            }
+            octets[taille++] = (byte) valeur;
+        }
+
+        protected void ecrireVarlong(long valeur) {
+            reserver(10);
+            while ((valeur & ~0x7FL) != 0) {
+                octets[taille++] = (byte) ((valeur & 0x7F) | 0x80);
+                valeur >>>= 7;
+            }
+            octets[taille++] = (byte) valeur;
+        }
+
+        /**
+         * Ecrit un poids sans perte : les valeurs entières (cas général dans
+         * rezoJDM) sont encodées en varint, les autres suivent un marqueur et
+         * occupent 8 octets.
+         *
+         * @param poids Poids à écrire.
+         */
+        protected void ecrirePoids(double poids) {
+            long entier = (long) poids;
+            if (entier == poids && Math.abs(entier) < (1L << 53)
+                    && Double.doubleToRawLongBits(poids) != Double.doubleToRawLongBits(-0.0)) {
+                ecrireVarlong(zigzag(entier) << 1);
+            } else {
+                ecrireVarint(1);
+                reserver(8);
+                long bits = Double.doubleToRawLongBits(poids);
+                for (int decalage = 56; decalage >= 0; decalage -= 8) {
+                    octets[taille++] = (byte) (bits >>> decalage);
+                }
+            }
+        }
+
+        /**
+         * Ecrit une chaîne pouvant être nulle (précédée d'un octet de
+         * présence).
+         *
+         * @param chaine Chaîne à écrire.
+         */
+        protected void ecrireChaineNullable(String chaine) {
+            ecrireOctet(chaine == null ? 0 : 1);
+            if (chaine != null) {
+                ecrireChaine(chaine);
+            }
+        }
+
+        protected void ecrireChaine(String chaine) {
+            byte[] utf8 = chaine.getBytes(StandardCharsets.UTF_8);
+            ecrireVarint(utf8.length);
+            ecrireOctets(utf8, 0, utf8.length);
+        }
+
+        protected int taille() {
+            return taille;
+        }
+
+        protected byte[] toByteArray() {
+            return Arrays.copyOf(octets, taille);
+        }
+
+        /**
+         * Ecrit le contenu dans un flux puis vide le tampon (écriture par
+         * morceaux de gros fichiers).
+         *
+         * @param sortie Flux de destination.
+         * @throws IOException
+         */
+        protected void transferer(OutputStream sortie) throws IOException {
+            sortie.write(octets, 0, taille);
+            taille = 0;
+        }
+    }
+}
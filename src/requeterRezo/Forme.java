@@ -0,0 +1,198 @@
+package requeterRezo;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map.Entry;
+
+/**
+ * Forme d'une requête : type de relation demandé (ou toutes les relations) et
+ * sens des relations demandées (sortantes et/ou entrantes). Chaque forme est
+ * mise en cache sous sa propre clé : le mot seul pour la forme complète
+ * (toutes les relations dans les deux sens, clé des caches existants), le mot
+ * suivi du code de la forme pour les autres.
+ *
+ * Une entrée complète contient toutes les formes plus restreintes du même
+ * mot : celles-ci en sont extraites en mémoire (voir
+ * {@link Forme#projeter(Mot, String)}) plutôt que demandées au réseau. Une
+ * réponse restreinte n'est jamais enregistrée sous la clé de l'entrée
+ * complète.
+ *
+ * Les formes portant sur un seul type de relation forment des segments du mot,
+ * chacun avec sa propre date de mise en cache : une requête sur plusieurs
+ * types fusionne les segments en cache (voir {@link Forme#fusionner(Mot, Mot)})
+ * et ne demande au réseau que les types manquants.
+ */
+class Forme {
+
+    /**
+     * Séparateur entre le mot et le code de la forme dans une clé du cache.
+     */
+    static final char SEPARATEUR = '\u001F';
+
+    /**
+     * Type de relation d'une forme portant sur toutes les relations.
+     */
+    static final int TOUTES = -1;
+
+    /**
+     * Forme complète : toutes les relations, sortantes et entrantes.
+     */
+    static final Forme COMPLETE = new Forme(TOUTES, true, true);
+
+    /**
+     * Type de relation demandé ({@link Forme#TOUTES} pour toutes).
+     */
+    final int typeRelation;
+
+    /**
+     * True si les relations sortantes sont demandées.
+     */
+    final boolean sortantes;
+
+    /**
+     * True si les relations entrantes sont demandées.
+     */
+    final boolean entrantes;
+
+    Forme(int typeRelation, boolean sortantes, boolean entrantes) {
+        this.typeRelation = typeRelation;
+        this.sortantes = sortantes;
+        this.entrantes = entrantes;
+    }
+
+    /**
+     * Indique si la forme porte sur toutes les relations dans les deux sens.
+     *
+     * @return True pour la forme complète.
+     */
+    boolean estComplete() {
+        return typeRelation == TOUTES && sortantes && entrantes;
+    }
+
+    /**
+     * Retourne la clé du cache d'un mot demandé sous cette forme.
+     *
+     * @param mot Mot de la requête.
+     * @return Le mot pour la forme complète, le mot suivi du code de la forme
+     * sinon.
+     */
+    String cle(String mot) {
+        if (estComplete()) {
+            return mot;
+        }
+        return mot + SEPARATEUR + typeRelation + ':' + (sortantes ? '1' : '0') + (entrantes ? '1' : '0');
+    }
+
+    /**
+     * Retourne le mot d'une clé du cache.
+     *
+     * @param cle Clé du cache (voir {@link Forme#cle(String)}).
+     * @return Le mot, sans le code de la forme.
+     */
+    static String mot(String cle) {
+        int separateur = cle.indexOf(SEPARATEUR);
+        return separateur < 0 ? cle : cle.substring(0, separateur);
+    }
+
+    /**
+     * Retourne le type de relation d'une clé du cache.
+     *
+     * @param cle Clé du cache (voir {@link Forme#cle(String)}).
+     * @return Le type de relation de la forme, {@link Forme#TOUTES} si elle
+     * porte sur toutes les relations.
+     */
+    static int typeRelation(String cle) {
+        int separateur = cle.indexOf(SEPARATEUR);
+        if (separateur < 0) {
+            return TOUTES;
+        }
+        try {
+            return Integer.parseInt(cle.substring(separateur + 1, cle.indexOf(':', separateur)));
+        } catch (NumberFormatException | StringIndexOutOfBoundsException ex) {
+            return TOUTES;
+        }
+    }
+
+    /**
+     * Retourne l'URL de rezoJDM correspondant à la forme.
+     *
+     * @param mot Mot de la requête.
+     * @return L'URL de la requête.
+     * @throws UnsupportedEncodingException
+     */
+    String url(String mot) throws UnsupportedEncodingException {
+        if (typeRelation == TOUTES) {
+            return estComplete() ? Mot.recupURL(mot) : Mot.recupURL(mot, sortantes, entrantes);
+        }
+        return sortantes && entrantes ? Mot.recupURL(mot, typeRelation)
+                : Mot.recupURL(mot, typeRelation, sortantes, entrantes);
+    }
+
+    /**
+     * Extrait d'un mot complet la réponse à une requête de cette forme. Les
+     * tables et listes de termes du résultat lui sont propres : le modifier
+     * n'altère pas le mot complet.
+     *
+     * @param complet Mot obtenu par une requête complète.
+     * @param relation Nom du type de relation demandé, tel qu'il apparaît
+     * dans les relations du mot (ignoré si la forme porte sur toutes les
+     * relations).
+     * @return Le mot restreint à la forme.
+     */
+    Mot projeter(Mot complet, String relation) {
+        ArrayList<Annotation> annotations = new ArrayList<>();
+        if (sortantes) {
+            //Les annotations portent sur des relations sortantes
+            String type = Integer.toString(typeRelation);
+            for (Annotation annotation : complet.getAnnotations()) {
+                if (typeRelation == TOUTES || type.equals(annotation.getType_relation())) {
+                    annotations.add(annotation);
+                }
+            }
+        }
+        return new Mot(complet.getNom(), complet.getID(), complet.getType(), complet.getMotFormate(),
+                complet.getPoids_general(), complet.getDefinition(),
+                entrantes ? filtrer(complet.getRelations_entrantes(), relation) : new HashMap<String, ArrayList<Terme>>(),
+                sortantes ? filtrer(complet.getRelations_sortantes(), relation) : new HashMap<String, ArrayList<Terme>>(),
+                annotations);
+    }
+
+    /**
+     * Fusionne les réponses de deux requêtes restreintes sur un même mot (par
+     * exemple deux types de relations). Les champs du mot sont ceux du
+     * premier ; les tables et listes de termes du résultat lui sont propres.
+     *
+     * @param premier Première réponse.
+     * @param second Seconde réponse.
+     * @return Un mot contenant les relations et annotations des deux réponses.
+     */
+    static Mot fusionner(Mot premier, Mot second) {
+        HashMap<String, ArrayList<Terme>> entrantes = new HashMap<>();
+        ajouterCopies(entrantes, premier.getRelations_entrantes());
+        ajouterCopies(entrantes, second.getRelations_entrantes());
+        HashMap<String, ArrayList<Terme>> sortantes = new HashMap<>();
+        ajouterCopies(sortantes, premier.getRelations_sortantes());
+        ajouterCopies(sortantes, second.getRelations_sortantes());
+        ArrayList<Annotation> annotations = new ArrayList<>(premier.getAnnotations());
+        annotations.addAll(second.getAnnotations());
+        return new Mot(premier.getNom(), premier.getID(), premier.getType(), premier.getMotFormate(),
+                premier.getPoids_general(), premier.getDefinition(), entrantes, sortantes, annotations);
+    }
+
+    private HashMap<String, ArrayList<Terme>> filtrer(HashMap<String, ArrayList<Terme>> relations, String relation) {
+        HashMap<String, ArrayList<Terme>> res = new HashMap<>();
+        for (Entry<String, ArrayList<Terme>> entree : relations.entrySet()) {
+            if (typeRelation == TOUTES || entree.getKey().equals(relation)) {
+                res.put(entree.getKey(), new ArrayList<>(entree.getValue()));
+            }
+        }
+        return res;
+    }
+
+    private static void ajouterCopies(HashMap<String, ArrayList<Terme>> cible, HashMap<String, ArrayList<Terme>> relations) {
+        for (Entry<String, ArrayList<Terme>> entree : relations.entrySet()) {
+            cible.put(entree.getKey(), new ArrayList<>(entree.getValue()));
+        }
+    }
+}
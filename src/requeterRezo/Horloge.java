@@ -0,0 +1,29 @@
+package requeterRezo;
+
+/**
+ * Horloge par défaut des dates du cache (voir
+ * {@link Configuration#horloge(java.util.function.LongSupplier)}) : date en
+ * millisecondes depuis le 1er janvier 1970, lue sur l'horloge système au
+ * démarrage puis avancée par l'horloge monotone ({@link System#nanoTime()}).
+ * Les dates restent comparables à celles des sessions précédentes, mais un
+ * changement de l'heure système pendant la session (réglage, synchronisation)
+ * ne fait ni reculer les dates ni périmer d'un coup les entrées du cache.
+ */
+final class Horloge {
+
+    private static final long ORIGINE = System.currentTimeMillis();
+
+    private static final long ORIGINE_MONOTONE = System.nanoTime();
+
+    private Horloge() {
+    }
+
+    /**
+     * Retourne la date courante.
+     *
+     * @return La date courante, en millisecondes depuis le 1er janvier 1970.
+     */
+    static long maintenant() {
+        return ORIGINE + (System.nanoTime() - ORIGINE_MONOTONE) / 1_000_000;
+    }
+}
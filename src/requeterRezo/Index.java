@@ -1,23 +1,64 @@
 package requeterRezo;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
 
 /**
  * Index des mots rencontrés mais pas présents dans le cache. Met en relation un
- * mot avec un ensemble d'informations ({@link  IndexInfo}).
+ * mot avec un ensemble d'informations ({@link  IndexInfo}). Comme pour
+ * {@link Cache}, la table peut être lue par plusieurs threads mais les
+ * modifications doivent être faites sous un même verrou, par les méthodes de
+ * la classe (afin d'être journalisées) : les vues rendues par
+ * {@link Index#keySet()} et {@link Index#entrySet()} sont en lecture seule.
  *
  * @author Jimmy Benoits
  */
-@SuppressWarnings("serial")
-public class Index extends HashMap<String, IndexInfo> {
+public class Index {
+
+    /**
+     * Table des mots en attente.
+     */
+    private final ConcurrentHashMap<String, IndexInfo> table;
+
+    /**
+     * Vue en lecture seule de la table.
+     */
+    private final Map<String, IndexInfo> lecture;
+
+    /**
+     * Nombre magique ("RZIA") en tête des fichiers d'index binaires.
+     */
+    protected static final int MAGIE = 0x525A4941;
+
+    /**
+     * Version du format binaire des fichiers d'index d'attente.
+     */
+    protected static final byte VERSION = 1;
+
+    /**
+     * Journal des modifications (null si les modifications ne sont pas
+     * journalisées).
+     */
+    protected Journal journal;
+
+    /**
+     * Horloge des dates d'occurrence (voir
+     * {@link Configuration#horloge(LongSupplier)}).
+     */
+    protected LongSupplier horloge = Horloge::maintenant;
 
     /**
      * Constructeur de l'index dont la taille est initialisé grâce au nombre
@@ -26,12 +67,107 @@ public class Index extends HashMap<String, IndexInfo> {
      * @param tailleMax Nombre maximum d'entrées     
      */
     protected Index(int tailleMax) {
-        super(tailleMax * (4 / 3));
+        this.table = new ConcurrentHashMap<>(tailleMax, 0.75f);
+        this.lecture = Collections.unmodifiableMap(table);
+    }
+
+    /**
+     * Informations d'un mot présent dans l'index.
+     *
+     * @param mot Mot recherché.
+     * @return Les informations du mot, ou null s'il n'est pas dans l'index.
+     */
+    public IndexInfo get(Object mot) {
+        return table.get(mot);
+    }
+
+    /**
+     * Indique si un mot est présent dans l'index.
+     *
+     * @param mot Mot recherché.
+     * @return True si le mot est dans l'index.
+     */
+    public boolean containsKey(Object mot) {
+        return table.containsKey(mot);
+    }
+
+    /**
+     * Ajoute (ou remplace) un mot sans journaliser la modification (voir
+     * {@link Index#ajouter(String, IndexInfo)}).
+     *
+     * @param mot Mot à ajouter.
+     * @param info Nombre d'occurrences et date de la dernière occurrence.
+     * @return Les informations remplacées, ou null.
+     */
+    public IndexInfo put(String mot, IndexInfo info) {
+        return table.put(mot, info);
+    }
+
+    /**
+     * Retire un mot sans journaliser la modification (voir
+     * {@link Index#supprimer(String)}).
+     *
+     * @param mot Mot à retirer.
+     * @return Les informations retirées, ou null.
+     */
+    public IndexInfo remove(Object mot) {
+        return table.remove(mot);
+    }
+
+    /**
+     * Vide l'index.
+     */
+    public void clear() {
+        table.clear();
+    }
+
+    /**
+     * Remplace le contenu de l'index par celui d'un index chargé depuis le
+     * dernier point de reprise (voir {@link Cache#recharger(Cache)}).
+     *
+     * @param source Index chargé.
+     */
+    protected void recharger(Index source) {
+        this.clear();
+        for (Entry<String, IndexInfo> entree : source.entrySet()) {
+            this.put(entree.getKey(), entree.getValue());
+        }
+    }
+
+    /**
+     * @return Le nombre de mots de l'index.
+     */
+    public int size() {
+        return table.size();
+    }
+
+    /**
+     * @return True si l'index ne contient aucun mot.
+     */
+    public boolean isEmpty() {
+        return table.isEmpty();
+    }
+
+    /**
+     * @return Les mots de l'index (vue en lecture seule).
+     */
+    public Set<String> keySet() {
+        return lecture.keySet();
+    }
+
+    /**
+     * @return Les entrées de l'index (vue en lecture seule).
+     */
+    public Set<Entry<String, IndexInfo>> entrySet() {
+        return lecture.entrySet();
     }
 
     /**
      * Chargement de l'index des rencontrés mais non mis en cache à partir d'un
-     * fichier créé lors d'une session précédente.
+     * fichier créé lors d'une session précédente, au format binaire (voir
+     * {@link Index#sauvegarderIndex(Index, String)}), sous la forme d'une
+     * esquisse (voir {@link IndexProbabiliste}) ou dans l'ancien format texte,
+     * remplacé lors de la prochaine sauvegarde.
      *
      * @param fichier Chemin vers le fichier "indexAttente" de la session
      * précédente.
@@ -41,6 +177,37 @@ public class Index extends HashMap<String, IndexInfo> {
      * @throws ParseException
      */
     protected static Index chargerIndex(String fichier, int tailleMax) throws IOException, ParseException {
+        ByteBuffer contenu = Cache.lireFichier(fichier);
+        if (contenu.remaining() < Cache.TAILLE_EN_TETE
+                || (contenu.getInt(0) != MAGIE && contenu.getInt(0) != IndexProbabiliste.MAGIE)) {
+            return chargerIndexTexte(fichier, tailleMax);
+        }
+        try {
+            int magie = contenu.getInt();
+            byte version = contenu.get();
+            if (version != VERSION) {
+                throw new IOException("Version de l'index d'attente inconnue : " + version);
+            }
+            if (magie == IndexProbabiliste.MAGIE) {
+                return IndexProbabiliste.lire(contenu);
+            }
+            int n = contenu.getInt();
+            Index index = new Index(Math.max(tailleMax, Cache.capacite(n)));
+            for (int i = 0; i < n; ++i) {
+                String mot = FormatBinaire.lireChaine(contenu);
+                index.put(mot, new IndexInfo(FormatBinaire.lireVarint(contenu), contenu.getLong()));
+            }
+            return index;
+        } catch (BufferUnderflowException | IllegalArgumentException ex) {
+            throw new IOException("Index d'attente tronque ou corrompu : " + fichier, ex);
+        }
+    }
+
+    /**
+     * Chargement de l'index à partir d'un fichier dans l'ancien format texte
+     * (une ligne par mot, date au format "dd-MM-yyyy hh:mm:ss aaa").
+     */
+    private static Index chargerIndexTexte(String fichier, int tailleMax) throws IOException, ParseException {
         Index index = new Index(tailleMax);
         try (BufferedReader reader = new BufferedReader(new FileReader(fichier))) {
             String line;
@@ -50,7 +217,7 @@ public class Index extends HashMap<String, IndexInfo> {
                 tokens = line.split(";");
                 index.put(
                         tokens[0],
-                        new IndexInfo(Integer.parseInt(tokens[1]), df.parse(tokens[2]))
+                        new IndexInfo(Integer.parseInt(tokens[1]), df.parse(tokens[2]).getTime())
                 );
             }
         }
@@ -58,27 +225,36 @@ public class Index extends HashMap<String, IndexInfo> {
     }
 
     /**
-     * Sauvegarde dans un fichier l'index des mots en attentes.
+     * Sauvegarde dans un fichier l'index des mots en attentes, au format
+     * binaire : nombre magique ("RZIA"), version, nombre d'entrées puis, pour
+     * chaque mot, le mot (taille puis UTF-8), le nombre d'occurrences et la
+     * date de dernière occurrence (en millisecondes sur 8 octets).
      *
      * @param index Index en attente.
      * @param chemin Chemin du fichier à écrire.
      * @throws IOException
      */
     protected static void sauvegarderIndex(Index index, String chemin) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(chemin + "_tmp"))) {
+        if (index instanceof IndexProbabiliste) {
+            ((IndexProbabiliste) index).sauvegarder(chemin);
+            return;
+        }
+        try (OutputStream sortie = new FileOutputStream(chemin + "_tmp")) {
+            FormatBinaire.Tampon tampon = new FormatBinaire.Tampon(Cache.TAILLE_MORCEAU + 64);
+            tampon.ecrireInt(MAGIE);
+            tampon.ecrireOctet(VERSION);
+            tampon.ecrireInt(index.size());
             for (Entry<String, IndexInfo> entry : index.entrySet()) {
-                writer.write(entry.getKey() + ";" + entry.getValue().toString());
-                writer.newLine();
-            }
-            File file = new File(chemin);
-            if (file.exists()) {
-                file.delete();
+                tampon.ecrireChaine(entry.getKey());
+                tampon.ecrireVarint(entry.getValue().getOccurrences());
+                tampon.ecrireLong(entry.getValue().getDateOccurrences());
+                if (tampon.taille() >= Cache.TAILLE_MORCEAU) {
+                    tampon.transferer(sortie);
+                }
             }
+            tampon.transferer(sortie);
         }
-        File _old = new File(chemin + "_tmp");
-        File _new = new File(chemin);
-        _old.renameTo(_new);
-        _new.setReadOnly();
+        Cache.remplacer(chemin);
     }
 
     /**
@@ -87,7 +263,37 @@ public class Index extends HashMap<String, IndexInfo> {
      * @param mot Mot à supprimer.
      */
     protected void supprimer(String mot) {
-        this.remove(mot);
+        if (this.remove(mot) != null && journal != null) {
+            journal.indexSuppression(mot);
+        }
+    }
+
+    /**
+     * Ajoute (ou remplace) un mot dans l'index.
+     *
+     * @param mot Mot à ajouter.
+     * @param info Nombre d'occurrences et date de la dernière occurrence.
+     */
+    protected void ajouter(String mot, IndexInfo info) {
+        this.put(mot, info);
+        if (journal != null) {
+            journal.index(mot, info);
+        }
+    }
+
+    /**
+     * Incrémente le nombre d'occurrences d'un mot présent dans l'index (voir
+     * {@link IndexInfo#incrementeOccurrences(int, long)}).
+     *
+     * @param mot Mot rencontré.
+     * @param peremption Délais de péremption (en heures).
+     */
+    protected void incrementer(String mot, int peremption) {
+        IndexInfo info = this.get(mot);
+        info.incrementeOccurrences(peremption, horloge.getAsLong());
+        if (journal != null) {
+            journal.index(mot, info);
+        }
     }
 
 }
@@ -17,9 +17,10 @@ public class IndexInfo {
      */
     protected int occurrences;
     /**
-     * Horodatage de la dernière demande.
+     * Horodatage de la dernière demande (en millisecondes depuis le 1er
+     * janvier 1970).
      */
-    protected Date dateOccurrences;
+    protected long dateOccurrences;
 
     /**
      * Incrémente le nombre d'occurrences à condition que consultation
@@ -27,16 +28,17 @@ public class IndexInfo {
      * péremption. Sinon, retour du compteur à 1.
      *
      * @param peremption Délais de péremption (en jour).
+     * @param maintenant Date courante, en millisecondes.
      */
-    protected void incrementeOccurrences(int peremption) {
+    protected void incrementeOccurrences(int peremption, long maintenant) {
         //Si la dernière occurrence est plus vieille que le délais de péremption
         //alors on remet à zéro le compteur        
-        if (RequeterRezo.perime(dateOccurrences, peremption)) {
+        if (RequeterRezo.perime(dateOccurrences, peremption, maintenant)) {
             occurrences = 1;
         } else {
             ++occurrences;
         }
-        dateOccurrences = new Date();
+        dateOccurrences = maintenant;
     }
 
     /**
@@ -46,7 +48,7 @@ public class IndexInfo {
      * @param occurrences Nombre d'occurrences.
      * @param date_occurrences Date de la dernière occurrence.
      */
-    protected IndexInfo(int occurrences, Date date_occurrences) {
+    protected IndexInfo(int occurrences, long date_occurrences) {
         this.occurrences = occurrences;
         this.dateOccurrences = date_occurrences;
     }
@@ -56,7 +58,7 @@ public class IndexInfo {
      */
     protected IndexInfo() {
         occurrences = 1;
-        dateOccurrences = new Date();
+        dateOccurrences = Horloge.maintenant();
     }
 
     /**
@@ -68,7 +70,7 @@ public class IndexInfo {
     @Override
     public String toString() {
         SimpleDateFormat df = new SimpleDateFormat("dd-MM-yyyy hh:mm:ss aaa");
-        return occurrences + ";" + df.format(dateOccurrences);
+        return occurrences + ";" + df.format(new Date(dateOccurrences));
     }
 
     /**
@@ -83,7 +85,7 @@ public class IndexInfo {
      * Getter de la date de la dernière occurrence.
      * @return La date de la dernière occurrence.
      */
-    protected Date getDateOccurrences() {
+    protected long getDateOccurrences() {
         return dateOccurrences;
     }
 
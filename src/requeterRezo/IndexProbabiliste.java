@@ -0,0 +1,151 @@
+package requeterRezo;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Map.Entry;
+
+/**
+ * Index des mots rencontrés mais pas présents dans le cache, sous la forme
+ * d'une esquisse Count-Min (voir {@link EsquisseCountMin}) au lieu d'une table
+ * exacte : la mémoire occupée est fixe (4 Mo) quel que soit le nombre de mots
+ * rencontrés, au prix d'une surestimation possible du nombre d'occurrences des
+ * mots rares. Les mots ne sont pas conservés : la table elle-même reste vide.
+ *
+ * Les fréquences sont divisées par deux toutes les {@link #PERIODE} requêtes,
+ * ce qui remplace la remise à 1 du compteur après le délais de péremption
+ * (voir {@link IndexInfo#incrementeOccurrences(int, long)}).
+ *
+ * Activé par {@link Configuration#indexProbabiliste(boolean)}.
+ */
+public class IndexProbabiliste extends Index {
+
+    /**
+     * Nombre magique ("RZIS") en tête des fichiers d'index probabilistes.
+     */
+    protected static final int MAGIE = 0x525A4953;
+
+    /**
+     * Nombre de compteurs par ligne de l'esquisse.
+     */
+    protected static final int LARGEUR = 1 << 18;
+
+    /**
+     * Nombre de lignes de l'esquisse.
+     */
+    protected static final int PROFONDEUR = 4;
+
+    /**
+     * Nombre de requêtes entre deux divisions des fréquences.
+     */
+    protected static final long PERIODE = 10L * LARGEUR;
+
+    private final EsquisseCountMin esquisse;
+
+    /**
+     * Construit un index vide.
+     */
+    protected IndexProbabiliste() {
+        this(new EsquisseCountMin(LARGEUR, PROFONDEUR, Integer.MAX_VALUE, PERIODE));
+    }
+
+    private IndexProbabiliste(EsquisseCountMin esquisse) {
+        super(0);
+        this.esquisse = esquisse;
+    }
+
+    /**
+     * Construit un index probabiliste à partir d'un index exact (changement de
+     * configuration).
+     *
+     * @param index Index exact.
+     * @return L'index probabiliste.
+     */
+    protected static IndexProbabiliste depuis(Index index) {
+        if (index instanceof IndexProbabiliste) {
+            return (IndexProbabiliste) index;
+        }
+        IndexProbabiliste res = new IndexProbabiliste();
+        for (Entry<String, IndexInfo> entree : index.entrySet()) {
+            res.esquisse.relever(entree.getKey(), entree.getValue().getOccurrences());
+        }
+        return res;
+    }
+
+    /**
+     * Lit un index probabiliste (après le nombre magique et la version).
+     *
+     * @param contenu Contenu du fichier d'index.
+     * @return L'index lu.
+     */
+    protected static IndexProbabiliste lire(ByteBuffer contenu) {
+        return new IndexProbabiliste(EsquisseCountMin.lire(contenu));
+    }
+
+    /**
+     * Sauvegarde l'index : nombre magique ("RZIS"), version puis l'esquisse
+     * (voir {@link EsquisseCountMin#ecrire(OutputStream)}).
+     *
+     * @param chemin Chemin du fichier à écrire.
+     * @throws IOException
+     */
+    protected void sauvegarder(String chemin) throws IOException {
+        try (OutputStream sortie = new FileOutputStream(chemin + "_tmp")) {
+            FormatBinaire.Tampon tampon = new FormatBinaire.Tampon(8);
+            tampon.ecrireInt(MAGIE);
+            tampon.ecrireOctet(Index.VERSION);
+            tampon.transferer(sortie);
+            esquisse.ecrire(sortie);
+        }
+        Cache.remplacer(chemin);
+    }
+
+    @Override
+    public boolean containsKey(Object mot) {
+        return esquisse.estimer((String) mot) > 0;
+    }
+
+    @Override
+    public IndexInfo get(Object mot) {
+        int occurrences = esquisse.estimer((String) mot);
+        return occurrences > 0 ? new IndexInfo(occurrences, horloge.getAsLong()) : null;
+    }
+
+    @Override
+    public IndexInfo put(String mot, IndexInfo info) {
+        esquisse.relever(mot, info.getOccurrences());
+        return null;
+    }
+
+    @Override
+    public IndexInfo remove(Object mot) {
+        //Une esquisse ne permet pas de retirer un mot : sa fréquence s'efface
+        //avec le vieillissement
+        return null;
+    }
+
+    @Override
+    protected void supprimer(String mot) {
+    }
+
+    @Override
+    protected void ajouter(String mot, IndexInfo info) {
+        if (esquisse.estimer(mot) == 0) {
+            //Première rencontre : comptée comme une requête
+            esquisse.incrementer(mot);
+        }
+        esquisse.relever(mot, info.getOccurrences());
+        if (journal != null) {
+            journal.index(mot, info);
+        }
+    }
+
+    @Override
+    protected void incrementer(String mot, int peremption) {
+        esquisse.incrementer(mot);
+        if (journal != null) {
+            journal.index(mot, new IndexInfo(esquisse.estimer(mot), horloge.getAsLong()));
+        }
+    }
+}
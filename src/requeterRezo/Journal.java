@@ -0,0 +1,779 @@
+package requeterRezo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Journal des modifications de l'index du cache ({@link Cache}) et de l'index
+ * d'attente ({@link Index}). Chaque entrée dans le cache, suppression et
+ * changement du nombre d'occurrences est ajoutée à la fin du journal : après
+ * un arrêt brutal, l'état est retrouvé en rejouant le journal sur les derniers
+ * fichiers d'index sauvegardés, sans parcourir l'arborescence du cache.
+ *
+ * Un enregistrement décrit l'état complet d'un mot (et non une variation) :
+ * rejouer un enregistrement déjà pris en compte par les fichiers d'index est
+ * donc sans effet. Cela permet de vider le journal après la réécriture des
+ * index (point de reprise) sans avoir à rendre les deux opérations atomiques.
+ *
+ * Format d'un enregistrement : type (1 octet), CRC32 du reste (4 octets),
+ * taille du corps (4 octets), corps (mot puis champs, voir
+ * {@link FormatBinaire}). Un enregistrement incomplet ou corrompu (écriture
+ * interrompue) marque la fin du journal.
+ *
+ * Un journal partagé (voir {@link Configuration#partage(boolean)}) est écrit
+ * par tous les processus utilisant le même dossier de cache. Les
+ * enregistrements sont alors ajoutés à la fin du fichier sous un verrou de
+ * fichier ({@link FileLock} sur le fichier "verrou" du dossier), et chaque
+ * processus prend en compte au fil des requêtes ceux des autres (voir
+ * {@link Journal#suivre(Cache, Index, List, boolean)}). Un point de reprise ne
+ * vide pas un journal partagé : il le remplace par un nouveau fichier après
+ * avoir marqué la fin de l'ancien, que les autres processus lisent jusqu'au
+ * bout avant de passer au nouveau. Le numéro (génération) du journal courant
+ * est conservé dans le fichier verrou.
+ */
+public class Journal {
+
+    /**
+     * Taille du journal (en octets) à partir de laquelle un point de reprise
+     * est souhaitable (4 Mo).
+     */
+    protected static final long TAILLE_POINT_DE_REPRISE = 4L << 20;
+
+    private static final byte CACHE = 1;
+    private static final byte CACHE_SUPPRESSION = 2;
+    private static final byte INDEX = 3;
+    private static final byte INDEX_SUPPRESSION = 4;
+    /**
+     * Fin d'un journal partagé remplacé lors d'un point de reprise.
+     */
+    private static final byte FIN = 5;
+    private static final int TAILLE_EN_TETE = 9;
+
+    /**
+     * Fichier du journal.
+     */
+    protected final File fichier;
+
+    /**
+     * Canal des écritures.
+     */
+    private FileChannel canal;
+
+    /**
+     * Taille courante du journal, en octets.
+     */
+    private long taille;
+
+    /**
+     * Verrou du dossier (null si le journal n'est pas partagé).
+     */
+    private final Verrou verrou;
+
+    /**
+     * Génération du journal ouvert en écriture.
+     */
+    private long generationEcriture;
+
+    /**
+     * Canal du journal lu par {@link Journal#suivre(Cache, Index, List, boolean)} :
+     * après un point de reprise fait par un autre processus, l'ancien journal
+     * est lu jusqu'à sa fin.
+     */
+    private FileChannel lecture;
+
+    /**
+     * Génération du journal lu.
+     */
+    private long generationLecture;
+
+    /**
+     * Position jusqu'à laquelle le journal lu a été pris en compte.
+     */
+    private long lu;
+
+    /**
+     * True lorsque la fin du journal lu a été atteinte (journal remplacé).
+     */
+    private boolean termine;
+
+    /**
+     * Enregistrements ajoutés par ce processus et pas encore atteints par la
+     * lecture (génération, position, taille), à ne pas appliquer une seconde
+     * fois.
+     */
+    private final ArrayDeque<long[]> propres = new ArrayDeque<>();
+
+    /**
+     * Position suivant le dernier enregistrement lu par
+     * {@link Journal#appliquer(ByteBuffer, long, Cache, Index, int, List, boolean)}.
+     */
+    private long finLecture;
+
+    /**
+     * Ouvre (ou crée) le journal.
+     *
+     * @param fichier Chemin du fichier du journal.
+     * @throws IOException
+     */
+    protected Journal(String fichier) throws IOException {
+        this.fichier = new File(fichier);
+        this.canal = ouvrir(this.fichier);
+        this.taille = canal.size();
+        this.verrou = null;
+    }
+
+    /**
+     * Ouvre (ou crée) un journal partagé entre plusieurs processus.
+     *
+     * @param fichier Chemin du fichier du journal.
+     * @param fichierVerrou Chemin du fichier servant de verrou.
+     * @throws IOException
+     */
+    protected Journal(String fichier, String fichierVerrou) throws IOException {
+        this.fichier = new File(fichier);
+        this.verrou = Verrou.ouvrir(new File(fichierVerrou));
+        this.canal = ouvrir(this.fichier);
+        this.taille = canal.size();
+        //Vérifiée à la prise du verrou
+        this.generationEcriture = verrou.generation();
+        this.lecture = canal;
+        this.generationLecture = generationEcriture;
+    }
+
+    /**
+     * Indique si le journal est partagé entre plusieurs processus.
+     *
+     * @return True si le journal est partagé.
+     */
+    protected boolean estPartage() {
+        return verrou != null;
+    }
+
+    /**
+     * Enregistre l'état d'un mot du cache (entrée dans le cache ou changement
+     * du nombre d'occurrences).
+     *
+     * @param mot Mot concerné.
+     * @param info Etat du mot.
+     */
+    protected void cache(String mot, CacheInfo info) {
+        FormatBinaire.Tampon tampon = nouvelEnregistrement(CACHE, mot);
+        tampon.ecrireVarint(info.getID());
+        tampon.ecrireVarlong(info.getDateCache());
+        tampon.ecrireVarint(info.getOccurrences());
+        tampon.ecrireVarlong(info.getDateOccurrences());
+        tampon.ecrireVarint(info.getTaille());
+        tampon.ecrireVarint(info.getPeremption() + 1);
+        tampon.ecrireVarlong(info.getEmpreinte());
+        ajouter(tampon);
+    }
+
+    /**
+     * Enregistre la sortie d'un mot du cache.
+     *
+     * @param mot Mot concerné.
+     * @param id ID de l'entrée supprimée (le mot a pu entrer à nouveau dans le
+     * cache sous un autre ID avant que l'enregistrement ne soit lu par un
+     * autre processus).
+     */
+    protected void cacheSuppression(String mot, int id) {
+        FormatBinaire.Tampon tampon = nouvelEnregistrement(CACHE_SUPPRESSION, mot);
+        tampon.ecrireVarint(id);
+        ajouter(tampon);
+    }
+
+    /**
+     * Enregistre l'état d'un mot de l'index d'attente.
+     *
+     * @param mot Mot concerné.
+     * @param info Etat du mot.
+     */
+    protected void index(String mot, IndexInfo info) {
+        FormatBinaire.Tampon tampon = nouvelEnregistrement(INDEX, mot);
+        tampon.ecrireVarint(info.getOccurrences());
+        tampon.ecrireVarlong(info.getDateOccurrences());
+        ajouter(tampon);
+    }
+
+    /**
+     * Enregistre la sortie d'un mot de l'index d'attente.
+     *
+     * @param mot Mot concerné.
+     */
+    protected void indexSuppression(String mot) {
+        ajouter(nouvelEnregistrement(INDEX_SUPPRESSION, mot));
+    }
+
+    /**
+     * Rejoue le journal sur les index chargés depuis les fichiers. Les ID du
+     * cache sont ensuite recalculés à partir des entrées. Un journal partagé
+     * doit être rejoué sous son verrou (voir {@link Journal#verrouiller()}).
+     *
+     * @param cache Index du cache.
+     * @param index Index d'attente.
+     * @param tailleMax Nombre maximum d'entrées (les entrées dont l'ID dépasse
+     * cette limite sont ignorées).
+     * @return Le nombre d'enregistrements rejoués.
+     * @throws IOException
+     */
+    protected synchronized int rejouer(Cache cache, Index index, int tailleMax) throws IOException {
+        long fin = canal.size();
+        ByteBuffer contenu = lire(canal, 0, fin);
+        //Dans un journal partagé, un enregistrement corrompu (processus
+        //interrompu) peut être suivi de ceux des autres processus
+        int n = appliquer(contenu, 0, cache, index, tailleMax, null, estPartage());
+        if (!estPartage() && finLecture < contenu.limit()) {
+            tronquer(finLecture);
+        }
+        if (estPartage()) {
+            if (lecture != canal) {
+                lecture.close();
+            }
+            lecture = canal;
+            generationLecture = generationEcriture;
+            lu = fin;
+            termine = false;
+        }
+        cache.reconstruireID();
+        return n;
+    }
+
+    /**
+     * Prend en compte les enregistrements ajoutés au journal partagé par les
+     * autres processus depuis la lecture précédente (voir
+     * {@link Cache#appliquer(String, CacheInfo)}). Appelée sous le verrou des
+     * index.
+     *
+     * Sans le verrou du journal, la lecture s'arrête au premier enregistrement
+     * incomplet (en cours d'écriture). Sous le verrou, aucune écriture n'est
+     * en cours : un enregistrement incomplet a été laissé par un processus
+     * interrompu et il est sauté.
+     *
+     * @param cache Index du cache.
+     * @param index Index d'attente.
+     * @param modifies Complétée par les mots dont l'entrée a été remplacée ou
+     * supprimée.
+     * @param verrouille True si le verrou du journal est pris par l'appelant
+     * (voir {@link Journal#verrouiller()}).
+     * @return True si le journal a été lu jusqu'au bout. False si le journal
+     * lu a été remplacé par un point de reprise : sans le verrou du journal, il
+     * faut rappeler la méthode avec ; avec, au moins un journal a été manqué et
+     * les index doivent être rechargés depuis le point de reprise (voir
+     * {@link Journal#reprendre()}).
+     * @throws IOException
+     */
+    protected synchronized boolean suivre(Cache cache, Index index, List<String> modifies, boolean verrouille) throws IOException {
+        while (true) {
+            if (!termine) {
+                long[] propre;
+                while ((propre = propres.peek()) != null && propre[0] == generationLecture && propre[1] == lu) {
+                    //Enregistrement de ce processus, déjà pris en compte
+                    lu += propre[2];
+                    propres.poll();
+                }
+                long fin = lecture.size();
+                if (fin > lu) {
+                    appliquer(lire(lecture, lu, fin), lu, cache, index, cache.tailleMax, modifies, verrouille);
+                    lu = finLecture;
+                }
+                //Journal remplacé sans que sa fin n'ait été marquée (processus
+                //interrompu pendant le point de reprise)
+                if (!termine && verrouille && verrou.generation() != generationLecture) {
+                    termine = true;
+                }
+                if (!termine) {
+                    return true;
+                }
+            }
+            if (!verrouille) {
+                return false;
+            }
+            long generation = verrou.generation();
+            if (generation != generationLecture + 1) {
+                return false;
+            }
+            //Le journal suivant est le journal courant, ouvert en écriture à la
+            //prise du verrou
+            if (lecture != canal) {
+                lecture.close();
+            }
+            lecture = canal;
+            generationLecture = generation;
+            lu = 0;
+            termine = false;
+        }
+    }
+
+    /**
+     * Reprend la lecture d'un journal partagé au début du journal courant,
+     * après le rechargement des index depuis le dernier point de reprise.
+     * Appelée sous le verrou du journal.
+     *
+     * @throws IOException
+     */
+    protected synchronized void reprendre() throws IOException {
+        if (lecture != canal) {
+            lecture.close();
+        }
+        lecture = canal;
+        generationLecture = generationEcriture;
+        lu = 0;
+        termine = false;
+        //Les enregistrements de ce processus sont postérieurs au point de
+        //reprise rechargé : ils sont appliqués à nouveau
+        propres.clear();
+    }
+
+    /**
+     * Prend le verrou d'un journal partagé (sans effet sinon) : aucun autre
+     * processus ni thread ne peut ajouter d'enregistrement avant
+     * {@link Journal#deverrouiller()}. Un thread peut prendre plusieurs fois le
+     * verrou. Un thread qui détient ce verrou ne doit pas attendre le verrou
+     * des index de {@link RequeterRezo}.
+     */
+    protected void verrouiller() {
+        if (verrou != null && verrou.prendre()) {
+            synchronized (this) {
+                try {
+                    //Le journal a pu être remplacé par un autre processus
+                    long generation = verrou.generation();
+                    if (generation != generationEcriture) {
+                        if (canal != lecture) {
+                            canal.close();
+                        }
+                        canal = ouvrir(fichier);
+                        taille = canal.size();
+                        generationEcriture = generation;
+                    }
+                } catch (IOException ex) {
+                    Logger.getLogger(Journal.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rend le verrou pris par {@link Journal#verrouiller()}.
+     */
+    protected void deverrouiller() {
+        if (verrou != null) {
+            verrou.rendre();
+        }
+    }
+
+    /**
+     * Vide le journal. A appeler une fois les fichiers d'index réécrits.
+     *
+     * @throws IOException
+     */
+    protected synchronized void vider() throws IOException {
+        canal.truncate(0);
+        canal.force(true);
+        taille = 0;
+    }
+
+    /**
+     * Remplace un journal partagé par un journal vide, une fois les fichiers
+     * d'index réécrits (point de reprise). La fin de l'ancien journal est
+     * marquée pour les processus qui ne l'ont pas encore lu jusqu'au bout.
+     * Appelée sous le verrou du journal, une fois le journal suivi jusqu'au
+     * bout.
+     *
+     * @throws IOException
+     */
+    protected synchronized void remplacer() throws IOException {
+        File temporaire = new File(fichier.getPath() + "_tmp");
+        FileChannel nouveau = FileChannel.open(temporaire.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long generation = generationEcriture + 1;
+        try {
+            verrou.generation(generation);
+            try {
+                Files.move(temporaire.toPath(), fichier.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temporaire.toPath(), fichier.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            nouveau.close();
+            throw ex;
+        }
+        ecrire(canal, ByteBuffer.wrap(terminer(nouvelEnregistrement(FIN, ""))), canal.size());
+        if (lecture != canal) {
+            lecture.close();
+        }
+        canal.close();
+        canal = nouveau;
+        lecture = nouveau;
+        generationEcriture = generation;
+        generationLecture = generation;
+        taille = 0;
+        lu = 0;
+        termine = false;
+        propres.clear();
+    }
+
+    /**
+     * Indique si le journal est assez long pour justifier un point de reprise.
+     *
+     * @return True si un point de reprise est souhaitable.
+     */
+    protected synchronized boolean pointDeRepriseSouhaitable() {
+        return taille >= TAILLE_POINT_DE_REPRISE;
+    }
+
+    /**
+     * Force l'écriture du journal sur disque.
+     *
+     * @throws IOException
+     */
+    protected synchronized void synchroniser() throws IOException {
+        canal.force(false);
+    }
+
+    /**
+     * Ferme le journal (après l'avoir écrit sur disque).
+     *
+     * @throws IOException
+     */
+    protected synchronized void fermer() throws IOException {
+        if (canal.isOpen()) {
+            canal.force(false);
+            canal.close();
+            if (lecture != null && lecture != canal) {
+                lecture.close();
+            }
+            if (verrou != null) {
+                verrou.fermer();
+            }
+        }
+    }
+
+    /**
+     * Lit et applique les enregistrements d'un morceau de journal. La lecture
+     * s'arrête au premier enregistrement incomplet ou corrompu (sauf si
+     * ignorerCorrompus : les octets sont alors sautés jusqu'au prochain
+     * enregistrement valide) ou après une marque de fin de journal. La position
+     * atteinte est placée dans {@link Journal#finLecture}.
+     *
+     * @param contenu Morceau du journal.
+     * @param debut Position du morceau dans le journal.
+     * @param cache Index du cache.
+     * @param index Index d'attente.
+     * @param tailleMax Nombre maximum d'entrées.
+     * @param modifies Null pour rejouer le journal au démarrage. Sinon, les
+     * enregistrements sont ceux des autres processus : ceux de ce processus
+     * sont ignorés, les autres sont appliqués par
+     * {@link Cache#appliquer(String, CacheInfo)} et les mots dont l'entrée a
+     * été remplacée ou supprimée sont ajoutés à la liste.
+     * @param ignorerCorrompus True pour sauter les enregistrements corrompus.
+     * @return Le nombre d'enregistrements appliqués.
+     */
+    private int appliquer(ByteBuffer contenu, long debut, Cache cache, Index index, int tailleMax,
+            List<String> modifies, boolean ignorerCorrompus) {
+        CRC32 crc = new CRC32();
+        int n = 0;
+        while (contenu.hasRemaining()) {
+            int position = contenu.position();
+            if (modifies != null) {
+                long[] propre;
+                while ((propre = propres.peek()) != null && (propre[0] < generationLecture
+                        || (propre[0] == generationLecture && propre[1] < debut + position))) {
+                    propres.poll();
+                }
+                if (propre != null && propre[0] == generationLecture && propre[1] == debut + position) {
+                    //Enregistrement de ce processus, déjà pris en compte
+                    propres.poll();
+                    contenu.position((int) Math.min(contenu.limit(), position + propre[2]));
+                    continue;
+                }
+            }
+            int tailleCorps = tailleCorps(contenu, position, crc);
+            if (tailleCorps < 0) {
+                if (!ignorerCorrompus) {
+                    break;
+                }
+                contenu.position(position + 1);
+                continue;
+            }
+            byte type = contenu.get(position);
+            ByteBuffer corps = contenu.duplicate();
+            corps.position(position + TAILLE_EN_TETE);
+            corps.limit(position + TAILLE_EN_TETE + tailleCorps);
+            contenu.position(position + TAILLE_EN_TETE + tailleCorps);
+            if (type == FIN) {
+                termine = true;
+                break;
+            }
+            String mot = FormatBinaire.lireChaine(corps);
+            switch (type) {
+                case CACHE:
+                    int id = FormatBinaire.lireVarint(corps);
+                    long dateCache = FormatBinaire.lireVarlong(corps);
+                    int occurrences = FormatBinaire.lireVarint(corps);
+                    long dateOccurrences = FormatBinaire.lireVarlong(corps);
+                    //Taille absente des enregistrements antérieurs à son suivi
+                    int tailleEntree = corps.hasRemaining() ? FormatBinaire.lireVarint(corps) : 0;
+                    //De même pour la péremption propre à l'entrée
+                    int peremption = corps.hasRemaining() ? FormatBinaire.lireVarint(corps) - 1 : -1;
+                    long empreinte = corps.hasRemaining() ? FormatBinaire.lireVarlong(corps) : 0;
+                    CacheInfo info = new CacheInfo(id, dateCache, occurrences, dateOccurrences, tailleEntree,
+                            peremption, empreinte);
+                    if (id >= tailleMax) {
+                        supprimer(cache, mot, -1, modifies);
+                    } else if (modifies == null) {
+                        cache.put(mot, info);
+                    } else {
+                        CacheInfo ancien = cache.get(mot);
+                        if (ancien != null && ancien.getID() != id) {
+                            modifies.add(mot);
+                        }
+                        cache.appliquer(mot, info);
+                    }
+                    break;
+                case CACHE_SUPPRESSION:
+                    //ID absent des enregistrements antérieurs au partage
+                    supprimer(cache, mot, corps.hasRemaining() ? FormatBinaire.lireVarint(corps) : -1, modifies);
+                    break;
+                case INDEX:
+                    index.put(mot, new IndexInfo(FormatBinaire.lireVarint(corps), FormatBinaire.lireVarlong(corps)));
+                    break;
+                default:
+                    index.remove(mot);
+                    break;
+            }
+            ++n;
+        }
+        finLecture = debut + contenu.position();
+        return n;
+    }
+
+    /**
+     * Applique la suppression d'une entrée du cache, si le mot a toujours
+     * l'ID supprimé.
+     */
+    private static void supprimer(Cache cache, String mot, int id, List<String> modifies) {
+        if (modifies != null) {
+            if (cache.appliquerSuppression(mot, id)) {
+                modifies.add(mot);
+            }
+            return;
+        }
+        CacheInfo info = cache.get(mot);
+        if (info != null && (id < 0 || info.getID() == id)) {
+            cache.remove(mot);
+        }
+    }
+
+    /**
+     * Vérifie l'enregistrement commençant à une position : en-tête complet,
+     * type connu, corps complet et CRC correct.
+     *
+     * @return La taille du corps, ou -1 si l'enregistrement est incomplet ou
+     * corrompu.
+     */
+    private static int tailleCorps(ByteBuffer contenu, int position, CRC32 crc) {
+        if (contenu.limit() - position < TAILLE_EN_TETE) {
+            return -1;
+        }
+        byte type = contenu.get(position);
+        int attendu = contenu.getInt(position + 1);
+        int tailleCorps = contenu.getInt(position + 5);
+        if (type < CACHE || type > FIN || tailleCorps < 0 || tailleCorps > contenu.limit() - position - TAILLE_EN_TETE) {
+            return -1;
+        }
+        ByteBuffer verifie = contenu.duplicate();
+        verifie.position(position + 5);
+        verifie.limit(position + TAILLE_EN_TETE + tailleCorps);
+        crc.reset();
+        crc.update(verifie);
+        return (int) crc.getValue() == attendu ? tailleCorps : -1;
+    }
+
+    private static FormatBinaire.Tampon nouvelEnregistrement(byte type, String mot) {
+        FormatBinaire.Tampon tampon = new FormatBinaire.Tampon(64);
+        tampon.ecrireOctet(type);
+        tampon.ecrireInt(0);
+        tampon.ecrireInt(0);
+        tampon.ecrireChaine(mot);
+        return tampon;
+    }
+
+    /**
+     * Complète l'en-tête d'un enregistrement (taille, CRC).
+     */
+    private static byte[] terminer(FormatBinaire.Tampon tampon) {
+        ByteBuffer enregistrement = ByteBuffer.wrap(tampon.toByteArray());
+        enregistrement.putInt(5, enregistrement.capacity() - TAILLE_EN_TETE);
+        CRC32 crc = new CRC32();
+        crc.update(enregistrement.array(), 5, enregistrement.capacity() - 5);
+        enregistrement.putInt(1, (int) crc.getValue());
+        return enregistrement.array();
+    }
+
+    /**
+     * Ajoute un enregistrement à la fin du journal (sous le verrou d'un journal
+     * partagé). Une erreur d'écriture est signalée sans interrompre la requête
+     * en cours : seule la reprise après un arrêt brutal est affectée.
+     */
+    private void ajouter(FormatBinaire.Tampon tampon) {
+        ByteBuffer enregistrement = ByteBuffer.wrap(terminer(tampon));
+        verrouiller();
+        try {
+            synchronized (this) {
+                long position = estPartage() ? canal.size() : taille;
+                ecrire(canal, enregistrement, position);
+                taille = position + enregistrement.capacity();
+                if (estPartage()) {
+                    propres.add(new long[]{generationEcriture, position, enregistrement.capacity()});
+                }
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(Journal.class.getName()).log(Level.SEVERE, null, ex);
+        } finally {
+            deverrouiller();
+        }
+    }
+
+    private static void ecrire(FileChannel canal, ByteBuffer enregistrement, long position) throws IOException {
+        while (enregistrement.hasRemaining()) {
+            canal.write(enregistrement, position + enregistrement.position());
+        }
+    }
+
+    private static ByteBuffer lire(FileChannel canal, long debut, long fin) throws IOException {
+        ByteBuffer contenu = ByteBuffer.allocate((int) (fin - debut));
+        while (contenu.hasRemaining()) {
+            if (canal.read(contenu, debut + contenu.position()) < 0) {
+                break;
+            }
+        }
+        contenu.flip();
+        return contenu;
+    }
+
+    private static FileChannel ouvrir(File fichier) throws IOException {
+        return FileChannel.open(fichier.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private void tronquer(long position) throws IOException {
+        Logger.getLogger(Journal.class.getName()).log(Level.WARNING,
+                "Journal {0} tronque a la position {1} (enregistrement incomplet).", new Object[]{fichier, position});
+        canal.truncate(position);
+        taille = position;
+    }
+
+    /**
+     * Verrou d'un dossier de cache partagé : verrou de fichier entre les
+     * processus, doublé d'un verrou réentrant entre les threads (un processus
+     * ne peut pas prendre deux fois le verrou d'un même fichier). Les instances
+     * d'un même processus utilisant le même dossier partagent le même verrou.
+     * Le fichier contient la génération du journal courant (8 octets).
+     */
+    private static class Verrou {
+
+        private static final HashMap<File, Verrou> OUVERTS = new HashMap<>();
+
+        private final File fichier;
+
+        private final FileChannel canal;
+
+        private final ReentrantLock local = new ReentrantLock();
+
+        /**
+         * Verrou de fichier (null s'il n'a pas pu être pris).
+         */
+        private FileLock verrou;
+
+        private int utilisateurs;
+
+        private Verrou(File fichier) throws IOException {
+            this.fichier = fichier;
+            this.canal = Journal.ouvrir(fichier);
+        }
+
+        private static Verrou ouvrir(File fichier) throws IOException {
+            synchronized (OUVERTS) {
+                File cle = fichier.getCanonicalFile();
+                Verrou res = OUVERTS.get(cle);
+                if (res == null) {
+                    res = new Verrou(cle);
+                    OUVERTS.put(cle, res);
+                }
+                ++res.utilisateurs;
+                return res;
+            }
+        }
+
+        /**
+         * Prend le verrou (en attendant les autres threads et processus).
+         *
+         * @return True si le verrou de fichier vient d'être pris, false si le
+         * thread le détenait déjà.
+         */
+        private boolean prendre() {
+            local.lock();
+            if (local.getHoldCount() > 1) {
+                return false;
+            }
+            try {
+                verrou = canal.lock();
+            } catch (IOException ex) {
+                Logger.getLogger(Journal.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            return true;
+        }
+
+        private void rendre() {
+            try {
+                if (local.getHoldCount() == 1 && verrou != null) {
+                    verrou.release();
+                    verrou = null;
+                }
+            } catch (IOException ex) {
+                Logger.getLogger(Journal.class.getName()).log(Level.SEVERE, null, ex);
+            } finally {
+                local.unlock();
+            }
+        }
+
+        private long generation() throws IOException {
+            ByteBuffer tampon = ByteBuffer.allocate(8);
+            while (tampon.hasRemaining() && canal.read(tampon, tampon.position()) > 0) {
+            }
+            return tampon.hasRemaining() ? 0 : tampon.getLong(0);
+        }
+
+        private void generation(long generation) throws IOException {
+            ByteBuffer tampon = ByteBuffer.allocate(8);
+            tampon.putLong(0, generation);
+            while (tampon.hasRemaining()) {
+                canal.write(tampon, tampon.position());
+            }
+            canal.force(false);
+        }
+
+        private void fermer() throws IOException {
+            synchronized (OUVERTS) {
+                if (--utilisateurs == 0) {
+                    OUVERTS.remove(fichier);
+                    canal.close();
+                }
+            }
+        }
+    }
+}
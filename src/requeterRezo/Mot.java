@@ -2,10 +2,18 @@ package requeterRezo;
 
 import java.io.*;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Structure regroupant les informations obtenus sur un mot par une requête sur
@@ -62,6 +70,14 @@ public class Mot {
      */
     protected ArrayList<Annotation> annotations;
 
+    /**
+     * Vrai pour un voisin (mot désigné par un {@link Terme}) : il est partagé
+     * entre les copies d'un mot (voir {@link #copier()}) et n'est donc pas
+     * modifiable. Ses setters lèvent une UnsupportedOperationException et ses
+     * relations et annotations sont rendues vides.
+     */
+    private boolean lectureSeule;
+
     /**
      * Constructeur simple. Appelé seulement par le système lorsqu'il doit
      * construire un mot à partir d'une requête sur JDM.
@@ -106,6 +122,23 @@ public class Mot {
         this.annotations = annotations;
     }
 
+    /**
+     * Construit un voisin, non modifiable et sans relations ni annotations.
+     *
+     * @param nom Nom du voisin.
+     * @param id ID du noeud dans rezoJDM.
+     * @param type Type du noeud dans rezoJDM.
+     * @param mot_formate Mot formaté extrait de JeuxDeMots.
+     * @param pg Poids dans la langue française extrait de JeuxDeMots.
+     * @param description Définition extraite de JeuxDeMots.
+     * @return Le voisin.
+     */
+    protected static Mot creerVoisin(String nom, long id, int type, String mot_formate, double pg, String description) {
+        Mot voisin = new Mot(nom, id, type, mot_formate, pg, description, new HashMap<>(), new HashMap<>(), new ArrayList<>());
+        voisin.lectureSeule = true;
+        return voisin;
+    }
+
     /**
      * Retourne le nom du mot ("lui-même")
      *
@@ -150,7 +183,7 @@ public class Mot {
      * @return Retourne les relations entrantes du mot dans le réseau.
      */
     public HashMap<String, ArrayList<Terme>> getRelations_entrantes() {
-        return relations_entrantes;
+        return lectureSeule ? new HashMap<>() : relations_entrantes;
     }
 
     /**
@@ -159,7 +192,7 @@ public class Mot {
      * @return Retourne les relations sortantes du mot dans le réseau.
      */
     public HashMap<String, ArrayList<Terme>> getRelations_sortantes() {
-        return relations_sortantes;
+        return lectureSeule ? new HashMap<>() : relations_sortantes;
     }
 
     /**
@@ -168,7 +201,7 @@ public class Mot {
      * @return Retourne les annotations du mot.
      */
     public ArrayList<Annotation> getAnnotations() {
-        return this.annotations;
+        return lectureSeule ? new ArrayList<>() : this.annotations;
     }
 
     /**
@@ -189,73 +222,93 @@ public class Mot {
         return poids_general;
     }
 
+    /**
+     * Copie le mot : les tables de relations et les listes de termes et
+     * d'annotations sont propres à la copie ; les termes, leurs voisins (qui
+     * portent eid, type, nom formaté, poids et définition) et les
+     * annotations, tous non modifiables, sont partagés. Un mot gardé en
+     * mémoire (voir {@link CacheMemoire}) n'est rendu que sous cette forme.
+     *
+     * @return La copie du mot.
+     */
+    protected Mot copier() {
+        return new Mot(nom, id, type, mot_formate, poids_general, definition,
+                copier(relations_entrantes), copier(relations_sortantes), new ArrayList<>(annotations));
+    }
+
+    private static HashMap<String, ArrayList<Terme>> copier(HashMap<String, ArrayList<Terme>> relations) {
+        HashMap<String, ArrayList<Terme>> res = new HashMap<>(Cache.capacite(relations.size()));
+        for (Entry<String, ArrayList<Terme>> entree : relations.entrySet()) {
+            res.put(entree.getKey(), new ArrayList<>(entree.getValue()));
+        }
+        return res;
+    }
+
     /**
      * Ecrit toute la structure du Mot dans un fichier, pour une réutilisation
-     * future (notamment dans le cache).
+     * future (notamment dans le cache). Le fichier est écrit dans le format
+     * binaire décrit par {@link FormatBinaire}, dans un fichier temporaire
+     * renommé ensuite à sa place : une lecture concurrente ne voit jamais un
+     * fichier partiellement écrit.
      *
      * @param mot Mot à conserver.
      * @param fichier Fichier où le Mot doit être stocké.
      * @throws IOException
      */
     public static void ecrire(Mot mot, File fichier) throws IOException {
-        try (BufferedWriter ecrivain = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fichier), "UTF-8"))) {
-            //System.out.println(mot.getNom());
-            ecrivain.write(mot.getNom());
-            ecrivain.newLine();
-            ecrivain.write(mot.getMotFormate());
-            ecrivain.newLine();
-            //id
-            ecrivain.write(String.valueOf(mot.getID()));
-            ecrivain.newLine();
-            //type
-            ecrivain.write(String.valueOf(mot.getType()));
-            ecrivain.newLine();
-            //System.out.println(mot.getPoids_général());
-            ecrivain.write("" + mot.getPoids_general());
-            ecrivain.newLine();
-            ecrivain.write("<def>");
-            ecrivain.newLine();
-            ecrivain.write(mot.getDefinition());
-            ecrivain.newLine();
-            ecrivain.write("</def>");
-            ecrivain.newLine();
-            ecrivain.write("sortant");
-            ecrivain.newLine();
-            // pour toutes les relations dans les relations_sortantes
-            for (Entry<String, ArrayList<Terme>> entree : mot.getRelations_sortantes().entrySet()) {
-                ecrivain.write(entree.getKey());
-                for (Terme motCible : entree.getValue()) {
-                    ecrivain.write(";" + motCible.getNom() + ",," + motCible.getPoids());
-                }
-                ecrivain.newLine();
+        StockageFichiers.ecrireAtomique(fichier, FormatBinaire.encoder(mot));
+    }
+
+    /**
+     * Retourne la structure de Mot depuis un fichier écrit par la fonction
+     * "ecrire". Les fichiers écrits dans l'ancien format texte sont lus puis
+     * réécrits dans le format binaire (voir {@link Mot#ecrire(Mot, File)}).
+     *
+     * @param chemin Chemin du fichier qui doit être lu.
+     * @return Le Mot sauvegardé dans le fichier.
+     * @throws IOException
+     */
+    public static Mot lire(String chemin) throws IOException {
+        String texte;
+        try (FileChannel canal = FileChannel.open(Paths.get(chemin), StandardOpenOption.READ)) {
+            ByteBuffer entete = ByteBuffer.allocate(FormatBinaire.TAILLE_EN_TETE);
+            while (entete.hasRemaining() && canal.read(entete) >= 0) {
             }
-            ecrivain.write("entrant");
-            ecrivain.newLine();
-            for (Entry<String, ArrayList<Terme>> entree : mot.getRelations_entrantes().entrySet()) {
-                ecrivain.write(entree.getKey());
-                for (Terme motCible : entree.getValue()) {
-                    ecrivain.write(";" + motCible.getNom() + ",," + motCible.getPoids());
+            entete.flip();
+            if (FormatBinaire.estBinaire(entete)) {
+                try {
+                    return FormatBinaire.decoder(canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size()));
+                } catch (IllegalArgumentException ex) {
+                    throw new IOException("Fichier du cache illisible : " + chemin, ex);
                 }
-                ecrivain.newLine();
             }
-            ecrivain.write("annotation");
-            ecrivain.newLine();
-            for (Annotation annotation : mot.getAnnotations()) {
-                ecrivain.write(annotation.toString());
-                ecrivain.newLine();
+            //Ancien format : lu par copie, sans projection, afin que le
+            //fichier puisse être remplacé ensuite (y compris sous Windows)
+            ByteBuffer donnees = ByteBuffer.allocate((int) canal.size());
+            canal.position(0);
+            while (donnees.hasRemaining() && canal.read(donnees) >= 0) {
             }
+            donnees.flip();
+            texte = StandardCharsets.UTF_8.decode(donnees).toString();
+        }
+        Mot mot = lireTexte(new BufferedReader(new StringReader(texte)));
+        //Migration vers le format binaire, une fois le fichier fermé
+        try {
+            ecrire(mot, new File(chemin));
+        } catch (IOException ex) {
+            Logger.getLogger(Mot.class.getName()).log(Level.WARNING, null, ex);
         }
+        return mot;
     }
 
     /**
-     * Retourne la structure de Mot depuis un fichier écrit par la fonction
-     * "ecrire".
+     * Lit une entrée écrite dans l'ancien format texte du cache.
      *
-     * @param chemin Chemin du fichier qui doit être lu.
-     * @return Le Mot sauvegardé dans le fichier.
+     * @param lecteur Lecteur positionné au début de l'entrée.
+     * @return Le Mot sauvegardé dans l'entrée.
      * @throws IOException
      */
-    public static Mot lire(String chemin) throws IOException {
+    protected static Mot lireTexte(BufferedReader lecteur) throws IOException {
         String nom;
         long id = -1;
         int type = -1;
@@ -265,74 +318,91 @@ public class Mot {
         HashMap<String, ArrayList<Terme>> relations_sortantes;
         HashMap<String, ArrayList<Terme>> relations_entrantes;
         ArrayList<Annotation> annotations = new ArrayList<>();
-        try (BufferedReader lecteur = new BufferedReader(new FileReader(chemin))) {
-            String ligne;
-            nom = "";
-            mot_formate = "";
-            description = "";
-            String[] divisions;
-            String[] sous_divisions;
-            relations_sortantes = new HashMap<>();
-            relations_entrantes = new HashMap<>();
-            // lecture du nom :
-            if ((ligne = lecteur.readLine()) != null) {
-                nom = ligne;
-            }
-            // lecture du mot_formate
-            if ((ligne = lecteur.readLine()) != null) {
-                mot_formate = ligne;
-            }
-            // lecture de l'id
-            if ((ligne = lecteur.readLine()) != null) {
-                id = Long.parseLong(ligne);
-            }
-            // lecture du type
-            if ((ligne = lecteur.readLine()) != null) {
-                type = Integer.parseInt(ligne);
-            }
-            // lecture du poids
-            if ((ligne = lecteur.readLine()) != null) {
-                poids_general = ligne;
-            }
-            //Saut de la ligne "<def>"
-            lecteur.readLine();
-            //lecture de la description
-            while (((ligne = lecteur.readLine()) != null) && !(ligne.equals("</def>"))) {
-                description += ligne;
-            }
-            //Saut de la ligne "sortant"
-            lecteur.readLine();
-            // lecture des relations sortantes
-            while (((ligne = lecteur.readLine()) != null) && !(ligne.equals("entrant"))) {
-                divisions = ligne.split(";");
-                relations_sortantes.put(divisions[0], new ArrayList<>());
-                for (int i = 1; i < divisions.length; ++i) {
-                    sous_divisions = divisions[i].split(",,");
-                    if (sous_divisions.length == 2) {
-                       // relations_sortantes.get(divisions[0]).add(new Terme(sous_divisions[0], Double.parseDouble(sous_divisions[1])));
-                    }
+        //L'ancien format ne conserve que le nom des voisins
+        HashMap<String, Mot> voisins = new HashMap<>();
+        String ligne;
+        nom = "";
+        mot_formate = "";
+        description = "";
+        String[] divisions;
+        String[] sous_divisions;
+        relations_sortantes = new HashMap<>();
+        relations_entrantes = new HashMap<>();
+        // lecture du nom :
+        if ((ligne = lecteur.readLine()) != null) {
+            nom = ligne;
+        }
+        // lecture du mot_formate
+        if ((ligne = lecteur.readLine()) != null) {
+            mot_formate = ligne;
+        }
+        // lecture de l'id
+        if ((ligne = lecteur.readLine()) != null) {
+            id = Long.parseLong(ligne);
+        }
+        // lecture du type
+        if ((ligne = lecteur.readLine()) != null) {
+            type = Integer.parseInt(ligne);
+        }
+        // lecture du poids
+        if ((ligne = lecteur.readLine()) != null) {
+            poids_general = ligne;
+        }
+        //Saut de la ligne "<def>"
+        lecteur.readLine();
+        //lecture de la description
+        while (((ligne = lecteur.readLine()) != null) && !(ligne.equals("</def>"))) {
+            description += ligne;
+        }
+        //Saut de la ligne "sortant"
+        lecteur.readLine();
+        // lecture des relations sortantes
+        while (((ligne = lecteur.readLine()) != null) && !(ligne.equals("entrant"))) {
+            divisions = ligne.split(";");
+            relations_sortantes.put(divisions[0], new ArrayList<>());
+            for (int i = 1; i < divisions.length; ++i) {
+                sous_divisions = divisions[i].split(",,");
+                if (sous_divisions.length == 2) {
+                    relations_sortantes.get(divisions[0]).add(new Terme(voisin(sous_divisions[0], voisins), Double.parseDouble(sous_divisions[1])));
                 }
             }
-            //lecture des relations entrantes
-            while (((ligne = lecteur.readLine()) != null) && !(ligne.equals("annotation"))) {
-                divisions = ligne.split(";");
-                relations_entrantes.put(divisions[0], new ArrayList<>());
-                for (int i = 1; i < divisions.length; ++i) {
-                    sous_divisions = divisions[i].split(",,");
-                    if (sous_divisions.length == 2) {
-                       // relations_entrantes.get(divisions[0]).add(new Terme(sous_divisions[0], Double.parseDouble(sous_divisions[1])));
-                    }
+        }
+        //lecture des relations entrantes
+        while (((ligne = lecteur.readLine()) != null) && !(ligne.equals("annotation"))) {
+            divisions = ligne.split(";");
+            relations_entrantes.put(divisions[0], new ArrayList<>());
+            for (int i = 1; i < divisions.length; ++i) {
+                sous_divisions = divisions[i].split(",,");
+                if (sous_divisions.length == 2) {
+                    relations_entrantes.get(divisions[0]).add(new Terme(voisin(sous_divisions[0], voisins), Double.parseDouble(sous_divisions[1])));
                 }
             }
-            //lecture des annotations
-            while ((ligne = lecteur.readLine()) != null) {
-                divisions = ligne.split(";");
-                annotations.add(new Annotation(divisions[0], divisions[1], divisions[2], divisions[3], Double.parseDouble(divisions[4])));
-            }
+        }
+        //lecture des annotations
+        while ((ligne = lecteur.readLine()) != null) {
+            divisions = ligne.split(";");
+            annotations.add(new Annotation(divisions[0], divisions[1], divisions[2], divisions[3], Double.parseDouble(divisions[4])));
         }
         return new Mot(nom, id, type, mot_formate, Double.parseDouble(poids_general), description, relations_entrantes, relations_sortantes, annotations);
     }
 
+    /**
+     * Retourne le voisin d'un nom donné lors de la lecture de l'ancien format,
+     * en le créant s'il n'a pas encore été rencontré.
+     *
+     * @param nom Nom du voisin.
+     * @param voisins Voisins déjà rencontrés.
+     * @return Le voisin.
+     */
+    private static Mot voisin(String nom, HashMap<String, Mot> voisins) {
+        Mot voisin = voisins.get(nom);
+        if (voisin == null) {
+            voisin = creerVoisin(nom, -1, -1, nom, 0, "");
+            voisins.put(nom, voisin);
+        }
+        return voisin;
+    }
+
     /**
      * Construit l'URL d'un mot dans JeuxdeMot.
      *
@@ -431,6 +501,7 @@ public class Mot {
      * @param poids_general Nouveau poids
      */
     public void setPoids_general(double poids_general) {
+        modifiable();
         this.poids_general = poids_general;
     }
 
@@ -441,6 +512,7 @@ public class Mot {
      * @param relations_entrantes Nouvelles relations entrantes
      */
     public void setRelations_entrantes(HashMap<String, ArrayList<Terme>> relations_entrantes) {
+        modifiable();
         this.relations_entrantes = relations_entrantes;
     }
 
@@ -451,6 +523,7 @@ public class Mot {
      * @param relations_sortantes Nouvelles relations sortantes
      */
     public void setRelations_sortantes(HashMap<String, ArrayList<Terme>> relations_sortantes) {
+        modifiable();
         this.relations_sortantes = relations_sortantes;
     }
 
@@ -461,6 +534,7 @@ public class Mot {
      * @param annotations Nouvelles annotations
      */
     public void setAnnotations(ArrayList<Annotation> annotations) {
+        modifiable();
         this.annotations = annotations;
     }
 
@@ -471,6 +545,7 @@ public class Mot {
      * @param definition Nouvelle définition du mot.
      */
     public void setDefinition(String definition) {
+        modifiable();
         this.definition = definition;
     }
 
@@ -481,6 +556,7 @@ public class Mot {
      * @param mot_formate Nouveau mot formate.
      */
     public void setMotFormate(String mot_formate) {
+        modifiable();
         this.mot_formate = mot_formate;
     }
 
@@ -490,6 +566,7 @@ public class Mot {
      * @param id Nouvel ID
      */
     public void setID(long id) {
+        modifiable();
         this.id = id;
     }
 
@@ -499,7 +576,14 @@ public class Mot {
      * @param type Nouveau type
      */
     public void setType(int type) {
+        modifiable();
         this.type = type;
     }
 
+    private void modifiable() {
+        if (lectureSeule) {
+            throw new UnsupportedOperationException("Les voisins d'un mot ne sont pas modifiables.");
+        }
+    }
+
 }
@@ -0,0 +1,1255 @@
+package requeterRezo;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mesures de performances des parties sensibles de RequeterRezo. Chaque mesure
+ * effectue une phase de chauffe (pour laisser le JIT compiler le code mesuré)
+ * puis plusieurs séries chronométrées dont on retient la meilleure.
+ */
+public class Performances {
+
+    /**
+     * Nombre de séries chronométrées par mesure.
+     */
+    private static final int SERIES = 5;
+
+    /**
+     * Empêche le JIT d'éliminer les calculs dont le résultat n'est pas utilisé.
+     */
+    static volatile Object puits;
+
+    /**
+     * @param args Mesures à lancer (toutes par défaut).
+     */
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("processus")) {
+            processusPartage(args);
+            return;
+        }
+        boolean tout = args.length == 0;
+        for (String arg : args) {
+            tout |= arg.equals("tout");
+        }
+        if (tout || contient(args, "html")) {
+            mesurerDecodageHtml();
+        }
+        if (tout || contient(args, "lecture")) {
+            mesurerLectureCache(false, 0);
+            mesurerLectureCache(true, 0);
+            mesurerLectureCache(true, 500);
+        }
+        if (tout || contient(args, "compression")) {
+            mesurerCompression();
+        }
+        if (tout || contient(args, "ecriture")) {
+            mesurerEcriture(false);
+            mesurerEcriture(true);
+        }
+        if (tout || contient(args, "horstas")) {
+            mesurerHorsTas(20_000, false);
+            mesurerHorsTas(20_000, true);
+        }
+        if (tout || contient(args, "eviction")) {
+            mesurerEviction(100_000);
+        }
+        if (tout || contient(args, "expiration")) {
+            mesurerExpiration(1_000_000);
+        }
+        if (tout || contient(args, "politiques")) {
+            for (Politique politique : Politique.values()) {
+                mesurerPolitique(politique);
+            }
+        }
+        if (tout || contient(args, "reconstruction")) {
+            mesurerReconstruction(100_000);
+        }
+        if (tout || contient(args, "demarrage")) {
+            mesurerDemarrage(10_000, true);
+            mesurerDemarrage(1_000_000, false);
+        }
+        if (tout || contient(args, "concurrence")) {
+            for (boolean segments : new boolean[]{false, true}) {
+                mesurerConcurrence(1, segments);
+                mesurerConcurrence(8, segments);
+            }
+        }
+        if (tout || contient(args, "partage")) {
+            mesurerPartage(4, false);
+            mesurerPartage(4, true);
+        }
+        if (tout || contient(args, "formes")) {
+            mesurerFormes(false);
+            mesurerFormes(true);
+            mesurerSegments();
+        }
+        if (tout || contient(args, "absents")) {
+            mesurerFauxPositifs(0.01);
+            mesurerFauxPositifs(0.001);
+            mesurerAbsents(false);
+            mesurerAbsents(true);
+        }
+        if (tout || contient(args, "peremption")) {
+            mesurerPeremption(false);
+            mesurerPeremption(true);
+        }
+        if (contient(args, "echelle")) {
+            mesurerEchelle(1_000_000);
+            mesurerEchelle(10_000_000);
+        }
+    }
+
+    /**
+     * Instance de RequeterRezo dont les requêtes sur le réseau sont remplacées
+     * par des mots synthétiques, afin de mesurer le cache seul.
+     */
+    static class RequeterRezoHorsLigne extends RequeterRezo {
+
+        private final int voisins;
+
+        /**
+         * Temps de réponse simulé du réseau, en millisecondes.
+         */
+        private final long latence;
+
+        RequeterRezoHorsLigne(Configuration configuration, int voisins) {
+            this(configuration, voisins, 0);
+        }
+
+        RequeterRezoHorsLigne(Configuration configuration, int voisins, long latence) {
+            super(configuration);
+            this.voisins = voisins;
+            this.latence = latence;
+        }
+
+        @Override
+        Mot construireMot(String nom, URL jdm) throws InterruptedException {
+            if (latence > 0) {
+                Thread.sleep(latence);
+            }
+            //Mots simulant une faute de frappe : terme inexistant
+            if (nom.startsWith("inconnu")) {
+                motAbsent(nom);
+                return null;
+            }
+            //Comme rezoJDM : les types de relations sont nommés dans chaque
+            //réponse, restreinte à la forme demandée
+            for (int i = 0; i < RELATIONS.length; ++i) {
+                nomsRelations.apprendre(i, RELATIONS[i]);
+            }
+            Mot mot = motSynthetique(nom, voisins);
+            Forme forme = forme(jdm);
+            return forme.estComplete() ? mot
+                    : forme.projeter(mot, forme.typeRelation == Forme.TOUTES ? null : RELATIONS[forme.typeRelation]);
+        }
+    }
+
+    /**
+     * Types de relations des mots synthétiques (l'identifiant d'un type est
+     * son indice).
+     */
+    static final String[] RELATIONS = {"'r_associated'", "'r_isa'", "'r_hypo'", "'r_syn'"};
+
+    /**
+     * Retrouve la forme d'une requête à partir de son URL.
+     *
+     * @param jdm URL de la requête (voir {@link Mot#recupURL(String)}).
+     * @return La forme de la requête.
+     */
+    static Forme forme(URL jdm) {
+        String requete = jdm.getQuery();
+        int type = Forme.TOUTES;
+        int debut = requete.indexOf("&rel=");
+        if (debut >= 0) {
+            int fin = requete.indexOf('&', debut + 1);
+            type = Integer.parseInt(requete.substring(debut + 5, fin < 0 ? requete.length() : fin));
+        }
+        return new Forme(type, !requete.contains("relout=norelout"), !requete.contains("relin=norelin"));
+    }
+
+    /**
+     * Construit un mot ayant la forme d'une réponse de rezoJDM.
+     *
+     * @param nom Nom du mot.
+     * @param voisins Nombre de termes connexes.
+     * @return Le mot construit.
+     */
+    static Mot motSynthetique(String nom, int voisins) {
+        Mot mot = new Mot(nom);
+        mot.setID(Math.abs(nom.hashCode()));
+        mot.setType(1);
+        mot.setPoids_general(50);
+        mot.setDefinition("1. Definition synthetique de " + nom + ".");
+        for (int i = 0; i < voisins; ++i) {
+            Mot voisin = Mot.creerVoisin("voisin" + (i * 7919 % 5000), 1000 + i, 1, "voisin" + i, 50 + i, "");
+            HashMap<String, ArrayList<Terme>> cible = (i & 1) == 0 ? mot.getRelations_sortantes() : mot.getRelations_entrantes();
+            String relation = RELATIONS[i % RELATIONS.length];
+            if (!cible.containsKey(relation)) {
+                cible.put(relation, new ArrayList<>());
+            }
+            cible.get(relation).add(new Terme(voisin, (i % 50) - 10));
+        }
+        return mot;
+    }
+
+    /**
+     * Mesure le temps de lecture d'un mot présent dans le cache (requête
+     * complète, hors réseau), en microsecondes.
+     *
+     * @param segments True pour le stockage en segments, false pour un fichier
+     * par mot.
+     * @param memoire Nombre de mots gardés en mémoire (voir
+     * {@link CacheMemoire}).
+     */
+    static void mesurerLectureCache(boolean segments, int memoire) {
+        final int mots = 500;
+        Path dossier = dossierTemporaire();
+        try {
+            final RequeterRezo rezo = new RequeterRezoHorsLigne(new Configuration()
+                    .dossierCache(dossier.resolve("cache").toString()).tailleMax(mots).stockageSegments(segments)
+                    .memoire(memoire, 64L << 20), 200);
+            //Première requête : mise en cache
+            for (int i = 0; i < mots; ++i) {
+                rezo.requete("mot" + i);
+            }
+            rezo.getStatistiques().reinitialiser();
+            final int n = 20_000;
+            double ns = mesurer("requete en cache (" + (segments ? "segments" : "fichiers")
+                    + (memoire > 0 ? ", memoire" : "") + ")", n, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < n; ++i) {
+                            puits = rezo.requete("mot" + (i % mots));
+                        }
+                    } catch (IOException | InterruptedException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                }
+            });
+            System.out.println(String.format(Locale.ROOT, "    %.1f us/requete, %s", ns / 1000, rezo.getStatistiques()));
+        } catch (IOException | InterruptedException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            supprimer(dossier.toFile());
+        }
+    }
+
+    /**
+     * Test de charge d'une instance partagée par plusieurs threads : chaque
+     * thread demande des mots fréquents (tirés selon une loi de Zipf) et des
+     * mots uniques, avec un petit cache pour provoquer de nombreuses
+     * évictions, et un temps de réponse du réseau simulé. Vérifie que chaque
+     * mot retourné est bien le mot demandé, puis que le cache est cohérent
+     * après un redémarrage.
+     *
+     * @param threads Nombre de threads.
+     * @param segments True pour le stockage en segments, false pour un fichier
+     * par mot.
+     */
+    static void mesurerConcurrence(int threads, boolean segments) {
+        final int requetes = 4_000 / threads;
+        final int frequents = 2_000;
+        final int tailleMax = 300;
+        Path dossier = dossierTemporaire();
+        try {
+            Configuration configuration = new Configuration()
+                    .dossierCache(dossier.resolve("cache").toString()).tailleMax(tailleMax)
+                    .stockageSegments(segments).memoire(100, 8L << 20);
+            final RequeterRezo rezo = new RequeterRezoHorsLigne(configuration, 50, 1);
+            //Loi de Zipf (exposant 1) sur les mots fréquents
+            final double[] cumul = new double[frequents];
+            double somme = 0;
+            for (int i = 0; i < frequents; ++i) {
+                somme += 1.0 / (i + 1);
+                cumul[i] = somme;
+            }
+            final double total = somme;
+            final AtomicLong erreurs = new AtomicLong();
+            final AtomicLong incoherences = new AtomicLong();
+            Thread[] taches = new Thread[threads];
+            long debut = System.nanoTime();
+            for (int t = 0; t < threads; ++t) {
+                final int numero = t;
+                taches[t] = new Thread(() -> {
+                    Random aleatoire = new Random(numero);
+                    try {
+                        for (int i = 0; i < requetes; ++i) {
+                            String nom;
+                            if (aleatoire.nextInt(5) == 0) {
+                                nom = "unique" + numero + "_" + i;
+                            } else {
+                                int rang = Arrays.binarySearch(cumul, aleatoire.nextDouble() * total);
+                                nom = "mot" + (rang < 0 ? -rang - 1 : rang);
+                            }
+                            Mot mot = rezo.requete(nom);
+                            if (mot == null || !mot.getNom().equals(nom)) {
+                                incoherences.incrementAndGet();
+                            }
+                        }
+                    } catch (IOException | InterruptedException | RuntimeException ex) {
+                        erreurs.incrementAndGet();
+                        ex.printStackTrace();
+                    }
+                });
+                taches[t].start();
+            }
+            for (Thread tache : taches) {
+                tache.join();
+            }
+            double secondes = (System.nanoTime() - debut) / 1e9;
+            Statistiques statistiques = rezo.getStatistiques();
+            rezo.sauvegarder();
+            //Après redémarrage, chaque mot en cache doit être relu à l'identique
+            RequeterRezo relu = new RequeterRezoHorsLigne(configuration, 50);
+            for (int i = 0; i < frequents; ++i) {
+                Mot mot = relu.requete("mot" + i);
+                if (mot == null || !mot.getNom().equals("mot" + i)) {
+                    incoherences.incrementAndGet();
+                }
+            }
+            System.out.println(String.format(Locale.ROOT, "%-40s %10.0f requetes/s",
+                    "concurrence (" + threads + " threads, " + (segments ? "segments" : "fichiers") + ")",
+                    requetes * threads / secondes));
+            System.out.println(String.format(Locale.ROOT, "    erreurs %d, incoherences %d, %s",
+                    erreurs.get(), incoherences.get(), statistiques));
+            if (erreurs.get() != 0 || incoherences.get() != 0) {
+                throw new IllegalStateException("Concurrence : " + erreurs.get() + " erreurs, "
+                        + incoherences.get() + " incoherences");
+            }
+        } catch (IOException | InterruptedException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            supprimer(dossier.toFile());
+        }
+    }
+
+    /**
+     * Nombre de mots distincts demandés par les processus de
+     * {@link Performances#mesurerPartage(int, boolean)}.
+     */
+    private static final int MOTS_PARTAGE = 1_000;
+
+    /**
+     * Nombre de requêtes de chaque processus de
+     * {@link Performances#mesurerPartage(int, boolean)}.
+     */
+    private static final int REQUETES_PARTAGE = 2_000;
+
+    /**
+     * Lance plusieurs processus faisant les mêmes requêtes (loi de Zipf sur
+     * {@link Performances#MOTS_PARTAGE} mots, réseau simulé), chacun avec son
+     * propre dossier de cache ou tous sur le même dossier partagé (voir
+     * {@link Configuration#partage(boolean)}), et compte les requêtes envoyées
+     * au réseau par l'ensemble des processus. Avec le partage, chaque mot ne
+     * devrait être demandé qu'une fois (à quelques requêtes simultanées près).
+     * Vérifie que chaque mot retourné est bien le mot demandé, puis que tous
+     * les mots sont relus depuis le cache après un redémarrage.
+     *
+     * @param processus Nombre de processus.
+     * @param partage True pour partager le dossier du cache.
+     */
+    static void mesurerPartage(int processus, boolean partage) {
+        Path dossier = dossierTemporaire();
+        try {
+            String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            Process[] lances = new Process[processus];
+            long debut = System.nanoTime();
+            for (int p = 0; p < processus; ++p) {
+                String cache = dossier.resolve(partage ? "cache" : "cache" + p).toString();
+                lances[p] = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        Performances.class.getName(), "processus", cache, String.valueOf(partage), String.valueOf(p))
+                        .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            }
+            long echecs = 0;
+            long incoherences = 0;
+            HashSet<String> distincts = new HashSet<>();
+            for (int p = 0; p < processus; ++p) {
+                try (BufferedReader sortie = new BufferedReader(new InputStreamReader(lances[p].getInputStream(), StandardCharsets.UTF_8))) {
+                    String ligne = sortie.readLine();
+                    if (lances[p].waitFor() != 0 || ligne == null) {
+                        throw new IllegalStateException("Echec du processus " + p);
+                    }
+                    String[] champs = ligne.split(" ");
+                    echecs += Long.parseLong(champs[0]);
+                    incoherences += Long.parseLong(champs[1]);
+                }
+                distincts.addAll(Arrays.asList(sequencePartage(p)));
+            }
+            double secondes = (System.nanoTime() - debut) / 1e9;
+            long relectures = 0;
+            if (partage) {
+                //Après redémarrage, chaque mot demandé doit être servi par le cache
+                RequeterRezoHorsLigne relu = new RequeterRezoHorsLigne(new Configuration()
+                        .dossierCache(dossier.resolve("cache").toString()).tailleMax(2 * MOTS_PARTAGE).partage(true), 50);
+                for (String nom : distincts) {
+                    Mot mot = relu.requete(nom);
+                    if (mot == null || !mot.getNom().equals(nom)) {
+                        incoherences++;
+                    }
+                }
+                relectures = relu.getStatistiques().getEchecs();
+            }
+            System.out.println(String.format(Locale.ROOT, "%-40s %10.0f requetes/s",
+                    "partage (" + processus + " processus, " + (partage ? "dossier partage" : "dossiers separes") + ")",
+                    processus * REQUETES_PARTAGE / secondes));
+            System.out.println(String.format(Locale.ROOT,
+                    "    %d requetes reseau pour %d mots distincts, incoherences %d, echecs apres redemarrage %d",
+                    echecs, distincts.size(), incoherences, relectures));
+        } catch (IOException | InterruptedException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            supprimer(dossier.toFile());
+        }
+    }
+
+    /**
+     * Mots demandés par un processus de
+     * {@link Performances#mesurerPartage(int, boolean)}.
+     *
+     * @param numero Numéro du processus.
+     * @return Les mots demandés, dans l'ordre.
+     */
+    private static String[] sequencePartage(int numero) {
+        double[] cumul = new double[MOTS_PARTAGE];
+        double somme = 0;
+        for (int i = 0; i < MOTS_PARTAGE; ++i) {
+            somme += 1.0 / (i + 1);
+            cumul[i] = somme;
+        }
+        Random aleatoire = new Random(numero);
+        String[] res = new String[REQUETES_PARTAGE];
+        for (int i = 0; i < REQUETES_PARTAGE; ++i) {
+            int rang = Arrays.binarySearch(cumul, aleatoire.nextDouble() * somme);
+            res[i] = "mot" + (rang < 0 ? -rang - 1 : rang);
+        }
+        return res;
+    }
+
+    /**
+     * Processus lancé par {@link Performances#mesurerPartage(int, boolean)} :
+     * fait ses requêtes puis écrit le nombre de requêtes envoyées au réseau et
+     * le nombre de mots incohérents.
+     *
+     * @param args "processus", dossier du cache, partage, numéro du processus.
+     */
+    private static void processusPartage(String[] args) {
+        Configuration configuration = new Configuration().dossierCache(args[1])
+                .tailleMax(2 * MOTS_PARTAGE).partage(Boolean.parseBoolean(args[2]));
+        RequeterRezo rezo = new RequeterRezoHorsLigne(configuration, 50, 2);
+        long incoherences = 0;
+        try {
+            for (String nom : sequencePartage(Integer.parseInt(args[3]))) {
+                Mot mot = rezo.requete(nom);
+                if (mot == null || !mot.getNom().equals(nom)) {
+                    ++incoherences;
+                }
+            }
+        } catch (IOException | InterruptedException ex) {
+            throw new IllegalStateException(ex);
+        }
+        rezo.sauvegarder();
+        System.out.println(rezo.getStatistiques().getEchecs() + " " + incoherences);
+    }
+
+    /**
+     * Mesure le taux de compression des entrées, sans puis avec dictionnaire,
+     * ainsi que le coût de la compression et de la décompression.
+     */
+    static void mesurerCompression() {
+        Path dossier = dossierTemporaire();
+        try {
+            final ArrayList<byte[]> entrees = new ArrayList<>();
+            for (int i = 0; i < 500; ++i) {
+                entrees.add(FormatBinaire.encoder(motSynthetique("mot" + i, 10 + (i * 37) % 190)));
+            }
+            for (int dictionnaire = 0; dictionnaire < 2; ++dictionnaire) {
+                Statistiques statistiques = new Statistiques();
+                final Compression compression = new Compression(dossier.toString(), true, statistiques);
+                if (dictionnaire == 1) {
+                    compression.apprendre(entrees.subList(0, 256));
+                }
+                String nom = dictionnaire == 1 ? "avec dictionnaire" : "sans dictionnaire";
+                final ArrayList<byte[]> compressees = new ArrayList<>();
+                mesurer("compression (" + nom + ")", entrees.size(), new Runnable() {
+                    @Override
+                    public void run() {
+                        compressees.clear();
+                        for (byte[] entree : entrees) {
+                            compressees.add(compression.compresser(entree));
+                        }
+                    }
+                });
+                mesurer("decompression (" + nom + ")", entrees.size(), new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (byte[] entree : compressees) {
+                                puits = compression.decompresser(ByteBuffer.wrap(entree));
+                            }
+                        } catch (IOException ex) {
+                            throw new IllegalStateException(ex);
+                        }
+                    }
+                });
+                System.out.println(String.format(Locale.ROOT, "    taux=%.3f", statistiques.getTauxCompression()));
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            supprimer(dossier.toFile());
+        }
+    }
+
+    /**
+     * Mesure le temps d'une requête dont le résultat entre dans le cache (hors
+     * réseau), avec et sans écriture différée.
+     *
+     * @param differee True pour l'écriture différée.
+     */
+    static void mesurerEcriture(boolean differee) {
+        final int n = 2_000;
+        Path dossier = dossierTemporaire();
+        try {
+            final RequeterRezo rezo = new RequeterRezoHorsLigne(new Configuration()
+                    .dossierCache(dossier.resolve("cache").toString()).tailleMax(n * (SERIES + 1))
+                    .ecritureDifferee(differee), 200);
+            final int[] suivant = {0};
+            double ns = mesurer("entree dans le cache (" + (differee ? "differee" : "directe") + ")", n, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < n; ++i) {
+                            puits = rezo.requete("mot" + suivant[0]++);
+                        }
+                    } catch (IOException | InterruptedException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                }
+            });
+            long debut = System.nanoTime();
+            rezo.sauvegarder();
+            System.out.println(String.format(Locale.ROOT, "    %.1f us/requete, sauvegarde %.1f ms",
+                    ns / 1000, (System.nanoTime() - debut) / 1e6));
+        } finally {
+            supprimer(dossier.toFile());
+        }
+    }
+
+    /**
+     * Mesure l'effet sur le ramasse-miettes de mots gardés en mémoire, sous
+     * forme décodée dans le tas (voir {@link CacheMemoire}) ou sérialisée hors
+     * du tas (voir {@link CacheHorsTas}) : taille du tas occupé, durée d'un
+     * ramasse-miettes complet et temps de lecture d'un mot.
+     *
+     * @param n Nombre de mots gardés.
+     * @param horsTas True pour garder les mots hors du tas.
+     */
+    static void mesurerHorsTas(final int n, boolean horsTas) {
+        final CacheMemoire memoire = new CacheMemoire(horsTas ? 0 : n, Long.MAX_VALUE);
+        final CacheHorsTas horsDuTas = new CacheHorsTas(horsTas ? 1L << 30 : 0);
+        for (int i = 0; i < n; ++i) {
+            Mot mot = motSynthetique("mot" + i, 50);
+            byte[] encode = FormatBinaire.encoder(mot);
+            memoire.ajouter("mot" + i, mot, encode.length);
+            horsDuTas.ajouter("mot" + i, ByteBuffer.wrap(encode));
+        }
+        //Premier passage : les objets temporaires sont ramassés
+        System.gc();
+        long tas = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        long ramassages = tempsRamasseMiettes();
+        final int essais = 5;
+        for (int i = 0; i < essais; ++i) {
+            System.gc();
+        }
+        double pause = (tempsRamasseMiettes() - ramassages) / (double) essais;
+        double ns = mesurer("lecture d'un mot " + (horsTas ? "hors du tas" : "dans le tas"), n, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < n; ++i) {
+                    puits = horsTas ? horsDuTas.lire("mot" + i) : memoire.lire("mot" + i);
+                }
+            }
+        });
+        System.out.println(String.format(Locale.ROOT, "    %d mots : tas %.1f Mo, ramasse-miettes complet %.1f ms, lecture %.2f us%s",
+                n, tas / 1e6, pause, ns / 1000, horsTas ? String.format(Locale.ROOT, ", hors du tas %.1f Mo", horsDuTas.octets() / 1e6) : ""));
+    }
+
+    /**
+     * Temps cumulé passé dans le ramasse-miettes depuis le lancement.
+     *
+     * @return Le temps cumulé, en millisecondes.
+     */
+    private static long tempsRamasseMiettes() {
+        long res = 0;
+        for (GarbageCollectorMXBean ramasseMiettes : ManagementFactory.getGarbageCollectorMXBeans()) {
+            res += Math.max(0, ramasseMiettes.getCollectionTime());
+        }
+        return res;
+    }
+
+    /**
+     * Mesure le temps d'une requête manquée (hors réseau) lorsque le cache est
+     * plein : la décision d'admission cherche un terme périmé ou le moins
+     * courant du cache.
+     *
+     * @param n Taille du cache.
+     */
+    static void mesurerEviction(int n) {
+        final int requetes = 10_000;
+        Path dossier = dossierTemporaire();
+        try {
+            final RequeterRezo rezo = new RequeterRezoHorsLigne(new Configuration()
+                    .dossierCache(dossier.resolve("cache").toString()).tailleMax(n)
+                    .stockageSegments(true), 1);
+            for (int i = 0; i < n; ++i) {
+                rezo.requete("mot" + i);
+            }
+            final int[] suivant = {0};
+            double ns = mesurer("requete manquee, cache plein (" + n + " entrees)", requetes, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < requetes; ++i) {
+                            puits = rezo.requete("absent" + suivant[0]++);
+                        }
+                    } catch (IOException | InterruptedException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                }
+            });
+            System.out.println(String.format(Locale.ROOT, "    %.1f us/requete", ns / 1000));
+        } catch (IOException | InterruptedException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            supprimer(dossier.toFile());
+        }
+    }
+
+    /**
+     * Mesure le coût de la remise en cache d'une entrée (sa date de
+     * péremption change) parmi n entrées : roue temporelle (voir
+     * {@link RoueTemporelle}) et, pour comparaison, ensemble ordonné par date
+     * de mise en cache.
+     *
+     * @param n Nombre d'entrées.
+     */
+    static void mesurerExpiration(int n) {
+        final int operations = 1_000_000;
+        final long maintenant = Horloge.maintenant();
+        Random aleatoire = new Random(42);
+        final CacheInfo[] infos = new CacheInfo[n];
+        final long[] dates = new long[operations];
+        final RoueTemporelle roue = new RoueTemporelle(maintenant);
+        final TreeSet<CacheInfo> parDate = new TreeSet<>(new Comparator<CacheInfo>() {
+            @Override
+            public int compare(CacheInfo a, CacheInfo b) {
+                int res = Long.compare(a.dateCache, b.dateCache);
+                return res != 0 ? res : a.mot.compareTo(b.mot);
+            }
+        });
+        for (int i = 0; i < n; ++i) {
+            //Dates de mise en cache réparties sur une semaine
+            infos[i] = new CacheInfo(i, maintenant - (long) (aleatoire.nextDouble() * 168 * 3_600_000L), 1, maintenant);
+            infos[i].mot = "mot" + i;
+            infos[i].expiration = RequeterRezo.expiration(infos[i].dateCache, 168);
+            roue.ajouter(infos[i]);
+            parDate.add(infos[i]);
+        }
+        for (int i = 0; i < operations; ++i) {
+            dates[i] = maintenant + aleatoire.nextInt(3_600_000);
+        }
+        mesurer("remise en cache, roue (" + n + " entrees)", operations, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < operations; ++i) {
+                    CacheInfo info = infos[i % infos.length];
+                    roue.retirer(info);
+                    info.expiration = RequeterRezo.expiration(dates[i], 168);
+                    roue.ajouter(info);
+                }
+                roue.avancer(Horloge.maintenant());
+                puits = roue.premierePerimee();
+            }
+        });
+        mesurer("remise en cache, ensemble ordonne", operations, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < operations; ++i) {
+                    CacheInfo info = infos[i % infos.length];
+                    parDate.remove(info);
+                    info.dateCache = dates[i];
+                    parDate.add(info);
+                }
+                puits = parDate.first();
+            }
+        });
+    }
+
+    /**
+     * Mesure le taux de succès d'une politique d'admission et d'éviction (hors
+     * réseau) sur une suite de requêtes synthétique : mots tirés selon une loi
+     * de Zipf, entrecoupés de parcours de mots demandés une seule fois.
+     *
+     * @param politique Politique mesurée.
+     */
+    static void mesurerPolitique(Politique politique) {
+        final int taille = 1_000;
+        final int vocabulaire = 50_000;
+        final int requetes = 200_000;
+        //Fonction de répartition de la loi de Zipf (exposant 0.9)
+        double[] repartition = new double[vocabulaire];
+        double somme = 0;
+        for (int i = 0; i < vocabulaire; ++i) {
+            somme += 1 / Math.pow(i + 1, 0.9);
+            repartition[i] = somme;
+        }
+        Random aleatoire = new Random(42);
+        Path dossier = dossierTemporaire();
+        try {
+            RequeterRezo rezo = new RequeterRezoHorsLigne(new Configuration()
+                    .dossierCache(dossier.resolve("cache").toString()).tailleMax(taille)
+                    .stockageSegments(true).politique(politique), 1);
+            int parcours = 0;
+            for (int i = 0; i < requetes; ++i) {
+                if (i == requetes / 4) {
+                    rezo.getStatistiques().reinitialiser();
+                }
+                String mot;
+                if (i % 10_000 < 500) {
+                    mot = "parcours" + parcours++;
+                } else {
+                    int rang = Arrays.binarySearch(repartition, aleatoire.nextDouble() * somme);
+                    mot = "mot" + (rang < 0 ? -rang - 1 : rang);
+                }
+                rezo.requete(mot);
+            }
+            System.out.println(String.format(Locale.ROOT, "politique %-12s taux de succes %.3f",
+                    politique, rezo.getStatistiques().getTauxSucces()));
+        } catch (IOException | InterruptedException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            supprimer(dossier.toFile());
+        }
+    }
+
+    /**
+     * Mesure les requêtes de formes différentes (voir {@link Forme}) sur un
+     * même vocabulaire : nombre de requêtes envoyées au réseau, nombre de
+     * requêtes restreintes servies par l'entrée complète du mot et
+     * vérification de chaque réponse par rapport à celle du réseau.
+     *
+     * @param completes True si une partie des requêtes porte sur les mots
+     * complets, false pour des requêtes uniquement restreintes.
+     */
+    static void mesurerFormes(boolean completes) {
+        final int vocabulaire = 500;
+        final int requetes = 20_000;
+        Random aleatoire = new Random(42);
+        Path dossier = dossierTemporaire();
+        try {
+            RequeterRezoHorsLigne rezo = new RequeterRezoHorsLigne(new Configuration()
+                    .dossierCache(dossier.resolve("cache").toString()).tailleMax(4 * vocabulaire), 40);
+            int incorrectes = 0;
+            long debut = System.nanoTime();
+            for (int i = 0; i < requetes; ++i) {
+                String nom = "mot" + (int) (vocabulaire * Math.pow(aleatoire.nextDouble(), 2));
+                int type = aleatoire.nextInt(RELATIONS.length);
+                Mot mot;
+                Forme forme;
+                switch (aleatoire.nextInt(completes ? 4 : 3)) {
+                    case 0:
+                        mot = rezo.requete(nom, type);
+                        forme = new Forme(type, true, true);
+                        break;
+                    case 1:
+                        mot = rezo.requete(nom, type, Filtre.FiltreRelationsEntrantes);
+                        forme = new Forme(type, true, false);
+                        break;
+                    case 2:
+                        mot = rezo.requete(nom, false, true);
+                        forme = new Forme(Forme.TOUTES, false, true);
+                        break;
+                    default:
+                        mot = rezo.requete(nom);
+                        forme = Forme.COMPLETE;
+                }
+                Mot attendu = rezo.construireMot(nom, new URL(forme.url(nom)));
+                if (mot == null || !mot.getNom().equals(nom)
+                        || !mot.getRelations_sortantes().keySet().equals(attendu.getRelations_sortantes().keySet())
+                        || !mot.getRelations_entrantes().keySet().equals(attendu.getRelations_entrantes().keySet())) {
+                    ++incorrectes;
+                }
+            }
+            double us = (System.nanoTime() - debut) / 1000.0 / requetes;
+            Statistiques statistiques = rezo.getStatistiques();
+            System.out.println(String.format(Locale.ROOT,
+                    "formes (%s) %d requetes : %d au reseau, %d projections, %d reponses incorrectes, %.1f us/requete",
+                    completes ? "avec mots complets" : "restreintes", requetes, statistiques.getEchecs(),
+                    statistiques.getProjections(), incorrectes, us));
+        } catch (IOException | InterruptedException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            supprimer(dossier.toFile());
+        }
+    }
+
+    /**
+     * Mesure les requêtes d'un même mot sur plusieurs types de relations l'un
+     * après l'autre, puis sur leur union : nombre de requêtes envoyées au
+     * réseau et vérification de la fusion des segments.
+     */
+    static void mesurerSegments() {
+        final int mots = 200;
+        Path dossier = dossierTemporaire();
+        try {
+            RequeterRezoHorsLigne rezo = new RequeterRezoHorsLigne(new Configuration()
+                    .dossierCache(dossier.resolve("cache").toString()).tailleMax(8 * mots)
+                    .politique(Politique.LRU), 40);
+            int[] types = new int[RELATIONS.length];
+            for (int i = 0; i < types.length; ++i) {
+                types[i] = i;
+            }
+            for (int i = 0; i < mots; ++i) {
+                for (int type : types) {
+                    rezo.requete("mot" + i, type);
+                }
+            }
+            long parTypes = rezo.getStatistiques().getEchecs();
+            rezo.getStatistiques().reinitialiser();
+            int incorrectes = 0;
+            for (int i = 0; i < mots; ++i) {
+                Mot union = rezo.requete("mot" + i, types);
+                Mot complet = motSynthetique("mot" + i, 40);
+                if (union == null || !union.getRelations_sortantes().keySet().equals(complet.getRelations_sortantes().keySet())
+                        || !union.getRelations_entrantes().keySet().equals(complet.getRelations_entrantes().keySet())) {
+                    ++incorrectes;
+                }
+            }
+            System.out.println(String.format(Locale.ROOT,
+                    "segments : %d mots x %d types -> %d au reseau, union -> %d au reseau, %d reponses incorrectes",
+                    mots, types.length, parTypes, rezo.getStatistiques().getEchecs(), incorrectes));
+        } catch (IOException | InterruptedException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            supprimer(dossier.toFile());
+        }
+    }
+
+    /**
+     * Mesure le taux de faux positifs des mots absents (voir
+     * {@link CacheNegatif}) une fois la capacité atteinte.
+     *
+     * @param taux Taux de faux positifs demandé.
+     */
+    static void mesurerFauxPositifs(double taux) {
+        final int n = 100_000;
+        CacheNegatif absents = new CacheNegatif(24, n, taux);
+        for (int i = 0; i < n; ++i) {
+            absents.ajouter("inconnu" + i);
+        }
+        int faux = 0;
+        for (int i = 0; i < n; ++i) {
+            if (absents.contient("mot" + i)) {
+                ++faux;
+            }
+        }
+        System.out.println(String.format(Locale.ROOT, "mots absents (%d, taux demande %.4f) : taux mesure %.4f",
+                n, taux, (double) faux / n));
+    }
+
+    /**
+     * Mesure les requêtes sur un vocabulaire dont une partie des mots est
+     * absente de rezoJDM (fautes de frappe), avec ou sans mots absents gardés
+     * : nombre de requêtes envoyées au réseau et temps moyen d'une requête sur
+     * un mot absent (réseau simulé à 1 ms).
+     *
+     * @param absents True pour garder les mots absents.
+     */
+    static void mesurerAbsents(boolean absents) {
+        final int requetes = 5_000;
+        Random aleatoire = new Random(42);
+        Path dossier = dossierTemporaire();
+        try {
+            Configuration configuration = new Configuration()
+                    .dossierCache(dossier.resolve("cache").toString()).tailleMax(1_000);
+            if (absents) {
+                configuration.motsAbsents("24h", 10_000, 0.001);
+            }
+            RequeterRezo rezo = new RequeterRezoHorsLigne(configuration, 20, 1);
+            long duree = 0;
+            int inconnus = 0;
+            for (int i = 0; i < requetes; ++i) {
+                int rang = (int) (200 * Math.pow(aleatoire.nextDouble(), 2));
+                if (aleatoire.nextInt(5) == 0) {
+                    long debut = System.nanoTime();
+                    puits = rezo.requete("inconnu" + rang);
+                    duree += System.nanoTime() - debut;
+                    ++inconnus;
+                } else {
+                    puits = rezo.requete("mot" + rang);
+                }
+            }
+            System.out.println(String.format(Locale.ROOT,
+                    "mots absents %-8s %d requetes (%d inconnues) : %d au reseau, %d absents, %.1f us/requete inconnue",
+                    absents ? "gardes" : "oublies", requetes, inconnus, rezo.getStatistiques().getEchecs(),
+                    rezo.getStatistiques().getAbsents(), duree / 1000.0 / inconnus));
+        } catch (IOException | InterruptedException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            supprimer(dossier.toFile());
+        }
+    }
+
+    /**
+     * Mesure la péremption adaptative (voir
+     * {@link Configuration#peremptionAdaptative(String, String)}) en simulant
+     * quatre semaines de requêtes, heure par heure, sur des mots dont le
+     * contenu change toutes les six heures (un dixième des mots) ou tous les
+     * deux mois : nombre de requêtes envoyées au réseau et part des réponses
+     * périmées (contenu changé depuis la mise en cache) pour chaque sorte de
+     * mots.
+     *
+     * @param adaptative True pour une péremption adaptative entre 2 heures et
+     * 7 jours, false pour une péremption fixe d'un jour.
+     */
+    static void mesurerPeremption(boolean adaptative) {
+        final int mots = 1_000;
+        final int heures = 28 * 24;
+        final long debut = Horloge.maintenant();
+        //Horloge simulée, avancée d'une heure à chaque tour
+        final AtomicLong maintenant = new AtomicLong(debut);
+        Path dossier = dossierTemporaire();
+        try {
+            Configuration configuration = new Configuration()
+                    .dossierCache(dossier.resolve("cache").toString()).tailleMax(2 * mots)
+                    .stockageSegments(true).memoire(2 * mots, 64L << 20).peremption("1j")
+                    .horloge(maintenant::get);
+            if (adaptative) {
+                configuration.peremptionAdaptative("2h", "7j");
+            }
+            RequeterRezo rezo = new RequeterRezoHorsLigne(configuration, 20) {
+                @Override
+                Mot construireMot(String nom, URL jdm) throws InterruptedException {
+                    Mot mot = super.construireMot(nom, jdm);
+                    mot.setDefinition(version(nom, maintenant.get() - debut));
+                    return mot;
+                }
+            };
+            //Réponses périmées, pour les mots rapides puis pour les mots lents
+            long[] perimees = new long[2];
+            for (int heure = 0; heure < heures; ++heure) {
+                for (int i = 0; i < mots; ++i) {
+                    String nom = (i % 10 == 0 ? "rapide" : "lent") + i;
+                    Mot mot = rezo.requete(nom);
+                    if (!mot.getDefinition().equals(version(nom, maintenant.get() - debut))) {
+                        ++perimees[i % 10 == 0 ? 0 : 1];
+                    }
+                }
+                maintenant.addAndGet(3_600_000);
+            }
+            Statistiques statistiques = rezo.getStatistiques();
+            System.out.println(String.format(Locale.ROOT,
+                    "peremption %-11s %d requetes : %d au reseau (%d inchangees, %d modifiees), "
+                    + "perimees %.3f (mots rapides) %.3f (mots lents)",
+                    adaptative ? "adaptative" : "fixe", (long) mots * heures, statistiques.getEchecs(),
+                    statistiques.getInchanges(), statistiques.getModifies(),
+                    perimees[0] * 10.0 / mots / heures, perimees[1] * 10.0 / 9 / mots / heures));
+        } catch (IOException | InterruptedException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            supprimer(dossier.toFile());
+        }
+    }
+
+    /**
+     * Contenu (définition) d'un mot de {@link #mesurerPeremption(boolean)}
+     * après une durée simulée.
+     *
+     * @param ecoule Durée écoulée depuis le début de la mesure, en
+     * millisecondes.
+     */
+    private static String version(String nom, long ecoule) {
+        long heure = ecoule / 3_600_000;
+        //Changements décalés d'un mot à l'autre
+        heure += Math.abs(nom.hashCode()) % 1440;
+        return nom + " version " + (nom.startsWith("rapide") ? heure / 6 : heure / 1440);
+    }
+
+    /**
+     * Ecrit l'index du cache dans l'ancien format texte : la liste des IDs
+     * pris, puis une ligne par entrée.
+     */
+    private static void ecrireTexte(Cache cache, String fichier) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fichier))) {
+            for (int i = cache.prisID.nextSetBit(0); i >= 0; i = cache.prisID.nextSetBit(i + 1)) {
+                writer.write("" + i + ";");
+            }
+            writer.newLine();
+            for (Entry<String, CacheInfo> entry : cache.entrySet()) {
+                writer.write(entry.getKey() + ";" + entry.getValue().toString());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Ecrit l'index d'attente dans l'ancien format texte, une ligne par mot.
+     */
+    private static void ecrireTexte(Index index, String fichier) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fichier))) {
+            for (Entry<String, IndexInfo> entry : index.entrySet()) {
+                writer.write(entry.getKey() + ";" + entry.getValue().toString());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Mesure le temps de chargement des deux index au démarrage, dans l'ancien
+     * format texte et dans le format binaire.
+     *
+     * @param n Nombre d'entrées de chaque index.
+     * @param texte True pour mesurer aussi l'ancien format texte (dont le
+     * chargement de l'index du cache est quadratique).
+     */
+    static void mesurerDemarrage(int n, boolean texte) {
+        Path dossier = dossierTemporaire();
+        try {
+            Cache cache = new Cache(168, n);
+            Index index = new Index(n);
+            for (int i = 0; i < n; ++i) {
+                cache.ajouter("mot" + i, 1 + i % 20);
+                index.put("attente" + i, new IndexInfo(1 + i % 5, System.currentTimeMillis()));
+            }
+            String fichierCache = dossier.resolve("indexCache").toString();
+            String fichierIndex = dossier.resolve("indexAttente").toString();
+            if (texte) {
+                ecrireTexte(cache, fichierCache);
+                ecrireTexte(index, fichierIndex);
+                mesurerChargement("texte", n, fichierCache, fichierIndex, dossier);
+            }
+            long debut = System.nanoTime();
+            Cache.sauvegarderCache(cache, fichierCache);
+            Index.sauvegarderIndex(index, fichierIndex);
+            System.out.println(String.format(Locale.ROOT, "sauvegarde binaire (%d entrees) %15.1f ms",
+                    n, (System.nanoTime() - debut) / 1e6));
+            cache = null;
+            index = null;
+            mesurerChargement("binaire", n, fichierCache, fichierIndex, dossier);
+        } catch (IOException | ParseException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            supprimer(dossier.toFile());
+        }
+    }
+
+    /**
+     * Mesure la mémoire occupée par l'index du cache et son temps de
+     * construction et de chargement pour un grand nombre d'entrées. Non lancée
+     * par défaut : 10 millions d'entrées demandent un tas d'environ 4 Go
+     * (option -Xmx).
+     *
+     * @param n Nombre d'entrées du cache.
+     */
+    static void mesurerEchelle(int n) {
+        Path dossier = dossierTemporaire();
+        try {
+            System.gc();
+            long avant = tasOccupe();
+            long debut = System.nanoTime();
+            Cache cache = new Cache(168, n);
+            double creation = (System.nanoTime() - debut) / 1e6;
+            long vide = tasOccupe() - avant;
+            debut = System.nanoTime();
+            for (int i = 0; i < n; ++i) {
+                cache.ajouter("mot" + i, 1 + i % 20, 100 + i % 1000);
+            }
+            double remplissage = (System.nanoTime() - debut) / 1e6;
+            long plein = tasOccupe() - avant;
+            String fichier = dossier.resolve("indexCache").toString();
+            Cache.sauvegarderCache(cache, fichier);
+            cache = null;
+            System.gc();
+            debut = System.nanoTime();
+            cache = Cache.chargerCache(fichier, 168, n, dossier.toString());
+            double chargement = (System.nanoTime() - debut) / 1e6;
+            puits = cache;
+            System.out.println(String.format(Locale.ROOT, "echelle (%d entrees) : creation %.1f ms (%.1f Mo), remplissage %.1f ms, "
+                    + "%.0f octets/entree, chargement %.1f ms",
+                    n, creation, vide / 1e6, remplissage, plein / (double) n, chargement));
+            cache = null;
+            puits = null;
+        } catch (IOException | ParseException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            supprimer(dossier.toFile());
+        }
+    }
+
+    /**
+     * Taille du tas occupé après un ramasse-miettes complet.
+     *
+     * @return La taille du tas occupé, en octets.
+     */
+    private static long tasOccupe() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static void mesurerChargement(String format, int n, String fichierCache, String fichierIndex, Path dossier)
+            throws IOException, ParseException {
+        //Premier chargement pour la chauffe, puis mesure
+        for (int essai = 0; essai < 2; ++essai) {
+            long debut = System.nanoTime();
+            puits = Cache.chargerCache(fichierCache, 168, n, dossier.toString());
+            puits = Index.chargerIndex(fichierIndex, n);
+            if (essai == 1) {
+                System.out.println(String.format(Locale.ROOT, "chargement %s (%d entrees) %15.1f ms",
+                        format, n, (System.nanoTime() - debut) / 1e6));
+            }
+            puits = null;
+        }
+    }
+
+    /**
+     * Mesure le débit de la reconstruction de l'index à partir d'un cache
+     * stocké sous la forme d'un fichier par mot.
+     *
+     * @param n Nombre d'entrées du cache.
+     */
+    static void mesurerReconstruction(int n) {
+        Path dossier = dossierTemporaire();
+        try {
+            StockageFichiers stockage = new StockageFichiers(dossier.toString());
+            for (int i = 0; i < n; ++i) {
+                stockage.ecrire("mot" + i, i, FormatBinaire.encoder(motSynthetique("mot" + i, 20)));
+            }
+            int parallelisme = Math.min(16, 2 * Runtime.getRuntime().availableProcessors());
+            for (int essai = 0; essai < 2; ++essai) {
+                long debut = System.nanoTime();
+                Cache cache = Reconstruction.depuisFichiers(dossier.toString(), 168, n, parallelisme, Horloge.maintenant());
+                double secondes = (System.nanoTime() - debut) / 1e9;
+                if (cache.size() != n || cache.get("mot" + (n - 1)).getID() != n - 1) {
+                    throw new IllegalStateException("Reconstruction incorrecte : " + cache.size() + " entrees");
+                }
+                System.out.println(String.format(Locale.ROOT, "reconstruction (%d entrees, %d taches) %8.1f ms, %.0f entrees/s",
+                        n, parallelisme, secondes * 1000, n / secondes));
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            supprimer(dossier.toFile());
+        }
+    }
+
+    static Path dossierTemporaire() {
+        try {
+            return Files.createTempDirectory("requeterRezo");
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    static void supprimer(File fichier) {
+        File[] contenu = fichier.listFiles();
+        if (contenu != null) {
+            for (File f : contenu) {
+                supprimer(f);
+            }
+        }
+        fichier.delete();
+    }
+
+    /**
+     * Compare le décodeur d'entités HTML à l'implémentation d'origine sur des
+     * lignes représentatives d'un dump (majorité de lignes sans entité).
+     */
+    static void mesurerDecodageHtml() {
+        final String[] lignes = {
+            "e;152525;'chat';1;1276;'chat'",
+            "r;4203811;152525;13852;0;438",
+            "e;245871;'f&eacute;lin';1;362",
+            "<def>1. Petit mammif&egrave;re carnivore &agrave; fourrure douce.<br /></def>",
+            "e;98762;'::&gt;16:46521&gt;6:98235';1;50",
+            "rt;6;'r_isa';'g&eacute;n&eacute;rique';'Il est demand&eacute; d&apos;&eacute;num&eacute;rer'",
+            "e;11111;'a&#233;b&#xE9;c&#128512;';1;50",
+            "r;4203812;152525;13853;6;25"
+        };
+        for (String ligne : lignes) {
+            if (!StringUtils.unescapeHtml3(ligne).equals(StringUtils.unescapeHtml3Reference(ligne))) {
+                throw new IllegalStateException("Resultats differents pour : " + ligne);
+            }
+        }
+        final int n = 1_000_000;
+        mesurer("unescapeHtml3 (reference)", n, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < n; ++i) {
+                    puits = StringUtils.unescapeHtml3Reference(lignes[i & 7]);
+                }
+            }
+        });
+        mesurer("unescapeHtml3", n, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < n; ++i) {
+                    puits = StringUtils.unescapeHtml3(lignes[i & 7]);
+                }
+            }
+        });
+    }
+
+    /**
+     * Exécute une tâche une fois pour la chauffe puis {@link #SERIES} fois et
+     * affiche le meilleur temps par opération.
+     *
+     * @param nom Nom de la mesure.
+     * @param operations Nombre d'opérations effectuées par la tâche.
+     * @param tache Tâche à mesurer.
+     * @return Le meilleur temps par opération, en nanosecondes.
+     */
+    static double mesurer(String nom, int operations, Runnable tache) {
+        tache.run();
+        double meilleur = Double.MAX_VALUE;
+        for (int s = 0; s < SERIES; ++s) {
+            long debut = System.nanoTime();
+            tache.run();
+            meilleur = Math.min(meilleur, (System.nanoTime() - debut) / (double) operations);
+        }
+        System.out.println(String.format(Locale.ROOT, "%-40s %10.1f ns/op", nom, meilleur));
+        return meilleur;
+    }
+
+    private static boolean contient(String[] args, String mesure) {
+        for (String arg : args) {
+            if (arg.equals(mesure)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
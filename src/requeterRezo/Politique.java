@@ -0,0 +1,51 @@
+package requeterRezo;
+
+/**
+ * Politiques d'admission et d'éviction du cache disponibles (voir
+ * {@link PolitiqueCache} et {@link Configuration#politique(Politique)}).
+ */
+public enum Politique {
+    /**
+     * Comportement historique : un mot entre dans le cache lorsqu'il a été
+     * demandé plus souvent que le mot le moins courant du cache (le plus
+     * ancien en cas d'égalité), qui est alors supprimé.
+     */
+    Historique,
+    /**
+     * Le mot demandé le moins récemment est supprimé, tout mot demandé entre
+     * dans le cache.
+     */
+    LRU,
+    /**
+     * Le mot le moins fréquent est supprimé ; les fréquences sont divisées par
+     * deux à intervalles réguliers afin d'oublier les mots qui ne sont plus
+     * demandés.
+     */
+    LFU,
+    /**
+     * W-TinyLFU : une petite fenêtre LRU accueille les nouveaux mots, qui
+     * n'entrent dans la partie principale (LRU segmentée) que s'ils sont plus
+     * fréquents que la victime de celle-ci. Les fréquences sont estimées par
+     * une esquisse Count-Min (voir {@link EsquisseCountMin}).
+     */
+    WTinyLFU;
+
+    /**
+     * Crée une instance de la politique.
+     *
+     * @param tailleMax Nombre maximum d'entrées du cache.
+     * @return Une nouvelle instance.
+     */
+    protected PolitiqueCache creer(int tailleMax) {
+        switch (this) {
+            case LRU:
+                return new PolitiqueLRU();
+            case LFU:
+                return new PolitiqueLFU(tailleMax);
+            case WTinyLFU:
+                return new PolitiqueWTinyLFU(tailleMax);
+            default:
+                return new PolitiqueHistorique();
+        }
+    }
+}
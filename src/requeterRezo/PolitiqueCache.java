@@ -0,0 +1,63 @@
+package requeterRezo;
+
+/**
+ * Politique d'admission et d'éviction du cache. Lorsque le cache est plein et
+ * qu'aucune entrée n'est périmée, la politique désigne l'entrée à supprimer
+ * (la victime) et décide si un mot absent du cache mérite de la remplacer.
+ *
+ * La politique est informée de chaque requête ({@link #acces(String)}) ainsi
+ * que de chaque entrée et sortie du cache ({@link #ajout(String)},
+ * {@link #retrait(String)}), y compris lors du chargement et de la reprise du
+ * journal. Les méthodes sont appelées depuis le fil de la requête.
+ *
+ * Voir {@link Politique} pour les politiques disponibles.
+ */
+public interface PolitiqueCache {
+
+    /**
+     * Associe la politique au cache et à l'index d'attente d'une instance de
+     * {@link RequeterRezo}. Les entrées déjà présentes dans le cache sont
+     * signalées ensuite par {@link #ajout(String)}.
+     *
+     * @param cache Index du cache.
+     * @param index Index d'attente.
+     */
+    void initialiser(Cache cache, Index index);
+
+    /**
+     * Signale une requête sur un mot, présent ou non dans le cache.
+     *
+     * @param mot Mot demandé.
+     */
+    void acces(String mot);
+
+    /**
+     * Signale l'entrée d'un mot dans le cache.
+     *
+     * @param mot Mot ajouté.
+     */
+    void ajout(String mot);
+
+    /**
+     * Signale la sortie d'un mot du cache.
+     *
+     * @param mot Mot retiré.
+     */
+    void retrait(String mot);
+
+    /**
+     * Désigne l'entrée à supprimer pour faire de la place.
+     *
+     * @return Le mot à supprimer, ou null si le cache est vide.
+     */
+    String victime();
+
+    /**
+     * Décide si un mot absent du cache doit y entrer à la place de la victime.
+     *
+     * @param mot Mot candidat.
+     * @param victime Mot désigné par {@link #victime()}.
+     * @return True si le mot doit entrer dans le cache.
+     */
+    boolean admettre(String mot, String victime);
+}
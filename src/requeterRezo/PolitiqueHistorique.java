@@ -0,0 +1,42 @@
+package requeterRezo;
+
+/**
+ * Politique historique : la victime est le mot le moins courant du cache (le
+ * plus ancien en cas d'égalité) et un mot n'entre dans le cache que s'il a été
+ * demandé plus souvent (voir {@link Index}).
+ */
+public class PolitiqueHistorique implements PolitiqueCache {
+
+    private Cache cache;
+    private Index index;
+
+    @Override
+    public void initialiser(Cache cache, Index index) {
+        this.cache = cache;
+        this.index = index;
+    }
+
+    @Override
+    public void acces(String mot) {
+        //Les occurrences sont comptées par le cache et l'index d'attente
+    }
+
+    @Override
+    public void ajout(String mot) {
+    }
+
+    @Override
+    public void retrait(String mot) {
+    }
+
+    @Override
+    public String victime() {
+        return cache.moinsCourant();
+    }
+
+    @Override
+    public boolean admettre(String mot, String victime) {
+        IndexInfo info = index.get(mot);
+        return info != null && info.getOccurrences() > cache.get(victime).getOccurrences();
+    }
+}
@@ -0,0 +1,146 @@
+package requeterRezo;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * Politique LFU avec vieillissement : la victime est le mot du cache le moins
+ * fréquent (le moins récemment promu en cas d'égalité) et un mot n'entre dans
+ * le cache que s'il est plus fréquent que la victime.
+ *
+ * Les fréquences sont comptées pour tous les mots demandés. Après un nombre de
+ * requêtes égal à dix fois la taille du cache, toutes les fréquences sont
+ * divisées par deux : un mot qui n'est plus demandé finit par laisser sa
+ * place, et les mots vus une seule fois sont oubliés.
+ */
+public class PolitiqueLFU implements PolitiqueCache {
+
+    /**
+     * Nombre de requêtes entre deux divisions des fréquences, par entrée du
+     * cache.
+     */
+    private static final int FACTEUR_PERIODE = 10;
+
+    /**
+     * Fréquence de chaque mot demandé depuis le dernier vieillissement.
+     */
+    private final HashMap<String, Integer> frequences = new HashMap<>();
+
+    /**
+     * Mots du cache regroupés par fréquence, dans leur ordre d'arrivée dans
+     * chaque groupe.
+     */
+    private final TreeMap<Integer, LinkedHashSet<String>> groupes = new TreeMap<>();
+
+    private final HashMap<String, Integer> presents = new HashMap<>();
+
+    private final int periode;
+    private int requetes;
+
+    /**
+     * @param tailleMax Nombre maximum d'entrées du cache.
+     */
+    protected PolitiqueLFU(int tailleMax) {
+        this.periode = Math.max(1, tailleMax) * FACTEUR_PERIODE;
+    }
+
+    @Override
+    public void initialiser(Cache cache, Index index) {
+        frequences.clear();
+        groupes.clear();
+        presents.clear();
+        requetes = 0;
+    }
+
+    @Override
+    public void acces(String mot) {
+        Integer ancienne = frequences.get(mot);
+        int frequence = ancienne == null ? 1 : ancienne + 1;
+        frequences.put(mot, frequence);
+        if (presents.containsKey(mot)) {
+            deplacer(mot, frequence);
+        }
+        if (++requetes >= periode) {
+            vieillir();
+        }
+    }
+
+    @Override
+    public void ajout(String mot) {
+        deplacer(mot, frequence(mot));
+    }
+
+    @Override
+    public void retrait(String mot) {
+        Integer frequence = presents.remove(mot);
+        if (frequence != null) {
+            retirerDuGroupe(mot, frequence);
+        }
+    }
+
+    @Override
+    public String victime() {
+        return groupes.isEmpty() ? null : groupes.firstEntry().getValue().iterator().next();
+    }
+
+    @Override
+    public boolean admettre(String mot, String victime) {
+        return frequence(mot) > frequence(victime);
+    }
+
+    private int frequence(String mot) {
+        Integer frequence = frequences.get(mot);
+        return frequence == null ? 0 : frequence;
+    }
+
+    private void deplacer(String mot, int frequence) {
+        Integer ancienne = presents.put(mot, frequence);
+        if (ancienne != null) {
+            retirerDuGroupe(mot, ancienne);
+        }
+        LinkedHashSet<String> groupe = groupes.get(frequence);
+        if (groupe == null) {
+            groupe = new LinkedHashSet<>();
+            groupes.put(frequence, groupe);
+        }
+        groupe.add(mot);
+    }
+
+    private void retirerDuGroupe(String mot, int frequence) {
+        LinkedHashSet<String> groupe = groupes.get(frequence);
+        groupe.remove(mot);
+        if (groupe.isEmpty()) {
+            groupes.remove(frequence);
+        }
+    }
+
+    /**
+     * Divise toutes les fréquences par deux et oublie les mots absents du
+     * cache dont la fréquence devient nulle.
+     */
+    private void vieillir() {
+        requetes = 0;
+        Iterator<Entry<String, Integer>> iter = frequences.entrySet().iterator();
+        while (iter.hasNext()) {
+            Entry<String, Integer> entree = iter.next();
+            int frequence = entree.getValue() >> 1;
+            if (frequence == 0 && !presents.containsKey(entree.getKey())) {
+                iter.remove();
+            } else {
+                entree.setValue(frequence);
+            }
+        }
+        //Les groupes sont reconstruits dans l'ordre actuel (les moins fréquents d'abord)
+        TreeMap<Integer, LinkedHashSet<String>> anciens = new TreeMap<>(groupes);
+        groupes.clear();
+        presents.clear();
+        for (LinkedHashSet<String> groupe : anciens.values()) {
+            for (String mot : groupe) {
+                deplacer(mot, frequence(mot));
+            }
+        }
+    }
+}
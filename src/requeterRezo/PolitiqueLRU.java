@@ -0,0 +1,45 @@
+package requeterRezo;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Politique LRU : la victime est le mot du cache demandé le moins récemment,
+ * tout mot demandé entre dans le cache.
+ */
+public class PolitiqueLRU implements PolitiqueCache {
+
+    /**
+     * Mots du cache, du moins récemment demandé au plus récemment demandé.
+     */
+    private final LinkedHashMap<String, Boolean> recence = new LinkedHashMap<>(16, 0.75f, true);
+
+    @Override
+    public void initialiser(Cache cache, Index index) {
+        recence.clear();
+    }
+
+    @Override
+    public void acces(String mot) {
+        recence.get(mot);
+    }
+
+    @Override
+    public void ajout(String mot) {
+        recence.put(mot, Boolean.TRUE);
+    }
+
+    @Override
+    public void retrait(String mot) {
+        recence.remove(mot);
+    }
+
+    @Override
+    public String victime() {
+        return recence.isEmpty() ? null : recence.keySet().iterator().next();
+    }
+
+    @Override
+    public boolean admettre(String mot, String victime) {
+        return true;
+    }
+}
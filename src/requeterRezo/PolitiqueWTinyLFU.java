@@ -0,0 +1,127 @@
+package requeterRezo;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Politique W-TinyLFU. Le cache est découpé en une fenêtre LRU (1 % des
+ * entrées) et une partie principale LRU segmentée : une période d'essai et une
+ * partie protégée (80 % de la partie principale) où entrent les mots demandés
+ * à nouveau pendant leur essai.
+ *
+ * Tout mot demandé entre dans la fenêtre. Lorsque celle-ci est pleine, le mot
+ * le moins récent de la fenêtre est comparé à la victime de la partie
+ * principale : le moins fréquent des deux, selon une esquisse Count-Min
+ * vieillissante (voir {@link EsquisseCountMin}), quitte le cache, l'autre
+ * rejoint la période d'essai. Lorsque la fenêtre n'est pas pleine, le mot
+ * demandé n'est admis à la place de la victime principale que s'il est plus
+ * fréquent qu'elle. Un mot demandé une seule fois ne chasse donc pas un mot
+ * fréquent, tandis que la fenêtre absorbe les rafales de nouveaux mots.
+ */
+public class PolitiqueWTinyLFU implements PolitiqueCache {
+
+    /**
+     * Valeur maximale des compteurs de l'esquisse.
+     */
+    private static final int MAXIMUM_FREQUENCE = 15;
+
+    /**
+     * Nombre de requêtes entre deux vieillissements de l'esquisse, par entrée
+     * du cache.
+     */
+    private static final int FACTEUR_PERIODE = 10;
+
+    private final EsquisseCountMin esquisse;
+    private final int tailleFenetre;
+    private final int tailleProtegee;
+
+    /**
+     * Mots de chaque segment, du moins récemment demandé au plus récemment
+     * demandé.
+     */
+    private final LinkedHashMap<String, Boolean> fenetre = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Boolean> essai = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Boolean> protegee = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param tailleMax Nombre maximum d'entrées du cache.
+     */
+    protected PolitiqueWTinyLFU(int tailleMax) {
+        tailleMax = Math.max(1, tailleMax);
+        this.tailleFenetre = Math.max(1, tailleMax / 100);
+        this.tailleProtegee = (tailleMax - tailleFenetre) * 4 / 5;
+        this.esquisse = new EsquisseCountMin(tailleMax, 4, MAXIMUM_FREQUENCE, (long) tailleMax * FACTEUR_PERIODE);
+    }
+
+    @Override
+    public void initialiser(Cache cache, Index index) {
+        fenetre.clear();
+        essai.clear();
+        protegee.clear();
+        esquisse.vider();
+    }
+
+    @Override
+    public void acces(String mot) {
+        esquisse.incrementer(mot);
+        if (fenetre.get(mot) != null || protegee.get(mot) != null) {
+            return;
+        }
+        if (essai.remove(mot) != null) {
+            //Demandé à nouveau pendant son essai : le mot est protégé
+            protegee.put(mot, Boolean.TRUE);
+            if (protegee.size() > tailleProtegee) {
+                essai.put(premier(protegee), Boolean.TRUE);
+                protegee.remove(premier(protegee));
+            }
+        }
+    }
+
+    @Override
+    public void ajout(String mot) {
+        fenetre.put(mot, Boolean.TRUE);
+        if (fenetre.size() > tailleFenetre) {
+            String sortant = premier(fenetre);
+            fenetre.remove(sortant);
+            essai.put(sortant, Boolean.TRUE);
+        }
+    }
+
+    @Override
+    public void retrait(String mot) {
+        if (fenetre.remove(mot) == null && essai.remove(mot) == null) {
+            protegee.remove(mot);
+        }
+    }
+
+    @Override
+    public String victime() {
+        String principale = !essai.isEmpty() ? premier(essai) : premier(protegee);
+        if (fenetre.size() < tailleFenetre || fenetre.isEmpty()) {
+            return principale != null ? principale : premier(fenetre);
+        }
+        String candidat = premier(fenetre);
+        if (principale == null) {
+            return candidat;
+        }
+        //Le mot sortant de la fenêtre reste s'il est plus fréquent que la victime principale
+        return esquisse.estimer(candidat) > esquisse.estimer(principale) ? principale : candidat;
+    }
+
+    @Override
+    public boolean admettre(String mot, String victime) {
+        if (fenetre.containsKey(victime)) {
+            //Le mot sortant de la fenêtre a perdu face à la victime principale :
+            //c'est lui qui quitte le cache, le mot demandé prend sa place
+            return true;
+        }
+        //La victime est prise dans la partie principale : le mot qui la
+        //remplace (le mot sortant de la fenêtre, ou le mot demandé si la
+        //fenêtre n'est pas pleine) doit être plus fréquent qu'elle
+        String candidat = fenetre.size() >= tailleFenetre && !fenetre.isEmpty() ? premier(fenetre) : mot;
+        return esquisse.estimer(candidat) > esquisse.estimer(victime);
+    }
+
+    private static String premier(LinkedHashMap<String, Boolean> segment) {
+        return segment.isEmpty() ? null : segment.keySet().iterator().next();
+    }
+}
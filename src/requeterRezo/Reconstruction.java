@@ -0,0 +1,248 @@
+package requeterRezo;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reconstruction de l'index du cache à partir des entrées présentes dans le
+ * stockage (voir {@link RequeterRezo#ConstruireDepuisCache(Configuration)}).
+ *
+ * Pour le stockage historique (un fichier par mot), l'arborescence est
+ * parcourue en parallèle par un nombre borné de tâches : chaque dossier est
+ * une tâche, l'ID est construit au fil de la descente (un chiffre par niveau)
+ * et seul le début de chaque fichier est lu pour en extraire le mot. Les
+ * entrées sont ajoutées directement au nouvel index.
+ */
+public class Reconstruction {
+
+    /**
+     * Nombre d'octets lus en tête de chaque fichier (suffisant pour le nom
+     * d'un mot dans presque tous les cas ; sinon le fichier est relu).
+     */
+    private static final int TAILLE_EN_TETE = 512;
+
+    /**
+     * Nombre d'entrées entre deux messages de progression.
+     */
+    private static final int PAS_PROGRESSION = 50_000;
+
+    private static final String EXTENSION = ".cache";
+
+    private static final ThreadLocal<ByteBuffer> TAMPON = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(TAILLE_EN_TETE);
+        }
+    };
+
+    /**
+     * Index en cours de reconstruction.
+     */
+    private final Cache cache;
+
+    private final int tailleMax;
+
+    /**
+     * Date attribuée à la dernière occurrence des entrées reconstruites.
+     */
+    private final long maintenant;
+
+    private final AtomicLong entrees = new AtomicLong();
+
+    private final long debut = System.nanoTime();
+
+    private Reconstruction(int peremption, int tailleMax, long maintenant) {
+        this.cache = new Cache(peremption, tailleMax);
+        this.tailleMax = tailleMax;
+        this.maintenant = maintenant;
+    }
+
+    /**
+     * Reconstruit l'index d'un cache stocké sous la forme d'un fichier par mot.
+     *
+     * @param dossier Dossier du cache.
+     * @param peremption Délais de péremption (en heures).
+     * @param tailleMax Nombre maximum d'entrées.
+     * @param parallelisme Nombre de tâches de parcours simultanées.
+     * @param maintenant Date attribuée à la dernière occurrence des entrées.
+     * @return L'index reconstruit.
+     */
+    protected static Cache depuisFichiers(String dossier, int peremption, int tailleMax, int parallelisme, long maintenant) {
+        Reconstruction reconstruction = new Reconstruction(peremption, tailleMax, maintenant);
+        ForkJoinPool pool = new ForkJoinPool(parallelisme);
+        try {
+            pool.invoke(reconstruction.new Parcours(new File(dossier), ""));
+        } finally {
+            pool.shutdown();
+        }
+        return reconstruction.terminer();
+    }
+
+    /**
+     * Reconstruit l'index d'un cache stocké en segments (voir
+     * {@link StockageSegments}). Les IDs sont attribués dans l'ordre de
+     * parcours.
+     *
+     * @param stockage Stockage ouvert.
+     * @param peremption Délais de péremption (en heures).
+     * @param tailleMax Nombre maximum d'entrées.
+     * @param maintenant Date attribuée à la dernière occurrence des entrées.
+     * @return L'index reconstruit.
+     */
+    protected static Cache depuisSegments(StockageSegments stockage, int peremption, int tailleMax, long maintenant) {
+        Reconstruction reconstruction = new Reconstruction(peremption, tailleMax, maintenant);
+        int id = 0;
+        for (Map.Entry<String, Long> entree : stockage.inventaire().entrySet()) {
+            if (id >= tailleMax) {
+                break;
+            }
+            reconstruction.ajouter(entree.getKey(), id++, entree.getValue(), 0);
+        }
+        return reconstruction.terminer();
+    }
+
+    private Cache terminer() {
+        cache.reconstruireID();
+        double secondes = (System.nanoTime() - debut) / 1e9;
+        Logger.getLogger(Reconstruction.class.getName()).log(Level.INFO,
+                "Index du cache reconstruit : {0} entrees en {1} s ({2} entrees/s).",
+                new Object[]{cache.size(), String.format("%.1f", secondes), Math.round(cache.size() / Math.max(secondes, 1e-9))});
+        return cache;
+    }
+
+    private void ajouter(String mot, int id, long dateCache, int taille) {
+        synchronized (cache) {
+            cache.put(mot, new CacheInfo(id, dateCache, 2, maintenant, taille));
+        }
+        long n = entrees.incrementAndGet();
+        if (n % PAS_PROGRESSION == 0) {
+            double secondes = (System.nanoTime() - debut) / 1e9;
+            Logger.getLogger(Reconstruction.class.getName()).log(Level.INFO,
+                    "Reconstruction de l''index du cache : {0} entrees ({1} entrees/s).",
+                    new Object[]{n, Math.round(n / secondes)});
+        }
+    }
+
+    /**
+     * Parcours d'un dossier de l'arborescence. Les sous-dossiers (un chiffre
+     * de l'ID chacun) sont parcourus par de nouvelles tâches.
+     */
+    @SuppressWarnings("serial")
+    private class Parcours extends RecursiveAction {
+
+        private final File dossier;
+
+        /**
+         * Chiffres de l'ID correspondant aux dossiers parents.
+         */
+        private final String prefixe;
+
+        private Parcours(File dossier, String prefixe) {
+            this.dossier = dossier;
+            this.prefixe = prefixe;
+        }
+
+        @Override
+        protected void compute() {
+            File[] fichiers = dossier.listFiles();
+            if (fichiers == null) {
+                return;
+            }
+            ArrayList<Parcours> sousDossiers = new ArrayList<>();
+            for (File fichier : fichiers) {
+                String nom = fichier.getName();
+                if (nom.length() == 1 && Character.isDigit(nom.charAt(0))) {
+                    //Un dossier par chiffre de l'ID (les autres dossiers du cache sont ignorés)
+                    if (fichier.isDirectory()) {
+                        sousDossiers.add(new Parcours(fichier, prefixe + nom));
+                    }
+                } else if (nom.endsWith(EXTENSION)) {
+                    traiter(fichier, prefixe + nom.substring(0, nom.length() - EXTENSION.length()));
+                }
+            }
+            invokeAll(sousDossiers);
+        }
+
+        private void traiter(File fichier, String chiffres) {
+            int id;
+            try {
+                id = Integer.parseInt(chiffres);
+            } catch (NumberFormatException ex) {
+                return;
+            }
+            if (id >= tailleMax) {
+                return;
+            }
+            try {
+                String mot = lireMot(fichier);
+                if (mot != null) {
+                    ajouter(mot, id, fichier.lastModified(), (int) Math.min(Integer.MAX_VALUE, fichier.length()));
+                }
+            } catch (IOException ex) {
+                Logger.getLogger(Reconstruction.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
+    /**
+     * Lit le mot d'une entrée à partir du début du fichier : dans l'en-tête
+     * pour le format binaire, sur la première ligne pour l'ancien format texte.
+     *
+     * @param fichier Fichier de l'entrée.
+     * @return Le mot, ou null si le fichier est vide.
+     * @throws IOException
+     */
+    protected static String lireMot(File fichier) throws IOException {
+        try (FileInputStream entree = new FileInputStream(fichier)) {
+            ByteBuffer tampon = TAMPON.get();
+            tampon.clear();
+            int n;
+            while (tampon.hasRemaining() && (n = entree.read(tampon.array(), tampon.position(), tampon.remaining())) >= 0) {
+                tampon.position(tampon.position() + n);
+            }
+            tampon.flip();
+            if (!tampon.hasRemaining()) {
+                return null;
+            }
+            if (FormatBinaire.estBinaire(tampon)) {
+                try {
+                    return FormatBinaire.lireNom(tampon);
+                } catch (BufferUnderflowException ex) {
+                    //Nom plus long que l'en-tête lu
+                    return FormatBinaire.lireNom(Cache.lireFichier(fichier.getPath()));
+                }
+            }
+            for (int i = tampon.position(); i < tampon.limit(); ++i) {
+                if (tampon.get(i) == '\n') {
+                    return finLigne(tampon.array(), i);
+                }
+            }
+            //Première ligne plus longue que l'en-tête lu
+            ByteBuffer contenu = Cache.lireFichier(fichier.getPath());
+            for (int i = 0; i < contenu.limit(); ++i) {
+                if (contenu.get(i) == '\n') {
+                    return finLigne(contenu.array(), i);
+                }
+            }
+            return finLigne(contenu.array(), contenu.limit());
+        }
+    }
+
+    private static String finLigne(byte[] octets, int fin) {
+        if (fin > 0 && octets[fin - 1] == '\r') {
+            --fin;
+        }
+        return new String(octets, 0, fin, StandardCharsets.UTF_8);
+    }
+}
@@ -1,31 +1,34 @@
 package requeterRezo;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
 
 /**
  * Système de requêtes sur le réseau lexical Rezo avec cache gérant les fichiers
@@ -33,6 +36,30 @@ import java.util.regex.Pattern;
  * rencontrés mais dont l'importance ne justifie pas encore l'entrée dans le
  * cache.
  *
+ * Une instance peut être partagée entre plusieurs threads. Les index, la
+ * politique et l'attribution des IDs sont modifiés sous un verrou unique, gardé
+ * le temps des décisions en mémoire seulement : jamais pendant une requête sur
+ * le réseau ni pendant une écriture dans le stockage. Les écritures et
+ * suppressions d'une entrée du stockage sont faites sous un verrou propre à
+ * son mot (parmi {@link RequeterRezo#NB_VERROUS}) ; les lectures ne prennent
+ * aucun verrou et vérifient que l'entrée lue est bien celle du mot demandé (son
+ * ID a pu être réattribué entre-temps). {@link RequeterRezo#viderCache()} ne
+ * doit pas être appelée pendant des requêtes.
+ *
+ * Le dossier du cache peut aussi être partagé entre plusieurs processus (voir
+ * {@link Configuration#partage(boolean)}). Les modifications des index sont
+ * alors ajoutées au journal commun sous un verrou de fichier, pris après le
+ * verrou des index, et chaque requête commence par prendre en compte celles
+ * des autres processus. Un mot entrant dans le cache est écrit sous ce verrou
+ * puis annoncé dans le journal : les autres processus ne lisent que des
+ * entrées complètes et ne le demandent pas à nouveau au réseau.
+ *
+ * Les entrées du cache sont identifiées par le mot et la forme de la requête
+ * (type de relation et sens des relations, voir {@link Forme}). Une requête
+ * restreinte est servie par l'entrée complète du mot lorsque celle-ci est en
+ * cache, sans passer par le réseau ; sa réponse n'est jamais enregistrée à la
+ * place de l'entrée complète.
+ *
  * @author Jimmy Benoits
  */
 public class RequeterRezo {
@@ -47,33 +74,183 @@ public class RequeterRezo {
      */
     private Cache cache;
 
+    /**
+     * Support des entrées du cache.
+     */
+    private Stockage stockage;
+
+    /**
+     * Paramètres de l'instance.
+     */
+    private final Configuration configuration;
+
     /**
      * Temps par défaut à partir duquel un fichier est considéré comme obsolète.
      * Valeur par defaut : 7 jours.
      */
-    private final static String PEREMPTION_DEFAUT = "7j";
+    final static String PEREMPTION_DEFAUT = "7j";
 
     /**
      * Chemin par défaut du dossier contenant le cache.
      */
-    private final static String CHEMIN_CACHE = "cache";
+    final static String CHEMIN_CACHE = "cache";
 
     /**
-     * Nom par défaut du fichier contenant l'index des mots en attentes.
+     * Nom du fichier contenant l'index des mots en attentes.
      */
-    private final static String FICHIER_INDEX = CHEMIN_CACHE + File.separator + "indexAttente";
+    private final static String NOM_INDEX = "indexAttente";
 
     /**
-     * Nom par défaut du fichier contenant l'index des mots contenus dans le
-     * cache.
+     * Nom du fichier contenant l'index des mots contenus dans le cache.
+     */
+    private final static String NOM_CACHE = "indexCache";
+
+    /**
+     * Nom du dossier contenant les segments lorsque le stockage journalisé est
+     * utilisé.
+     */
+    private final static String NOM_SEGMENTS = "segments";
+
+    /**
+     * Nom du dossier contenant les dictionnaires de compression.
+     */
+    private final static String NOM_DICTIONNAIRES = "dictionnaires";
+
+    /**
+     * Nom du fichier contenant le journal des modifications des index.
+     */
+    private final static String NOM_JOURNAL = "journal";
+
+    /**
+     * Nom du fichier servant de verrou lorsque le dossier du cache est partagé
+     * entre plusieurs processus.
+     */
+    private final static String NOM_VERROU = "verrou";
+
+    /**
+     * Nom du fichier contenant les noms des types de relations rencontrés
+     * (voir {@link TypesRelations}).
+     */
+    private final static String NOM_TYPES_RELATIONS = "typesRelations";
+
+    /**
+     * Nom du fichier contenant les mots absents de rezoJDM (voir
+     * {@link CacheNegatif}).
+     */
+    private final static String NOM_ABSENTS = "motsAbsents";
+
+    /**
+     * Message de la page de rezoJDM signalant un terme inexistant.
+     */
+    private final static String MARQUE_INTROUVABLE = "n'existe pas";
+
+    /**
+     * Fin d'une page de rezoJDM reçue complètement.
+     */
+    private final static String MARQUE_FIN = "</html>";
+
+    /**
+     * Nombre maximum de tâches parcourant le cache lors de la reconstruction
+     * de l'index.
+     */
+    private final static int PARALLELISME_RECONSTRUCTION = 16;
+
+    /**
+     * Nombre d'entrées utilisées pour apprendre le dictionnaire de compression.
+     */
+    private final static int TAILLE_ECHANTILLON = 256;
+
+    /**
+     * Chemin du dossier contenant le cache de cette instance.
+     */
+    private final String chemin_cache;
+
+    /**
+     * Chemin du fichier contenant l'index des mots en attentes.
+     */
+    private final String fichier_index;
+
+    /**
+     * Chemin du fichier contenant l'index des mots contenus dans le cache.
+     */
+    private final String fichier_cache;
+
+    /**
+     * Statistiques d'utilisation du cache.
+     */
+    private final Statistiques statistiques = new Statistiques();
+
+    /**
+     * Noms des types de relations, permettant de servir une requête sur un
+     * seul type à partir de l'entrée complète d'un mot.
+     */
+    final TypesRelations nomsRelations;
+
+    /**
+     * Compression des entrées du cache.
+     */
+    private Compression compression;
+
+    /**
+     * Journal des modifications des index (null s'il n'a pas pu être ouvert).
+     */
+    private Journal journal;
+
+    /**
+     * Vérification de l'index du cache en cours depuis le démarrage (null une
+     * fois terminée).
+     */
+    private Verification verification;
+
+    /**
+     * Politique d'admission et d'éviction du cache.
+     */
+    private PolitiqueCache politique;
+
+    /**
+     * Mots décodés gardés en mémoire, devant le cache sur disque.
+     */
+    private CacheMemoire memoire;
+
+    /**
+     * Entrées sérialisées gardées hors du tas, entre la mémoire et le disque.
+     */
+    private CacheHorsTas horsTas;
+
+    /**
+     * Mots absents de rezoJDM, non redemandés au réseau avant leur péremption
+     * (null si désactivé, voir {@link Configuration#motsAbsents(String, int, double)}).
+     */
+    private CacheNegatif absents;
+
+    /**
+     * Verrou des index (cache, index d'attente, politique, vérification).
      */
-    private final static String FICHIER_CACHE = CHEMIN_CACHE + File.separator + "indexCache";
+    private final Object verrou = new Object();
+
+    /**
+     * Nombre de verrous répartissant les entrées du stockage.
+     */
+    final static int NB_VERROUS = 64;
+
+    /**
+     * Verrous des entrées du stockage, attribués selon le mot. Un thread ne
+     * garde jamais deux verrous de mots à la fois, et prend le verrou des index
+     * (éventuellement) après celui d'un mot.
+     */
+    private final Object[] verrous = new Object[NB_VERROUS];
+
+    /**
+     * True pendant l'apprentissage automatique d'un dictionnaire de
+     * compression (protégé par le verrou des index).
+     */
+    private boolean apprentissage;
 
     /**
      * Taille maximale du cache par défaut (en nombre d'entrées). Valeur par
      * défaut : 1000.
      */
-    private final static int TAILLE_MAX_DEFAUT = 1000;
+    final static int TAILLE_MAX_DEFAUT = 1000;
 
     /**
      * Taille maximale du cache (en nombre d'entrées).
@@ -85,11 +262,25 @@ public class RequeterRezo {
      */
     private final int peremption;
 
+    /**
+     * Délais de péremption (en heures) propres à certains types de relations,
+     * par identifiant du type.
+     */
+    private final HashMap<Integer, Integer> peremptionsTypes = new HashMap<>();
+
+    /**
+     * Bornes du délais de péremption adaptatif, en heures (-1 si le délais de
+     * péremption est fixe, voir
+     * {@link Configuration#peremptionAdaptative(String, String)}).
+     */
+    private final int peremptionMin;
+    private final int peremptionMax;
+
     /**
      * Constructeur par défaut (utilise les valeurs par défaut).
      */
     
-    private HashMap<String,Integer> relations=new HashMap<>();
+    private Map<String,Integer> relations=new ConcurrentHashMap<>();
     
     public RequeterRezo() {
         this(PEREMPTION_DEFAUT, TAILLE_MAX_DEFAUT);
@@ -141,8 +332,36 @@ public class RequeterRezo {
      * @param tailleMax Nombre maximale d'entrée possible dans le cache.
      */
     public RequeterRezo(String peremption, int tailleMax) {
-        this.peremption = RequeterRezo.PeremptionToInt(peremption);
-        this.taille_max = tailleMax;
+        this(new Configuration().peremption(peremption).tailleMax(tailleMax));
+    }
+
+    /**
+     * Constructeur à partir d'une configuration complète (voir
+     * {@link Configuration}).
+     *
+     * @param configuration Paramètres de l'instance.
+     */
+    public RequeterRezo(Configuration configuration) {
+        this.configuration = configuration;
+        this.peremption = RequeterRezo.PeremptionToInt(configuration.peremption);
+        for (Entry<Integer, String> entree : configuration.peremptionsTypes.entrySet()) {
+            peremptionsTypes.put(entree.getKey(), RequeterRezo.PeremptionToInt(entree.getValue()));
+        }
+        if (configuration.peremptionMin != null && configuration.peremptionMax != null) {
+            this.peremptionMin = RequeterRezo.PeremptionToInt(configuration.peremptionMin);
+            this.peremptionMax = Math.max(peremptionMin, RequeterRezo.PeremptionToInt(configuration.peremptionMax));
+        } else {
+            this.peremptionMin = -1;
+            this.peremptionMax = -1;
+        }
+        this.taille_max = configuration.tailleMax;
+        this.chemin_cache = configuration.dossierCache;
+        this.fichier_index = chemin_cache + File.separator + NOM_INDEX;
+        this.fichier_cache = chemin_cache + File.separator + NOM_CACHE;
+        this.nomsRelations = new TypesRelations(chemin_cache + File.separator + NOM_TYPES_RELATIONS);
+        for (int i = 0; i < NB_VERROUS; ++i) {
+            verrous[i] = new Object();
+        }
         initialisation();
     }
 
@@ -214,63 +433,53 @@ public class RequeterRezo {
      * depuis les fichiers présents dans le cache.
      */
     public static RequeterRezo ConstruireDepuisCache(String peremption, int tailleMax) {
-        //On écrit un nouveau fichier indexCache à partir des fichiers présents        
-        File dossierCache = new File(CHEMIN_CACHE);
-        ArrayList<File> dossiersAVisiter = new ArrayList<>();
-        ArrayList<String> ids = new ArrayList<>();
-        String id;
-        int i;
-        String[] tokens;
-        ArrayList<String> entries = new ArrayList<>();
-        File[] fichiers;
-        SimpleDateFormat df = new SimpleDateFormat("dd-MM-yyyy hh:mm:ss aaa");
+        return RequeterRezo.ConstruireDepuisCache(new Configuration().peremption(peremption).tailleMax(tailleMax));
+    }
+
+    /**
+     * Permet la reconstruction de l'index grâce au dossier du cache (voir
+     * {@link RequeterRezo#ConstruireDepuisCache()}), pour une configuration
+     * quelconque (dossier du cache, type de stockage). L'arborescence est
+     * parcourue en parallèle et seul l'en-tête de chaque entrée est lu ; la
+     * progression est signalée dans le journal d'exécution (Logger).
+     *
+     * @param configuration Paramètres de l'instance.
+     * @return Un objet {@link RequeterRezo} dont l'index a été reconstruit
+     * depuis les entrées présentes dans le cache.
+     */
+    public static RequeterRezo ConstruireDepuisCache(Configuration configuration) {
+        File dossierCache = new File(configuration.dossierCache);
         if (dossierCache.exists() && dossierCache.isDirectory()) {
-            //Parcours de l'arborescence pour traiter tous les dossiers
-            dossiersAVisiter.add(dossierCache);
-            while (!dossiersAVisiter.isEmpty()) {
-                fichiers = dossiersAVisiter.get(0).listFiles();
-                dossiersAVisiter.remove(0);
-                for (File fichier : fichiers) {
-                    //Si c'est un dossier : on ajoute à la liste
-                    if (fichier.isDirectory()) {
-                        dossiersAVisiter.add(fichier);
-                    } else if (fichier.getName().endsWith(".cache")) {
-                        //Récupération de l'ID à partir du chemin                        
-                        tokens = fichier.getAbsolutePath().split(Pattern.quote(System.getProperty("file.separator")));
-                        //On récupère la partie avant le ".cache"
-                        id = fichier.getName().substring(0, fichier.getName().length() - 6);
-                        //On part de la fin, dès qu'on voit un token qui n'est pas seulement un chiffre, on arrête
-                        i = tokens.length - 2;
-                        while (i >= 0 && tokens[i].length() == 1 && Character.isDigit(tokens[i].charAt(0))) {
-                            id = tokens[i] + id;
-                            --i;
-                        }
-                        ids.add(id);
-                        //On récupère le mot ainsi que la date de dernière modification du fichier (ie. entrée dans le cache)
-                        try (BufferedReader reader = new BufferedReader(new FileReader(fichier.getAbsoluteFile()))) {
-                            entries.add(reader.readLine() + ";" + id + ";" + df.format(new Date(fichier.lastModified())) + ";2;" + df.format(new Date()));
-                        } catch (IOException ex) {
-                            Logger.getLogger(RequeterRezo.class.getName()).log(Level.SEVERE, null, ex);
-                        }
+            int peremption = RequeterRezo.PeremptionToInt(configuration.peremption);
+            Cache cache;
+            if (configuration.stockageSegments) {
+                try {
+                    StockageSegments stockage = new StockageSegments(configuration.dossierCache + File.separator + NOM_SEGMENTS);
+                    try {
+                        cache = Reconstruction.depuisSegments(stockage, peremption, configuration.tailleMax,
+                                configuration.horloge.getAsLong());
+                    } finally {
+                        stockage.fermer();
                     }
+                } catch (IOException ex) {
+                    Logger.getLogger(RequeterRezo.class.getName()).log(Level.SEVERE, null, ex);
+                    cache = new Cache(peremption, configuration.tailleMax);
                 }
+            } else {
+                cache = Reconstruction.depuisFichiers(configuration.dossierCache, peremption, configuration.tailleMax,
+                        Math.min(PARALLELISME_RECONSTRUCTION, 2 * Runtime.getRuntime().availableProcessors()),
+                        configuration.horloge.getAsLong());
             }
-            //Ecriture du nouvel index
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(CHEMIN_CACHE + File.separator + "indexCache"))) {
-                for (String s : ids) {
-                    writer.write(s + ";");
-                }
-                writer.newLine();
-                for (String entry : entries) {
-                    writer.write(entry);
-                    writer.newLine();
-                }
+            //Ecriture du nouvel index ; le journal décrit l'ancien et n'a plus lieu d'être
+            try {
+                Cache.sauvegarderCache(cache, configuration.dossierCache + File.separator + NOM_CACHE);
+                new File(configuration.dossierCache + File.separator + NOM_JOURNAL).delete();
             } catch (IOException ex) {
                 Logger.getLogger(RequeterRezo.class.getName()).log(Level.SEVERE, null, ex);
             }
         }
         //On appelle le constructeur avec le fichier à récupérer
-        return new RequeterRezo(peremption, tailleMax);
+        return new RequeterRezo(configuration);
     }
     
     public void construireRelations() throws IOException, MalformedURLException, InterruptedException {
@@ -329,27 +538,7 @@ public class RequeterRezo {
     
     
     public Mot requete(String mot) throws IOException, MalformedURLException, InterruptedException {
-        String avisCache = rencontrerMot(mot);
-        boolean demande;
-        switch (avisCache) {
-            case "$DEMANDE$": {
-                demande = true;
-                break;
-            }
-            case "$OSEF$": {
-                demande = false;
-                break;
-            }
-            default: {
-                return Mot.lire(avisCache);
-            }
-        }
-        URL jdm = new URL(Mot.recupURL(mot));
-        Mot res = construireMot(mot,jdm);
-        if (demande) {
-            reponseDemande(res);
-        }
-        return res;
+        return requete(mot, Forme.COMPLETE);
     }
     
     public Mot requete (String mot, String typeRelation) throws IOException, MalformedURLException, InterruptedException {
@@ -365,31 +554,79 @@ public class RequeterRezo {
         }
     
     public Mot requete(String mot, int typeRelation) throws IOException, MalformedURLException, InterruptedException {
-        String avisCache = rencontrerMot(mot);
-        boolean demande;
-        switch (avisCache) {
-            case "$DEMANDE$": {
-                demande = true;
-                break;
-            }
-            case "$OSEF$": {
-                demande = false;
-                break;
-            }
-            default: {
-                return Mot.lire(avisCache);
-            }
+        return requete(mot, new Forme(typeRelation, true, true));
+    }
+    
+    public Mot requete(String mot, int typeRelation, Filtre filtrer) throws IOException, MalformedURLException, InterruptedException {
+        //Le filtre nomme le sens des relations écartées
+        boolean sortantes = filtrer == Filtre.FiltreRelationsEntrantes;
+        boolean entrantes = filtrer == Filtre.FiltreRelationsSortantes;
+        return requete(mot, new Forme(typeRelation, sortantes, entrantes));
+    }
+    
+    public Mot requete(String mot, boolean sortantes, boolean entrantes) throws IOException, MalformedURLException, InterruptedException {
+        return requete(mot, new Forme(Forme.TOUTES, sortantes, entrantes));
+    }
+
+    /**
+     * Requête d'un mot restreinte à plusieurs types de relations (sortantes et
+     * entrantes). Chaque type est un segment du cache, demandé comme par
+     * {@link RequeterRezo#requete(String, int)} et qui expire indépendamment
+     * des autres : seuls les types absents du cache (et de l'entrée complète
+     * du mot) sont demandés au réseau, puis les segments sont fusionnés.
+     *
+     * Chaque type compte comme une requête distincte : dans les statistiques,
+     * dans l'index d'attente (une occurrence par segment) et pour la
+     * politique du cache (un accès par segment).
+     *
+     * @param mot Terme dont on souhaite retrouver la page JeuxDeMots.
+     * @param typesRelations Identifiants des types de relations demandés (au
+     * moins un).
+     * @return Le mot restreint aux types demandés, ou null si le mot n'existe
+     * pas dans JDM ou si ce dernier ne répond pas.
+     * @throws IllegalArgumentException Si aucun type n'est donné.
+     * @throws java.io.IOException
+     * @throws java.net.MalformedURLException
+     * @throws java.lang.InterruptedException
+     */
+    public Mot requete(String mot, int... typesRelations) throws IOException, MalformedURLException, InterruptedException {
+        if (typesRelations.length == 0) {
+            throw new IllegalArgumentException("Au moins un type de relation doit etre demande.");
         }
-        URL jdm = new URL(Mot.recupURL(mot,typeRelation));
-        Mot res = construireMot(mot,jdm);
-        if (demande) {
-            reponseDemande(res);
+        Mot res = null;
+        for (int typeRelation : typesRelations) {
+            Mot segment = requete(mot, new Forme(typeRelation, true, true));
+            if (segment == null) {
+                return null;
+            }
+            res = res == null ? segment : Forme.fusionner(res, segment);
         }
         return res;
     }
-    
-    public Mot requete(String mot, int typeRelation, Filtre filtrer) throws IOException, MalformedURLException, InterruptedException {
-        String avisCache = rencontrerMot(mot);
+
+    /**
+     * Requête d'un mot sous une forme donnée (voir {@link Forme}). Une forme
+     * restreinte est d'abord extraite de l'entrée complète du mot si celle-ci
+     * est en cache ; sinon elle est mise en cache sous sa propre clé.
+     *
+     * @param mot Terme dont on souhaite retrouver la page JeuxDeMots.
+     * @param forme Forme de la requête.
+     * @return Le mot restreint à la forme, ou null si le mot n'existe pas dans
+     * JDM ou si ce dernier ne répond pas.
+     */
+    private Mot requete(String mot, Forme forme) throws IOException, MalformedURLException, InterruptedException {
+        if (absents != null && absents.contient(mot)) {
+            statistiques.absent();
+            return null;
+        }
+        if (!forme.estComplete() && cache.containsKey(mot)) {
+            String relation = forme.typeRelation == Forme.TOUTES ? null : nomsRelations.nom(forme.typeRelation);
+            if (forme.typeRelation == Forme.TOUTES || relation != null) {
+                return requeteProjetee(mot, forme, relation);
+            }
+        }
+        String cle = forme.cle(mot);
+        String avisCache = rencontrerMot(cle);
         boolean demande;
         switch (avisCache) {
             case "$DEMANDE$": {
@@ -401,48 +638,66 @@ public class RequeterRezo {
                 break;
             }
             default: {
-                return Mot.lire(avisCache);
+                Mot lu = lireCacheMesure(cle);
+                if (lu != null) {
+                    return lu;
+                }
+                //Entrée absente du stockage : l'index a été corrigé, le mot est redemandé
+                demande = true;
             }
         }
-        URL jdm = new URL(Mot.recupURL(mot,typeRelation,false,false));
-        if(filtrer == Filtre.FiltreRelationsEntrantes) {
-        	jdm = new URL(Mot.recupURL(mot,typeRelation,true,false));
-        }
-        
-        if(filtrer == Filtre.FiltreRelationsSortantes) {
-         jdm = new URL(Mot.recupURL(mot,typeRelation,false,true));
-        
-        }
-        
+        URL jdm = new URL(forme.url(mot));
+        statistiques.echec();
         Mot res = construireMot(mot,jdm);
         if (demande) {
-            reponseDemande(res);
+            reponseDemande(cle, res);
         }
         return res;
     }
-    
-    public Mot requete(String mot, boolean sortantes, boolean entrantes) throws IOException, MalformedURLException, InterruptedException {
-    	  String avisCache = rencontrerMot(mot);
-          boolean demande;
-          switch (avisCache) {
-              case "$DEMANDE$": {
-                  demande = true;
-                  break;
-              }
-              case "$OSEF$": {
-                  demande = false;
-                  break;
-              }
-              default: {
-                  return Mot.lire(avisCache);
-              }
-          }
-    	URL jdm = new URL(Mot.recupURL(mot,sortantes, entrantes));
-        Mot res = construireMot(mot,jdm);
-        if (demande) {
-            reponseDemande(res);
+
+    /**
+     * Répond à une requête restreinte à partir de l'entrée complète du mot,
+     * présente dans l'index du cache. L'accès est compté une seule fois, pour
+     * l'entrée complète : si celle-ci est périmée (ou absente du stockage) et
+     * que la politique la redemande, c'est elle qui est demandée au réseau
+     * puis restreinte ; si la politique ne la redemande pas, seule la forme
+     * restreinte est demandée au réseau, sans être mise en cache.
+     *
+     * @param mot Mot de la requête.
+     * @param forme Forme restreinte de la requête.
+     * @param relation Nom du type de relation demandé (null si la forme porte
+     * sur toutes les relations).
+     * @return Le mot restreint à la forme, ou null si le mot n'existe pas dans
+     * JDM ou si ce dernier ne répond pas.
+     */
+    private Mot requeteProjetee(String mot, Forme forme, String relation) throws IOException, MalformedURLException, InterruptedException {
+        Mot complet = null;
+        switch (rencontrerMot(mot)) {
+            case "$OSEF$": {
+                statistiques.echec();
+                return construireMot(mot, new URL(forme.url(mot)));
+            }
+            case "$CACHE$": {
+                complet = lireCacheMesure(mot);
+                if (complet != null) {
+                    statistiques.projection();
+                }
+                break;
+            }
+            default:
+                break;
         }
-        return res;
+        if (complet == null) {
+            //Entrée périmée, ou absente du stockage (l'index a été corrigé) :
+            //le mot complet est redemandé
+            statistiques.echec();
+            complet = construireMot(mot, new URL(Mot.recupURL(mot)));
+            reponseDemande(mot, complet);
+            if (complet == null) {
+                return null;
+            }
+        }
+        return forme.projeter(complet, relation);
     }
     
 
@@ -498,60 +753,313 @@ public class RequeterRezo {
     	requete_(majCache,res);
         return res;
     }
-    */
-   
+    */
+   
+    /**
+     * Vide le cache (supprime le dossier ainsi que tous ses sous-éléments).
+     * Ne doit pas être appelée lorsque le dossier est partagé avec d'autres
+     * processus en cours d'exécution.
+     */
+    public void viderCache() {
+        synchronized (verrou) {
+            if (verification != null) {
+                verification.arreter();
+                verification = null;
+            }
+            try {
+                if (journal != null) {
+                    journal.fermer();
+                }
+                stockage.fermer();
+            } catch (IOException ex) {
+                Logger.getLogger(RequeterRezo.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            File racine = new File(chemin_cache);
+            supprimerRepertoire(racine);
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException ex) {
+                Logger.getLogger(RequeterRezo.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            initialisation();
+        }
+    }
+
+    /**
+     * Supprime un mot du cache. Supprime son apparition dans l'index du cache
+     * ainsi que le fichier correspondant, pour toutes les formes de requête
+     * (voir {@link Forme}).
+     *
+     * @param mot Mot à supprimer.
+     */
+    public void supprimer(String mot) {
+        ArrayList<CacheInfo> a_effacer = new ArrayList<>();
+        String prefixe = mot + Forme.SEPARATEUR;
+        synchronized (verrou) {
+            evincer(mot, a_effacer);
+            for (String cle : cache.keySet()) {
+                if (cle.startsWith(prefixe)) {
+                    evincer(cle, a_effacer);
+                }
+            }
+        }
+        if (a_effacer.isEmpty()) {
+            synchronized (verrouMot(mot)) {
+                oublierEnMemoire(mot);
+            }
+        }
+        effacer(a_effacer);
+    }
+
+    /**
+     * Retire un mot de l'index du cache. Son entrée est effacée du stockage
+     * plus tard, hors du verrou des index (voir
+     * {@link RequeterRezo#effacer(List)}) ; son ID reste réservé jusque-là.
+     *
+     * @param mot Mot à retirer.
+     * @param a_effacer Entrées à effacer, complétée par celle du mot.
+     */
+    private void evincer(String mot, List<CacheInfo> a_effacer) {
+        CacheInfo info = this.cache.detacher(mot);
+        if (info != null) {
+            a_effacer.add(info);
+        }
+    }
+
+    /**
+     * Efface du stockage et des caches en mémoire des entrées retirées de
+     * l'index, chacune sous le verrou de son mot, puis rend disponibles leurs
+     * IDs. Appelée hors du verrou des index.
+     *
+     * @param a_effacer Entrées retirées par
+     * {@link RequeterRezo#evincer(String, List)}.
+     */
+    private void effacer(List<CacheInfo> a_effacer) {
+        for (CacheInfo info : a_effacer) {
+            synchronized (verrouMot(info.mot)) {
+                //Le mot a pu être admis à nouveau entre-temps (sous un autre ID) :
+                //les caches en mémoire contiennent alors sa nouvelle version
+                if (!this.cache.containsKey(info.mot)) {
+                    oublierEnMemoire(info.mot);
+                }
+                //Dans un dossier partagé, l'ID libéré peut être attribué par
+                //un autre processus, qui écrit l'entrée sous le verrou du journal
+                if (journal != null) {
+                    journal.verrouiller();
+                }
+                try {
+                    stockage.supprimer(info.mot, info.getID());
+                } catch (IOException ex) {
+                    Logger.getLogger(RequeterRezo.class.getName()).log(Level.SEVERE, null, ex);
+                } finally {
+                    if (journal != null) {
+                        journal.deverrouiller();
+                    }
+                }
+            }
+            synchronized (verrou) {
+                this.cache.libererID(info.getID());
+            }
+        }
+    }
+
+    /**
+     * Retourne le verrou des entrées du stockage associé à un mot.
+     *
+     * @param mot Mot concerné.
+     * @return Le verrou du mot.
+     */
+    private Object verrouMot(String mot) {
+        return verrous[(mot.hashCode() & 0x7FFFFFFF) % NB_VERROUS];
+    }
+
+    /**
+     * Retourne les statistiques d'utilisation du cache de cette instance.
+     *
+     * @return Les statistiques d'utilisation du cache.
+     */
+    public Statistiques getStatistiques() {
+        return statistiques;
+    }
+
+    /**
+     * Retourne l'index des mots contenus dans le cache, afin de vrifier sa
+     * cohrence avec le stockage (tests).
+     *
+     * @return L'index du cache.
+     */
+    Cache getCache() {
+        return cache;
+    }
+
+    /**
+     * Retourne l'index des mots en attente (tests).
+     *
+     * @return L'index d'attente.
+     */
+    Index getIndex() {
+        return index;
+    }
+
+    /**
+     * Retourne le support des entres du cache (tests).
+     *
+     * @return Le stockage.
+     */
+    Stockage getStockage() {
+        return stockage;
+    }
+
     /**
-     * Vide le cache (supprime le dossier ainsi que tous ses sous-éléments).
+     * Sauvegarde l'état du cache. Il est nécessaire d'appeler cette méthode
+     * lors de la fin d'une session sinon l'intégrité du cache ne sera pas
+     * conservée. Les modifications des index étant journalisées au fil de
+     * l'eau (voir {@link Journal}), il suffit d'écrire sur disque les entrées
+     * et le journal ; les index ne sont réécrits que si le journal est long
+     * (voir {@link RequeterRezo#pointDeReprise()}).
      */
-    public void viderCache() {
-        File racine = new File(CHEMIN_CACHE);
-        supprimerRepertoire(racine);
-        try {
-            Thread.sleep(1000);
-        } catch (InterruptedException ex) {
-            Logger.getLogger(RequeterRezo.class.getName()).log(Level.SEVERE, null, ex);
+    public void sauvegarder() {
+        synchronized (verrou) {
+            if (journal == null) {
+                pointDeReprise();
+                return;
+            }
+            try {
+                //Les entrées en attente d'écriture doivent être sur disque avant
+                //les modifications du journal qui les référencent
+                stockage.synchroniser();
+                journal.synchroniser();
+            } catch (IOException ex) {
+                Logger.getLogger(RequeterRezo.class
+                        .getName()).log(Level.SEVERE, null, ex);
+            }
+            if (journal.pointDeRepriseSouhaitable()) {
+                pointDeReprise();
+            } else if (absents != null) {
+                //Les mots absents ne sont pas journalisés
+                boolean partage = estPartage();
+                if (partage) {
+                    journal.verrouiller();
+                }
+                try {
+                    absents.sauvegarder(chemin_cache + File.separator + NOM_ABSENTS);
+                } catch (IOException ex) {
+                    Logger.getLogger(RequeterRezo.class
+                            .getName()).log(Level.SEVERE, null, ex);
+                } finally {
+                    if (partage) {
+                        journal.deverrouiller();
+                    }
+                }
+            }
         }
-        initialisation();
     }
 
     /**
-     * Supprime un mot du cache. Supprime son apparition dans l'index du cache
-     * ainsi que le fichier correspondant.
-     *
-     * @param mot Mot à supprimer.
+     * Réécrit complètement les deux index puis vide le journal des
+     * modifications. Appelée automatiquement lorsque le journal devient trop
+     * long ; la reprise après un arrêt brutal ne rejoue alors que les
+     * modifications postérieures. Lorsque le dossier est partagé, les index
+     * sont réécrits sous le verrou du journal après avoir pris en compte les
+     * modifications des autres processus, et le journal est remplacé (voir
+     * {@link Journal#remplacer()}).
      */
-    public void supprimer(String mot) {
-        File fichier = this.construireChemin(mot);
-        if (fichier.exists()) {
-            fichier.delete();
-            //Suppression du dossier s'il est vide
-            fichier = fichier.getParentFile();
-            if (fichier.list().length == 0) {
-                fichier.delete();
+    public void pointDeReprise() {
+        synchronized (verrou) {
+            boolean partage = estPartage();
+            if (partage) {
+                journal.verrouiller();
+            }
+            try {
+                if (partage) {
+                    rattraper(true);
+                }
+                //Les entrées en attente d'écriture doivent être sur disque avant l'index
+                stockage.synchroniser();
+                Cache.sauvegarderCache(cache, fichier_cache);
+                Index.sauvegarderIndex(index, fichier_index);
+                if (absents != null) {
+                    absents.sauvegarder(chemin_cache + File.separator + NOM_ABSENTS);
+                }
+                if (partage) {
+                    journal.remplacer();
+                } else if (journal != null) {
+                    journal.vider();
+                }
+            } catch (IOException ex) {
+                Logger.getLogger(RequeterRezo.class
+                        .getName()).log(Level.SEVERE, null, ex);
+            } finally {
+                if (partage) {
+                    journal.deverrouiller();
+                }
             }
-            this.cache.supprimer(mot);
         }
     }
 
     /**
-     * Sauvegarde l'état du cache (les deux index). Il est nécessaire d'appeler
-     * cette méthode lors de la fin d'une session sinon l'intégrité du cache ne
-     * sera pas conservée.
+     * Indique si le dossier du cache est partagé avec d'autres processus (voir
+     * {@link Configuration#partage(boolean)}).
+     *
+     * @return True si le journal des index est partagé.
      */
-    public void sauvegarder() {
-        try {
-            Cache.sauvegarderCache(cache, FICHIER_CACHE);
-            Index.sauvegarderIndex(index, FICHIER_INDEX);
+    private boolean estPartage() {
+        return journal != null && journal.estPartage();
+    }
 
-        } catch (IOException ex) {
-            Logger.getLogger(RequeterRezo.class
-                    .getName()).log(Level.SEVERE, null, ex);
+    /**
+     * Prend en compte les modifications des index faites par les autres
+     * processus partageant le dossier du cache (voir {@link Journal}) et retire
+     * des caches en mémoire les mots dont l'entrée a été remplacée ou
+     * supprimée. Si des modifications ont été manquées (journal remplacé
+     * plusieurs fois depuis la dernière requête), les index sont rechargés
+     * depuis le dernier point de reprise. Appelée sous le verrou des index.
+     *
+     * @param verrouille True si le verrou du journal est déjà pris.
+     */
+    private void rattraper(boolean verrouille) {
+        if (!estPartage()) {
+            return;
+        }
+        ArrayList<String> modifies = new ArrayList<>();
+        try {
+            if (!journal.suivre(cache, index, modifies, verrouille)) {
+                if (!verrouille) {
+                    //Journal remplacé : le suivant ne peut être lu que sous le verrou
+                    journal.verrouiller();
+                    try {
+                        rattraper(true);
+                    } finally {
+                        journal.deverrouiller();
+                    }
+                } else {
+                    Logger.getLogger(RequeterRezo.class.getName()).log(Level.INFO,
+                            "Journal partage manque : index recharges depuis le dernier point de reprise.");
+                    cache.recharger(Cache.chargerCache(fichier_cache, peremption, taille_max, chemin_cache));
+                    if (!(index instanceof IndexProbabiliste)) {
+                        index.recharger(Index.chargerIndex(fichier_index, taille_max));
+                    }
+                    memoire.vider();
+                    horsTas.vider();
+                    journal.reprendre();
+                    journal.suivre(cache, index, modifies, true);
+                }
+            }
+        } catch (IOException | ParseException ex) {
+            Logger.getLogger(RequeterRezo.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        //L'index du cache est à jour : une lecture concurrente ne peut plus
+        //remettre l'ancienne version en mémoire
+        for (String mot : modifies) {
+            oublierEnMemoire(mot);
         }
     }
 
     /**
      * Fonction de construction d'un Mot à partir d'une chaîne de caractère.
      * Permet de récupérer la structure de Mot depuis le réseau JeuxdeMots.
+     * Visible dans le paquetage afin que les mesures de performances puissent
+     * se passer du réseau.
      *
      * @param nom Nom du mot à construire.
      * @return La structure de Mot construite depuis le réseau JeuxdeMots.
@@ -563,12 +1071,18 @@ public class RequeterRezo {
     
     
 
-    private Mot construireMot(String nom, URL jdm) throws MalformedURLException, IOException, InterruptedException {
+    Mot construireMot(String nom, URL jdm) throws MalformedURLException, IOException, InterruptedException {
     	Mot mot = new Mot(nom);
         String relation;
         URLConnection jd = jdm.openConnection();
         jd.setConnectTimeout(10000);
         jd.setReadTimeout(10000);
+        if (jd instanceof HttpURLConnection && ((HttpURLConnection) jd).getResponseCode() != HttpURLConnection.HTTP_OK) {
+            //Erreur ou limitation du serveur : échec passager
+            Logger.getLogger(RequeterRezo.class.getName()).log(Level.WARNING,
+                    "Reponse HTTP {0} de rezoJDM pour : {1}", new Object[]{((HttpURLConnection) jd).getResponseCode(), nom});
+            return null;
+        }
         try (BufferedReader lecteur = new BufferedReader(new InputStreamReader(jd.getInputStream(), "ISO-8859-1"))) {
             String ligne;
             String m;
@@ -580,6 +1094,8 @@ public class RequeterRezo {
             String annotation;
             boolean pasDeRelationsSortantes=false;
             boolean pasDeRelationsEntrantes=false;
+            boolean introuvable = false;
+            boolean complete = false;
             //poids général :
             //definition
             
@@ -593,6 +1109,8 @@ public class RequeterRezo {
             while ((ligne = lecteur.readLine()) != null && !(ligne.startsWith("<def>"))) {
  
                 ligne = StringUtils.unescapeHtml3(ligne);
+                introuvable |= ligne.contains(MARQUE_INTROUVABLE);
+                complete |= ligne.contains(MARQUE_FIN);
                 
                 if(ligne.contains("eid=")) {
                 	//TODO a changer pour tre plus gnrale => passer par lastIndexOf de '
@@ -616,6 +1134,15 @@ public class RequeterRezo {
             }
             
             if (ligne == null) {
+                //Seule une page complète annonçant le terme inexistant le rend
+                //absent ; toute autre réponse (coupée, page d'erreur) est un
+                //échec passager
+                if (introuvable && complete) {
+                    motAbsent(nom);
+                } else {
+                    Logger.getLogger(RequeterRezo.class.getName()).log(Level.WARNING,
+                            "Reponse incomplete ou inattendue de rezoJDM pour : {0}", nom);
+                }
                 return null;
             }     
             /*
@@ -666,14 +1193,14 @@ public class RequeterRezo {
             		}
             		
             		if(pdivisions.length==5) {
-            			motAjoute=new Mot(pdivisions[2].substring(1,pdivisions[2].length()-1), Long.parseLong(pdivisions[1]), Integer.parseInt(pdivisions[3]),"",
-            					Double.parseDouble(pdivisions[4]),"", new HashMap<>(), new HashMap<>(), new ArrayList<>());
+            			motAjoute=Mot.creerVoisin(pdivisions[2].substring(1,pdivisions[2].length()-1), Long.parseLong(pdivisions[1]), Integer.parseInt(pdivisions[3]),"",
+            					Double.parseDouble(pdivisions[4]),"");
             			voisinage.put(Long.parseLong(pdivisions[1]),motAjoute);
             		}
             		
             		if(pdivisions.length==6) {
-            		motAjoute=new Mot(pdivisions[2].substring(1,pdivisions[2].length()-1), Long.parseLong(pdivisions[1]), Integer.parseInt(pdivisions[3]),
-            				pdivisions[5],Double.parseDouble(pdivisions[4]),"", new HashMap<>(), new HashMap<>(), new ArrayList<>());
+            		motAjoute=Mot.creerVoisin(pdivisions[2].substring(1,pdivisions[2].length()-1), Long.parseLong(pdivisions[1]), Integer.parseInt(pdivisions[3]),
+            				pdivisions[5],Double.parseDouble(pdivisions[4]),"");
         			voisinage.put(Long.parseLong(pdivisions[1]),motAjoute);
             		}
             	}
@@ -692,6 +1219,7 @@ public class RequeterRezo {
             	pdivisions=ligne.split("\\;");
             	if (pdivisions.length>1 ){
             			typesRelations.put(Long.parseLong(pdivisions[1]),pdivisions[2]);      
+            			nomsRelations.apprendre(Integer.parseInt(pdivisions[1]), pdivisions[2]);
             	}
                 }
             
@@ -867,30 +1395,69 @@ public class RequeterRezo {
 
 
     /**
-     * Méthode appelée lors de l'exécution d'une requête. Permet de retourner le
-     * chemin d'un fichier si le mot demandé est dans le cache (et à jour).
-     * Permet aussi de demander un éventuel ajout ou une mise à jour du fichier
-     * du cache.
+     * Enregistre un mot absent de rezoJDM (page complète annonçant un terme
+     * inexistant) : il n'est plus demandé au réseau avant sa péremption (voir
+     * {@link Configuration#motsAbsents(String, int, double)}).
+     *
+     * @param nom Mot absent.
+     */
+    void motAbsent(String nom) {
+        if (absents != null) {
+            absents.ajouter(nom);
+        }
+    }
+
+    /**
+     * Méthode appelée lors de l'exécution d'une requête. Permet de savoir si
+     * le mot demandé est dans le cache (et à jour). Permet aussi de demander
+     * un éventuel ajout ou une mise à jour du fichier du cache.
      *
      * @param mot Mot de la requête.
      * @return Une chaîne de caractère : $DEMANDE$ : le cache ne contient pas le
      * fichier mais le souhaiterait. $OSEF$ : le cache ne contient pas le
-     * fichier et ne souhaite pas le récupérer. Sinon, chemin vers le fichier
-     * dans le cache. Il faut alors simplement appeler la méthode lire de mot
-     * (constructeur static depuis un chemin vers un fichier)
+     * fichier et ne souhaite pas le récupérer. $CACHE$ : le mot est dans le
+     * cache, il faut alors simplement appeler
+     * {@link RequeterRezo#lireCache(java.lang.String)}.
      *
      */
     private String rencontrerMot(String mot) {
+        ArrayList<CacheInfo> a_effacer = new ArrayList<>();
+        String res;
+        synchronized (verrou) {
+            rattraper(false);
+            res = rencontrerMot(mot, a_effacer);
+        }
+        //Les entrées évincées pour faire de la place sont effacées hors du verrou
+        effacer(a_effacer);
+        return res;
+    }
+
+    /**
+     * Voir {@link RequeterRezo#rencontrerMot(String)}. Appelée sous le verrou
+     * des index.
+     *
+     * @param mot Mot de la requête.
+     * @param a_effacer Entrées évincées, à effacer du stockage.
+     * @return L'avis du cache.
+     */
+    private String rencontrerMot(String mot, List<CacheInfo> a_effacer) {
+        if (verification != null) {
+            integrite(a_effacer);
+        }
+        if (journal != null && journal.pointDeRepriseSouhaitable()) {
+            pointDeReprise();
+        }
+        politique.acces(mot);
         //Si le cache contient le mot
         if (cache.containsKey(mot)) {
             //On incrémente l'occurence du cache
-            cache.get(mot).incrementeOccurrences();
+            cache.incrementer(mot);
             //Et que la version du mot dans le cache est à jour
             if (!cache.estPerime(mot)) {
                 //On retourne la valeur du cache                
-                return construireChemin(mot).getAbsolutePath();
+                return "$CACHE$";
                 //Mais si la valeur du mot dans le cache n'est pas à jour 
-            } else if (demande(mot)) {
+            } else if (demande(mot, a_effacer)) {
                 //Si le mot est intéressant (il y a de la place 
                 //ou il est récurrent), on le demande pour le stocker en cache
                 return "$DEMANDE$";
@@ -902,16 +1469,16 @@ public class RequeterRezo {
         } else {
             //Si l'index non plus (première apparition), on ajoute dans index
             if (!index.containsKey(mot)) {
-                index.put(mot, new IndexInfo());
+                index.ajouter(mot, new IndexInfo(1, configuration.horloge.getAsLong()));
             } //S'il était présent dans l'index, on incrément (sauf si on 
             //s'apperçoit qu'on ne l'a pas vu depuis plus de 7 jours : 
             //auquel cas on remet à 0 son compteur            
             else {
-                index.get(mot).incrementeOccurrences(peremption);
+                index.incrementer(mot, peremption);
             }
             //=> Dans tous les cas, le mot est présent maintenant dans index
             //Même principe que plus haut : on regarde si l'on doit stocker
-            if (demande(mot)) {
+            if (demande(mot, a_effacer)) {
                 return "$DEMANDE$";
             } else {
                 return "$OSEF$";
@@ -921,39 +1488,317 @@ public class RequeterRezo {
 
     /**
      * Réponse à l'appel de "DEMANDE" : enregistre le résultat dans le système
-     * cache et met à jour l'indexation
+     * cache et met à jour l'indexation. L'entrée est écrite sous le verrou de
+     * son mot, après son ajout dans l'index.
      *
+     * @param nom Clé de l'entrée : le mot suivi de la forme de la requête
+     * (voir {@link Forme#cle(String)}).
      * @param mot Mot construit grâce au résultat de la requête sur le serveur
      * Rezo.
      */
-    private void reponseDemande(Mot mot) {
+    private void reponseDemande(String nom, Mot mot) {
         if (mot != null) {
-            //On ajoute au cache en gardant le nombre d'occurrence (les dates sont
-            //remises à zéro)
-            String nom = mot.getNom();
-            int occ = 1;
-            if (index.containsKey(nom)) {
-                occ = index.get(nom).getOccurrences();
-                //On retire de l'index
-                index.supprimer(nom);
+            //PARTIE STOCKAGE (hors de tout verrou)
+            byte[] encode = FormatBinaire.encoder(mot, nom);
+            long empreinte = FormatBinaire.empreinte(encode);
+            byte[] donnees = compression.compresser(encode);
+            ArrayList<CacheInfo> a_effacer = new ArrayList<>();
+            boolean apprendre = false;
+            boolean partage = estPartage();
+            synchronized (verrouMot(nom)) {
+                CacheInfo info = null;
+                try {
+                    synchronized (verrou) {
+                        if (partage) {
+                            //Le verrou du journal est gardé jusqu'à l'annonce de
+                            //l'entrée écrite : l'ID attribué ne peut pas l'être
+                            //aussi par un autre processus
+                            journal.verrouiller();
+                            rattraper(true);
+                        }
+                        //Le mot a pu être mis en cache entre-temps par un autre processus
+                        boolean admis = partage && cache.containsKey(nom) && !cache.estPerime(nom);
+                        if (!admis) {
+                            //On ajoute au cache en gardant le nombre d'occurrence (les dates sont
+                            //remises à zéro)
+                            int occ = 1;
+                            if (index.containsKey(nom)) {
+                                occ = index.get(nom).getOccurrences();
+                                //On retire de l'index
+                                index.supprimer(nom);
+                            }
+                            int duree = peremptionAdaptee(nom, cache.get(nom), empreinte);
+                            evincer(nom, a_effacer);
+                            //La place faite lors de la rencontre du mot a pu être prise
+                            //depuis par une autre requête
+                            fairePlace(a_effacer);
+                            if (cache.idDisponible()) {
+                                cache.ajouter(nom, occ, donnees.length, duree, empreinte);
+                                libererOctets(a_effacer);
+                                info = cache.get(nom);
+                            } else {
+                                //Tous les IDs libres sont réservés par des entrées en
+                                //cours d'effacement : le mot reste en attente
+                                index.ajouter(nom, new IndexInfo(occ, configuration.horloge.getAsLong()));
+                            }
+                        }
+                        //Apprentissage du dictionnaire dès que le cache est assez fourni
+                        if (compression.estActive() && !compression.aUnDictionnaire() && !apprentissage
+                                && cache.size() >= TAILLE_ECHANTILLON) {
+                            apprentissage = true;
+                            apprendre = true;
+                        }
+                    }
+                    if (info != null) {
+                        try {
+                            stockage.ecrire(nom, info.getID(), donnees);
+                            garderEnMemoire(nom, mot, ByteBuffer.wrap(encode));
+                            cache.publier(nom);
+                        } catch (IOException ex) {
+                            Logger.getLogger(RequeterRezo.class
+                                    .getName()).log(Level.SEVERE, null, ex);
+                        }
+                    }
+                } finally {
+                    if (partage) {
+                        journal.deverrouiller();
+                    }
+                }
             }
-            if (cache.containsKey(nom)) {
-                this.supprimer(nom);
+            effacer(a_effacer);
+            if (apprendre) {
+                try {
+                    apprendreDictionnaire();
+                } finally {
+                    synchronized (verrou) {
+                        apprentissage = false;
+                    }
+                }
             }
-            cache.ajouter(nom, occ);
-            //PARTIE SYSTEME DE FICHIER
-            File fichier = this.construireChemin(nom);
-            fichier.getParentFile().mkdirs();
-            try {
-                fichier.createNewFile();
-                Mot.ecrire(mot, fichier);
-                //fichier.setReadOnly();
+        }
+    }
+
+    /**
+     * Calcule le délais de péremption d'une entrée remise en cache. Lorsque
+     * la péremption est adaptative (voir
+     * {@link Configuration#peremptionAdaptative(String, String)}), la durée
+     * de validité d'une entrée périmée (délais de péremption plus une heure,
+     * voir {@link RequeterRezo#expiration(long, int)}) est doublée si son
+     * contenu n'a pas changé et divisée par deux sinon, dans les bornes de la
+     * configuration. Appelée sous le verrou des index.
+     *
+     * @param nom Clé de l'entrée.
+     * @param ancien Entrée remplacée (null si le mot n'était pas en cache).
+     * @param empreinte Empreinte du nouveau contenu.
+     * @return Le délais de péremption de la nouvelle entrée, en heures (-1
+     * pour celui du cache).
+     */
+    private int peremptionAdaptee(String nom, CacheInfo ancien, long empreinte) {
+        if (ancien == null || ancien.getEmpreinte() == 0) {
+            return -1;
+        }
+        if (!cache.estPerime(nom)) {
+            //Entrée remise en cache avant sa péremption : rien n'est appris
+            return peremptionMin < 0 ? -1 : ancien.getPeremption();
+        }
+        boolean modifie = ancien.getEmpreinte() != empreinte;
+        statistiques.remiseEnCache(modifie);
+        if (peremptionMin < 0) {
+            return -1;
+        }
+        long duree = (ancien.getPeremption() >= 0 ? ancien.getPeremption() : cache.peremption(nom)) + 1L;
+        duree = modifie ? duree / 2 : 2 * duree;
+        return (int) Math.min(peremptionMax + 1L, Math.max(peremptionMin + 1L, duree)) - 1;
+    }
 
+    /**
+     * Apprend un dictionnaire de compression à partir d'un échantillon des
+     * entrées du cache : les plus demandées, qui sont aussi les plus lues et
+     * réécrites. Les entrées écrites ensuite utilisent ce dictionnaire, les
+     * précédentes restent lisibles. Appelée par
+     * {@link RequeterRezo#reponseDemande(String, Mot)} lorsque la compression
+     * est activée (voir {@link Configuration#compression(boolean)}) et que le
+     * cache contient assez d'entrées.
+     */
+    private void apprendreDictionnaire() {
+        //Choix de l'échantillon sous le verrou des index (les occurrences y
+        //sont modifiées), lecture du stockage sous le verrou de chaque mot
+        PriorityQueue<Entry<String, CacheInfo>> plusDemandees = new PriorityQueue<>(TAILLE_ECHANTILLON + 1,
+                Comparator.comparingInt((Entry<String, CacheInfo> entree) -> entree.getValue().getOccurrences()));
+        ArrayList<String> mots = new ArrayList<>(TAILLE_ECHANTILLON);
+        ArrayList<Integer> ids = new ArrayList<>(TAILLE_ECHANTILLON);
+        synchronized (verrou) {
+            for (Entry<String, CacheInfo> entree : cache.entrySet()) {
+                plusDemandees.add(entree);
+                if (plusDemandees.size() > TAILLE_ECHANTILLON) {
+                    plusDemandees.poll();
+                }
+            }
+            for (Entry<String, CacheInfo> entree : plusDemandees) {
+                mots.add(entree.getKey());
+                ids.add(entree.getValue().getID());
+            }
+        }
+        ArrayList<byte[]> echantillon = new ArrayList<>(mots.size());
+        for (int i = 0; i < mots.size(); ++i) {
+            try {
+                ByteBuffer donnees;
+                synchronized (verrouMot(mots.get(i))) {
+                    donnees = stockage.lire(mots.get(i), ids.get(i));
+                }
+                if (donnees != null && FormatBinaire.estBinaire(donnees)) {
+                    donnees = compression.decompresser(donnees);
+                    byte[] octets = new byte[donnees.remaining()];
+                    donnees.duplicate().get(octets);
+                    echantillon.add(octets);
+                }
             } catch (IOException ex) {
-                Logger.getLogger(RequeterRezo.class
-                        .getName()).log(Level.SEVERE, null, ex);
+                Logger.getLogger(RequeterRezo.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+        try {
+            compression.apprendre(echantillon);
+        } catch (IOException ex) {
+            Logger.getLogger(RequeterRezo.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Lit un mot présent dans le cache en mesurant le temps de lecture (voir
+     * {@link RequeterRezo#getStatistiques()}).
+     *
+     * @param mot Mot à lire.
+     * @return Le mot tel qu'il a été stocké, ou null s'il est absent du
+     * stockage.
+     * @throws IOException
+     */
+    private Mot lireCacheMesure(String mot) throws IOException {
+        long debut = System.nanoTime();
+        Mot res = memoire.lire(mot);
+        if (res != null) {
+            statistiques.succesMemoire(System.nanoTime() - debut);
+            return res;
+        }
+        //Sous le verrou du mot : l'entrée ne peut pas être remplacée entre
+        //la lecture et la copie en mémoire
+        synchronized (verrouMot(mot)) {
+            res = horsTas.lire(mot);
+            if (res != null) {
+                memoire.ajouter(mot, res, horsTas.tailleEntree(mot));
+            }
+        }
+        if (res != null) {
+            statistiques.succesHorsTas(System.nanoTime() - debut);
+            return res;
+        }
+        res = lireCache(mot);
+        if (res != null) {
+            statistiques.succes(System.nanoTime() - debut);
+        }
+        return res;
+    }
+
+    /**
+     * Lit un mot présent dans le cache. Les entrées encore dans l'ancien format
+     * texte sont réécrites dans le format binaire. Le mot lu est gardé en
+     * mémoire (voir {@link CacheMemoire}). Si l'entrée est absente du
+     * stockage (index non encore vérifié, voir {@link Verification}), elle est
+     * retirée de l'index.
+     *
+     * La lecture ne prend aucun verrou : si le mot a été évincé entre-temps,
+     * son ID a pu être attribué à un autre mot, ce que révèle la clé en tête
+     * de l'entrée lue.
+     *
+     * @param mot Clé du mot à lire (voir {@link Forme#cle(String)}).
+     * @return Le mot tel qu'il a été stocké, ou null s'il est absent du
+     * stockage (ou s'il a quitté le cache depuis la requête).
+     * @throws IOException
+     */
+    private Mot lireCache(String mot) throws IOException {
+        CacheInfo info = cache.get(mot);
+        if (info == null) {
+            return null;
+        }
+        int id = info.getID();
+        ByteBuffer donnees = stockage.lire(mot, id);
+        if (donnees == null) {
+            //L'entrée est peut-être en cours d'écriture : celle-ci se termine
+            //sous le verrou du mot
+            synchronized (verrouMot(mot)) {
+                donnees = stockage.lire(mot, id);
+                if (donnees == null) {
+                    synchronized (verrou) {
+                        if (cache.get(mot) == info) {
+                            cache.supprimer(mot);
+                        }
+                    }
+                    return null;
+                }
+            }
+        }
+        Mot res;
+        if (FormatBinaire.estBinaire(donnees)) {
+            try {
+                donnees = compression.decompresser(donnees);
+                if (!mot.equals(FormatBinaire.lireNom(donnees))) {
+                    //ID réattribué depuis la requête
+                    return null;
+                }
+                ByteBuffer encode = donnees.duplicate();
+                res = FormatBinaire.decoder(donnees);
+                synchronized (verrouMot(mot)) {
+                    if (cache.get(mot) == info) {
+                        garderEnMemoire(mot, res, encode);
+                    }
+                }
+                return res;
+            } catch (IllegalArgumentException ex) {
+                throw new IOException("Entree du cache illisible : " + mot, ex);
+            }
+        }
+        res = Mot.lireTexte(new BufferedReader(new StringReader(StandardCharsets.UTF_8.decode(donnees).toString())));
+        //Migration vers le format binaire
+        byte[] encode = FormatBinaire.encoder(res);
+        byte[] compresse = compression.compresser(encode);
+        synchronized (verrouMot(mot)) {
+            if (cache.get(mot) == info) {
+                //Dans un dossier partagé, l'ID a pu être réattribué par un autre
+                //processus : l'entrée reste au format texte
+                if (!estPartage()) {
+                    stockage.ecrire(mot, id, compresse);
+                    synchronized (verrou) {
+                        if (cache.get(mot) == info) {
+                            cache.redimensionner(mot, compresse.length);
+                        }
+                    }
+                }
+                garderEnMemoire(mot, res, ByteBuffer.wrap(encode));
             }
         }
+        return res;
+    }
+
+    /**
+     * Garde un mot lu ou écrit dans les caches en mémoire (voir
+     * {@link CacheMemoire} et {@link CacheHorsTas}).
+     *
+     * @param nom Mot concerné.
+     * @param mot Mot décodé.
+     * @param encode Entrée sérialisée non compressée.
+     */
+    private void garderEnMemoire(String nom, Mot mot, ByteBuffer encode) {
+        memoire.ajouter(nom, mot, encode.remaining());
+        horsTas.ajouter(nom, encode);
+    }
+
+    /**
+     * Retire un mot des caches en mémoire (entrée remplacée ou supprimée).
+     *
+     * @param nom Mot concerné.
+     */
+    private void oublierEnMemoire(String nom) {
+        memoire.retirer(nom);
+        horsTas.retirer(nom);
     }
 
     /**
@@ -961,12 +1806,64 @@ public class RequeterRezo {
      * créé.
      */
     private void initialisation() {
-        File dossier = new File(CHEMIN_CACHE);
-        if (dossier.exists() && dossier.isDirectory()) {
+        this.memoire = new CacheMemoire(configuration.memoireEntrees, configuration.memoireOctets);
+        this.horsTas = new CacheHorsTas(configuration.horsTasOctets);
+        this.absents = ouvrirAbsents();
+        File dossier = new File(chemin_cache);
+        this.journal = null;
+        if (configuration.partage) {
+            //Le dossier est chargé ou créé sous le verrou du journal partagé
+            dossier.mkdirs();
+            ouvrirJournal();
+        }
+        Journal partage = journal;
+        if (partage != null) {
+            partage.verrouiller();
+        }
+        try {
+            initialisation(dossier);
+        } finally {
+            if (partage != null) {
+                partage.deverrouiller();
+            }
+        }
+    }
+
+    /**
+     * Voir {@link RequeterRezo#initialisation()}. Appelée sous le verrou du
+     * journal lorsque le dossier est partagé.
+     *
+     * @param dossier Dossier du cache.
+     */
+    private void initialisation(File dossier) {
+        boolean existe = configuration.partage ? new File(fichier_cache).exists()
+                : dossier.exists() && dossier.isDirectory();
+        if (existe) {
             try {
-                this.index = Index.chargerIndex(FICHIER_INDEX, this.taille_max);
-                this.cache = Cache.chargerCache(FICHIER_CACHE, peremption, this.taille_max, CHEMIN_CACHE);
-                integrite();
+                this.index = Index.chargerIndex(fichier_index, this.taille_max);
+                if (configuration.indexProbabiliste) {
+                    this.index = IndexProbabiliste.depuis(index);
+                } else if (index instanceof IndexProbabiliste) {
+                    //Les mots ne sont pas conservés par l'esquisse
+                    this.index = new Index(this.taille_max);
+                }
+                this.cache = Cache.chargerCache(fichier_cache, peremption, this.taille_max, chemin_cache);
+                this.cache.peremptionsTypes(peremptionsTypes);
+                this.stockage = ouvrirStockage();
+                this.compression = ouvrirCompression();
+                //Reprise des modifications postérieures à la dernière réécriture des index
+                if (journal == null) {
+                    ouvrirJournal();
+                }
+                if (journal != null) {
+                    journal.rejouer(cache, index, taille_max);
+                }
+                attacherHorloge();
+                attacherJournal();
+                attacherPolitique();
+                //L'index est utilisable immédiatement, il est vérifié en tâche de fond
+                this.verification = new Verification(cache, stockage);
+                this.verification.demarrer();
 
             } catch (IOException | ParseException ex) {
                 Logger.getLogger(RequeterRezo.class
@@ -974,8 +1871,9 @@ public class RequeterRezo {
             }
         } else {
             this.cache = new Cache(peremption, this.taille_max);
-            this.index = new Index(this.taille_max);
-            File fichier = new File(dossier + File.separator + "indexAttente");
+            this.cache.peremptionsTypes(peremptionsTypes);
+            this.index = configuration.indexProbabiliste ? new IndexProbabiliste() : new Index(this.taille_max);
+            File fichier = new File(fichier_index);
             Path chemin = FileSystems.getDefault().getPath(dossier.getAbsolutePath());
             try {
                 dossier.mkdir();
@@ -986,9 +1884,17 @@ public class RequeterRezo {
                 }
                 fichier.createNewFile();
                 fichier.setReadOnly();
-                fichier = new File(dossier + File.separator + "indexCache");
+                fichier = new File(fichier_cache);
                 fichier.createNewFile();
                 fichier.setReadOnly();
+                this.stockage = ouvrirStockage();
+                this.compression = ouvrirCompression();
+                if (journal == null) {
+                    ouvrirJournal();
+                }
+                attacherHorloge();
+                attacherJournal();
+                attacherPolitique();
 
             } catch (IOException ex) {
                 Logger.getLogger(RequeterRezo.class
@@ -998,54 +1904,166 @@ public class RequeterRezo {
     }
 
     /**
-     * Vérification de l'intégrité de l'index du cache : tous les fichiers
-     * présents dans l'index existent et sa taille de dépasse pas la taille
-     * maximale autorisée. De plus les fichiers obsolètes sont supprimés.
-     */
-    private void integrite() {
-        //Verification que tous les éléments présents dans l'index du cache 
-        //sont bels et biens dans le cache. Sinon on supprime le fichier
-        //On supprime aussi les fichiers obsolètes
-        //On vérifie que la taille du cache ne soit pas dépassée. 
-        //Si c'est le cas, on supprime autant de fichiers que nécessaire
-        Iterator<Entry<String, CacheInfo>> iter = this.cache.entrySet().iterator();
-        Entry<String, CacheInfo> element;
-        ArrayList<String> a_supprimer_complet = new ArrayList<>();
-        ArrayList<String> a_supprimer_index = new ArrayList<>();
-        File fichier;
-        while (iter.hasNext()) {
-            element = iter.next();
-            fichier = this.construireChemin(element.getKey());
-            //Vérification existence fichier
-            if (fichier.exists()) {
-                //Vérification obsolescence
-                if (RequeterRezo.perime(element.getValue().getDateCache(), peremption)) {
-                    a_supprimer_complet.add(element.getKey());
-                }
-            } else {
-                //Le fichier n'existe pas mais apparait dans l'index
-                a_supprimer_index.add(element.getKey());
-                //this.supprimer(element.getKey());
+     * Ouvre l'ensemble des mots absents de rezoJDM, avec ceux de la session
+     * précédente, si la configuration le demande.
+     *
+     * @return Les mots absents, ou null s'ils ne sont pas gardés.
+     */
+    private CacheNegatif ouvrirAbsents() {
+        if (configuration.absentsPeremption == null) {
+            return null;
+        }
+        CacheNegatif res = new CacheNegatif(PeremptionToInt(configuration.absentsPeremption),
+                configuration.absentsCapacite, configuration.absentsFauxPositifs, configuration.horloge);
+        try {
+            res.charger(chemin_cache + File.separator + NOM_ABSENTS);
+        } catch (IOException ex) {
+            Logger.getLogger(RequeterRezo.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        return res;
+    }
+
+    /**
+     * Ouvre le stockage choisi dans la configuration.
+     *
+     * @return Le stockage des entrées du cache.
+     * @throws IOException
+     */
+    private Stockage ouvrirStockage() throws IOException {
+        Stockage res;
+        if (configuration.partage) {
+            //Les segments et la file d'écriture sont propres à un processus
+            if (configuration.stockageSegments || configuration.ecritureDifferee) {
+                Logger.getLogger(RequeterRezo.class.getName()).log(Level.WARNING,
+                        "Dossier du cache partage : segments et ecriture differee ignores.");
+            }
+            return new StockageFichiers(chemin_cache, true);
+        }
+        if (configuration.stockageSegments) {
+            res = new StockageSegments(chemin_cache + File.separator + NOM_SEGMENTS);
+        } else {
+            res = new StockageFichiers(chemin_cache);
+        }
+        if (configuration.ecritureDifferee) {
+            res = new EcrivainDiffere(res, configuration.synchronisation);
+        }
+        return res;
+    }
+
+    /**
+     * Ouvre le journal des modifications des index. En cas d'échec, les
+     * modifications ne sont pas journalisées (seul
+     * {@link RequeterRezo#pointDeReprise()} les conserve).
+     */
+    private void ouvrirJournal() {
+        try {
+            this.journal = configuration.partage
+                    ? new Journal(chemin_cache + File.separator + NOM_JOURNAL, chemin_cache + File.separator + NOM_VERROU)
+                    : new Journal(chemin_cache + File.separator + NOM_JOURNAL);
+        } catch (IOException ex) {
+            this.journal = null;
+            Logger.getLogger(RequeterRezo.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    private void attacherJournal() {
+        this.cache.journal = journal;
+        this.index.journal = journal;
+    }
+
+    /**
+     * Fait suivre aux index l'horloge de la configuration (voir
+     * {@link Configuration#horloge(java.util.function.LongSupplier)}).
+     */
+    private void attacherHorloge() {
+        this.cache.horloge(configuration.horloge);
+        this.index.horloge = configuration.horloge;
+    }
+
+    /**
+     * Crée la politique d'admission et d'éviction choisie dans la
+     * configuration et lui signale les entrées déjà présentes dans le cache.
+     */
+    private void attacherPolitique() {
+        this.politique = configuration.politique.creer(taille_max);
+        this.politique.initialiser(cache, index);
+        for (String mot : cache.keySet()) {
+            this.politique.ajout(mot);
+        }
+        this.cache.politique = politique;
+    }
+
+    /**
+     * Charge les dictionnaires de compression. Ils sont chargés même si la
+     * compression est désactivée, afin de pouvoir lire les entrées compressées
+     * auparavant.
+     *
+     * @return La compression des entrées du cache.
+     * @throws IOException
+     */
+    private Compression ouvrirCompression() throws IOException {
+        return new Compression(chemin_cache + File.separator + NOM_DICTIONNAIRES, configuration.compression, statistiques);
+    }
+
+    /**
+     * Prise en compte des résultats de la vérification de l'index du cache
+     * (voir {@link Verification}) : les entrées absentes du stockage sont
+     * retirées de l'index et les entrées obsolètes sont supprimées. Une fois
+     * toutes les entrées vérifiées, le cache est ramené à sa taille maximale et
+     * les entrées du stockage qui ne sont plus dans l'index sont supprimées.
+     * Appelée sous le verrou des index.
+     *
+     * @param a_effacer Entrées retirées, à effacer du stockage.
+     */
+    private void integrite(List<CacheInfo> a_effacer) {
+        Verification.Constat constat;
+        while ((constat = verification.prochain()) != null) {
+            //L'entrée a pu être remplacée depuis le démarrage ; une entrée
+            //périmée est gardée si sa péremption est adaptative, afin de
+            //comparer son contenu à celui de la remise en cache
+            if (constat.concerne(this.cache.get(constat.mot)) && (constat.absente || peremptionMin < 0)) {
+                //Entrée absente du stockage ou périmée
+                evincer(constat.mot, a_effacer);
             }
         }
-        a_supprimer_complet.stream().forEach((a_supprimer) -> {
-            this.supprimer(a_supprimer);
-        });
-        a_supprimer_index.stream().forEach((a_supprimer) -> {
-            this.cache.supprimer(a_supprimer);
-        });
+        if (!verification.estTerminee()) {
+            return;
+        }
+        verification = null;
         //Tous les éléments dans le cache (côté index) sont présents (côté fichier)
         if (!this.nonPlein()) {
             //Malgré tout, le cache est plein (notamment lorsqu'une nouvelle 
             //taille (plus petite) a été allouée
             //On supprime X fichiers (au hasard)
             int x = this.cache.size() - this.taille_max;
-            iter = this.cache.entrySet().iterator();
+            ArrayList<String> a_supprimer = new ArrayList<>();
+            Iterator<String> iter = this.cache.keySet().iterator();
             while (x > 0 && iter.hasNext()) {
-                element = iter.next();
-                this.supprimer(element.getKey());
+                a_supprimer.add(iter.next());
                 --x;
             }
+            a_supprimer.stream().forEach((mot) -> {
+                evincer(mot, a_effacer);
+            });
+        }
+        //Suppression des entrées du stockage qui ne sont plus dans l'index
+        try {
+            stockage.nettoyer(this.cache.keySet());
+        } catch (IOException ex) {
+            Logger.getLogger(RequeterRezo.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Indique si la vérification de l'index du cache lancée au démarrage est
+     * terminée. Les résultats de la vérification sont pris en compte lors des
+     * requêtes.
+     *
+     * @return True si la vérification est terminée.
+     */
+    public boolean verificationTerminee() {
+        synchronized (verrou) {
+            return verification == null || verification.estTerminee();
         }
     }
 
@@ -1057,9 +2075,10 @@ public class RequeterRezo {
      *
      * @param mot Mot dont on cherche à savoir si son entrée dans le cache est
      * souhaitable
+     * @param a_effacer Entrées évincées, à effacer du stockage
      * @return Retourne True si le Cache a besoin du mot, false sinon
      */
-    private boolean demande(String mot) {
+    private boolean demande(String mot, List<CacheInfo> a_effacer) {
         //False SAUF SI : 
         boolean res = false;
         //->Il y a de la place
@@ -1069,50 +2088,28 @@ public class RequeterRezo {
         if (this.nonPlein()) {
             res = true;
         } else {
-            //Parcours du cache afin de trouver un terme périmé
-            //On en profite pour garder en mémoire le terme le moins courant
-            //(au cas où il n'y ait aucun périmé)
-            boolean existePerime = false;
-            Iterator<Entry<String, CacheInfo>> iter = this.cache.entrySet().iterator();
-            Entry<String, CacheInfo> element;
-            Entry<String, CacheInfo> moinsCourant;
-            int min;
-            Date dateMin;
-            //initialisation
-            if (iter.hasNext()) {
-                element = iter.next();
-                min = element.getValue().getOccurrences();
-                moinsCourant = element;
-                dateMin = element.getValue().getDateCache();
-                if (RequeterRezo.perime(element.getValue().getDateCache(), peremption)) {
-                    existePerime = true;
+            //Un terme périmé est remplacé en premier
+            String victime = this.cache.premierPerime();
+            if (victime != null) {
+                //Le mot lui-même est remplacé par sa nouvelle version (voir
+                //reponseDemande) : son entrée est gardée pour la comparer
+                if (!victime.equals(mot)) {
+                    evincer(victime, a_effacer);
                 }
-                while (!existePerime && iter.hasNext()) {
-                    element = iter.next();
-                    if (RequeterRezo.perime(element.getValue().getDateCache(), peremption)) {
-                        existePerime = true;
-                    } else if (element.getValue().getOccurrences() < min) {
-                        moinsCourant = element;
-                        min = element.getValue().getOccurrences();
-                        dateMin = element.getValue().getDateCache();
-                    } else if (element.getValue().getOccurrences() == min) {
-                        //En cas d'égalité, on regarde l'ancienneté (-> sélection du plus vieux)
-                        if (element.getValue().getDateCache().before(dateMin)) {
-                            moinsCourant = element;
-                            min = element.getValue().getOccurrences();
-                            dateMin = element.getValue().getDateCache();
-                        }
+                res = true;
+            } else {
+                //Aucun terme périmé : la politique désigne la victime et décide
+                //si le mot doit la remplacer (voir PolitiqueCache)
+                victime = politique.victime();
+                if (victime != null && politique.admettre(mot, victime)) {
+                    CacheInfo info = this.cache.get(victime);
+                    //On remet dans l'index d'attente le mot supprimé (la
+                    //politique peut désigner un mot déjà sorti du cache)
+                    if (info != null) {
+                        this.index.ajouter(victime, new IndexInfo(info.getOccurrences(), info.getDateOccurrences()));
                     }
-                }
-                if (existePerime) {
-                    supprimer(element.getKey());
-                    res = true;
-                } //On compare avec les occurrences du moins courant                                 
-                else if ((this.index.get(mot).getOccurrences() > min)) {
-                    //On remet dans l'index d'attente le mot le moins courant
-                    this.index.put(moinsCourant.getKey(), new IndexInfo(moinsCourant.getValue().getOccurrences(), moinsCourant.getValue().getDateOccurrences()));
                     //Mais on le supprime du cache
-                    supprimer(moinsCourant.getKey());
+                    evincer(victime, a_effacer);
                     res = true;
                 }
             }
@@ -1121,13 +2118,28 @@ public class RequeterRezo {
     }
 
     /**
-     * Retourne le fichier associé à un mot dans le cache.
+     * Supprime des entrées tant que la taille des entrées dépasse la taille
+     * maximale en octets (voir {@link Configuration#tailleOctets(long)}) : les
+     * entrées périmées d'abord, puis celles qui ont le moins d'occurrences par
+     * octet occupé (y compris une entrée qui vient d'être ajoutée, si elle est
+     * trop volumineuse au regard de ses occurrences).
      *
-     * @param mot Mot recherché.
-     * @return Fichier représentant le mot dans le cache.
+     * @param a_effacer Entrées évincées, à effacer du stockage.
      */
-    private File construireChemin(String mot) {
-        return new File(CHEMIN_CACHE + File.separator + CacheInfo.construireChemin(this.cache.get(mot).getID()));
+    private void libererOctets(List<CacheInfo> a_effacer) {
+        if (configuration.tailleOctets <= 0) {
+            return;
+        }
+        while (this.cache.octets() > configuration.tailleOctets && !this.cache.isEmpty()) {
+            String victime = this.cache.premierPerime();
+            if (victime == null) {
+                victime = this.cache.moinsRentable();
+                CacheInfo info = this.cache.get(victime);
+                //On remet dans l'index d'attente le mot supprimé
+                this.index.ajouter(victime, new IndexInfo(info.getOccurrences(), info.getDateOccurrences()));
+            }
+            evincer(victime, a_effacer);
+        }
     }
 
     /**
@@ -1136,7 +2148,8 @@ public class RequeterRezo {
      * @return True si le cache a encore de la place, false sinon.
      */
     private boolean nonPlein() {
-        return this.cache.size() < this.taille_max;
+        return this.cache.size() < this.taille_max
+                && (configuration.tailleOctets <= 0 || this.cache.octets() < configuration.tailleOctets);
     }
 
     /**
@@ -1144,52 +2157,19 @@ public class RequeterRezo {
      * rencontré ou bien du terme le plus vieux parmis les moins consultés) si
      * cela est nécessaire.
      *
+     * @param a_effacer Entrées évincées, à effacer du stockage.
      */
-    private void fairePlace() {
+    private void fairePlace(List<CacheInfo> a_effacer) {
         //Si le cache n'est pas plein, pas besoin de supprimer un élément
         if (!this.nonPlein()) {
-            //Parcours du cache afin de trouver un terme périmé
-            //On en profite pour garder en mémoire le terme le moins courant
-            //(au cas où il n'y ait aucun périmé)
-            boolean existePerime = false;
-            Iterator<Entry<String, CacheInfo>> iter = this.cache.entrySet().iterator();
-            Entry<String, CacheInfo> element;
-            Entry<String, CacheInfo> moinsCourant;
-            int min;
-            Date dateMin;
-            //initialisation
-            if (iter.hasNext()) {
-                element = iter.next();
-                min = element.getValue().getOccurrences();
-                moinsCourant = element;
-                dateMin = element.getValue().getDateCache();
-                if (RequeterRezo.perime(element.getValue().getDateCache(), peremption)) {
-                    existePerime = true;
-                }
-                while (!existePerime && iter.hasNext()) {
-                    element = iter.next();
-                    if (RequeterRezo.perime(element.getValue().getDateCache(), peremption)) {
-                        existePerime = true;
-                    } else if (element.getValue().getOccurrences() < min) {
-                        moinsCourant = element;
-                        min = element.getValue().getOccurrences();
-                        dateMin = element.getValue().getDateCache();
-                    } else if (element.getValue().getOccurrences() == min) {
-                        //En cas d'égalité, on regarde l'ancienneté (-> sélection du plus vieux)
-                        if (element.getValue().getDateCache().before(dateMin)) {
-                            moinsCourant = element;
-                            min = element.getValue().getOccurrences();
-                            dateMin = element.getValue().getDateCache();
-                        }
-                    }
-                }
-                //S'il existe un périmé : on le supprime
-                if (existePerime) {
-                    supprimer(element.getKey());
-                } //Sinon on supprime le moins courant
-                else {
-                    supprimer(moinsCourant.getKey());
-                }
+            //S'il existe un périmé : on le supprime
+            //Sinon on supprime le moins courant
+            String victime = this.cache.premierPerime();
+            if (victime == null) {
+                victime = politique.victime();
+            }
+            if (victime != null) {
+                evincer(victime, a_effacer);
             }
         }
     }
@@ -1201,20 +2181,41 @@ public class RequeterRezo {
      * @param peremption Nombre d'heures déterminant le délais de péremption.
      * @return True si le nombre d'heures séparant la date à tester de la date
      * actuelle est inférieur au délais de péremption.
+     * @deprecated La date actuelle est celle de l'horloge du système et non
+     * celle configurée par
+     * {@link Configuration#horloge(java.util.function.LongSupplier)}, que le
+     * cache utilise pour ses propres péremptions.
      */
+    @Deprecated
     public static boolean perime(Date date, int peremption) {
-        return RequeterRezo.heuresEcarts(new Date(), date) > peremption;
+        return perime(date.getTime(), peremption, Horloge.maintenant());
+    }
+
+    /**
+     * Détermine si une date est périmée à une date courante donnée (voir
+     * {@link Configuration#horloge(java.util.function.LongSupplier)}).
+     *
+     * @param date Date à tester (en millisecondes depuis le 1er janvier 1970).
+     * @param peremption Nombre d'heures déterminant le délais de péremption.
+     * @param maintenant Date courante, en millisecondes.
+     * @return True si le délais de péremption est écoulé.
+     */
+    static boolean perime(long date, int peremption, long maintenant) {
+        return maintenant >= expiration(date, peremption);
     }
 
     /**
-     * Retourne le nombre d'heures séparant deux dates.
+     * Retourne la date de péremption d'une date : la date à partir de
+     * laquelle plus d'heures entières que le délais de péremption la séparent
+     * de la date actuelle (voir {@link RequeterRezo#perime(long, int, long)}).
      *
-     * @param maintenant Date récente.
-     * @param enregistrement Date ancienne.
-     * @return Le nombre d'heures séparant les deux dates.
+     * @param date Date à tester (en millisecondes depuis le 1er janvier 1970).
+     * @param peremption Nombre d'heures déterminant le délais de péremption.
+     * @return La date de péremption (en millisecondes depuis le 1er janvier
+     * 1970).
      */
-    private static int heuresEcarts(Date maintenant, Date enregistrement) {
-        return (int) ((maintenant.getTime() - enregistrement.getTime()) / 3600000);
+    static long expiration(long date, int peremption) {
+        return date + (peremption + 1L) * 3_600_000L;
     }
 
     /**
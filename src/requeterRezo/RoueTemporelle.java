@@ -0,0 +1,208 @@
+package requeterRezo;
+
+/**
+ * Roue temporelle hiérarchique des dates de péremption des entrées du cache.
+ * Le temps est découpé en tics de {@link #RESOLUTION} ; chaque niveau de la
+ * roue a 64 cases, une case du niveau n couvrant 64^n tics. Une entrée est
+ * rangée dans le niveau le plus bas dont la portée couvre sa péremption, et
+ * redescend d'un niveau (cascade) lorsque la roue atteint sa case. A chaque
+ * tic, les entrées de la case courante du premier niveau sont périmées : elles
+ * passent dans la liste des entrées périmées, dans l'ordre de leur péremption.
+ *
+ * Ajouter, retirer une entrée et trouver une entrée périmée se font en temps
+ * constant, sans comparer de dates. Les entrées sont chaînées directement par
+ * leurs {@link CacheInfo}. Comme les ensembles ordonnés de {@link Cache}, la
+ * roue est modifiée sous le verrou des index.
+ */
+class RoueTemporelle {
+
+    /**
+     * Durée d'un tic, en millisecondes (une minute).
+     */
+    static final long RESOLUTION = 60_000;
+
+    private static final int BITS = 6;
+    private static final int CASES = 1 << BITS;
+    private static final int MASQUE = CASES - 1;
+
+    /**
+     * Nombre de niveaux : 64^4 tics d'une minute couvrent plus de 30 ans.
+     */
+    private static final int NIVEAUX = 4;
+
+    /**
+     * Indice de la liste des entrées périmées, après les cases des niveaux.
+     */
+    private static final int PERIMEES = NIVEAUX * CASES;
+
+    /**
+     * Premières entrées de chaque case, puis des entrées périmées.
+     */
+    private final CacheInfo[] tetes = new CacheInfo[PERIMEES + 1];
+
+    /**
+     * Dernière entrée périmée (les entrées périmées sont ajoutées à la fin).
+     */
+    private CacheInfo dernierePerimee;
+
+    /**
+     * Prochain tic à traiter.
+     */
+    private long base;
+
+    /**
+     * Construit une roue vide, dont le prochain tic est le tic courant.
+     *
+     * @param maintenant Date courante, en millisecondes.
+     */
+    RoueTemporelle(long maintenant) {
+        base = maintenant / RESOLUTION;
+    }
+
+    /**
+     * Range une entrée selon sa date de péremption
+     * ({@link CacheInfo#expiration}). L'entrée ne doit pas être déjà dans la
+     * roue.
+     *
+     * @param info Entrée à ranger.
+     */
+    void ajouter(CacheInfo info) {
+        //Arrondi au tic supérieur : l'entrée n'est jamais périmée en avance
+        long tic = (info.expiration + RESOLUTION - 1) / RESOLUTION;
+        long ecart = tic - base;
+        int indice;
+        if (ecart < 0) {
+            ajouterPerimee(info);
+            return;
+        } else if (ecart < CASES) {
+            indice = (int) (tic & MASQUE);
+        } else if (ecart < 1L << (2 * BITS)) {
+            indice = CASES + (int) ((tic >>> BITS) & MASQUE);
+        } else if (ecart < 1L << (3 * BITS)) {
+            indice = 2 * CASES + (int) ((tic >>> (2 * BITS)) & MASQUE);
+        } else {
+            //Au-delà de la portée de la roue : rangée au plus loin, et rangée à
+            //nouveau lors de la cascade
+            if (ecart >= 1L << (4 * BITS)) {
+                tic = base + (1L << (4 * BITS)) - 1;
+            }
+            indice = 3 * CASES + (int) ((tic >>> (3 * BITS)) & MASQUE);
+        }
+        info.fenteRoue = indice;
+        info.precedentRoue = null;
+        info.suivantRoue = tetes[indice];
+        if (tetes[indice] != null) {
+            tetes[indice].precedentRoue = info;
+        }
+        tetes[indice] = info;
+    }
+
+    /**
+     * Retire une entrée de la roue (ou de la liste des entrées périmées).
+     *
+     * @param info Entrée à retirer.
+     */
+    void retirer(CacheInfo info) {
+        int indice = info.fenteRoue;
+        if (indice < 0) {
+            return;
+        }
+        if (info.precedentRoue != null) {
+            info.precedentRoue.suivantRoue = info.suivantRoue;
+        } else {
+            tetes[indice] = info.suivantRoue;
+        }
+        if (info.suivantRoue != null) {
+            info.suivantRoue.precedentRoue = info.precedentRoue;
+        } else if (indice == PERIMEES) {
+            dernierePerimee = info.precedentRoue;
+        }
+        info.fenteRoue = -1;
+        info.precedentRoue = null;
+        info.suivantRoue = null;
+    }
+
+    /**
+     * Avance la roue jusqu'à la date courante : les entrées dont la date de
+     * péremption est passée rejoignent la liste des entrées périmées.
+     *
+     * @param maintenant Date courante, en millisecondes.
+     */
+    void avancer(long maintenant) {
+        long cible = maintenant / RESOLUTION;
+        while (base <= cible) {
+            int indice = (int) (base & MASQUE);
+            //Cascade des niveaux supérieurs au début de chacun de leurs tours
+            if (indice == 0 && cascade(1) == 0 && cascade(2) == 0) {
+                cascade(3);
+            }
+            CacheInfo info = tetes[indice];
+            tetes[indice] = null;
+            while (info != null) {
+                CacheInfo suivant = info.suivantRoue;
+                ajouterPerimee(info);
+                info = suivant;
+            }
+            ++base;
+        }
+    }
+
+    /**
+     * Retourne l'entrée périmée depuis le plus longtemps (parmi celles
+     * trouvées par le dernier appel de {@link #avancer()}).
+     *
+     * @return L'entrée, ou null si aucune entrée n'est périmée.
+     */
+    CacheInfo premierePerimee() {
+        return tetes[PERIMEES];
+    }
+
+    /**
+     * Vide la roue.
+     */
+    void vider() {
+        for (int i = 0; i <= PERIMEES; ++i) {
+            CacheInfo info = tetes[i];
+            while (info != null) {
+                CacheInfo suivant = info.suivantRoue;
+                info.fenteRoue = -1;
+                info.precedentRoue = null;
+                info.suivantRoue = null;
+                info = suivant;
+            }
+            tetes[i] = null;
+        }
+        dernierePerimee = null;
+    }
+
+    /**
+     * Redescend les entrées de la case courante d'un niveau.
+     *
+     * @param niveau Niveau (à partir de 1).
+     * @return L'indice de la case dans son niveau.
+     */
+    private int cascade(int niveau) {
+        int indice = (int) ((base >>> (niveau * BITS)) & MASQUE);
+        int fente = niveau * CASES + indice;
+        CacheInfo info = tetes[fente];
+        tetes[fente] = null;
+        while (info != null) {
+            CacheInfo suivant = info.suivantRoue;
+            ajouter(info);
+            info = suivant;
+        }
+        return indice;
+    }
+
+    private void ajouterPerimee(CacheInfo info) {
+        info.fenteRoue = PERIMEES;
+        info.suivantRoue = null;
+        info.precedentRoue = dernierePerimee;
+        if (dernierePerimee != null) {
+            dernierePerimee.suivantRoue = info;
+        } else {
+            tetes[PERIMEES] = info;
+        }
+        dernierePerimee = info;
+    }
+}
@@ -0,0 +1,389 @@
+package requeterRezo;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compteurs d'utilisation du cache d'une instance de {@link RequeterRezo} :
+ * nombre de requêtes servies par le cache (succès), nombre de requêtes envoyées
+ * au réseau (échecs), temps passé à lire les entrées du cache et, lorsque la
+ * compression est activée, gain et coût de la compression.
+ *
+ * Les compteurs peuvent être mis à jour par plusieurs threads (voir
+ * {@link LongAdder}) ; les valeurs lues pendant des requêtes concurrentes
+ * sont approchées.
+ */
+public class Statistiques {
+
+    /**
+     * Nombre de requêtes servies par le cache.
+     */
+    protected final LongAdder succes = new LongAdder();
+
+    /**
+     * Nombre de requêtes envoyées au réseau.
+     */
+    protected final LongAdder echecs = new LongAdder();
+
+    /**
+     * Temps cumulé (en nanosecondes) de lecture des entrées du cache.
+     */
+    protected final LongAdder tempsSucces = new LongAdder();
+
+    /**
+     * Nombre d'entrées compressées.
+     */
+    protected final LongAdder compressions = new LongAdder();
+
+    /**
+     * Taille cumulée (en octets) des entrées avant compression.
+     */
+    protected final LongAdder octetsBruts = new LongAdder();
+
+    /**
+     * Taille cumulée (en octets) des entrées après compression.
+     */
+    protected final LongAdder octetsCompresses = new LongAdder();
+
+    /**
+     * Temps cumulé (en nanosecondes) passé à compresser.
+     */
+    protected final LongAdder tempsCompression = new LongAdder();
+
+    /**
+     * Nombre d'entrées décompressées.
+     */
+    protected final LongAdder decompressions = new LongAdder();
+
+    /**
+     * Temps cumulé (en nanosecondes) passé à décompresser.
+     */
+    protected final LongAdder tempsDecompression = new LongAdder();
+
+    /**
+     * Nombre de requêtes servies par le cache en mémoire (comprises dans les
+     * succès, voir {@link CacheMemoire}).
+     */
+    protected final LongAdder succesMemoire = new LongAdder();
+
+    /**
+     * Nombre de requêtes servies par le cache hors du tas (comprises dans les
+     * succès, voir {@link CacheHorsTas}).
+     */
+    protected final LongAdder succesHorsTas = new LongAdder();
+
+    /**
+     * Nombre de requêtes restreintes servies par l'entrée complète du mot
+     * (comprises dans les succès, voir {@link Forme}).
+     */
+    protected final LongAdder projections = new LongAdder();
+
+    /**
+     * Nombre de requêtes sur des mots connus comme absents de rezoJDM, non
+     * envoyées au réseau (voir {@link CacheNegatif}).
+     */
+    protected final LongAdder absents = new LongAdder();
+
+    /**
+     * Nombre d'entrées remises en cache dont le contenu n'avait pas changé.
+     */
+    protected final LongAdder inchanges = new LongAdder();
+
+    /**
+     * Nombre d'entrées remises en cache dont le contenu avait changé.
+     */
+    protected final LongAdder modifies = new LongAdder();
+
+    /**
+     * Enregistre une requête servie par le cache.
+     *
+     * @param duree Temps de lecture de l'entrée, en nanosecondes.
+     */
+    protected void succes(long duree) {
+        succes.increment();
+        tempsSucces.add(duree);
+    }
+
+    /**
+     * Enregistre une requête servie par le cache en mémoire.
+     *
+     * @param duree Temps de lecture de l'entrée, en nanosecondes.
+     */
+    protected void succesMemoire(long duree) {
+        succesMemoire.increment();
+        succes(duree);
+    }
+
+    /**
+     * Enregistre une requête servie par le cache hors du tas.
+     *
+     * @param duree Temps de lecture de l'entrée, en nanosecondes.
+     */
+    protected void succesHorsTas(long duree) {
+        succesHorsTas.increment();
+        succes(duree);
+    }
+
+    /**
+     * Enregistre une requête restreinte servie par l'entrée complète du mot.
+     */
+    protected void projection() {
+        projections.increment();
+    }
+
+    /**
+     * Enregistre une requête sur un mot connu comme absent de rezoJDM.
+     */
+    protected void absent() {
+        absents.increment();
+    }
+
+    /**
+     * Enregistre la remise en cache d'une entrée périmée.
+     *
+     * @param modifie True si le contenu de l'entrée a changé.
+     */
+    protected void remiseEnCache(boolean modifie) {
+        (modifie ? modifies : inchanges).increment();
+    }
+
+    /**
+     * Enregistre une requête envoyée au réseau.
+     */
+    protected void echec() {
+        echecs.increment();
+    }
+
+    /**
+     * Enregistre la compression d'une entrée.
+     *
+     * @param avant Taille de l'entrée avant compression, en octets.
+     * @param apres Taille de l'entrée après compression, en octets.
+     * @param duree Temps de compression, en nanosecondes.
+     */
+    protected void compression(int avant, int apres, long duree) {
+        compressions.increment();
+        octetsBruts.add(avant);
+        octetsCompresses.add(apres);
+        tempsCompression.add(duree);
+    }
+
+    /**
+     * Enregistre la décompression d'une entrée.
+     *
+     * @param duree Temps de décompression, en nanosecondes.
+     */
+    protected void decompression(long duree) {
+        decompressions.increment();
+        tempsDecompression.add(duree);
+    }
+
+    /**
+     * Retourne le nombre de requêtes servies par le cache.
+     *
+     * @return Le nombre de requêtes servies par le cache.
+     */
+    public long getSucces() {
+        return succes.sum();
+    }
+
+    /**
+     * Retourne le nombre de requêtes envoyées au réseau.
+     *
+     * @return Le nombre de requêtes envoyées au réseau.
+     */
+    public long getEchecs() {
+        return echecs.sum();
+    }
+
+    /**
+     * Retourne la part des requêtes servies par le cache.
+     *
+     * @return La part des requêtes servies par le cache (entre 0 et 1).
+     */
+    public double getTauxSucces() {
+        long total = succes.sum() + echecs.sum();
+        return total == 0 ? 0 : (double) succes.sum() / total;
+    }
+
+    /**
+     * Retourne le nombre de requêtes servies par le cache en mémoire.
+     *
+     * @return Le nombre de requêtes servies par le cache en mémoire.
+     */
+    public long getSuccesMemoire() {
+        return succesMemoire.sum();
+    }
+
+    /**
+     * Retourne la part des requêtes servies par le cache en mémoire.
+     *
+     * @return La part des requêtes servies par le cache en mémoire (entre 0 et
+     * 1).
+     */
+    public double getTauxSuccesMemoire() {
+        long total = succes.sum() + echecs.sum();
+        return total == 0 ? 0 : (double) succesMemoire.sum() / total;
+    }
+
+    /**
+     * Retourne le nombre de requêtes servies par le cache hors du tas.
+     *
+     * @return Le nombre de requêtes servies par le cache hors du tas.
+     */
+    public long getSuccesHorsTas() {
+        return succesHorsTas.sum();
+    }
+
+    /**
+     * Retourne la part des requêtes servies par le cache hors du tas.
+     *
+     * @return La part des requêtes servies par le cache hors du tas (entre 0
+     * et 1).
+     */
+    public double getTauxSuccesHorsTas() {
+        long total = succes.sum() + echecs.sum();
+        return total == 0 ? 0 : (double) succesHorsTas.sum() / total;
+    }
+
+    /**
+     * Retourne le nombre de requêtes restreintes servies par l'entrée complète
+     * du mot.
+     *
+     * @return Le nombre de requêtes restreintes servies par l'entrée complète
+     * du mot.
+     */
+    public long getProjections() {
+        return projections.sum();
+    }
+
+    /**
+     * Retourne le nombre de requêtes sur des mots connus comme absents de
+     * rezoJDM (non comprises dans les succès ni dans les échecs).
+     *
+     * @return Le nombre de requêtes sur des mots connus comme absents.
+     */
+    public long getAbsents() {
+        return absents.sum();
+    }
+
+    /**
+     * Retourne le nombre d'entrées remises en cache dont le contenu n'avait
+     * pas changé.
+     *
+     * @return Le nombre de remises en cache inutiles.
+     */
+    public long getInchanges() {
+        return inchanges.sum();
+    }
+
+    /**
+     * Retourne le nombre d'entrées remises en cache dont le contenu avait
+     * changé.
+     *
+     * @return Le nombre de remises en cache ayant changé l'entrée.
+     */
+    public long getModifies() {
+        return modifies.sum();
+    }
+
+    /**
+     * Retourne la part des requêtes servies par le cache sur disque (absentes
+     * des caches en mémoire).
+     *
+     * @return La part des requêtes servies par le cache sur disque (entre 0 et
+     * 1).
+     */
+    public double getTauxSuccesDisque() {
+        long total = succes.sum() + echecs.sum();
+        return total == 0 ? 0 : (double) (succes.sum() - succesMemoire.sum() - succesHorsTas.sum()) / total;
+    }
+
+    /**
+     * Retourne le temps moyen de lecture d'une entrée du cache.
+     *
+     * @return Le temps moyen de lecture d'une entrée du cache, en
+     * microsecondes.
+     */
+    public double getLatenceSucces() {
+        return succes.sum() == 0 ? 0 : tempsSucces.sum() / 1000.0 / succes.sum();
+    }
+
+    /**
+     * Retourne le taux de compression des entrées écrites.
+     *
+     * @return La taille compressée divisée par la taille d'origine (1 si
+     * aucune entrée n'a été compressée).
+     */
+    public double getTauxCompression() {
+        return octetsBruts.sum() == 0 ? 1 : (double) octetsCompresses.sum() / octetsBruts.sum();
+    }
+
+    /**
+     * Retourne le temps moyen de compression d'une entrée.
+     *
+     * @return Le temps moyen de compression d'une entrée, en microsecondes.
+     */
+    public double getCoutCompression() {
+        return compressions.sum() == 0 ? 0 : tempsCompression.sum() / 1000.0 / compressions.sum();
+    }
+
+    /**
+     * Retourne le temps moyen de décompression d'une entrée.
+     *
+     * @return Le temps moyen de décompression d'une entrée, en microsecondes.
+     */
+    public double getCoutDecompression() {
+        return decompressions.sum() == 0 ? 0 : tempsDecompression.sum() / 1000.0 / decompressions.sum();
+    }
+
+    /**
+     * Remet tous les compteurs à zéro.
+     */
+    public void reinitialiser() {
+        succes.reset();
+        echecs.reset();
+        tempsSucces.reset();
+        compressions.reset();
+        octetsBruts.reset();
+        octetsCompresses.reset();
+        tempsCompression.reset();
+        decompressions.reset();
+        tempsDecompression.reset();
+        succesMemoire.reset();
+        succesHorsTas.reset();
+        projections.reset();
+        absents.reset();
+        inchanges.reset();
+        modifies.reset();
+    }
+
+    /**
+     * Retourne une chaîne de caractères résumant les compteurs.
+     *
+     * @return Une chaîne de caractères résumant les compteurs.
+     */
+    @Override
+    public String toString() {
+        String res = String.format(Locale.ROOT, "succes=%d, echecs=%d, taux=%.3f, latence=%.1f us",
+                succes.sum(), echecs.sum(), getTauxSucces(), getLatenceSucces());
+        if (succesMemoire.sum() > 0 || succesHorsTas.sum() > 0) {
+            res += String.format(Locale.ROOT, ", memoire=%.3f, hors tas=%.3f, disque=%.3f",
+                    getTauxSuccesMemoire(), getTauxSuccesHorsTas(), getTauxSuccesDisque());
+        }
+        if (projections.sum() > 0) {
+            res += ", projections=" + projections.sum();
+        }
+        if (absents.sum() > 0) {
+            res += ", absents=" + absents.sum();
+        }
+        if (inchanges.sum() > 0 || modifies.sum() > 0) {
+            res += ", remises en cache=" + inchanges.sum() + " inchangees / " + modifies.sum() + " modifiees";
+        }
+        if (compressions.sum() > 0 || decompressions.sum() > 0) {
+            res += String.format(Locale.ROOT, ", compression=%.3f (%.1f us / %.1f us)",
+                    getTauxCompression(), getCoutCompression(), getCoutDecompression());
+        }
+        return res;
+    }
+}
@@ -0,0 +1,74 @@
+package requeterRezo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Set;
+
+/**
+ * Support physique des entrées du cache. Les entrées sont identifiées à la fois
+ * par le mot et par l'ID attribué par {@link Cache} : chaque implémentation
+ * utilise la clé qui lui convient.
+ */
+public interface Stockage {
+
+    /**
+     * Enregistre (ou remplace) une entrée.
+     *
+     * @param mot Mot de l'entrée.
+     * @param id ID attribué par le cache.
+     * @param donnees Entrée encodée (voir {@link FormatBinaire}).
+     * @throws IOException
+     */
+    void ecrire(String mot, int id, byte[] donnees) throws IOException;
+
+    /**
+     * Lit une entrée.
+     *
+     * @param mot Mot de l'entrée.
+     * @param id ID attribué par le cache.
+     * @return Le contenu de l'entrée, ou null si elle n'existe pas.
+     * @throws IOException
+     */
+    ByteBuffer lire(String mot, int id) throws IOException;
+
+    /**
+     * Indique si une entrée existe.
+     *
+     * @param mot Mot de l'entrée.
+     * @param id ID attribué par le cache.
+     * @return True si l'entrée existe.
+     */
+    boolean contient(String mot, int id);
+
+    /**
+     * Supprime une entrée (sans effet si elle n'existe pas, ou si elle a été
+     * réécrite sous un autre ID).
+     *
+     * @param mot Mot de l'entrée.
+     * @param id ID attribué par le cache.
+     * @throws IOException
+     */
+    void supprimer(String mot, int id) throws IOException;
+
+    /**
+     * Supprime les entrées qui ne sont plus référencées par l'index du cache.
+     *
+     * @param motsConnus Mots présents dans l'index du cache.
+     * @throws IOException
+     */
+    void nettoyer(Set<String> motsConnus) throws IOException;
+
+    /**
+     * Force l'écriture sur disque des entrées enregistrées jusqu'ici.
+     *
+     * @throws IOException
+     */
+    void synchroniser() throws IOException;
+
+    /**
+     * Libère les ressources (fichiers ouverts, tâches de fond).
+     *
+     * @throws IOException
+     */
+    void fermer() throws IOException;
+}
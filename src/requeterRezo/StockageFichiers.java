@@ -0,0 +1,197 @@
+package requeterRezo;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Stockage historique : un fichier par mot, dont le chemin est construit à
+ * partir de l'ID (voir {@link CacheInfo#construireChemin(int)}).
+ */
+public class StockageFichiers implements Stockage {
+
+    /**
+     * Dossier racine du cache.
+     */
+    protected final String dossier;
+
+    /**
+     * False sous Windows, où un fichier projeté en mémoire ne peut pas être
+     * supprimé.
+     */
+    private static final boolean PROJECTION = !System.getProperty("os.name").toLowerCase().contains("win");
+
+    /**
+     * Fichiers écrits depuis la dernière synchronisation (les ID étant
+     * réutilisés, leur nombre est borné par la taille du cache).
+     */
+    private final HashSet<File> nonSynchronises = new HashSet<>();
+
+    /**
+     * True si le dossier est partagé entre plusieurs processus (voir
+     * {@link Configuration#partage(boolean)}).
+     */
+    private final boolean partage;
+
+    /**
+     * @param dossier Dossier racine du cache.
+     */
+    protected StockageFichiers(String dossier) {
+        this(dossier, false);
+    }
+
+    /**
+     * @param dossier Dossier racine du cache.
+     * @param partage True si le dossier est partagé entre plusieurs processus.
+     */
+    protected StockageFichiers(String dossier, boolean partage) {
+        this.dossier = dossier;
+        this.partage = partage;
+    }
+
+    /**
+     * Retourne le fichier associé à un ID.
+     *
+     * @param id ID attribué par le cache.
+     * @return Fichier représentant l'entrée.
+     */
+    protected File fichier(int id) {
+        return new File(dossier + File.separator + CacheInfo.construireChemin(id));
+    }
+
+    /**
+     * L'entrée est écrite dans un fichier temporaire unique puis renommée :
+     * une lecture concurrente (d'un autre thread ou d'un autre processus) voit
+     * l'ancien ou le nouveau contenu, jamais un fichier partiellement écrit (et
+     * une projection en cours reste valide).
+     */
+    @Override
+    public void ecrire(String mot, int id, byte[] donnees) throws IOException {
+        File fichier = fichier(id);
+        fichier.getParentFile().mkdirs();
+        try {
+            ecrireAtomique(fichier, donnees);
+        } catch (NoSuchFileException ex) {
+            //Dossier vide supprimé entre-temps (réduction de la taille du cache
+            //par un autre processus, voir Cache#chargerCache) : il est recréé
+            fichier.getParentFile().mkdirs();
+            ecrireAtomique(fichier, donnees);
+        }
+        synchronized (nonSynchronises) {
+            nonSynchronises.add(fichier);
+        }
+    }
+
+    /**
+     * Ecrit un fichier dans un fichier temporaire unique du même dossier puis
+     * le renomme à la place du fichier (voir
+     * {@link StockageFichiers#ecrire(String, int, byte[])}).
+     *
+     * @param fichier Fichier à écrire.
+     * @param donnees Contenu du fichier.
+     * @throws IOException
+     */
+    static void ecrireAtomique(File fichier, byte[] donnees) throws IOException {
+        Path dossierFichier = fichier.getAbsoluteFile().getParentFile().toPath();
+        Path temporaire = Files.createTempFile(dossierFichier, fichier.getName() + ".", ".tmp");
+        try {
+            Files.write(temporaire, donnees);
+            try {
+                Files.move(temporaire, fichier.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temporaire, fichier.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporaire);
+        }
+    }
+
+    /**
+     * Projette le fichier en mémoire : le contenu est décodé directement depuis
+     * le cache de pages du système, sans copie intermédiaire. Sous Windows, où
+     * un fichier projeté ne peut pas être supprimé, le fichier est lu par
+     * copie.
+     */
+    @Override
+    public ByteBuffer lire(String mot, int id) throws IOException {
+        try (FileChannel canal = FileChannel.open(fichier(id).toPath(), StandardOpenOption.READ)) {
+            if (PROJECTION) {
+                return canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            }
+            ByteBuffer donnees = ByteBuffer.allocate((int) canal.size());
+            while (donnees.hasRemaining() && canal.read(donnees) >= 0) {
+            }
+            donnees.flip();
+            return donnees;
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean contient(String mot, int id) {
+        return fichier(id).exists();
+    }
+
+    /**
+     * Dans un dossier partagé, l'ID a pu être réattribué par un autre
+     * processus : le fichier n'est supprimé que s'il contient bien le mot.
+     */
+    @Override
+    public void supprimer(String mot, int id) throws IOException {
+        File fichier = fichier(id);
+        if (partage) {
+            try {
+                if (!mot.equals(Reconstruction.lireMot(fichier))) {
+                    return;
+                }
+            } catch (FileNotFoundException ex) {
+                return;
+            }
+        }
+        //Le dossier est gardé, même vide : un autre thread peut être en train
+        //d'y écrire une autre entrée (voir ecrire)
+        if (fichier.exists()) {
+            fichier.delete();
+        }
+    }
+
+    /**
+     * Les fichiers orphelins sont supprimés lors du chargement de l'index (voir
+     * {@link Cache#chargerCache(String, int, int, String)}).
+     */
+    @Override
+    public void nettoyer(Set<String> motsConnus) {
+    }
+
+    @Override
+    public void synchroniser() throws IOException {
+        ArrayList<File> fichiers;
+        synchronized (nonSynchronises) {
+            fichiers = new ArrayList<>(nonSynchronises);
+            nonSynchronises.clear();
+        }
+        for (File fichier : fichiers) {
+            try (FileChannel canal = FileChannel.open(fichier.toPath(), StandardOpenOption.WRITE)) {
+                canal.force(true);
+            } catch (NoSuchFileException ex) {
+                //Supprimé depuis
+            }
+        }
+    }
+
+    @Override
+    public void fermer() {
+    }
+}
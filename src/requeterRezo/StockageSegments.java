@@ -0,0 +1,515 @@
+package requeterRezo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Stockage journalisé : toutes les entrées sont ajoutées à la suite dans des
+ * fichiers segments ("00000001.seg", ...) et un index en mémoire associe chaque
+ * mot à la position de sa dernière version. Une suppression ajoute une "pierre
+ * tombale", comptée dès son écriture dans les données mortes de son segment.
+ * Lorsque la part de données mortes d'un segment scellé dépasse un seuil, une
+ * tâche de fond recopie ses entrées encore vivantes dans le segment actif, les
+ * synchronise sur disque puis supprime le fichier.
+ *
+ * Les lectures projettent les segments en mémoire ({@link FileChannel#map}) :
+ * une projection par segment est conservée d'une requête à l'autre et les
+ * entrées sont décodées directement depuis le cache de pages du système. Sous
+ * Windows, où un fichier projeté ne peut pas être supprimé, les entrées sont
+ * lues par copie.
+ *
+ * Format d'un enregistrement : type (1 octet), CRC32 du reste (4 octets),
+ * taille de la clé (4 octets), taille des données (4 octets), clé (UTF-8),
+ * données. À l'ouverture, les segments sont rejoués dans l'ordre ; un
+ * enregistrement incomplet ou corrompu (écriture interrompue) tronque le
+ * dernier segment, et n'est qu'ignoré dans un segment scellé.
+ */
+public class StockageSegments implements Stockage {
+
+    /**
+     * Taille à partir de laquelle le segment actif est scellé (64 Mo).
+     */
+    protected static final long TAILLE_SEGMENT_DEFAUT = 64L << 20;
+
+    /**
+     * Part de données mortes déclenchant le compactage d'un segment.
+     */
+    protected static final double SEUIL_COMPACTAGE_DEFAUT = 0.5;
+
+    /**
+     * Période (en secondes) de la tâche de compactage.
+     */
+    protected static final long PERIODE_COMPACTAGE_DEFAUT = 60;
+
+    private static final byte ENTREE = 1;
+    private static final byte PIERRE_TOMBALE = 2;
+    private static final int TAILLE_EN_TETE = 13;
+    private static final String EXTENSION = ".seg";
+
+    /**
+     * False sous Windows : un fichier projeté en mémoire ne peut pas y être
+     * supprimé, ce qui bloquerait le compactage.
+     */
+    private static final boolean PROJECTION = !System.getProperty("os.name").toLowerCase().contains("win");
+
+    /**
+     * Position d'une entrée dans un segment.
+     */
+    private static class Emplacement {
+
+        final Segment segment;
+        /**
+         * Début de l'enregistrement.
+         */
+        final long position;
+        final int tailleEnregistrement;
+        final long positionDonnees;
+        final int tailleDonnees;
+        /**
+         * ID attribué par le cache lors de l'écriture (-1 s'il est inconnu,
+         * pour les entrées relues depuis les segments).
+         */
+        final int id;
+
+        Emplacement(Segment segment, long position, int tailleCle, int tailleDonnees, int id) {
+            this.segment = segment;
+            this.id = id;
+            this.position = position;
+            this.tailleEnregistrement = TAILLE_EN_TETE + tailleCle + tailleDonnees;
+            this.positionDonnees = position + TAILLE_EN_TETE + tailleCle;
+            this.tailleDonnees = tailleDonnees;
+        }
+    }
+
+    /**
+     * Fichier segment ouvert.
+     */
+    private static class Segment {
+
+        final int numero;
+        final File fichier;
+        final FileChannel canal;
+        long taille;
+        long octetsMorts;
+        /**
+         * Projection en mémoire du segment (de taille inférieure ou égale à
+         * celle du segment actif, qui grandit).
+         */
+        ByteBuffer projection;
+
+        Segment(int numero, File fichier) throws IOException {
+            this.numero = numero;
+            this.fichier = fichier;
+            this.canal = FileChannel.open(fichier.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.taille = canal.size();
+        }
+
+        double partMorte() {
+            return taille == 0 ? 0 : (double) octetsMorts / taille;
+        }
+    }
+
+    private final File dossier;
+    private final long tailleSegment;
+    private final double seuilCompactage;
+    private final HashMap<String, Emplacement> index = new HashMap<>();
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private Segment actif;
+    private final ScheduledExecutorService compacteur;
+
+    /**
+     * Ouvre (ou crée) un stockage avec les paramètres par défaut.
+     *
+     * @param dossier Dossier contenant les segments.
+     * @throws IOException
+     */
+    protected StockageSegments(String dossier) throws IOException {
+        this(dossier, TAILLE_SEGMENT_DEFAUT, SEUIL_COMPACTAGE_DEFAUT, PERIODE_COMPACTAGE_DEFAUT);
+    }
+
+    /**
+     * Ouvre (ou crée) un stockage et rejoue les segments existants.
+     *
+     * @param dossier Dossier contenant les segments.
+     * @param tailleSegment Taille à partir de laquelle un segment est scellé.
+     * @param seuilCompactage Part de données mortes déclenchant le compactage.
+     * @param periodeCompactage Période (en secondes) de la tâche de compactage.
+     * @throws IOException
+     */
+    protected StockageSegments(String dossier, long tailleSegment, double seuilCompactage, long periodeCompactage) throws IOException {
+        this.dossier = new File(dossier);
+        this.tailleSegment = tailleSegment;
+        this.seuilCompactage = seuilCompactage;
+        this.dossier.mkdirs();
+        File[] fichiers = this.dossier.listFiles();
+        if (fichiers != null) {
+            for (File fichier : fichiers) {
+                String nom = fichier.getName();
+                if (nom.endsWith(EXTENSION)) {
+                    int numero;
+                    try {
+                        numero = Integer.parseInt(nom.substring(0, nom.length() - EXTENSION.length()));
+                    } catch (NumberFormatException ex) {
+                        //Fichier étranger au stockage (copie de sauvegarde, ...)
+                        Logger.getLogger(StockageSegments.class.getName()).log(Level.WARNING,
+                                "Fichier ignore dans le stockage (nom de segment invalide) : {0}", fichier);
+                        continue;
+                    }
+                    segments.put(numero, new Segment(numero, fichier));
+                }
+            }
+        }
+        for (Segment segment : segments.values()) {
+            rejouer(segment, segment == segments.lastEntry().getValue());
+        }
+        if (segments.isEmpty()) {
+            nouveauSegment();
+        } else {
+            actif = segments.lastEntry().getValue();
+        }
+        compacteur = Executors.newSingleThreadScheduledExecutor(tache -> {
+            Thread thread = new Thread(tache, "RequeterRezo-compactage");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compacteur.scheduleWithFixedDelay(this::compacter, periodeCompactage, periodeCompactage, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public synchronized void ecrire(String mot, int id, byte[] donnees) throws IOException {
+        Emplacement nouveau = ajouter(ENTREE, mot.getBytes(StandardCharsets.UTF_8), ByteBuffer.wrap(donnees), id);
+        marquerMort(index.put(mot, nouveau));
+    }
+
+    @Override
+    public synchronized ByteBuffer lire(String mot, int id) throws IOException {
+        Emplacement emplacement = index.get(mot);
+        if (emplacement == null) {
+            return null;
+        }
+        Segment segment = emplacement.segment;
+        long fin = emplacement.positionDonnees + emplacement.tailleDonnees;
+        if (!PROJECTION) {
+            ByteBuffer donnees = ByteBuffer.allocate(emplacement.tailleDonnees);
+            lireCompletement(segment.canal, donnees, emplacement.positionDonnees);
+            donnees.flip();
+            return donnees;
+        }
+        if (segment.projection == null || segment.projection.capacity() < fin) {
+            segment.projection = segment.canal.map(FileChannel.MapMode.READ_ONLY, 0, segment.taille);
+        }
+        ByteBuffer vue = segment.projection.duplicate();
+        vue.limit((int) fin);
+        vue.position((int) emplacement.positionDonnees);
+        return vue.slice();
+    }
+
+    @Override
+    public synchronized boolean contient(String mot, int id) {
+        return index.containsKey(mot);
+    }
+
+    /**
+     * Sans effet si l'entrée a été réécrite sous un autre ID (mot supprimé
+     * puis admis à nouveau dans le cache).
+     */
+    @Override
+    public synchronized void supprimer(String mot, int id) throws IOException {
+        Emplacement ancien = index.get(mot);
+        if (ancien != null && (id < 0 || ancien.id < 0 || ancien.id == id)) {
+            index.remove(mot);
+            marquerMort(ajouter(PIERRE_TOMBALE, mot.getBytes(StandardCharsets.UTF_8), ByteBuffer.allocate(0), -1));
+            marquerMort(ancien);
+        }
+    }
+
+    @Override
+    public synchronized void nettoyer(Set<String> motsConnus) throws IOException {
+        ArrayList<String> orphelins = new ArrayList<>();
+        for (String mot : index.keySet()) {
+            if (!motsConnus.contains(mot)) {
+                orphelins.add(mot);
+            }
+        }
+        for (String mot : orphelins) {
+            supprimer(mot, -1);
+        }
+    }
+
+    /**
+     * Retourne les mots présents, associés à la date de modification du
+     * segment qui contient leur dernière version (utilisée comme date d'entrée
+     * dans le cache lors de la reconstruction de l'index, voir
+     * {@link Reconstruction}).
+     *
+     * @return Les mots présents et la date de leur segment.
+     */
+    protected synchronized HashMap<String, Long> inventaire() {
+        HashMap<String, Long> res = new HashMap<>(Cache.capacite(index.size()));
+        HashMap<Segment, Long> dates = new HashMap<>();
+        for (Entry<String, Emplacement> entree : index.entrySet()) {
+            Segment segment = entree.getValue().segment;
+            Long date = dates.get(segment);
+            if (date == null) {
+                date = segment.fichier.lastModified();
+                dates.put(segment, date);
+            }
+            res.put(entree.getKey(), date);
+        }
+        return res;
+    }
+
+    @Override
+    public synchronized void synchroniser() throws IOException {
+        actif.canal.force(false);
+    }
+
+    @Override
+    public void fermer() throws IOException {
+        compacteur.shutdownNow();
+        try {
+            compacteur.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            for (Segment segment : segments.values()) {
+                segment.canal.force(false);
+                segment.canal.close();
+            }
+            segments.clear();
+            index.clear();
+        }
+    }
+
+    /**
+     * Compacte les segments scellés dont la part de données mortes dépasse le
+     * seuil. Appelée périodiquement par la tâche de fond.
+     */
+    protected void compacter() {
+        ArrayList<Segment> candidats = new ArrayList<>();
+        synchronized (this) {
+            for (Segment segment : segments.values()) {
+                if (segment != actif && segment.partMorte() >= seuilCompactage) {
+                    candidats.add(segment);
+                }
+            }
+        }
+        for (Segment segment : candidats) {
+            try {
+                compacterSegment(segment);
+            } catch (IOException ex) {
+                Logger.getLogger(StockageSegments.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
+    /**
+     * Recopie les enregistrements encore utiles d'un segment scellé dans le
+     * segment actif puis supprime le segment. Les pierres tombales ne sont
+     * conservées que si un segment plus ancien peut encore contenir une
+     * version du mot. Les segments ayant reçu les copies sont synchronisés sur
+     * disque avant la suppression, quelle que soit la politique de
+     * synchronisation : le segment supprimé peut contenir la seule copie
+     * durable des entrées.
+     */
+    private void compacterSegment(Segment segment) throws IOException {
+        HashSet<Segment> destinations = new HashSet<>();
+        //Un segment scellé n'est plus modifié : on peut le parcourir sans verrou
+        ByteBuffer contenu = charger(segment);
+        while (contenu.remaining() >= TAILLE_EN_TETE) {
+            long position = contenu.position();
+            byte type = contenu.get();
+            contenu.getInt();
+            int tailleCle = contenu.getInt();
+            int tailleDonnees = contenu.getInt();
+            byte[] cle = new byte[tailleCle];
+            contenu.get(cle);
+            ByteBuffer donnees = contenu.slice();
+            donnees.limit(tailleDonnees);
+            contenu.position(contenu.position() + tailleDonnees);
+            String mot = new String(cle, StandardCharsets.UTF_8);
+            synchronized (this) {
+                if (!segments.containsKey(segment.numero)) {
+                    //Stockage fermé entre-temps
+                    return;
+                }
+                if (type == ENTREE) {
+                    Emplacement courant = index.get(mot);
+                    if (courant != null && courant.segment == segment && courant.position == position) {
+                        Emplacement copie = ajouter(ENTREE, cle, donnees, courant.id);
+                        destinations.add(copie.segment);
+                        index.put(mot, copie);
+                    }
+                } else if (segments.firstKey() != segment.numero && !index.containsKey(mot)) {
+                    Emplacement copie = ajouter(PIERRE_TOMBALE, cle, donnees, -1);
+                    destinations.add(copie.segment);
+                    marquerMort(copie);
+                }
+            }
+        }
+        synchronized (this) {
+            if (!segments.containsKey(segment.numero)) {
+                return;
+            }
+            for (Segment destination : destinations) {
+                destination.canal.force(false);
+            }
+            if (segments.remove(segment.numero) != null) {
+                segment.canal.close();
+                segment.fichier.delete();
+            }
+        }
+    }
+
+    /**
+     * Ajoute un enregistrement à la fin du segment actif (en scellant ce
+     * dernier s'il est plein).
+     */
+    private Emplacement ajouter(byte type, byte[] cle, ByteBuffer donnees, int id) throws IOException {
+        if (actif.taille >= tailleSegment) {
+            nouveauSegment();
+        }
+        int tailleDonnees = donnees.remaining();
+        ByteBuffer enregistrement = ByteBuffer.allocate(TAILLE_EN_TETE + cle.length + tailleDonnees);
+        enregistrement.put(type);
+        enregistrement.putInt(0);
+        enregistrement.putInt(cle.length);
+        enregistrement.putInt(tailleDonnees);
+        enregistrement.put(cle);
+        enregistrement.put(donnees.duplicate());
+        CRC32 crc = new CRC32();
+        crc.update(enregistrement.array(), 5, enregistrement.capacity() - 5);
+        enregistrement.putInt(1, (int) crc.getValue());
+        enregistrement.flip();
+        long position = actif.taille;
+        while (enregistrement.hasRemaining()) {
+            actif.canal.write(enregistrement, position + enregistrement.position());
+        }
+        actif.taille += enregistrement.capacity();
+        return new Emplacement(actif, position, cle.length, tailleDonnees, id);
+    }
+
+    private void marquerMort(Emplacement emplacement) {
+        if (emplacement != null) {
+            emplacement.segment.octetsMorts += emplacement.tailleEnregistrement;
+        }
+    }
+
+    private void nouveauSegment() throws IOException {
+        int numero = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        actif = new Segment(numero, new File(dossier, String.format("%08d", numero) + EXTENSION));
+        segments.put(numero, actif);
+    }
+
+    /**
+     * Reconstruit l'index à partir d'un segment. Dans le dernier segment, un
+     * enregistrement tronqué ou dont le CRC ne correspond pas marque la fin
+     * des données valides (écriture interrompue) : le segment est tronqué à
+     * cette position. Dans un segment scellé, les enregistrements suivants
+     * sont valides : un enregistrement corrompu est ignoré et compté dans les
+     * données mortes, afin que le compactage réécrive le segment.
+     *
+     * @param dernier True pour le dernier segment (qui redevient actif).
+     */
+    private void rejouer(Segment segment, boolean dernier) throws IOException {
+        ByteBuffer contenu = charger(segment);
+        CRC32 crc = new CRC32();
+        while (contenu.hasRemaining()) {
+            int position = contenu.position();
+            if (contenu.remaining() < TAILLE_EN_TETE) {
+                ecarter(segment, position, contenu.remaining(), dernier);
+                return;
+            }
+            byte type = contenu.get();
+            int attendu = contenu.getInt();
+            int tailleCle = contenu.getInt();
+            int tailleDonnees = contenu.getInt();
+            if ((type != ENTREE && type != PIERRE_TOMBALE) || tailleCle < 0 || tailleDonnees < 0
+                    || (long) tailleCle + tailleDonnees > contenu.remaining()) {
+                //En-tête illisible : la fin de l'enregistrement est inconnue
+                ecarter(segment, position, contenu.limit() - position, dernier);
+                return;
+            }
+            ByteBuffer corps = contenu.duplicate();
+            corps.position(position + 5);
+            corps.limit(position + TAILLE_EN_TETE + tailleCle + tailleDonnees);
+            crc.reset();
+            crc.update(corps);
+            if ((int) crc.getValue() != attendu) {
+                //La taille, lue dans l'en-tête, permet de passer à l'enregistrement suivant
+                int taille = TAILLE_EN_TETE + tailleCle + tailleDonnees;
+                ecarter(segment, position, taille, dernier);
+                if (dernier) {
+                    return;
+                }
+                contenu.position(position + taille);
+                continue;
+            }
+            byte[] cle = new byte[tailleCle];
+            contenu.get(cle);
+            contenu.position(contenu.position() + tailleDonnees);
+            String mot = new String(cle, StandardCharsets.UTF_8);
+            Emplacement emplacement = new Emplacement(segment, position, tailleCle, tailleDonnees, -1);
+            if (type == ENTREE) {
+                marquerMort(index.put(mot, emplacement));
+            } else {
+                marquerMort(index.remove(mot));
+                marquerMort(emplacement);
+            }
+        }
+    }
+
+    /**
+     * Ecarte un enregistrement invalide : le dernier segment est tronqué à sa
+     * position, dans un segment scellé ses octets sont comptés comme morts.
+     */
+    private void ecarter(Segment segment, long position, long taille, boolean dernier) throws IOException {
+        if (dernier) {
+            Logger.getLogger(StockageSegments.class.getName()).log(Level.WARNING,
+                    "Segment {0} tronque a la position {1} (enregistrement incomplet).", new Object[]{segment.fichier, position});
+            segment.canal.truncate(position);
+            segment.taille = position;
+        } else {
+            Logger.getLogger(StockageSegments.class.getName()).log(Level.WARNING,
+                    "Enregistrement corrompu ignore dans le segment {0} a la position {1} ({2} octets).",
+                    new Object[]{segment.fichier, position, taille});
+            segment.octetsMorts += taille;
+        }
+    }
+
+    /**
+     * Lit tout un segment en mémoire (parcours séquentiel lors de l'ouverture
+     * et du compactage).
+     */
+    private static ByteBuffer charger(Segment segment) throws IOException {
+        ByteBuffer contenu = ByteBuffer.allocate((int) segment.taille);
+        lireCompletement(segment.canal, contenu, 0);
+        contenu.flip();
+        return contenu;
+    }
+
+    private static void lireCompletement(FileChannel canal, ByteBuffer destination, long position) throws IOException {
+        while (destination.hasRemaining()) {
+            if (canal.read(destination, position + destination.position()) < 0) {
+                throw new IOException("Fin de segment inattendue.");
+            }
+        }
+    }
+}
@@ -11,7 +11,130 @@ import java.util.HashMap;
  */
 public class StringUtils {
 
+    /**
+     * Décode les entités HTML (nommées et numériques) d'une chaîne. Les chaînes
+     * sans '&' sont retournées telles quelles après un simple indexOf. Les
+     * entités nommées sont reconnues à l'aide d'un trie parcouru directement
+     * sur les caractères de l'entrée (aucune sous-chaîne n'est allouée) et le
+     * résultat est construit dans un StringBuilder réutilisé par thread.
+     *
+     * @param input Chaîne à décoder.
+     * @return La chaîne décodée (l'entrée elle-même si aucune entité n'a été
+     * trouvée).
+     */
     public static final String unescapeHtml3(final String input) {
+        int esperluette = input.indexOf('&');
+        if (esperluette < 0) {
+            return input;
+        }
+        final int len = input.length();
+        StringBuilder sortie = null;
+        int st = 0;
+        while (esperluette >= 0) {
+            final int debut = esperluette + 1;
+            // recherche du ';' dans la fenêtre autorisée
+            final int limite = Math.min(len, debut + MAX_ESCAPE + 1);
+            int j = debut;
+            while (j < limite && input.charAt(j) != ';') {
+                j++;
+            }
+            int valeur = -1;
+            if (j < limite && j >= debut + MIN_ESCAPE) {
+                if (input.charAt(debut) == '#') {
+                    valeur = decoderNumerique(input, debut + 1, j);
+                } else {
+                    valeur = rechercherEntite(input, debut, j);
+                }
+            }
+            if (valeur < 0) {
+                esperluette = input.indexOf('&', debut);
+                continue;
+            }
+            if (sortie == null) {
+                sortie = TAMPON.get();
+                sortie.setLength(0);
+            }
+            sortie.append(input, st, esperluette);
+            sortie.appendCodePoint(valeur);
+            st = j + 1;
+            esperluette = input.indexOf('&', st);
+        }
+        if (sortie == null) {
+            return input;
+        }
+        sortie.append(input, st, len);
+        String res = sortie.toString();
+        if (sortie.capacity() > TAILLE_MAX_TAMPON) {
+            //On ne garde pas un tampon démesuré après une ligne exceptionnelle
+            TAMPON.remove();
+        }
+        return res;
+    }
+
+    /**
+     * Décode une entité numérique (décimale ou hexadécimale si elle commence
+     * par 'x').
+     *
+     * @param input Chaîne contenant l'entité.
+     * @param debut Indice du premier caractère après "&#".
+     * @param fin Indice du ';'.
+     * @return Le point de code, ou -1 si l'entité est invalide.
+     */
+    private static int decoderNumerique(final String input, int debut, final int fin) {
+        int radix = 10;
+        char c = input.charAt(debut);
+        if (c == 'x' || c == 'X') {
+            radix = 16;
+            ++debut;
+        }
+        if (debut == fin) {
+            return -1;
+        }
+        int valeur = 0;
+        for (int k = debut; k < fin; ++k) {
+            int chiffre = Character.digit(input.charAt(k), radix);
+            if (chiffre < 0) {
+                return -1;
+            }
+            valeur = valeur * radix + chiffre;
+        }
+        if (valeur > Character.MAX_CODE_POINT) {
+            return -1;
+        }
+        return valeur;
+    }
+
+    /**
+     * Recherche une entité nommée dans le trie.
+     *
+     * @param input Chaîne contenant l'entité.
+     * @param debut Indice du premier caractère après le '&'.
+     * @param fin Indice du ';'.
+     * @return Le caractère correspondant, ou -1 si le nom est inconnu.
+     */
+    private static int rechercherEntite(final String input, final int debut, final int fin) {
+        int noeud = 0;
+        for (int k = debut; k < fin; ++k) {
+            int c = input.charAt(k) - PREMIER_CARACTERE;
+            if (c < 0 || c >= LARGEUR_TRIE) {
+                return -1;
+            }
+            noeud = TRIE[noeud][c];
+            if (noeud == 0) {
+                return -1;
+            }
+        }
+        return REMPLACEMENTS[noeud] == 0 ? -1 : REMPLACEMENTS[noeud];
+    }
+
+    /**
+     * Implémentation d'origine, conservée comme référence pour les mesures de
+     * performances (voir {@link Performances}).
+     *
+     * @param input Chaîne à décoder.
+     * @return La chaîne décodée.
+     */
+    static final String unescapeHtml3Reference(final String input) {
         StringWriter writer = null;
         int len = input.length();
         int i = 1;
@@ -211,4 +334,59 @@ public class StringUtils {
             LOOKUPMAP.put(seq[1].toString(), seq[0]);
         }
     }
+
+    /**
+     * Premier caractère représenté dans le trie (les noms d'entités ne
+     * contiennent que des chiffres et des lettres ASCII).
+     */
+    private static final char PREMIER_CARACTERE = '0';
+    private static final int LARGEUR_TRIE = 'z' - PREMIER_CARACTERE + 1;
+
+    /**
+     * Trie des noms d'entités : TRIE[noeud][caractère] donne le noeud fils (0
+     * si absent, la racine n'étant jamais un fils).
+     */
+    private static final int[][] TRIE;
+    /**
+     * Caractère associé à chaque noeud du trie (0 si le noeud ne termine aucun
+     * nom).
+     */
+    private static final char[] REMPLACEMENTS;
+
+    /**
+     * Au-delà de cette capacité, le tampon d'un thread est libéré après usage.
+     */
+    private static final int TAILLE_MAX_TAMPON = 1 << 16;
+
+    private static final ThreadLocal<StringBuilder> TAMPON = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    static {
+        int nbNoeuds = 1;
+        for (final String[] seq : ESCAPES) {
+            nbNoeuds += seq[1].length();
+        }
+        int[][] trie = new int[nbNoeuds][];
+        char[] remplacements = new char[nbNoeuds];
+        trie[0] = new int[LARGEUR_TRIE];
+        int prochain = 1;
+        for (final String[] seq : ESCAPES) {
+            int noeud = 0;
+            for (int k = 0; k < seq[1].length(); ++k) {
+                int c = seq[1].charAt(k) - PREMIER_CARACTERE;
+                if (trie[noeud][c] == 0) {
+                    trie[prochain] = new int[LARGEUR_TRIE];
+                    trie[noeud][c] = prochain++;
+                }
+                noeud = trie[noeud][c];
+            }
+            remplacements[noeud] = seq[0].charAt(0);
+        }
+        TRIE = trie;
+        REMPLACEMENTS = remplacements;
+    }
 }
@@ -0,0 +1,22 @@
+package requeterRezo;
+
+/**
+ * Politique de synchronisation sur disque (fsync) des entrées écrites par
+ * {@link EcrivainDiffere}.
+ */
+public enum Synchronisation {
+    /**
+     * Aucune synchronisation explicite : le système écrit les données quand il
+     * le souhaite. Le plus rapide, mais les dernières entrées peuvent être
+     * perdues en cas de panne du système.
+     */
+    Jamais,
+    /**
+     * Synchronisation après chaque lot d'écritures.
+     */
+    ParLot,
+    /**
+     * Synchronisation après chaque entrée.
+     */
+    ChaqueEcriture
+}
@@ -0,0 +1,90 @@
+package requeterRezo;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Noms des types de relations (tels qu'ils apparaissent dans les relations
+ * d'un {@link Mot}) selon leur identifiant, appris des réponses de rezoJDM.
+ * Ils permettent d'extraire d'une entrée complète du cache la réponse à une
+ * requête portant sur un seul type de relation (voir {@link Forme}).
+ *
+ * Les noms appris sont ajoutés à la fin d'un fichier du dossier du cache (une
+ * ligne "id;nom" par type) afin d'être connus dès la session suivante.
+ */
+class TypesRelations {
+
+    private final ConcurrentHashMap<Integer, String> noms = new ConcurrentHashMap<>();
+
+    /**
+     * Fichier des noms appris (null si les noms ne sont pas conservés).
+     */
+    private final File fichier;
+
+    /**
+     * @param fichier Chemin du fichier des noms appris (null si les noms ne
+     * sont pas conservés). Les noms qu'il contient déjà sont chargés.
+     */
+    TypesRelations(String fichier) {
+        this.fichier = fichier == null ? null : new File(fichier);
+        if (this.fichier != null && this.fichier.exists()) {
+            try (BufferedReader lecteur = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(this.fichier), StandardCharsets.UTF_8))) {
+                String ligne;
+                while ((ligne = lecteur.readLine()) != null) {
+                    String[] champs = ligne.split(";", 2);
+                    //Une ligne incomplète (écriture interrompue) est ignorée
+                    if (champs.length == 2 && !champs[1].isEmpty()) {
+                        try {
+                            noms.put(Integer.parseInt(champs[0]), champs[1]);
+                        } catch (NumberFormatException ex) {
+                        }
+                    }
+                }
+            } catch (IOException ex) {
+                Logger.getLogger(TypesRelations.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
+    /**
+     * Retourne le nom d'un type de relation.
+     *
+     * @param id Identifiant du type de relation.
+     * @return Son nom, ou null s'il n'a encore jamais été rencontré.
+     */
+    String nom(int id) {
+        return noms.get(id);
+    }
+
+    /**
+     * Enregistre le nom d'un type de relation rencontré dans une réponse.
+     *
+     * @param id Identifiant du type de relation.
+     * @param nom Nom du type de relation.
+     */
+    void apprendre(int id, String nom) {
+        if (nom == null || nom.indexOf('\n') >= 0 || noms.putIfAbsent(id, nom) != null || fichier == null) {
+            return;
+        }
+        //Une ligne par écriture en ajout : les lignes de plusieurs processus
+        //partageant le dossier ne s'entremêlent pas
+        byte[] ligne = (id + ";" + nom + "\n").getBytes(StandardCharsets.UTF_8);
+        synchronized (this) {
+            try (OutputStream sortie = new FileOutputStream(fichier, true)) {
+                sortie.write(ligne);
+            } catch (IOException ex) {
+                Logger.getLogger(TypesRelations.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+}
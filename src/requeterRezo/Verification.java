@@ -0,0 +1,148 @@
+package requeterRezo;
+
+import java.util.ArrayList;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongSupplier;
+
+/**
+ * Vérification de l'intégrité de l'index du cache en tâche de fond, après le
+ * démarrage : pour chaque entrée présente dans l'index au chargement, la tâche
+ * vérifie que l'entrée existe dans le stockage et qu'elle n'est pas périmée.
+ *
+ * La tâche ne modifie pas l'index : les entrées à corriger sont placées dans
+ * une file que {@link RequeterRezo} consulte à chaque requête, ce qui évite
+ * tout accès concurrent à l'index.
+ */
+public class Verification implements Runnable {
+
+    /**
+     * Nombre d'entrées vérifiées entre deux pauses.
+     */
+    private static final int TAILLE_LOT = 1000;
+
+    /**
+     * Pause (en millisecondes) entre deux lots, afin de laisser le disque aux
+     * requêtes.
+     */
+    private static final long PAUSE = 1;
+
+    /**
+     * Entrée de l'index à vérifier ou à corriger.
+     */
+    protected static class Constat {
+
+        protected final String mot;
+        protected final int id;
+        protected final long dateCache;
+        protected final long expiration;
+
+        /**
+         * True si l'entrée est absente du stockage, false si elle est
+         * périmée.
+         */
+        protected boolean absente;
+
+        private Constat(String mot, CacheInfo info) {
+            this.mot = mot;
+            this.id = info.getID();
+            this.dateCache = info.getDateCache();
+            this.expiration = info.expiration;
+        }
+
+        /**
+         * Indique si l'entrée de l'index est toujours celle qui a été
+         * vérifiée (elle a pu être remplacée entre temps).
+         *
+         * @param info Etat actuel de l'entrée (peut être null).
+         * @return True si le constat s'applique encore.
+         */
+        protected boolean concerne(CacheInfo info) {
+            return info != null && info.getID() == id && info.getDateCache() == dateCache;
+        }
+    }
+
+    private final ArrayList<Constat> aVerifier;
+    private final Stockage stockage;
+    private final LongSupplier horloge;
+    private final ConcurrentLinkedQueue<Constat> constats = new ConcurrentLinkedQueue<>();
+    private volatile boolean termine;
+    private volatile boolean arret;
+
+    /**
+     * Prépare la vérification des entrées présentes dans l'index (copie de
+     * l'index, sans accès au disque).
+     *
+     * @param cache Index du cache.
+     * @param stockage Stockage des entrées.
+     */
+    protected Verification(Cache cache, Stockage stockage) {
+        this.aVerifier = new ArrayList<>(cache.size());
+        for (Entry<String, CacheInfo> entree : cache.entrySet()) {
+            aVerifier.add(new Constat(entree.getKey(), entree.getValue()));
+        }
+        this.stockage = stockage;
+        this.horloge = cache::maintenant;
+    }
+
+    /**
+     * Lance la vérification sur une tâche de fond.
+     */
+    protected void demarrer() {
+        Thread thread = new Thread(this, "RequeterRezo-verification");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        int n = 0;
+        for (Constat constat : aVerifier) {
+            if (arret) {
+                return;
+            }
+            if (!stockage.contient(constat.mot, constat.id)) {
+                constat.absente = true;
+                constats.add(constat);
+            } else if (constat.expiration <= horloge.getAsLong()) {
+                constats.add(constat);
+            }
+            if (++n % TAILLE_LOT == 0) {
+                try {
+                    Thread.sleep(PAUSE);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+            }
+        }
+        aVerifier.clear();
+        termine = true;
+    }
+
+    /**
+     * Retourne la prochaine entrée à corriger.
+     *
+     * @return La prochaine entrée à corriger, ou null s'il n'y en a pas pour
+     * l'instant.
+     */
+    protected Constat prochain() {
+        return constats.poll();
+    }
+
+    /**
+     * Indique si toutes les entrées ont été vérifiées et tous les constats
+     * consultés.
+     *
+     * @return True si la vérification est terminée.
+     */
+    protected boolean estTerminee() {
+        return termine && constats.isEmpty();
+    }
+
+    /**
+     * Interrompt la vérification.
+     */
+    protected void arreter() {
+        arret = true;
+    }
+}
@@ -0,0 +1,154 @@
+package requeterRezo;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static requeterRezo.Tests.egaux;
+import static requeterRezo.Tests.supprimer;
+import static requeterRezo.Tests.verifier;
+
+/**
+ * Test de charge d'une instance partagée par plusieurs threads (voir
+ * {@link RequeterRezo}) : requêtes concurrentes sur un petit cache, donc avec
+ * de nombreuses évictions, pendant qu'un autre thread sauvegarde l'état du
+ * cache. Une fois les threads arrêtés, l'index du cache, ses IDs et le
+ * stockage doivent être cohérents, y compris après un redémarrage.
+ */
+public class TestConcurrence {
+
+    private static final int THREADS = 8;
+    private static final int REQUETES = 400;
+    private static final int FREQUENTS = 500;
+    private static final int TAILLE_MAX = 60;
+    private static final int VOISINS = 20;
+
+    public static void main(String[] args) throws Exception {
+        charge(false);
+        charge(true);
+        System.out.println("TestConcurrence : ok");
+    }
+
+    /**
+     * @param segments True pour le stockage en segments, false pour un fichier
+     * par mot.
+     */
+    private static void charge(boolean segments) throws Exception {
+        File dossier = Files.createTempDirectory("requeterRezo").toFile();
+        try {
+            Configuration configuration = new Configuration()
+                    .dossierCache(new File(dossier, "cache").getPath()).tailleMax(TAILLE_MAX)
+                    .stockageSegments(segments);
+            final RequeterRezo rezo = new Performances.RequeterRezoHorsLigne(configuration, VOISINS, 1);
+            //Loi de Zipf (exposant 1) sur les mots fréquents
+            final double[] cumul = new double[FREQUENTS];
+            double somme = 0;
+            for (int i = 0; i < FREQUENTS; ++i) {
+                somme += 1.0 / (i + 1);
+                cumul[i] = somme;
+            }
+            final double total = somme;
+            final ConcurrentLinkedQueue<String> erreurs = new ConcurrentLinkedQueue<>();
+            final AtomicBoolean fini = new AtomicBoolean();
+            Thread[] taches = new Thread[THREADS];
+            for (int t = 0; t < THREADS; ++t) {
+                final int numero = t;
+                taches[t] = new Thread(() -> {
+                    Random aleatoire = new Random(numero);
+                    try {
+                        for (int i = 0; i < REQUETES; ++i) {
+                            String nom;
+                            if (aleatoire.nextInt(5) == 0) {
+                                nom = "unique" + numero + "_" + i;
+                            } else {
+                                int rang = Arrays.binarySearch(cumul, aleatoire.nextDouble() * total);
+                                nom = "mot" + (rang < 0 ? -rang - 1 : rang);
+                            }
+                            Mot mot = rezo.requete(nom);
+                            if (mot == null || !mot.getNom().equals(nom)) {
+                                erreurs.add("requete " + nom + " : " + (mot == null ? null : mot.getNom()));
+                            }
+                        }
+                    } catch (Exception | AssertionError ex) {
+                        erreurs.add(ex.toString());
+                    }
+                });
+            }
+            Thread sauvegarde = new Thread(() -> {
+                try {
+                    for (int i = 0; !fini.get(); ++i) {
+                        if (i % 4 == 3) {
+                            rezo.pointDeReprise();
+                        } else {
+                            rezo.sauvegarder();
+                        }
+                        Thread.sleep(5);
+                    }
+                } catch (Exception | AssertionError ex) {
+                    erreurs.add(ex.toString());
+                }
+            });
+            for (Thread tache : taches) {
+                tache.start();
+            }
+            sauvegarde.start();
+            for (Thread tache : taches) {
+                tache.join();
+            }
+            fini.set(true);
+            sauvegarde.join();
+            verifier(erreurs.isEmpty(), "erreurs pendant la charge : " + erreurs);
+            HashMap<String, Integer> ids = verifierCoherence(rezo);
+            //Le cache n'est pas forcément plein : un mot reste en attente si tous
+            //les IDs libres sont réservés par des effacements en cours
+            verifier(ids.size() > TAILLE_MAX / 2, "cache rempli : " + ids.size());
+            rezo.sauvegarder();
+            //Après redémarrage, le cache contient les mêmes entrées
+            RequeterRezo relu = new Performances.RequeterRezoHorsLigne(configuration, VOISINS);
+            egaux(ids, verifierCoherence(relu), "entrees apres redemarrage");
+            for (String mot : ids.keySet()) {
+                Mot lu = relu.requete(mot);
+                verifier(lu != null && lu.getNom().equals(mot), "mot " + mot + " relu apres redemarrage");
+            }
+            egaux(ids.size(), (int) relu.getStatistiques().getSucces(), "lectures servies par le cache");
+        } finally {
+            supprimer(dossier);
+        }
+    }
+
+    /**
+     * Vérifie qu'aucun ID n'est perdu ni partagé, que chaque mot du cache a
+     * son entrée dans le stockage et qu'aucun mot n'est à la fois dans le
+     * cache et en attente.
+     *
+     * @param rezo Instance sans requête en cours.
+     * @return L'ID de chaque mot du cache.
+     */
+    private static HashMap<String, Integer> verifierCoherence(RequeterRezo rezo) throws Exception {
+        Cache cache = rezo.getCache();
+        HashMap<String, Integer> ids = new HashMap<>();
+        BitSet utilises = new BitSet();
+        for (Entry<String, CacheInfo> entree : cache.entrySet()) {
+            String mot = entree.getKey();
+            int id = entree.getValue().getID();
+            verifier(id >= 0 && id < TAILLE_MAX, "ID de " + mot + " hors du cache : " + id);
+            verifier(!utilises.get(id), "ID " + id + " partage");
+            utilises.set(id);
+            ids.put(mot, id);
+            ByteBuffer donnees = rezo.getStockage().lire(mot, id);
+            verifier(donnees != null, "entree de " + mot + " absente du stockage");
+            egaux(mot, FormatBinaire.lireNom(donnees), "entree de l'ID " + id);
+            egaux(mot, FormatBinaire.decoder(donnees).getNom(), "mot decode de l'ID " + id);
+            verifier(!rezo.getIndex().containsKey(mot), mot + " dans le cache et en attente");
+        }
+        egaux(utilises, cache.prisID, "IDs pris");
+        return ids;
+    }
+}
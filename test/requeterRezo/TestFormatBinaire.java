@@ -0,0 +1,174 @@
+package requeterRezo;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import static requeterRezo.Tests.egaux;
+import static requeterRezo.Tests.verifier;
+
+/**
+ * Tests du format binaire des entrées du cache (voir {@link FormatBinaire}) :
+ * aller-retour sans perte, lecture et écriture d'un fichier, rejet des
+ * entrées tronquées, corrompues ou d'une autre version.
+ */
+public class TestFormatBinaire {
+
+    public static void main(String[] args) throws Exception {
+        allerRetour();
+        fichier();
+        entreeTronquee();
+        versionInconnue();
+        nombreCorrompu();
+        System.out.println("TestFormatBinaire : ok");
+    }
+
+    /**
+     * Construit un mot utilisant tous les champs du format : voisins partagés
+     * entre plusieurs relations, terme sans mot, poids entiers, négatifs et
+     * fractionnaires, caractères accentués, annotation.
+     *
+     * @param nom Nom du mot.
+     * @return Le mot.
+     */
+    static Mot motComplet(String nom) {
+        Mot chat = new Mot("chat", 7, 1, "chat", 50, "un félin", new HashMap<>(), new HashMap<>(), new ArrayList<>());
+        Mot felin = new Mot("félin", 8, 1, "félin", 0.25, "", new HashMap<>(), new HashMap<>(), new ArrayList<>());
+        HashMap<String, ArrayList<Terme>> sortantes = new HashMap<>();
+        sortantes.put("r_isa", new ArrayList<>(Arrays.asList(new Terme(felin, 10), new Terme(chat, -5.25))));
+        sortantes.put("r_syn", new ArrayList<>(Arrays.asList(new Terme(chat, 1e9))));
+        HashMap<String, ArrayList<Terme>> entrantes = new HashMap<>();
+        entrantes.put("r_associated", new ArrayList<>(Arrays.asList(new Terme(felin, 0), new Terme(null, 3))));
+        ArrayList<Annotation> annotations = new ArrayList<>();
+        annotations.add(new Annotation(":r123", nom, "r_isa", "félin", 25));
+        return new Mot(nom, 42, 1, "le " + nom, 123.5, "1. Définition de " + nom + ".",
+                entrantes, sortantes, annotations);
+    }
+
+    /**
+     * Décrit tous les champs d'un mot, relations triées, afin de comparer deux
+     * mots champ à champ.
+     *
+     * @param mot Mot à décrire.
+     * @return La description.
+     */
+    static String decrire(Mot mot) {
+        StringBuilder res = new StringBuilder();
+        res.append(mot.getNom()).append('|').append(mot.getID()).append('|').append(mot.getType())
+                .append('|').append(mot.getMotFormate()).append('|').append(mot.getPoids_general())
+                .append('|').append(mot.getDefinition());
+        decrire(res.append("\nsortantes"), mot.getRelations_sortantes());
+        decrire(res.append("\nentrantes"), mot.getRelations_entrantes());
+        for (Annotation annotation : mot.getAnnotations()) {
+            res.append("\n").append(annotation.getId_annotation()).append('|').append(annotation.getMot_entrant())
+                    .append('|').append(annotation.getType_relation()).append('|').append(annotation.getMot_sortant())
+                    .append('|').append(annotation.getPoids());
+        }
+        return res.toString();
+    }
+
+    private static void decrire(StringBuilder res, HashMap<String, ArrayList<Terme>> relations) {
+        for (Entry<String, ArrayList<Terme>> entree : new TreeMap<>(relations).entrySet()) {
+            res.append("\n ").append(entree.getKey());
+            for (Terme terme : entree.getValue()) {
+                Mot voisin = terme.getMot();
+                res.append(" [").append(terme.getPoids());
+                if (voisin != null) {
+                    res.append(' ').append(voisin.getNom()).append('|').append(voisin.getID()).append('|')
+                            .append(voisin.getType()).append('|').append(voisin.getMotFormate()).append('|')
+                            .append(voisin.getPoids_general()).append('|').append(voisin.getDefinition());
+                }
+                res.append(']');
+            }
+        }
+    }
+
+    private static void allerRetour() {
+        Mot mot = motComplet("chaton");
+        byte[] entree = FormatBinaire.encoder(mot);
+        ByteBuffer donnees = ByteBuffer.wrap(entree);
+        verifier(FormatBinaire.estBinaire(donnees), "entree reconnue comme binaire");
+        egaux("chaton", FormatBinaire.lireNom(ByteBuffer.wrap(entree)), "nom lu dans l'en-tete");
+        Mot relu = FormatBinaire.decoder(donnees);
+        egaux(decrire(mot), decrire(relu), "aller-retour");
+        egaux(0, donnees.remaining(), "octets restants apres decodage");
+        //Un encodage est deterministe : l'empreinte ne change que si le contenu change
+        egaux(FormatBinaire.empreinte(entree), FormatBinaire.empreinte(FormatBinaire.encoder(relu)), "empreinte");
+        Mot sansDefinition = new Mot("vide", -1, -1, "vide", 0, null, new HashMap<>(), new HashMap<>(), new ArrayList<>());
+        egaux(decrire(sansDefinition), decrire(FormatBinaire.decoder(ByteBuffer.wrap(FormatBinaire.encoder(sansDefinition)))),
+                "aller-retour d'un mot sans definition ni relation");
+    }
+
+    private static void fichier() throws Exception {
+        File dossier = Files.createTempDirectory("requeterRezo").toFile();
+        try {
+            File fichier = new File(dossier, "entree");
+            Mot mot = motComplet("chaton");
+            Mot.ecrire(mot, fichier);
+            egaux(decrire(mot), decrire(Mot.lire(fichier.getPath())), "aller-retour par fichier");
+            //Remplacement : le fichier temporaire ne reste pas dans le dossier
+            Mot.ecrire(motComplet("chaton"), fichier);
+            egaux(1, dossier.list().length, "fichiers dans le dossier apres remplacement");
+        } finally {
+            for (File f : dossier.listFiles()) {
+                f.delete();
+            }
+            dossier.delete();
+        }
+    }
+
+    private static void entreeTronquee() {
+        byte[] entree = FormatBinaire.encoder(motComplet("chaton"));
+        for (int taille = 0; taille < entree.length; ++taille) {
+            try {
+                FormatBinaire.decoder(ByteBuffer.wrap(Arrays.copyOf(entree, taille)));
+                throw new AssertionError("entree tronquee a " + taille + " octets acceptee");
+            } catch (IllegalArgumentException ex) {
+                //Attendu
+            }
+        }
+    }
+
+    private static void versionInconnue() {
+        byte[] entree = FormatBinaire.encoder(motComplet("chaton"));
+        entree[4] = (byte) (FormatBinaire.VERSION + 1);
+        try {
+            FormatBinaire.decoder(ByteBuffer.wrap(entree));
+            throw new AssertionError("version inconnue acceptee");
+        } catch (IllegalArgumentException ex) {
+            //Attendu
+        }
+    }
+
+    /**
+     * Un nombre d'éléments négatif ou démesuré ne doit pas servir à
+     * dimensionner un tableau.
+     */
+    private static void nombreCorrompu() {
+        for (int nombre : new int[]{-1, Integer.MAX_VALUE, 1000}) {
+            ByteBuffer entree = ByteBuffer.allocate(64);
+            entree.putInt(FormatBinaire.MAGIE).put(FormatBinaire.VERSION).put((byte) 0);
+            entree.put((byte) 1).put((byte) 'x');
+            //Nombre de chaînes en varint
+            for (int reste = nombre; ; reste >>>= 7) {
+                if ((reste & ~0x7F) == 0) {
+                    entree.put((byte) reste);
+                    break;
+                }
+                entree.put((byte) ((reste & 0x7F) | 0x80));
+            }
+            entree.flip();
+            try {
+                FormatBinaire.decoder(entree);
+                throw new AssertionError("nombre de chaines " + nombre + " accepte");
+            } catch (IllegalArgumentException ex) {
+                //Attendu
+            }
+        }
+    }
+}
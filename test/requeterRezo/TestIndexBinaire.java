@@ -0,0 +1,165 @@
+package requeterRezo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Map.Entry;
+
+import static requeterRezo.Tests.egaux;
+import static requeterRezo.Tests.supprimer;
+import static requeterRezo.Tests.verifier;
+
+/**
+ * Tests du format binaire des fichiers d'index (voir
+ * {@link Cache#sauvegarderCache(Cache, String)} et
+ * {@link Index#sauvegarderIndex(Index, String)}) : aller-retour, réduction de
+ * la taille du cache et rejet des fichiers tronqués ou d'une autre version.
+ */
+public class TestIndexBinaire {
+
+    private static final int ENTREES = 500;
+
+    public static void main(String[] args) throws Exception {
+        allerRetour();
+        tailleReduite();
+        fichierCorrompu();
+        System.out.println("TestIndexBinaire : ok");
+    }
+
+    private static Cache cache() {
+        Cache cache = new Cache(168, ENTREES);
+        for (int i = 0; i < ENTREES; ++i) {
+            cache.ajouter("mot" + i + "é", 1 + i % 20);
+        }
+        //Des IDs libérés au milieu des IDs pris
+        for (int i = 0; i < ENTREES; i += 7) {
+            cache.supprimer("mot" + i + "é");
+        }
+        return cache;
+    }
+
+    private static Index index() {
+        Index index = new Index(ENTREES);
+        for (int i = 0; i < ENTREES; ++i) {
+            index.put("attente" + i, new IndexInfo(1 + i % 5, 1_500_000_000_000L + i));
+        }
+        return index;
+    }
+
+    private static void allerRetour() throws Exception {
+        File dossier = Files.createTempDirectory("requeterRezo").toFile();
+        try {
+            String fichierCache = new File(dossier, "indexCache").getPath();
+            String fichierIndex = new File(dossier, "indexAttente").getPath();
+            Cache cache = cache();
+            Index index = index();
+            Cache.sauvegarderCache(cache, fichierCache);
+            Index.sauvegarderIndex(index, fichierIndex);
+            Cache cacheRelu = Cache.chargerCache(fichierCache, 168, ENTREES, dossier.getPath());
+            egaux(cache.size(), cacheRelu.size(), "entrees du cache");
+            for (Entry<String, CacheInfo> entree : cache.entrySet()) {
+                CacheInfo attendu = entree.getValue();
+                CacheInfo relu = cacheRelu.get(entree.getKey());
+                verifier(relu != null, "entree " + entree.getKey() + " relue");
+                egaux(attendu.getID(), relu.getID(), "ID de " + entree.getKey());
+                egaux(attendu.getDateCache(), relu.getDateCache(), "date de " + entree.getKey());
+                egaux(attendu.getOccurrences(), relu.getOccurrences(), "occurrences de " + entree.getKey());
+                egaux(attendu.getDateOccurrences(), relu.getDateOccurrences(), "derniere occurrence de " + entree.getKey());
+            }
+            Index indexRelu = Index.chargerIndex(fichierIndex, ENTREES);
+            egaux(index.size(), indexRelu.size(), "mots en attente");
+            for (Entry<String, IndexInfo> entree : index.entrySet()) {
+                IndexInfo relu = indexRelu.get(entree.getKey());
+                verifier(relu != null, "mot " + entree.getKey() + " relu");
+                egaux(entree.getValue().getOccurrences(), relu.getOccurrences(), "occurrences de " + entree.getKey());
+                egaux(entree.getValue().getDateOccurrences(), relu.getDateOccurrences(), "date de " + entree.getKey());
+            }
+        } finally {
+            supprimer(dossier);
+        }
+    }
+
+    /**
+     * Les entrées dont l'ID dépasse la nouvelle taille du cache ne sont pas
+     * chargées.
+     */
+    private static void tailleReduite() throws Exception {
+        File dossier = Files.createTempDirectory("requeterRezo").toFile();
+        try {
+            String fichierCache = new File(dossier, "indexCache").getPath();
+            Cache cache = cache();
+            Cache.sauvegarderCache(cache, fichierCache);
+            int tailleMax = ENTREES / 2;
+            Cache relu = Cache.chargerCache(fichierCache, 168, tailleMax, dossier.getPath());
+            int attendues = 0;
+            for (CacheInfo info : cache.values()) {
+                if (info.getID() < tailleMax) {
+                    ++attendues;
+                }
+            }
+            egaux(attendues, relu.size(), "entrees dans la nouvelle taille");
+            for (CacheInfo info : relu.values()) {
+                verifier(info.getID() < tailleMax, "ID " + info.getID() + " dans la nouvelle taille");
+            }
+        } finally {
+            supprimer(dossier);
+        }
+    }
+
+    private static void fichierCorrompu() throws Exception {
+        File dossier = Files.createTempDirectory("requeterRezo").toFile();
+        try {
+            File fichierCache = new File(dossier, "indexCache");
+            File fichierIndex = new File(dossier, "indexAttente");
+            Cache.sauvegarderCache(cache(), fichierCache.getPath());
+            Index.sauvegarderIndex(index(), fichierIndex.getPath());
+            //Version inconnue
+            int versionCache = ecrireOctet(fichierCache, 4, 99);
+            int versionIndex = ecrireOctet(fichierIndex, 4, 99);
+            verifierRejet(fichierCache, fichierIndex, dossier, "version inconnue");
+            ecrireOctet(fichierCache, 4, versionCache);
+            ecrireOctet(fichierIndex, 4, versionIndex);
+            //Fichiers tronqués au milieu des entrées
+            try (RandomAccessFile acces = new RandomAccessFile(fichierCache, "rw")) {
+                acces.setLength(acces.length() / 2);
+            }
+            try (RandomAccessFile acces = new RandomAccessFile(fichierIndex, "rw")) {
+                acces.setLength(acces.length() / 2);
+            }
+            verifierRejet(fichierCache, fichierIndex, dossier, "fichier tronque");
+        } finally {
+            supprimer(dossier);
+        }
+    }
+
+    /**
+     * Remplace un octet d'un fichier.
+     *
+     * @return L'octet remplacé.
+     */
+    private static int ecrireOctet(File fichier, long position, int valeur) throws IOException {
+        try (RandomAccessFile acces = new RandomAccessFile(fichier, "rw")) {
+            acces.seek(position);
+            int ancien = acces.read();
+            acces.seek(position);
+            acces.write(valeur);
+            return ancien;
+        }
+    }
+
+    private static void verifierRejet(File fichierCache, File fichierIndex, File dossier, String cas) throws Exception {
+        try {
+            Cache.chargerCache(fichierCache.getPath(), 168, ENTREES, dossier.getPath());
+            throw new AssertionError("index du cache accepte : " + cas);
+        } catch (IOException ex) {
+            //Attendu
+        }
+        try {
+            Index.chargerIndex(fichierIndex.getPath(), ENTREES);
+            throw new AssertionError("index d'attente accepte : " + cas);
+        } catch (IOException ex) {
+            //Attendu
+        }
+    }
+}
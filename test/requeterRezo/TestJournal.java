@@ -0,0 +1,132 @@
+package requeterRezo;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static requeterRezo.Tests.egaux;
+import static requeterRezo.Tests.supprimer;
+import static requeterRezo.Tests.verifier;
+
+/**
+ * Tests du journal des index (voir {@link Journal}) : rejeu sur des index
+ * vides ou déjà à jour, entrées au-delà de la taille du cache et
+ * enregistrement incomplet à la fin du journal.
+ */
+public class TestJournal {
+
+    private static final long DATE = 1_500_000_000_000L;
+
+    public static void main(String[] args) throws Exception {
+        rejeu();
+        tailleReduite();
+        enregistrementIncomplet();
+        System.out.println("TestJournal : ok");
+    }
+
+    /**
+     * Ecrit un journal : deux entrées dans le cache (dont une modifiée puis
+     * l'autre supprimée) et deux mots en attente (dont un supprimé).
+     */
+    private static void ecrire(File fichier) throws Exception {
+        Journal journal = new Journal(fichier.getPath());
+        journal.cache("a", new CacheInfo(3, DATE, 2, DATE));
+        journal.cache("b", new CacheInfo(5, DATE, 1, DATE));
+        journal.cache("a", new CacheInfo(3, DATE, 7, DATE + 1000));
+        journal.cacheSuppression("b", 5);
+        journal.index("x", new IndexInfo(4, DATE));
+        journal.index("y", new IndexInfo(1, DATE));
+        journal.indexSuppression("y");
+        journal.fermer();
+    }
+
+    private static void rejeu() throws Exception {
+        File dossier = Files.createTempDirectory("requeterRezo").toFile();
+        try {
+            File fichier = new File(dossier, "journal");
+            ecrire(fichier);
+            Cache cache = new Cache(168, 10);
+            Index index = new Index(10);
+            Journal journal = new Journal(fichier.getPath());
+            egaux(7, journal.rejouer(cache, index, 10), "enregistrements rejoues");
+            verifierEtat(cache, index);
+            //Un enregistrement décrit un état complet : rejouer le journal sur
+            //des index déjà à jour ne change rien
+            journal.rejouer(cache, index, 10);
+            verifierEtat(cache, index);
+            journal.fermer();
+        } finally {
+            supprimer(dossier);
+        }
+    }
+
+    private static void verifierEtat(Cache cache, Index index) {
+        egaux(1, cache.size(), "entrees du cache");
+        egaux(3, cache.get("a").getID(), "ID de a");
+        egaux(7, cache.get("a").getOccurrences(), "occurrences de a");
+        egaux(DATE + 1000, cache.get("a").getDateOccurrences(), "derniere occurrence de a");
+        verifier(!cache.containsKey("b"), "b supprime du cache");
+        //Les IDs sont recalculés à partir des entrées
+        verifier(cache.prisID.get(3) && !cache.prisID.get(5), "IDs pris");
+        egaux(1, cache.prisID.cardinality(), "nombre d'IDs pris");
+        egaux(1, index.size(), "mots en attente");
+        egaux(4, index.get("x").getOccurrences(), "occurrences de x");
+        verifier(!index.containsKey("y"), "y supprime de l'index");
+    }
+
+    /**
+     * Une entrée dont l'ID dépasse la nouvelle taille du cache est ignorée.
+     */
+    private static void tailleReduite() throws Exception {
+        File dossier = Files.createTempDirectory("requeterRezo").toFile();
+        try {
+            File fichier = new File(dossier, "journal");
+            ecrire(fichier);
+            Cache cache = new Cache(168, 3);
+            Index index = new Index(3);
+            Journal journal = new Journal(fichier.getPath());
+            journal.rejouer(cache, index, 3);
+            journal.fermer();
+            verifier(cache.isEmpty(), "entree au-dela de la taille du cache ignoree");
+            egaux(4, index.get("x").getOccurrences(), "occurrences de x");
+        } finally {
+            supprimer(dossier);
+        }
+    }
+
+    /**
+     * Un enregistrement incomplet (arrêt pendant l'écriture) termine le
+     * journal : il est retiré et les enregistrements suivants sont ajoutés à
+     * sa place.
+     */
+    private static void enregistrementIncomplet() throws Exception {
+        File dossier = Files.createTempDirectory("requeterRezo").toFile();
+        try {
+            File fichier = new File(dossier, "journal");
+            ecrire(fichier);
+            long taille = fichier.length();
+            Journal journal = new Journal(fichier.getPath());
+            journal.index("z", new IndexInfo(9, DATE));
+            journal.fermer();
+            try (RandomAccessFile acces = new RandomAccessFile(fichier, "rw")) {
+                acces.setLength(fichier.length() - 3);
+            }
+            Cache cache = new Cache(168, 10);
+            Index index = new Index(10);
+            journal = new Journal(fichier.getPath());
+            egaux(7, journal.rejouer(cache, index, 10), "enregistrements rejoues");
+            verifierEtat(cache, index);
+            egaux(taille, fichier.length(), "taille du journal apres troncature");
+            journal.index("z", new IndexInfo(9, DATE));
+            journal.fermer();
+            cache = new Cache(168, 10);
+            index = new Index(10);
+            journal = new Journal(fichier.getPath());
+            egaux(8, journal.rejouer(cache, index, 10), "enregistrements rejoues apres reprise");
+            journal.fermer();
+            egaux(9, index.get("z").getOccurrences(), "occurrences de z");
+        } finally {
+            supprimer(dossier);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package requeterRezo;
+
+import java.util.HashSet;
+
+import static requeterRezo.Tests.egaux;
+import static requeterRezo.Tests.verifier;
+
+/**
+ * Tests de l'ordre d'éviction et des admissions des politiques du cache (voir
+ * {@link PolitiqueCache}).
+ */
+public class TestPolitiques {
+
+    public static void main(String[] args) {
+        historique();
+        lru();
+        lfu();
+        lfuVieillissement();
+        wTinyLFU();
+        System.out.println("TestPolitiques : ok");
+    }
+
+    /**
+     * Cache réduit à l'ensemble de ses mots, piloté par une politique comme
+     * l'est celui de {@link RequeterRezo} lorsqu'aucune entrée n'est périmée.
+     */
+    private static class CacheSimule {
+
+        private final PolitiqueCache politique;
+        private final int tailleMax;
+        private final HashSet<String> mots = new HashSet<>();
+
+        private CacheSimule(PolitiqueCache politique, int tailleMax) {
+            this.politique = politique;
+            this.tailleMax = tailleMax;
+            politique.initialiser(null, null);
+        }
+
+        /**
+         * @return Le mot évincé, ou null si aucun mot n'a quitté le cache.
+         */
+        private String demander(String mot) {
+            politique.acces(mot);
+            if (mots.contains(mot)) {
+                return null;
+            }
+            if (mots.size() < tailleMax) {
+                ajouter(mot);
+                return null;
+            }
+            String victime = politique.victime();
+            if (victime == null || !politique.admettre(mot, victime)) {
+                return null;
+            }
+            mots.remove(victime);
+            politique.retrait(victime);
+            ajouter(mot);
+            return victime;
+        }
+
+        private void ajouter(String mot) {
+            mots.add(mot);
+            politique.ajout(mot);
+        }
+    }
+
+    /**
+     * Le mot le moins courant du cache (le plus ancien en cas d'égalité) est
+     * remplacé par un mot de l'index d'attente plus courant que lui.
+     */
+    private static void historique() {
+        Cache cache = new Cache(168, 3);
+        Index index = new Index(3);
+        PolitiqueCache politique = new PolitiqueHistorique();
+        politique.initialiser(cache, index);
+        cache.ajouter("a", 5);
+        cache.ajouter("b", 1);
+        cache.ajouter("c", 1);
+        egaux("b", politique.victime(), "victime historique");
+        index.ajouter("x", new IndexInfo(2, 0));
+        index.ajouter("y", new IndexInfo(1, 0));
+        verifier(politique.admettre("x", "b"), "mot plus courant admis");
+        verifier(!politique.admettre("y", "b"), "mot aussi courant refuse");
+        verifier(!politique.admettre("z", "b"), "mot absent de l'index refuse");
+    }
+
+    private static void lru() {
+        CacheSimule cache = new CacheSimule(new PolitiqueLRU(), 3);
+        for (String mot : new String[]{"a", "b", "c", "a"}) {
+            cache.demander(mot);
+        }
+        egaux("b", cache.demander("d"), "moins recent evince");
+        egaux("c", cache.demander("b"), "moins recent evince");
+        egaux("a", cache.demander("e"), "moins recent evince");
+    }
+
+    private static void lfu() {
+        CacheSimule cache = new CacheSimule(new PolitiqueLFU(3), 3);
+        for (String mot : new String[]{"a", "a", "a", "b", "b", "c"}) {
+            cache.demander(mot);
+        }
+        //d n'est pas plus fréquent que la victime c
+        egaux(null, cache.demander("d"), "mot aussi frequent que la victime refuse");
+        verifier(!cache.mots.contains("d"), "d hors du cache");
+        egaux("c", cache.demander("d"), "moins frequent evince");
+        //b et d ont la même fréquence : b a été promu le premier
+        egaux("b", cache.politique.victime(), "moins recemment promu designe");
+    }
+
+    /**
+     * Les fréquences sont divisées par deux toutes les dix requêtes par entrée
+     * du cache : un mot qui n'est plus demandé laisse sa place plus tôt.
+     */
+    private static void lfuVieillissement() {
+        CacheSimule cache = new CacheSimule(new PolitiqueLFU(1), 1);
+        for (int i = 0; i < 8; ++i) {
+            cache.demander("a");
+        }
+        int requetes = 0;
+        String evince = null;
+        while (evince == null && requetes < 20) {
+            evince = cache.demander("b");
+            ++requetes;
+        }
+        egaux("a", evince, "mot ancien evince");
+        //Sans vieillissement, b devrait être demandé 9 fois
+        egaux(6, requetes, "requetes de b avant son admission");
+    }
+
+    /**
+     * Une série de mots demandés une seule fois passe par la fenêtre sans
+     * chasser les mots fréquents de la partie principale.
+     */
+    private static void wTinyLFU() {
+        int tailleMax = 100;
+        CacheSimule cache = new CacheSimule(new PolitiqueWTinyLFU(tailleMax), tailleMax);
+        for (int tour = 0; tour < 5; ++tour) {
+            for (int i = 0; i < tailleMax; ++i) {
+                cache.demander("frequent" + i);
+            }
+        }
+        egaux(tailleMax, cache.mots.size(), "cache rempli");
+        for (int i = 0; i < 200; ++i) {
+            String mot = "unique" + i;
+            cache.demander(mot);
+            verifier(cache.mots.contains(mot), "mot demande accueilli par la fenetre");
+        }
+        int restants = 0;
+        for (int i = 0; i < tailleMax; ++i) {
+            if (cache.mots.contains("frequent" + i)) {
+                ++restants;
+            }
+        }
+        //Une politique LRU n'en garderait aucun ; l'esquisse surestime
+        //quelques mots uniques (collisions), qui remplacent alors un mot fréquent
+        verifier(restants >= tailleMax * 4 / 5, "mots frequents restants : " + restants);
+        //Un mot devenu fréquent quitte la fenêtre pour la partie principale
+        for (int i = 0; i < 10; ++i) {
+            cache.demander("nouveau");
+        }
+        cache.demander("autre");
+        verifier(cache.mots.contains("nouveau"), "mot frequent sorti de la fenetre garde");
+    }
+}
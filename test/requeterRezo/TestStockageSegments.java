@@ -0,0 +1,196 @@
+package requeterRezo;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static requeterRezo.Tests.egaux;
+import static requeterRezo.Tests.supprimer;
+import static requeterRezo.Tests.verifier;
+
+/**
+ * Tests du stockage par segments (voir {@link StockageSegments}) : relecture
+ * après réouverture, rejeu après un arrêt brutal (dernier segment tronqué),
+ * enregistrement corrompu dans un segment scellé, fichier étranger au
+ * stockage et compactage.
+ */
+public class TestStockageSegments {
+
+    /**
+     * Taille des segments des tests : deux entrées par segment.
+     */
+    private static final long TAILLE_SEGMENT = 200;
+
+    private static final int TAILLE_ENTREE = 100;
+
+    public static void main(String[] args) throws Exception {
+        reouverture();
+        arretBrutal();
+        segmentScelleCorrompu();
+        fichierEtranger();
+        compactage();
+        System.out.println("TestStockageSegments : ok");
+    }
+
+    private static void reouverture() throws Exception {
+        File dossier = Files.createTempDirectory("requeterRezo").toFile();
+        try {
+            StockageSegments stockage = ouvrir(dossier);
+            for (int i = 0; i < 6; ++i) {
+                stockage.ecrire("m" + i, i, donnees(i));
+            }
+            stockage.ecrire("m2", 2, donnees(20));
+            stockage.supprimer("m4", 4);
+            stockage.fermer();
+            stockage = ouvrir(dossier);
+            for (int i = 0; i < 6; ++i) {
+                if (i == 4) {
+                    verifier(stockage.lire("m4", 4) == null, "entree supprimee relue");
+                } else {
+                    verifierEntree(stockage, i, i == 2 ? 20 : i);
+                }
+            }
+            stockage.fermer();
+        } finally {
+            supprimer(dossier);
+        }
+    }
+
+    /**
+     * Un enregistrement incomplet à la fin du dernier segment (écriture
+     * interrompue) est retiré ; les entrées précédentes sont gardées.
+     */
+    private static void arretBrutal() throws Exception {
+        File dossier = Files.createTempDirectory("requeterRezo").toFile();
+        try {
+            StockageSegments stockage = ouvrir(dossier);
+            for (int i = 0; i < 5; ++i) {
+                stockage.ecrire("m" + i, i, donnees(i));
+            }
+            stockage.fermer();
+            File dernier = segments(dossier)[2];
+            long taille = dernier.length();
+            //Entrée m4 à moitié écrite
+            try (RandomAccessFile fichier = new RandomAccessFile(dernier, "rw")) {
+                fichier.setLength(taille - TAILLE_ENTREE / 2);
+            }
+            stockage = ouvrir(dossier);
+            for (int i = 0; i < 4; ++i) {
+                verifierEntree(stockage, i, i);
+            }
+            verifier(stockage.lire("m4", 4) == null, "entree incomplete relue");
+            egaux(0L, dernier.length(), "taille du dernier segment apres troncature");
+            //Le stockage reste utilisable après la troncature
+            stockage.ecrire("m5", 5, donnees(5));
+            stockage.fermer();
+            stockage = ouvrir(dossier);
+            verifierEntree(stockage, 5, 5);
+            stockage.fermer();
+        } finally {
+            supprimer(dossier);
+        }
+    }
+
+    /**
+     * Dans un segment scellé, seul l'enregistrement corrompu est perdu.
+     */
+    private static void segmentScelleCorrompu() throws Exception {
+        File dossier = Files.createTempDirectory("requeterRezo").toFile();
+        try {
+            StockageSegments stockage = ouvrir(dossier);
+            for (int i = 0; i < 6; ++i) {
+                stockage.ecrire("m" + i, i, donnees(i));
+            }
+            stockage.fermer();
+            File premier = segments(dossier)[0];
+            long taille = premier.length();
+            try (RandomAccessFile fichier = new RandomAccessFile(premier, "rw")) {
+                //Un octet des données de la première entrée
+                fichier.seek(30);
+                fichier.write(fichier.read() ^ 0xFF);
+            }
+            stockage = ouvrir(dossier);
+            verifier(stockage.lire("m0", 0) == null, "entree corrompue relue");
+            for (int i = 1; i < 6; ++i) {
+                verifierEntree(stockage, i, i);
+            }
+            egaux(taille, premier.length(), "taille du segment scelle");
+            stockage.fermer();
+        } finally {
+            supprimer(dossier);
+        }
+    }
+
+    private static void fichierEtranger() throws Exception {
+        File dossier = Files.createTempDirectory("requeterRezo").toFile();
+        try {
+            StockageSegments stockage = ouvrir(dossier);
+            stockage.ecrire("m0", 0, donnees(0));
+            stockage.fermer();
+            Files.write(new File(dossier, "sauvegarde.seg").toPath(), new byte[]{1, 2, 3});
+            stockage = ouvrir(dossier);
+            verifierEntree(stockage, 0, 0);
+            stockage.fermer();
+            verifier(new File(dossier, "sauvegarde.seg").exists(), "fichier etranger conserve");
+        } finally {
+            supprimer(dossier);
+        }
+    }
+
+    /**
+     * Un segment scellé dont la plupart des entrées sont mortes est supprimé
+     * après recopie de ses entrées vivantes.
+     */
+    private static void compactage() throws Exception {
+        File dossier = Files.createTempDirectory("requeterRezo").toFile();
+        try {
+            StockageSegments stockage = ouvrir(dossier);
+            for (int i = 0; i < 6; ++i) {
+                stockage.ecrire("m" + i, i, donnees(i));
+            }
+            File premier = segments(dossier)[0];
+            stockage.ecrire("m0", 0, donnees(10));
+            stockage.compacter();
+            verifier(!premier.exists(), "segment compacte supprime");
+            for (int i = 0; i < 6; ++i) {
+                verifierEntree(stockage, i, i == 0 ? 10 : i);
+            }
+            stockage.fermer();
+            stockage = ouvrir(dossier);
+            for (int i = 0; i < 6; ++i) {
+                verifierEntree(stockage, i, i == 0 ? 10 : i);
+            }
+            stockage.fermer();
+        } finally {
+            supprimer(dossier);
+        }
+    }
+
+    private static StockageSegments ouvrir(File dossier) throws Exception {
+        //Compactage déclenché uniquement par les tests, dès qu'une des deux
+        //entrées d'un segment est morte
+        return new StockageSegments(dossier.getPath(), TAILLE_SEGMENT, 0.4, 3600);
+    }
+
+    private static File[] segments(File dossier) {
+        File[] segments = dossier.listFiles((d, nom) -> nom.matches("[0-9]+\\.seg"));
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    private static byte[] donnees(int valeur) {
+        byte[] donnees = new byte[TAILLE_ENTREE];
+        Arrays.fill(donnees, (byte) valeur);
+        return donnees;
+    }
+
+    private static void verifierEntree(StockageSegments stockage, int i, int valeur) throws Exception {
+        ByteBuffer lu = stockage.lire("m" + i, i);
+        verifier(lu != null, "entree m" + i + " absente");
+        byte[] octets = new byte[lu.remaining()];
+        lu.duplicate().get(octets);
+        verifier(Arrays.equals(donnees(valeur), octets), "contenu de l'entree m" + i);
+    }
+}
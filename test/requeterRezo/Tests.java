@@ -0,0 +1,62 @@
+package requeterRezo;
+
+import java.io.File;
+import java.util.Objects;
+
+/**
+ * Lance tous les tests. Les tests n'utilisent que la bibliothèque standard :
+ * chaque classe de test a sa propre méthode main et lève une
+ * {@link AssertionError} à la première vérification qui échoue.
+ */
+public class Tests {
+
+    public static void main(String[] args) throws Exception {
+        TestFormatBinaire.main(args);
+        TestStockageSegments.main(args);
+        TestJournal.main(args);
+        TestIndexBinaire.main(args);
+        TestPolitiques.main(args);
+        TestConcurrence.main(args);
+        System.out.println("Tous les tests sont passes.");
+    }
+
+    /**
+     * Vérifie une condition.
+     *
+     * @param condition Condition attendue.
+     * @param message Description de la vérification.
+     */
+    static void verifier(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    /**
+     * Vérifie que deux valeurs sont égales.
+     *
+     * @param attendu Valeur attendue.
+     * @param obtenu Valeur obtenue.
+     * @param message Description de la vérification.
+     */
+    static void egaux(Object attendu, Object obtenu, String message) {
+        if (!Objects.equals(attendu, obtenu)) {
+            throw new AssertionError(message + " : attendu " + attendu + ", obtenu " + obtenu);
+        }
+    }
+
+    /**
+     * Supprime un fichier ou un dossier et son contenu.
+     *
+     * @param fichier Fichier ou dossier à supprimer.
+     */
+    static void supprimer(File fichier) {
+        File[] contenu = fichier.listFiles();
+        if (contenu != null) {
+            for (File f : contenu) {
+                supprimer(f);
+            }
+        }
+        fichier.delete();
+    }
+}